@@ -0,0 +1,115 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache;
+
+import org.ehcache.exceptions.BulkCacheLoadingException;
+import org.ehcache.exceptions.BulkCacheWritingException;
+import org.ehcache.exceptions.CacheLoadingException;
+import org.ehcache.exceptions.CacheWritingException;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous view of a {@link Cache}, as obtained through {@link CacheManager#getAsyncCache(String, Class, Class)}.
+ * <P>
+ * Operations that can be served from the heap tier complete before returning, others are handed to an executor so
+ * that the calling thread never waits on lower tiers or on the {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter}.
+ * Failures the synchronous {@link Cache} method would throw are reported through
+ * {@link Future#get()} as the cause of an {@link java.util.concurrent.ExecutionException}.
+ * </P>
+ *
+ * @param <K> the type of the keys used to access data within this cache
+ * @param <V> the type of the values held within this cache
+ */
+public interface AsyncCache<K, V> {
+
+  /**
+   * Retrieve the value currently mapped to the provided key, see {@link Cache#get(Object)}.
+   *
+   * @param key the key to query the value for
+   * @return a {@link Future} of the value mapped to the key, or {@code null} if none
+   *
+   * @throws java.lang.NullPointerException if the provided key is null
+   * @see CacheLoadingException
+   */
+  Future<V> getAsync(K key);
+
+  /**
+   * Associates the provided value to the given key, see {@link Cache#put(Object, Object)}.
+   *
+   * @param key the key, may not be null
+   * @param value the value, may not be null
+   * @return a {@link Future} completing once the mapping is installed
+   *
+   * @throws java.lang.NullPointerException if either key or value is null
+   * @see CacheWritingException
+   */
+  Future<Void> putAsync(K key, V value);
+
+  /**
+   * Removes the value, if any, associated with the provided key, see {@link Cache#remove(Object)}.
+   *
+   * @param key the key to remove the value for
+   * @return a {@link Future} completing once the mapping is removed
+   *
+   * @throws java.lang.NullPointerException if the provided key is null
+   * @see CacheWritingException
+   */
+  Future<Void> removeAsync(K key);
+
+  /**
+   * Retrieves all values associated with the given keys, see {@link Cache#getAll(Set)}.
+   *
+   * @param keys keys to query for
+   * @return a {@link Future} of a map from keys to values or {@code null} if the key was not mapped
+   *
+   * @throws NullPointerException if the {@code Set} or any of the contained keys are {@code null}.
+   * @see BulkCacheLoadingException
+   */
+  Future<Map<K, V>> getAllAsync(Set<? extends K> keys);
+
+  /**
+   * Associates all the provided key:value pairs, see {@link Cache#putAll(Map)}.
+   *
+   * @param entries key:value pairs to associate
+   * @return a {@link Future} completing once all mappings are installed
+   *
+   * @throws NullPointerException if the {@code Map} or any of the contained keys or values are {@code null}.
+   * @see BulkCacheWritingException
+   */
+  Future<Void> putAllAsync(Map<? extends K, ? extends V> entries);
+
+  /**
+   * Removes any associates for the given keys, see {@link Cache#removeAll(Set)}.
+   *
+   * @param keys keys to remove values for
+   * @return a {@link Future} completing once all mappings are removed
+   *
+   * @throws NullPointerException if the {@code Set} or any of the contained keys are {@code null}.
+   * @see BulkCacheWritingException
+   */
+  Future<Void> removeAllAsync(Set<? extends K> keys);
+
+  /**
+   * Returns the synchronous {@link Cache} this instance is a view of.
+   *
+   * @return the underlying cache
+   */
+  Cache<K, V> getCache();
+}
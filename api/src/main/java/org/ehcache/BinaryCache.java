@@ -0,0 +1,66 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * View of a {@link Cache} reading values in their serialized form, without going through the value
+ * {@link org.ehcache.spi.serialization.Serializer}, as obtained through
+ * {@link CacheManager#getBinaryCache(String, Class, Class)}.
+ * <P>
+ * Values are read from the tier holding all mappings, which must store them serialized: the view is only available
+ * for caches with an off-heap or disk tier. Reads count as accesses to the mapping, as {@link Cache#get(Object)} does,
+ * but never call the {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter}. When the underlying store fails, the
+ * mapping is removed and the read reports no mapping, as {@link Cache#get(Object)} does.
+ * </P>
+ *
+ * @param <K> the type of the keys used to access data within this cache
+ */
+public interface BinaryCache<K> {
+
+  /**
+   * Returns a read-only buffer holding the serialized form of the value mapped to the given key.
+   * <P>
+   * The buffer holds a copy of the stored bytes, use {@link #copyBinaryValue(Object, ByteBuffer)} to avoid the
+   * allocation.
+   * </P>
+   *
+   * @param key the key to query the value for
+   * @return the serialized value, or {@code null} if there is no mapping for the key
+   *
+   * @throws java.lang.NullPointerException if the provided key is null
+   * @throws java.lang.IllegalStateException if the cache is not available
+   */
+  ByteBuffer getBinaryValue(K key);
+
+  /**
+   * Copies the serialized form of the value mapped to the given key into {@code target}, advancing its position.
+   * <P>
+   * Nothing is copied when the serialized form is larger than the remaining space of {@code target}, the returned
+   * size then lets the caller retry with a large enough buffer.
+   * </P>
+   *
+   * @param key the key to query the value for
+   * @param target the buffer to copy the serialized value into
+   * @return the size of the serialized value, or {@code -1} if there is no mapping for the key
+   *
+   * @throws java.lang.NullPointerException if the provided key or buffer is null
+   * @throws java.lang.IllegalStateException if the cache is not available
+   */
+  int copyBinaryValue(K key, ByteBuffer target);
+}
@@ -54,6 +54,38 @@ public interface CacheManager {
    */
   <K, V> Cache<K, V> getCache(String alias, Class<K> keyType, Class<V> valueType);
 
+  /**
+   * Retrieves an {@link AsyncCache} view of the {@link Cache} associated with the given alias, if one is known.
+   *
+   * @param alias the alias under which to look the {@link Cache} up
+   * @param keyType the {@link Cache} key class
+   * @param valueType the {@link Cache} value class
+   * @param <K> the type of the keys used to access data within this cache
+   * @param <V> the type of the values held within this cache
+   * @return the {@link AsyncCache} view of the {@link Cache} associated with the given alias, {@code null} if no association exists
+   *
+   * @throws java.lang.IllegalArgumentException If the keyType or valueType do not match the ones with which the {@link Cache} was created
+   */
+  <K, V> AsyncCache<K, V> getAsyncCache(String alias, Class<K> keyType, Class<V> valueType);
+
+  /**
+   * Retrieves a {@link BinaryCache} view of the {@link Cache} associated with the given alias, if one is known and
+   * can read its values in serialized form.
+   * <P/>
+   * Only caches with an off-heap or disk tier hold their values serialized, other caches have no binary view.
+   *
+   * @param alias the alias under which to look the {@link Cache} up
+   * @param keyType the {@link Cache} key class
+   * @param valueType the {@link Cache} value class
+   * @param <K> the type of the keys used to access data within this cache
+   * @param <V> the type of the values held within this cache
+   * @return the {@link BinaryCache} view of the {@link Cache} associated with the given alias, {@code null} if no
+   * association exists or if the cache does not hold its values in serialized form
+   *
+   * @throws java.lang.IllegalArgumentException If the keyType or valueType do not match the ones with which the {@link Cache} was created
+   */
+  <K, V> BinaryCache<K> getBinaryCache(String alias, Class<K> keyType, Class<V> valueType);
+
   /**
    * Removes the {@link Cache} associated with the alias provided, if oe is known.
    * <P/>
@@ -0,0 +1,109 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.spi.loaderwriter;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * A non-blocking counterpart to {@link CacheLoaderWriter}, for systems of record accessed through asynchronous clients.
+ * <p>
+ * Each method starts the operation and returns a {@link Future} tracking it. A {@code Future} failing with an
+ * {@link java.util.concurrent.ExecutionException} is handled as if the equivalent {@link CacheLoaderWriter} method
+ * had thrown its cause, notably a {@link org.ehcache.exceptions.BulkCacheLoadingException} or
+ * {@link org.ehcache.exceptions.BulkCacheWritingException} indicates a partial success of a bulk operation.
+ * <p>
+ * The {@link org.ehcache.Cache} waits on the returned {@code Future} without holding any lock on its store, and only
+ * installs loaded or written mappings once the load or write completed. Operations must be started in invocation
+ * order, writes to a given key are invoked in the order they are applied to the cache.
+ * <p>
+ * Instances of this class have to be thread safe.
+ *
+ * @param <K> the type of the keys used to access data within the cache
+ * @param <V> the type of the values held within the cache
+ *
+ * @see CacheLoaderWriter
+ */
+public interface AsyncCacheLoaderWriter<K, V> {
+
+  /**
+   * Starts loading the value to be associated with the given key.
+   *
+   * @param key the key that will map to the loaded value
+   * @return a {@link Future} of the value to be mapped
+   * @throws Exception if the load cannot be started
+   *
+   * @see CacheLoaderWriter#load(Object)
+   */
+  Future<V> loadAsync(K key) throws Exception;
+
+  /**
+   * Starts loading the values to be associated with the given keys.
+   *
+   * @param keys the keys that will be mapped to the values loaded
+   * @return a {@link Future} of the {@link java.util.Map} of values for each key passed in
+   * @throws Exception if the load cannot be started
+   *
+   * @see CacheLoaderWriter#loadAll(Iterable)
+   */
+  Future<Map<K, V>> loadAllAsync(Iterable<? extends K> keys) throws Exception;
+
+  /**
+   * Starts writing a single entry to the underlying system of record.
+   *
+   * @param key the key of the mapping being installed or updated
+   * @param value the actual value being updated
+   * @return a {@link Future} completing once the entry is written
+   * @throws Exception if the write cannot be started
+   *
+   * @see CacheLoaderWriter#write(Object, Object)
+   */
+  Future<Void> writeAsync(K key, V value) throws Exception;
+
+  /**
+   * Starts writing multiple entries to the underlying system of record.
+   *
+   * @param entries the key to value mappings
+   * @return a {@link Future} completing once the entries are written
+   * @throws Exception if the write cannot be started
+   *
+   * @see CacheLoaderWriter#writeAll(Iterable)
+   */
+  Future<Void> writeAllAsync(Iterable<? extends Map.Entry<? extends K, ? extends V>> entries) throws Exception;
+
+  /**
+   * Starts deleting a single entry from the underlying system of record.
+   *
+   * @param key the key to delete
+   * @return a {@link Future} completing once the entry is deleted
+   * @throws Exception if the delete cannot be started
+   *
+   * @see CacheLoaderWriter#delete(Object)
+   */
+  Future<Void> deleteAsync(K key) throws Exception;
+
+  /**
+   * Starts deleting a set of entries from the underlying system of record.
+   *
+   * @param keys the keys to delete
+   * @return a {@link Future} completing once the entries are deleted
+   * @throws Exception if the delete cannot be started
+   *
+   * @see CacheLoaderWriter#deleteAll(Iterable)
+   */
+  Future<Void> deleteAllAsync(Iterable<? extends K> keys) throws Exception;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.spi.serialization;
+
+import java.nio.ByteBuffer;
+import org.ehcache.exceptions.SerializerException;
+
+/**
+ * Optional extension of {@link Serializer} for implementations able to write their serial form into a buffer
+ * supplied by the caller.
+ * <P>
+ *   This lets stores serialize into a reused or pre-sized buffer, prefixed with their own metadata, instead of
+ *   allocating and then copying a fresh buffer for every value.
+ * </P>
+ *
+ * @param <T> the type of the instances to serialize
+ */
+public interface BufferSerializer<T> extends Serializer<T> {
+
+  /**
+   * Returns an estimate of the size, in bytes, of the serial form of the given instance.
+   * <P>
+   *   This is only a hint used to size target buffers, it may be larger or smaller than the actual size.
+   * </P>
+   *
+   * @param object the instance to serialize
+   * @return the estimated size of the serial form
+   */
+  int estimateSize(T object);
+
+  /**
+   * Writes the serial form of the given instance into {@code target}, starting at its current position.
+   * <P>
+   *   The bytes written must be identical to the content of the buffer returned by {@link #serialize(Object)}.
+   * </P>
+   *
+   * @param object the instance to serialize
+   * @param target the buffer to write into
+   * @return {@code true} if the serial form was written, the position of {@code target} then being right after it,
+   * {@code false} if {@code target} did not have enough room, its position then being left unchanged
+   * @throws SerializerException if serialization fails
+   */
+  boolean serialize(T object, ByteBuffer target) throws SerializerException;
+}
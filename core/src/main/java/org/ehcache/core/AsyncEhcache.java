@@ -0,0 +1,290 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core;
+
+import org.ehcache.AsyncCache;
+import org.ehcache.Cache;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.core.spi.service.ExecutionService;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.store.Store.ValueHolder;
+import org.ehcache.exceptions.StoreAccessException;
+import org.terracotta.statistics.StatisticsManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link AsyncCache} view of an {@link InternalCache}.
+ * <P>
+ *   Operations run on the calling thread when they can't leave the heap tier: reads of mappings currently held on
+ *   heap, and all operations of a heap only cache without a {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter}.
+ *   Everything else is handed to an executor obtained from the {@link ExecutionService}, on first use. Without an
+ *   {@link ExecutionService} all operations run on the calling thread.
+ * </P>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class AsyncEhcache<K, V> implements AsyncCache<K, V> {
+
+  private final InternalCache<K, V> cache;
+  private final Store<K, V> store;
+  private final ExecutionService executionService;
+  private final boolean heapOnly;
+
+  private final AtomicLong inlineCompletions = new AtomicLong();
+  private final AtomicLong offloadedOperations = new AtomicLong();
+
+  private ExecutorService executor;
+  private boolean closed;
+
+  /**
+   * Creates a new asynchronous view of the given cache.
+   *
+   * @param cache the cache operations are delegated to
+   * @param store the store backing {@code cache}
+   * @param executionService the service providing the executor, may be {@code null}
+   */
+  public AsyncEhcache(InternalCache<K, V> cache, Store<K, V> store, ExecutionService executionService) {
+    this.cache = cache;
+    this.store = store;
+    this.executionService = executionService;
+    ResourcePools resourcePools = cache.getRuntimeConfiguration().getResourcePools();
+    this.heapOnly = resourcePools != null && resourcePools.getResourceTypeSet().equals(Collections.singleton(ResourceType.Core.HEAP))
+                    && cache.getCacheLoaderWriter() == null;
+
+    Set<String> tags = Collections.singleton("async");
+    StatisticsManager.createPassThroughStatistic(this, "asyncInlineCompletions", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getInlineCompletionCount();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "asyncOffloadedOperations", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getOffloadedOperationCount();
+      }
+    });
+  }
+
+  @Override
+  public Future<V> getAsync(final K key) {
+    checkNonNull(key);
+    boolean inline = heapOnly;
+    if (!inline && store instanceof Store.HeapPeek) {
+      try {
+        @SuppressWarnings("unchecked")
+        ValueHolder<V> onHeap = ((Store.HeapPeek<K, V>) store).peekHeap(key);
+        inline = onHeap != null;
+      } catch (StoreAccessException e) {
+        // let the cache deal with the failure, off the calling thread
+      }
+    }
+    return execute(inline, new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        return cache.get(key);
+      }
+    });
+  }
+
+  @Override
+  public Future<Void> putAsync(final K key, final V value) {
+    checkNonNull(key, value);
+    return execute(heapOnly, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        cache.put(key, value);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public Future<Void> removeAsync(final K key) {
+    checkNonNull(key);
+    return execute(heapOnly, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        cache.remove(key);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public Future<Map<K, V>> getAllAsync(final Set<? extends K> keys) {
+    checkNonNullContent(keys);
+    return execute(heapOnly, new Callable<Map<K, V>>() {
+      @Override
+      public Map<K, V> call() throws Exception {
+        return cache.getAll(keys);
+      }
+    });
+  }
+
+  @Override
+  public Future<Void> putAllAsync(final Map<? extends K, ? extends V> entries) {
+    checkNonNull(entries);
+    for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+      checkNonNull(entry.getKey(), entry.getValue());
+    }
+    return execute(heapOnly, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        cache.putAll(entries);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public Future<Void> removeAllAsync(final Set<? extends K> keys) {
+    checkNonNullContent(keys);
+    return execute(heapOnly, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        cache.removeAll(keys);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public Cache<K, V> getCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the number of operations completed on the calling thread.
+   *
+   * @return the inline completion count
+   */
+  public long getInlineCompletionCount() {
+    return inlineCompletions.get();
+  }
+
+  /**
+   * Returns the number of operations handed to the executor.
+   *
+   * @return the offloaded operation count
+   */
+  public long getOffloadedOperationCount() {
+    return offloadedOperations.get();
+  }
+
+  /**
+   * Stops the executor, if one was created. Operations not yet started are abandoned.
+   */
+  public synchronized void close() {
+    closed = true;
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private <T> Future<T> execute(boolean inline, Callable<T> operation) {
+    ExecutorService executorService = inline ? null : getExecutor();
+    if (executorService == null) {
+      inlineCompletions.incrementAndGet();
+      try {
+        return new CompletedFuture<T>(operation.call(), null);
+      } catch (Exception e) {
+        return new CompletedFuture<T>(null, new ExecutionException(e));
+      }
+    } else {
+      offloadedOperations.incrementAndGet();
+      return executorService.submit(operation);
+    }
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null && executionService != null && !closed) {
+      executor = executionService.getUnorderedExecutor(null, new LinkedBlockingQueue<Runnable>());
+    }
+    return executor;
+  }
+
+  private static void checkNonNull(Object... things) {
+    for (Object thing : things) {
+      if (thing == null) {
+        throw new NullPointerException();
+      }
+    }
+  }
+
+  private static void checkNonNullContent(Set<?> keys) {
+    checkNonNull(keys);
+    for (Object key : keys) {
+      checkNonNull(key);
+    }
+  }
+
+  /**
+   * A {@link Future} for an operation that completed on the calling thread.
+   */
+  private static final class CompletedFuture<T> implements Future<T> {
+
+    private final T value;
+    private final ExecutionException failure;
+
+    CompletedFuture(T value, ExecutionException failure) {
+      this.value = value;
+      this.failure = failure;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public boolean isDone() {
+      return true;
+    }
+
+    @Override
+    public T get() throws ExecutionException {
+      if (failure != null) {
+        throw failure;
+      }
+      return value;
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws ExecutionException {
+      return get();
+    }
+  }
+}
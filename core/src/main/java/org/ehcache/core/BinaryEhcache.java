@@ -0,0 +1,118 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core;
+
+import org.ehcache.BinaryCache;
+import org.ehcache.Status;
+import org.ehcache.core.internal.resilience.RethrowingStoreAccessException;
+import org.ehcache.core.spi.store.BinaryValueStore;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.exceptions.StoreAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link BinaryCache} view of an {@link InternalCache}, reading straight from its {@link BinaryValueStore}.
+ * <P>
+ *   Store failures are handled as the default resilience strategy of the cache does: the mapping is removed and the
+ *   read reports no mapping.
+ * </P>
+ *
+ * @param <K> the key type
+ */
+public class BinaryEhcache<K> implements BinaryCache<K> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BinaryEhcache.class);
+
+  private final InternalCache<K, ?> cache;
+  private final Store<K, ?> store;
+  private final BinaryValueStore<K> binaryValueStore;
+
+  /**
+   * Creates a new binary view of the given cache.
+   *
+   * @param cache the cache whose status is checked on each read
+   * @param store the store backing {@code cache}, which must support binary values
+   * @throws IllegalArgumentException if {@code store} cannot read binary values
+   */
+  @SuppressWarnings("unchecked")
+  public BinaryEhcache(InternalCache<K, ?> cache, Store<K, ?> store) {
+    if (!supportsBinaryValues(store)) {
+      throw new IllegalArgumentException("Store " + store + " cannot read binary values");
+    }
+    this.cache = cache;
+    this.store = store;
+    this.binaryValueStore = (BinaryValueStore<K>) store;
+  }
+
+  /**
+   * Tells whether a binary view can be created over the given store.
+   *
+   * @param store the store to check
+   * @return {@code true} if the store can read binary values
+   */
+  public static boolean supportsBinaryValues(Store<?, ?> store) {
+    return store instanceof BinaryValueStore && ((BinaryValueStore<?>) store).supportsBinaryValues();
+  }
+
+  @Override
+  public ByteBuffer getBinaryValue(K key) {
+    checkAvailable();
+    try {
+      return binaryValueStore.getBinaryValue(key);
+    } catch (StoreAccessException e) {
+      obliterate(key, e);
+      return null;
+    }
+  }
+
+  @Override
+  public int copyBinaryValue(K key, ByteBuffer target) {
+    if (target == null) {
+      throw new NullPointerException();
+    }
+    checkAvailable();
+    try {
+      return binaryValueStore.copyBinaryValue(key, target);
+    } catch (StoreAccessException e) {
+      obliterate(key, e);
+      return -1;
+    }
+  }
+
+  private void checkAvailable() {
+    Status status = cache.getStatus();
+    if (status != Status.AVAILABLE) {
+      throw new IllegalStateException("State is " + status);
+    }
+  }
+
+  private void obliterate(K key, StoreAccessException from) {
+    if (from instanceof RethrowingStoreAccessException) {
+      throw ((RethrowingStoreAccessException) from).getCause();
+    }
+    try {
+      store.remove(key);
+    } catch (StoreAccessException e) {
+      LOGGER.error("Ehcache key {} in possible inconsistent state due to ", key, from);
+      return;
+    }
+    LOGGER.info("Ehcache key {} recovered from", key, from);
+  }
+}
@@ -16,6 +16,8 @@
 
 package org.ehcache.core;
 
+import org.ehcache.AsyncCache;
+import org.ehcache.BinaryCache;
 import org.ehcache.Cache;
 import org.ehcache.Maintainable;
 import org.ehcache.PersistentCacheManager;
@@ -27,6 +29,8 @@ import org.ehcache.config.ResourceType;
 import org.ehcache.config.RuntimeConfiguration;
 import org.ehcache.core.config.BaseCacheConfiguration;
 import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.core.config.loaderwriter.LoadBatchingConfiguration;
+import org.ehcache.core.config.loaderwriter.RefreshAheadConfiguration;
 import org.ehcache.core.config.store.StoreEventSourceConfiguration;
 import org.ehcache.core.internal.store.StoreConfigurationImpl;
 import org.ehcache.core.events.CacheEventDispatcher;
@@ -38,6 +42,9 @@ import org.ehcache.core.spi.store.InternalCacheManager;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.internal.store.StoreSupport;
 import org.ehcache.core.spi.service.CacheManagerProviderService;
+import org.ehcache.core.spi.service.ExecutionService;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.core.spi.time.TimeSourceService;
 import org.ehcache.core.internal.util.ClassLoading;
 import org.ehcache.event.CacheEventListener;
 import org.ehcache.event.CacheEventListenerConfiguration;
@@ -73,6 +80,8 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Implementation class for the {@link org.ehcache.CacheManager} and {@link PersistentCacheManager}
@@ -100,6 +109,8 @@ public class EhcacheManager implements PersistentCacheManager, InternalCacheMana
 
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
   private final ConcurrentMap<String, CacheHolder> caches = new ConcurrentHashMap<String, CacheHolder>();
+  private final ConcurrentMap<String, AsyncEhcache<?, ?>> asyncCaches = new ConcurrentHashMap<String, AsyncEhcache<?, ?>>();
+  private final ConcurrentMap<String, BinaryEhcache<?>> binaryCaches = new ConcurrentHashMap<String, BinaryEhcache<?>>();
   private final CopyOnWriteArrayList<CacheManagerListener> listeners = new CopyOnWriteArrayList<CacheManagerListener>();
 
   private final StatusTransitioner statusTransitioner = new StatusTransitioner(this.logger);
@@ -173,6 +184,24 @@ public class EhcacheManager implements PersistentCacheManager, InternalCacheMana
     }
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> AsyncCache<K, V> getAsyncCache(String alias, Class<K> keyType, Class<V> valueType) {
+    if (getCache(alias, keyType, valueType) == null) {
+      return null;
+    }
+    return (AsyncCache<K, V>) asyncCaches.get(alias);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> BinaryCache<K> getBinaryCache(String alias, Class<K> keyType, Class<V> valueType) {
+    if (getCache(alias, keyType, valueType) == null) {
+      return null;
+    }
+    return (BinaryCache<K>) binaryCaches.get(alias);
+  }
+
   @Override
   public void removeCache(final String alias) {
     if (alias == null) {
@@ -191,6 +220,8 @@ public class EhcacheManager implements PersistentCacheManager, InternalCacheMana
     statusTransitioner.checkAvailable();
     final CacheHolder cacheHolder = caches.remove(alias);
     if(cacheHolder != null) {
+      asyncCaches.remove(alias);
+      binaryCaches.remove(alias);
       final InternalCache<?, ?> ehcache = cacheHolder.retrieve(cacheHolder.keyType, cacheHolder.valueType);
       if (ehcache != null) {
         if (!statusTransitioner.isTransitioning()) {
@@ -276,6 +307,8 @@ public class EhcacheManager implements PersistentCacheManager, InternalCacheMana
     } finally {
       if (!success) {
         caches.remove(alias);
+        asyncCaches.remove(alias);
+        binaryCaches.remove(alias);
         value.setCache(null);
       }
     }
@@ -365,9 +398,47 @@ public class EhcacheManager implements PersistentCacheManager, InternalCacheMana
     if (decorator == null) {
       cache = new Ehcache<K, V>(config, store, evtService, LoggerFactory.getLogger(Ehcache.class + "-" + alias));
     } else {
-      cache = new EhcacheWithLoaderWriter<K, V>(config, store, decorator, evtService,
+      EhcacheWithLoaderWriter<K, V> cacheWithLoaderWriter = new EhcacheWithLoaderWriter<K, V>(config, store, decorator, evtService,
                     useLoaderInAtomics, LoggerFactory.getLogger(EhcacheWithLoaderWriter.class + "-" + alias));
+      LoadBatchingConfiguration loadBatchingConfiguration =
+          ServiceLocator.findSingletonAmongst(LoadBatchingConfiguration.class, config.getServiceConfigurations().toArray());
+      if (loadBatchingConfiguration != null) {
+        cacheWithLoaderWriter.enableLoadBatching(loadBatchingConfiguration.getMaxBatchSize(),
+            loadBatchingConfiguration.getMaxDelay(), loadBatchingConfiguration.getUnit());
+      }
+      RefreshAheadConfiguration refreshAheadConfiguration =
+          ServiceLocator.findSingletonAmongst(RefreshAheadConfiguration.class, config.getServiceConfigurations().toArray());
+      if (refreshAheadConfiguration != null) {
+        ExecutionService executionService = serviceLocator.getService(ExecutionService.class);
+        if (executionService == null) {
+          throw new IllegalStateException("Refresh ahead of cache '" + alias + "' requires an ExecutionService");
+        }
+        TimeSourceService timeSourceService = serviceLocator.getService(TimeSourceService.class);
+        final ExecutorService refreshExecutor = executionService.getUnorderedExecutor(refreshAheadConfiguration.getThreadPoolAlias(),
+            new LinkedBlockingQueue<Runnable>());
+        cacheWithLoaderWriter.enableRefreshAhead(refreshAheadConfiguration.getRefreshAheadFactor(), refreshExecutor,
+            timeSourceService == null ? SystemTimeSource.INSTANCE : timeSourceService.getTimeSource());
+        lifeCycledList.add(new LifeCycledAdapter() {
+          @Override
+          public void close() {
+            refreshExecutor.shutdownNow();
+          }
+        });
+      }
+      cache = cacheWithLoaderWriter;
+    }
+
+    final AsyncEhcache<K, V> asyncCache = new AsyncEhcache<K, V>(cache, store, serviceLocator.getService(ExecutionService.class));
+    asyncCaches.put(alias, asyncCache);
+    if (BinaryEhcache.supportsBinaryValues(store)) {
+      binaryCaches.put(alias, new BinaryEhcache<K>(cache, store));
     }
+    lifeCycledList.add(new LifeCycledAdapter() {
+      @Override
+      public void close() {
+        asyncCache.close();
+      }
+    });
 
     final CacheEventListenerProvider evntLsnrFactory = serviceLocator.getService(CacheEventListenerProvider.class);
     if (evntLsnrFactory != null) {
@@ -644,6 +715,8 @@ public class EhcacheManager implements PersistentCacheManager, InternalCacheMana
   protected void removeAndCloseWithoutNotice(final String alias) {
     final CacheHolder cacheHolder = caches.remove(alias);
     if(cacheHolder != null) {
+      asyncCaches.remove(alias);
+      binaryCaches.remove(alias);
       final InternalCache<?, ?> ehcache = cacheHolder.retrieve(cacheHolder.keyType, cacheHolder.valueType);
       if(ehcache.getStatus() == Status.AVAILABLE) {
         ehcache.close();
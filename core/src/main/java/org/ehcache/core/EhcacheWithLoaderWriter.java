@@ -20,6 +20,8 @@ import org.ehcache.Cache;
 import org.ehcache.Status;
 import org.ehcache.config.CacheConfiguration;
 import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
 import org.ehcache.core.events.CacheEventDispatcher;
 import org.ehcache.core.exceptions.StorePassThroughException;
 import org.ehcache.exceptions.BulkCacheLoadingException;
@@ -31,12 +33,15 @@ import org.ehcache.expiry.Duration;
 import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
 import org.ehcache.core.spi.function.NullaryFunction;
+import org.ehcache.core.internal.loaderwriter.LoadBatcher;
 import org.ehcache.core.internal.resilience.LoggingRobustResilienceStrategy;
 import org.ehcache.core.internal.resilience.RecoveryCache;
 import org.ehcache.core.internal.resilience.ResilienceStrategy;
 import org.ehcache.spi.LifeCycled;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.spi.store.Store.ValueHolder;
+import org.ehcache.core.spi.time.TimeSource;
+import org.ehcache.spi.loaderwriter.AsyncCacheLoaderWriter;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
 import org.ehcache.core.statistics.BulkOps;
 import org.ehcache.core.statistics.CacheOperationOutcomes.CacheLoadingOutcome;
@@ -67,8 +72,16 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.ehcache.core.internal.util.Functions.memoize;
@@ -92,10 +105,19 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
 
   private final Store<K, V> store;
   private final CacheLoaderWriter<? super K, V> cacheLoaderWriter;
+  private final AsyncCacheLoaderWriter<? super K, V> asyncCacheLoaderWriter;
   private final ResilienceStrategy<K, V> resilienceStrategy;
   private final EhcacheRuntimeConfiguration<K, V> runtimeConfiguration;
   private final Jsr107CacheImpl jsr107Cache;
   private final boolean useLoaderInAtomics;
+  private final boolean singleFlightLoads;
+  private final ConcurrentMap<K, InFlightLoad> inFlightLoads = new ConcurrentHashMap<K, InFlightLoad>();
+  private final AtomicLong writeGenerations = new AtomicLong();
+  private final ConcurrentMap<K, Long> latestWrites = new ConcurrentHashMap<K, Long>();
+  private volatile LoadBatcher<K, V> loadBatcher;
+  private volatile float refreshAheadFactor;
+  private volatile ExecutorService refreshExecutor;
+  private volatile TimeSource refreshTimeSource;
   protected final Logger logger;
 
   private final OperationObserver<GetOutcome> getObserver = operation(GetOutcome.class).named("get").of(this).tag("cache").build();
@@ -149,6 +171,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
       throw new NullPointerException("CacheLoaderWriter cannot be null.");
     }
     this.cacheLoaderWriter = cacheLoaderWriter;
+    this.asyncCacheLoaderWriter = cacheLoaderWriter instanceof AsyncCacheLoaderWriter ? castToAsync(cacheLoaderWriter) : null;
     if (store instanceof RecoveryCache) {
       this.resilienceStrategy = new LoggingRobustResilienceStrategy<K, V>(castToRecoveryCache(store));
     } else {
@@ -160,6 +183,12 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     this.jsr107Cache = new Jsr107CacheImpl();
 
     this.useLoaderInAtomics = useLoaderInAtomics;
+    // without a heap tier nothing de-duplicates concurrent faults, and computeIfAbsent would run the loader under a segment lock
+    // an asynchronous loader must not be waited on under a store lock either
+    // a configuration without resource pools says nothing about the tiers, so faults are left to the store
+    ResourcePools resourcePools = runtimeConfiguration.getResourcePools();
+    this.singleFlightLoads = (resourcePools != null && !resourcePools.getResourceTypeSet().contains(ResourceType.Core.HEAP))
+                             || asyncCacheLoaderWriter != null;
     this.logger=logger;
     this.statusTransitioner = statusTransitioner;
     for (BulkOps bulkOp : BulkOps.values()) {
@@ -167,6 +196,38 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     }
   }
 
+  /**
+   * Makes hits on entries within {@code refreshAheadFactor} of their time to live before expiry schedule a reload of
+   * the entry on {@code executor}.
+   *
+   * @param refreshAheadFactor the fraction of the time to live during which hits trigger a reload
+   * @param executor the executor running the reloads
+   * @param timeSource the time source of the store
+   */
+  void enableRefreshAhead(float refreshAheadFactor, ExecutorService executor, TimeSource timeSource) {
+    this.refreshAheadFactor = refreshAheadFactor;
+    this.refreshTimeSource = timeSource;
+    this.refreshExecutor = executor;
+  }
+
+  /**
+   * Makes concurrent misses on {@link #get(Object)} be loaded in batches through
+   * {@link CacheLoaderWriter#loadAll(Iterable)}.
+   * <P>
+   *   Misses are then loaded outside of any store lock, whatever the tiers, as a load waits for its batch to fill up.
+   *   Loads performed by the atomic operations are never batched.
+   * </P>
+   *
+   * @param maxBatchSize the maximum number of keys in a batch
+   * @param maxDelay the maximum time a load waits for its batch to fill up
+   * @param unit the unit of {@code maxDelay}
+   */
+  void enableLoadBatching(int maxBatchSize, long maxDelay, TimeUnit unit) {
+    LoadBatcher<K, V> batcher = new LoadBatcher<K, V>(cacheLoaderWriter, maxBatchSize, maxDelay, unit);
+    StatisticsManager.associate(batcher).withParent(this);
+    this.loadBatcher = batcher;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -180,6 +241,11 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     return (RecoveryCache<K>) store;
   }
 
+  @SuppressWarnings("unchecked")
+  private static <K, V> AsyncCacheLoaderWriter<? super K, V> castToAsync(CacheLoaderWriter<? super K, V> cacheLoaderWriter) {
+    return (AsyncCacheLoaderWriter<? super K, V>) cacheLoaderWriter;
+  }
+
   private V getNoLoader(K key) {
     getObserver.begin();
     statusTransitioner.checkAvailable();
@@ -213,20 +279,17 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     getObserver.begin();
     statusTransitioner.checkAvailable();
     checkNonNull(key);
+    if (singleFlightLoads || loadBatcher != null) {
+      return getWithSingleFlightLoad(key);
+    }
     final Function<K, V> mappingFunction = memoize(new Function<K, V>() {
           @Override
           public V apply(final K k) {
-            V loaded = null;
             try {
-              cacheLoadingObserver.begin();
-              loaded = cacheLoaderWriter.load(k);
-              cacheLoadingObserver.end(CacheLoadingOutcome.SUCCESS);
-            } catch (Exception e) {
-              cacheLoadingObserver.end(CacheLoadingOutcome.FAILURE);
-              throw new StorePassThroughException(newCacheLoadingException(e));
+              return load(k);
+            } catch (CacheLoadingException e) {
+              throw new StorePassThroughException(e);
             }
-
-            return loaded;
           }
         });
 
@@ -238,6 +301,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
         getObserver.end(GetOutcome.MISS_WITH_LOADER);
         return null;
       } else {
+        refreshAheadIfDue(key, valueHolder);
         getObserver.end(GetOutcome.HIT_WITH_LOADER);
         return valueHolder.value();
       }
@@ -256,6 +320,179 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     }
   }
 
+  /**
+   * Loads the value for {@code key} outside of any store lock, sharing a single loader call between all threads
+   * that miss on the same key concurrently.
+   * <P>
+   *   The loaded value is only installed if no write to the key happened while it was loading, see
+   *   {@link #invalidateLoad(Object)}. Threads that joined the load still see the loaded value, as they would with a
+   *   heap tier fault.
+   * </P>
+   */
+  private V getWithSingleFlightLoad(final K key) throws CacheLoadingException {
+    InFlightLoad load = null;
+    try {
+      Store.ValueHolder<V> valueHolder = store.get(key);
+      final V value;
+      if (valueHolder != null) {
+        value = valueHolder.value();
+        refreshAheadIfDue(key, valueHolder);
+      } else {
+        load = new InFlightLoad(key);
+        InFlightLoad inFlight = inFlightLoads.putIfAbsent(key, load);
+        if (inFlight != null) {
+          load = inFlight;
+          value = load.get();
+        } else {
+          try {
+            V loaded = load.get();
+            valueHolder = store.computeIfAbsent(key, load);
+            value = valueHolder == null ? loaded : valueHolder.value();
+          } finally {
+            inFlightLoads.remove(key, load);
+          }
+        }
+      }
+
+      if (value == null) {
+        getObserver.end(GetOutcome.MISS_WITH_LOADER);
+      } else {
+        getObserver.end(GetOutcome.HIT_WITH_LOADER);
+      }
+      return value;
+    } catch (StoreAccessException e) {
+      try {
+        V fromLoader;
+        try {
+          fromLoader = (load == null ? new InFlightLoad(key) : load).get();
+        } catch (CacheLoadingException cle) {
+          return resilienceStrategy.getFailure(key, e, cle);
+        }
+        return resilienceStrategy.getFailure(key, fromLoader, e);
+      } finally {
+        getObserver.end(GetOutcome.FAILURE);
+      }
+    }
+  }
+
+  private V load(K key) throws CacheLoadingException {
+    V loaded;
+    try {
+      cacheLoadingObserver.begin();
+      LoadBatcher<K, V> batcher = loadBatcher;
+      if (batcher != null) {
+        // only reached from the single flight path, outside of any store lock
+        loaded = batcher.load(key);
+      } else if (asyncCacheLoaderWriter == null) {
+        loaded = cacheLoaderWriter.load(key);
+      } else {
+        loaded = awaitLoad(asyncCacheLoaderWriter.loadAsync(key));
+      }
+      cacheLoadingObserver.end(CacheLoadingOutcome.SUCCESS);
+    } catch (Exception e) {
+      cacheLoadingObserver.end(CacheLoadingOutcome.FAILURE);
+      throw newCacheLoadingException(e);
+    }
+    return loaded;
+  }
+
+  private static <T> T awaitLoad(Future<T> pendingLoad) throws Exception {
+    try {
+      return pendingLoad.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof Exception ? (Exception) cause : e;
+    }
+  }
+
+  /**
+   * Schedules a reload of {@code key} if refresh ahead is enabled and the hit {@code valueHolder} is within the refresh
+   * ahead window of its expiry, unless a load of the key is already in flight.
+   */
+  private void refreshAheadIfDue(final K key, Store.ValueHolder<V> valueHolder) {
+    ExecutorService executor = refreshExecutor;
+    long expirationTime = valueHolder.expirationTime(TimeUnit.MILLISECONDS);
+    if (executor == null || expirationTime == Store.ValueHolder.NO_EXPIRE) {
+      return;
+    }
+
+    final Duration timeToLive;
+    try {
+      timeToLive = runtimeConfiguration.getExpiry().getExpiryForCreation(key, valueHolder.value());
+    } catch (RuntimeException re) {
+      logger.error("Expiry computation caused an exception - Entry will not be refreshed ahead ", re);
+      return;
+    }
+    if (timeToLive == null || timeToLive.isForever()) {
+      return;
+    }
+    long refreshWindow = (long) (timeToLive.getTimeUnit().toMillis(timeToLive.getAmount()) * refreshAheadFactor);
+    if (expirationTime - refreshTimeSource.getTimeMillis() > refreshWindow) {
+      return;
+    }
+
+    final InFlightLoad load = new InFlightLoad(key);
+    if (inFlightLoads.putIfAbsent(key, load) == null) {
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            refresh(key, load);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        inFlightLoads.remove(key, load);
+        logger.debug("Refresh ahead of a cache entry rejected", e);
+      }
+    }
+  }
+
+  private void refresh(K key, final InFlightLoad load) {
+    try {
+      final V loaded = load.get();
+      final AtomicBoolean refreshed = new AtomicBoolean();
+      store.compute(key, new BiFunction<K, V, V>() {
+        @Override
+        public V apply(K mappedKey, V mappedValue) {
+          if (load.isValid()) {
+            refreshed.set(true);
+            return loaded;
+          } else {
+            return mappedValue;
+          }
+        }
+      }, new NullaryFunction<Boolean>() {
+        @Override
+        public Boolean apply() {
+          return refreshed.get();
+        }
+      });
+    } catch (CacheLoadingException e) {
+      logger.warn("Refresh ahead of a cache entry failed - the current value is kept until it expires", e);
+    } catch (StoreAccessException e) {
+      logger.warn("Refresh ahead of a cache entry failed - the current value is kept until it expires", e);
+    } finally {
+      inFlightLoads.remove(key, load);
+    }
+  }
+
+  /**
+   * Prevents any in-flight load of {@code key} from being installed in the store.
+   * <P>
+   *   Must be called from within the store remapping function of any operation writing through to the
+   *   {@link CacheLoaderWriter}, so that it is ordered with the install of the load under the store lock.
+   * </P>
+   */
+  private void invalidateLoad(K key) {
+    InFlightLoad load = inFlightLoads.remove(key);
+    if (load != null) {
+      load.invalidate();
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -265,11 +502,16 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     statusTransitioner.checkAvailable();
     checkNonNull(key, value);
     final AtomicReference<V> previousMapping = new AtomicReference<V>();
+    final AsyncWrite asyncWrite = asyncCacheLoaderWriter == null ? null : new AsyncWrite(value);
 
     final BiFunction<K, V, V> remappingFunction = memoize(new BiFunction<K, V, V>() {
       @Override
       public V apply(final K key, final V previousValue) {
         previousMapping.set(previousValue);
+        if (asyncWrite != null) {
+          return asyncWrite.apply(key, previousValue);
+        }
+        invalidateLoad(key);
         try {
           cacheLoaderWriter.write(key, value);
         } catch (Exception e) {
@@ -280,7 +522,12 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     });
 
     try {
-      store.compute(key, remappingFunction);
+      if (asyncWrite == null) {
+        store.compute(key, remappingFunction);
+      } else {
+        store.compute(key, remappingFunction, REPLACE_FALSE);
+        asyncWrite.complete(key);
+      }
       if (previousMapping.get() != null) {
         putObserver.end(PutOutcome.UPDATED);
       } else {
@@ -290,9 +537,15 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
       try {
         try {
           remappingFunction.apply(key, value);
+          if (asyncWrite != null) {
+            asyncWrite.await(key);
+          }
         } catch (StorePassThroughException cpte) {
           resilienceStrategy.putFailure(key, value, e, (CacheWritingException) cpte.getCause());
           return;
+        } catch (CacheWritingException cwe) {
+          resilienceStrategy.putFailure(key, value, e, cwe);
+          return;
         }
         resilienceStrategy.putFailure(key, value, e);
       } finally {
@@ -355,12 +608,17 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     checkNonNull(key);
 
     final AtomicBoolean modified = new AtomicBoolean();
+    final AsyncWrite asyncDelete = asyncCacheLoaderWriter == null ? null : new AsyncWrite(null);
 
     final BiFunction<K, V, V> remappingFunction = memoize(new BiFunction<K, V, V>() {
       @Override
       public V apply(final K key, final V previousValue) {
         modified.set(previousValue != null);
+        if (asyncDelete != null) {
+          return asyncDelete.apply(key, previousValue);
+        }
 
+        invalidateLoad(key);
         try {
           cacheLoaderWriter.delete(key);
         } catch (Exception e) {
@@ -371,7 +629,12 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     });
 
     try {
-      store.compute(key, remappingFunction);
+      if (asyncDelete == null) {
+        store.compute(key, remappingFunction);
+      } else {
+        store.compute(key, remappingFunction, REPLACE_FALSE);
+        asyncDelete.complete(key);
+      }
       if (modified.get()) {
         removeObserver.end(RemoveOutcome.SUCCESS);
       } else {
@@ -381,8 +644,13 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
       try {
         try {
           remappingFunction.apply(key, null);
+          if (asyncDelete != null) {
+            asyncDelete.await(key);
+          }
         } catch (StorePassThroughException f) {
           resilienceStrategy.removeFailure(key, e, (CacheWritingException) f.getCause());
+        } catch (CacheWritingException cwe) {
+          resilienceStrategy.removeFailure(key, e, cwe);
         }
         resilienceStrategy.removeFailure(key, e);
       } finally {
@@ -631,6 +899,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
   private void cacheLoaderWriterWriteAllCall(Iterable<? extends Map.Entry<? extends K, ? extends V>> entries, Map<K, V> entriesToRemap, Set<K> successes, Map<K, Exception> failures) {
     Map<K, V> toWrite = new HashMap<K, V>();
     for (Map.Entry<? extends K, ? extends V> entry: entries) {
+      invalidateLoad(entry.getKey());
       toWrite.put(entry.getKey(), entriesToRemap.get(entry.getKey()));
     }
     try {
@@ -745,6 +1014,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
     final Set<K> unknowns = new HashSet<K>();
     Set<K> toDelete = new HashSet<K>();
     for (Map.Entry<? extends K, ? extends V> entry : entries) {
+      invalidateLoad(entry.getKey());
       toDelete.add(entry.getKey());
     }
 
@@ -786,6 +1056,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
           }
         }
 
+        invalidateLoad(k);
         try {
           cacheLoaderWriter.write(k, value);
         } catch (Exception e) {
@@ -860,6 +1131,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
 
         hit.set(true);
         if (value.equals(inCache)) {
+          invalidateLoad(k);
           try {
             cacheLoaderWriter.delete(k);
           } catch (Exception e) {
@@ -931,6 +1203,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
           }
         }
 
+        invalidateLoad(key);
         try {
           cacheLoaderWriter.write(key, value);
         } catch (Exception e) {
@@ -1007,6 +1280,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
 
         hit.set(true);
         if (oldValue.equals(inCache)) {
+          invalidateLoad(key);
           try {
             cacheLoaderWriter.write(key, newValue);
           } catch (Exception e) {
@@ -1239,6 +1513,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
             }
 
             if (invokeWriter.apply()) {
+              invalidateLoad(mappedKey);
               try {
                 if (newValue != null) {
                   cacheLoaderWriter.write(mappedKey, newValue);
@@ -1285,6 +1560,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
           public V apply(K mappedKey, V mappedValue) {
             existingValue.set(mappedValue);
 
+            invalidateLoad(mappedKey);
             try {
               cacheLoaderWriter.delete(mappedKey);
             } catch (Exception e) {
@@ -1322,6 +1598,7 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
           public V apply(K mappedKey, V mappedValue) {
             existingValue.set(mappedValue);
 
+            invalidateLoad(mappedKey);
             try {
               cacheLoaderWriter.write(mappedKey, value);
             } catch (Exception e) {
@@ -1443,6 +1720,165 @@ public class EhcacheWithLoaderWriter<K, V> implements InternalCache<K, V> {
   }
 
 
+  /**
+   * A loader call shared by all threads missing on, or refreshing, the same key, doubling as the function installing
+   * its result.
+   */
+  private final class InFlightLoad implements Function<K, V> {
+
+    private final K key;
+    private V value;
+    private CacheLoadingException failure;
+    private boolean complete;
+    private volatile boolean invalidated;
+
+    InFlightLoad(K key) {
+      this.key = key;
+    }
+
+    V get() throws CacheLoadingException {
+      synchronized (this) {
+        if (!complete) {
+          try {
+            value = load(key);
+          } catch (CacheLoadingException e) {
+            failure = e;
+          }
+          complete = true;
+        }
+      }
+
+      if (failure != null) {
+        throw failure;
+      }
+      return value;
+    }
+
+    void invalidate() {
+      invalidated = true;
+    }
+
+    boolean isValid() {
+      return !invalidated;
+    }
+
+    @Override
+    public V apply(K k) {
+      return invalidated ? null : value;
+    }
+  }
+
+  /**
+   * A write or delete through the {@link AsyncCacheLoaderWriter}, doubling as the remapping function starting it.
+   * <P>
+   *   The write is started from within the store remapping function, so that writes to a key are issued in the order
+   *   they are applied, and leaves the mapping untouched. Each started write becomes the latest write of its key.
+   *   Once the write completes, outside of any store lock, its outcome is installed by a second remapping, unless a
+   *   later write to the key was started in the meantime, in which case that write owns the mapping.
+   * </P>
+   * <P>
+   *   A failed write may still have partially reached the system of record. The mapping it was to replace is then
+   *   evicted, but only if it is still in place, leaving the next read to load the value from the system of record.
+   * </P>
+   */
+  private final class AsyncWrite implements BiFunction<K, V, V> {
+
+    private final V value;
+    private long generation;
+    private V replaced;
+    private Future<Void> pendingWrite;
+
+    /**
+     * @param value the value to write, {@code null} for a delete
+     */
+    AsyncWrite(V value) {
+      this.value = value;
+    }
+
+    @Override
+    public V apply(K key, V previousValue) {
+      replaced = previousValue;
+      invalidateLoad(key);
+      try {
+        if (value == null) {
+          pendingWrite = asyncCacheLoaderWriter.deleteAsync(key);
+        } else {
+          pendingWrite = asyncCacheLoaderWriter.writeAsync(key, value);
+        }
+      } catch (Exception e) {
+        throw new StorePassThroughException(newCacheWritingException(e));
+      }
+      generation = writeGenerations.incrementAndGet();
+      latestWrites.put(key, generation);
+      return previousValue;
+    }
+
+    /**
+     * Waits for the write and installs its outcome in the store.
+     *
+     * @throws CacheWritingException if the write failed
+     */
+    void complete(K key) throws CacheWritingException {
+      final Exception failure = waitForWrite();
+      try {
+        store.compute(key, new BiFunction<K, V, V>() {
+          @Override
+          public V apply(K k, V currentValue) {
+            if (!latestWrites.remove(k, generation)) {
+              return currentValue;
+            } else if (failure == null) {
+              return value;
+            } else if (currentValue != null && currentValue.equals(replaced)) {
+              return null;
+            } else {
+              return currentValue;
+            }
+          }
+        }, REPLACE_FALSE);
+      } catch (StoreAccessException e) {
+        latestWrites.remove(key, generation);
+        logger.warn("Installing the outcome of an asynchronous write failed", e);
+      }
+      if (failure != null) {
+        throw newCacheWritingException(failure);
+      }
+    }
+
+    /**
+     * Waits for the write, leaving the store alone.
+     *
+     * @throws CacheWritingException if the write failed
+     */
+    void await(K key) throws CacheWritingException {
+      Exception failure = waitForWrite();
+      latestWrites.remove(key, generation);
+      if (failure != null) {
+        throw newCacheWritingException(failure);
+      }
+    }
+
+    private Exception waitForWrite() {
+      boolean interrupted = false;
+      try {
+        while (true) {
+          try {
+            pendingWrite.get();
+            return null;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return cause instanceof Exception ? (Exception) cause : e;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
   private static <K> RecoveryCache<K> recoveryCache(final Store<K, ?> store) {
     return new RecoveryCache<K>() {
 
@@ -0,0 +1,56 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.config.loaderwriter;
+
+import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ServiceConfiguration} used by the {@link org.ehcache.core.EhcacheManager} to have a cache with a
+ * {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter} serve concurrent misses through batched
+ * {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter#loadAll(Iterable)} calls.
+ * <P>
+ *   Only misses on {@link org.ehcache.Cache#get(Object)} are batched. Such a cache loads them outside of any store
+ *   lock, whatever its tiers, so that waiting for a batch never blocks a store segment. Loads performed by the atomic
+ *   operations are never batched.
+ * </P>
+ */
+public interface LoadBatchingConfiguration extends ServiceConfiguration<CacheLoaderWriterProvider> {
+
+  /**
+   * Returns the maximum number of keys in a batch.
+   *
+   * @return the maximum batch size
+   */
+  int getMaxBatchSize();
+
+  /**
+   * Returns the maximum time a load waits for its batch to fill up.
+   *
+   * @return the maximum delay
+   */
+  long getMaxDelay();
+
+  /**
+   * Returns the unit of the maximum delay.
+   *
+   * @return the delay unit
+   */
+  TimeUnit getUnit();
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.config.loaderwriter;
+
+import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} used by the {@link org.ehcache.core.EhcacheManager} to have a cache with a
+ * {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter} reload entries asynchronously before they expire.
+ * <P>
+ *   A {@code get} hitting an entry whose remaining time to live is within the configured fraction of its time to live
+ *   returns the current value and schedules a single reload of the entry.
+ * </P>
+ */
+public interface RefreshAheadConfiguration extends ServiceConfiguration<CacheLoaderWriterProvider> {
+
+  /**
+   * The fraction of the time to live, at the end of an entry's life, during which hits trigger a reload.
+   *
+   * @return the refresh ahead factor, between {@code 0} and {@code 1}
+   */
+  float getRefreshAheadFactor();
+
+  /**
+   * Returns the alias of the thread resource pool to use for reloads.
+   *
+   * @return the thread pool alias, {@code null} for the default pool
+   */
+  String getThreadPoolAlias();
+}
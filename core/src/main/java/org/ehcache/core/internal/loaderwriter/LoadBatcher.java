@@ -0,0 +1,211 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.internal.loaderwriter;
+
+import org.ehcache.exceptions.BulkCacheLoadingException;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.terracotta.statistics.StatisticsManager;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects concurrent single key loads into batches served by a single {@link CacheLoaderWriter#loadAll(Iterable)}
+ * call on the loader writer.
+ * <P>
+ *   The thread opening a batch waits for it to fill up, or for the maximum delay to elapse, then loads the batch on
+ *   behalf of all the threads that joined it. No other thread is involved.
+ * </P>
+ * <P>
+ *   As a load may wait for the maximum delay, this must only be invoked outside of any store lock.
+ * </P>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LoadBatcher<K, V> {
+
+  private final CacheLoaderWriter<? super K, V> loaderWriter;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong batchedKeys = new AtomicLong();
+
+  private Batch current;
+
+  /**
+   * Creates a new load batcher.
+   *
+   * @param loaderWriter the loader writer to batch loads for
+   * @param maxBatchSize the maximum number of keys in a batch
+   * @param maxDelay the maximum time a batch waits for more keys
+   * @param unit the unit of {@code maxDelay}
+   */
+  public LoadBatcher(CacheLoaderWriter<? super K, V> loaderWriter, int maxBatchSize, long maxDelay, TimeUnit unit) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1");
+    }
+    if (maxDelay < 0) {
+      throw new IllegalArgumentException("Batch delay must be positive or zero");
+    }
+    this.loaderWriter = loaderWriter;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = unit.toNanos(maxDelay);
+
+    Set<String> tags = Collections.singleton("loader-batching");
+    StatisticsManager.createPassThroughStatistic(this, "loadBatches", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getBatchCount();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "loadBatchedKeys", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getBatchedKeyCount();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "loadBatchSize", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getAverageBatchSize();
+      }
+    });
+  }
+
+  /**
+   * Returns the number of batches loaded so far.
+   *
+   * @return the batch count
+   */
+  public long getBatchCount() {
+    return batches.get();
+  }
+
+  /**
+   * Returns the number of keys loaded through batches so far.
+   *
+   * @return the batched key count
+   */
+  public long getBatchedKeyCount() {
+    return batchedKeys.get();
+  }
+
+  /**
+   * Returns the average number of keys per batch.
+   *
+   * @return the average batch size, {@code 0} if no batch was loaded yet
+   */
+  public double getAverageBatchSize() {
+    long batchCount = batches.get();
+    return batchCount == 0 ? 0 : (double) batchedKeys.get() / batchCount;
+  }
+
+  /**
+   * Loads the key as part of the current batch.
+   * <P>
+   *   Returns once the batch is loaded, which takes up to the maximum delay when no other thread joins it.
+   * </P>
+   *
+   * @param key the key to load
+   * @return the value loaded for the key
+   * @throws Exception the failure of the key's load, or an {@link InterruptedException} if interrupted while waiting
+   */
+  public V load(K key) throws Exception {
+    final Batch batch;
+    final boolean owner;
+    synchronized (this) {
+      owner = current == null;
+      if (owner) {
+        current = new Batch();
+      }
+      batch = current;
+      batch.keys.add(key);
+      if (batch.keys.size() >= maxBatchSize) {
+        current = null;
+        batch.full.countDown();
+      }
+    }
+
+    if (owner) {
+      try {
+        batch.full.await(maxDelayNanos, TimeUnit.NANOSECONDS);
+      } finally {
+        synchronized (this) {
+          if (current == batch) {
+            current = null;
+          }
+        }
+        batch.load();
+      }
+    } else {
+      batch.done.await();
+    }
+    return batch.get(key);
+  }
+
+  /**
+   * The keys of a batch, and the outcome of loading them once {@link #done} is released.
+   * <P>
+   *   Keys are only added while the batch is {@link #current}, under the lock of the enclosing instance.
+   * </P>
+   */
+  private class Batch {
+
+    private final Set<K> keys = new LinkedHashSet<K>();
+    private final CountDownLatch full = new CountDownLatch(1);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Map<?, ? extends V> loaded;
+    private Exception failure;
+
+    void load() {
+      try {
+        loaded = loaderWriter.loadAll(keys);
+      } catch (Exception e) {
+        failure = e;
+      } finally {
+        batches.incrementAndGet();
+        batchedKeys.addAndGet(keys.size());
+        done.countDown();
+      }
+    }
+
+    V get(K key) throws Exception {
+      if (failure instanceof BulkCacheLoadingException) {
+        BulkCacheLoadingException bulkFailure = (BulkCacheLoadingException) failure;
+        Exception keyFailure = bulkFailure.getFailures().get(key);
+        if (keyFailure != null) {
+          throw keyFailure;
+        }
+        @SuppressWarnings("unchecked")
+        V value = (V) bulkFailure.getSuccesses().get(key);
+        return value;
+      } else if (failure != null) {
+        throw failure;
+      } else {
+        return loaded == null ? null : loaded.get(key);
+      }
+    }
+  }
+}
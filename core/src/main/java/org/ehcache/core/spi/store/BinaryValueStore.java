@@ -0,0 +1,73 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.spi.store;
+
+import org.ehcache.exceptions.StoreAccessException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Companion interface for {@link Store} to indicate that values can be read in their binary form, without being
+ * deserialized.
+ * <P>
+ *   Whether a given store can actually do so depends on its tiers, see {@link #supportsBinaryValues()}.
+ *   Reads count as accesses to the mapping, as {@link Store#get(Object)} does.
+ * </P>
+ *
+ * @param <K> the key type
+ */
+public interface BinaryValueStore<K> {
+
+  /**
+   * Tells whether this store holds its values in binary form and can hand them out through
+   * {@link #getBinaryValue(Object)} and {@link #copyBinaryValue(Object, ByteBuffer)}.
+   *
+   * @return {@code true} if binary reads are supported
+   */
+  boolean supportsBinaryValues();
+
+  /**
+   * Returns a read-only buffer holding the binary form of the value mapped to the given key.
+   * <P>
+   *   The store memory is reused once the mapping is released, so the buffer holds a copy of the binary form.
+   *   Use {@link #copyBinaryValue(Object, ByteBuffer)} to avoid the allocation.
+   * </P>
+   *
+   * @param key the key of the mapping to read
+   * @return the binary form of the value, or {@code null} if there is no mapping for the key
+   * @throws NullPointerException if the key is {@code null}
+   * @throws UnsupportedOperationException if {@link #supportsBinaryValues()} is {@code false}
+   * @throws StoreAccessException if the mapping can't be read
+   */
+  ByteBuffer getBinaryValue(K key) throws StoreAccessException;
+
+  /**
+   * Copies the binary form of the value mapped to the given key into {@code target}, advancing its position.
+   * <P>
+   *   Nothing is copied when the binary form is larger than the remaining space of {@code target}, the returned size
+   *   then lets the caller retry with a large enough buffer.
+   * </P>
+   *
+   * @param key the key of the mapping to read
+   * @param target the buffer to copy the binary form into
+   * @return the size of the binary form, or {@code -1} if there is no mapping for the key
+   * @throws NullPointerException if the key is {@code null}
+   * @throws UnsupportedOperationException if {@link #supportsBinaryValues()} is {@code false}
+   * @throws StoreAccessException if the mapping can't be read
+   */
+  int copyBinaryValue(K key, ByteBuffer target) throws StoreAccessException;
+}
@@ -477,6 +477,30 @@ public interface Store<K, V> extends ConfigurationChangeSupport {
    */
   Map<K, ValueHolder<V>> bulkComputeIfAbsent(Set<? extends K> keys, Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction) throws StoreAccessException;
 
+  /**
+   * Optionally implemented by {@link Store}s and tiers holding mappings on heap, to tell whether a mapping can be
+   * served without touching lower tiers.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   */
+  interface HeapPeek<K, V> {
+
+    /**
+     * Returns the unexpired mapping held on heap for the given key, without recording an access, faulting from
+     * lower tiers nor blocking on an in-flight fault.
+     * <P>
+     *   A {@code null} result does not imply the store holds no mapping for the key.
+     * </P>
+     *
+     * @param key the key of the mapping to look up
+     * @return the heap held value holder, or {@code null}
+     * @throws NullPointerException if the argument is {@code null}
+     * @throws StoreAccessException if the mapping can't be looked up
+     */
+    ValueHolder<V> peekHeap(K key) throws StoreAccessException;
+  }
+
   /**
    * Holds both a value, and all the metadata associated with a mapping in a Store.
    *
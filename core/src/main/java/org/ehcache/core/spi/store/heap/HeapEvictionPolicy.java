@@ -0,0 +1,74 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.spi.store.heap;
+
+import org.ehcache.core.spi.store.Store;
+
+/**
+ * {@code HeapEvictionPolicy} lets an on-heap {@link Store} track key popularity and decide which mapping is worth
+ * evicting when capacity is exceeded.
+ * <P>
+ *   The store still selects an eviction victim by sampling. When a mapping has just been installed, the policy is
+ *   asked which mapping to evict: the sampled victim, the newcomer or another mapping the policy was told about as a
+ *   newcomer before. The store falls back to the sampled victim if the selected mapping can no longer be evicted.
+ * </P>
+ * <P>
+ *   Implementations are called concurrently from all threads accessing the store, without any lock held on their
+ *   behalf.
+ * </P>
+ */
+public interface HeapEvictionPolicy {
+
+  /**
+   * Records an access to the given key, be it a hit, an installation or an update.
+   *
+   * @param key the accessed key
+   */
+  void recordAccess(Object key);
+
+  /**
+   * Selects the key of the mapping to evict now that the newly installed mapping for {@code candidateKey} made the
+   * store exceed its capacity.
+   *
+   * @param candidateKey the key that was just installed
+   * @param victimKey the key selected for eviction by sampling
+   * @return the key to evict: {@code victimKey}, {@code candidateKey} or a candidate key of an earlier call
+   */
+  Object selectVictim(Object candidateKey, Object victimKey);
+
+  /**
+   * Informs the policy that the capacity of the store changed.
+   *
+   * @param maximumEntries the new maximum number of entries of the store
+   */
+  void resize(long maximumEntries);
+
+  /**
+   * Creates the {@link HeapEvictionPolicy} instances used by the on-heap stores, one per store.
+   */
+  interface Factory {
+
+    /**
+     * Creates a new {@link HeapEvictionPolicy} for a store.
+     *
+     * @param maximumEntries the maximum number of entries of the store, or {@code -1} if the store is sized in memory
+     *                       units
+     * @return a new eviction policy
+     */
+    HeapEvictionPolicy create(long maximumEntries);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.spi.store.heap;
+
+/**
+ * Implemented by keys and values that know the heap size they retain.
+ * <P>
+ *   A {@link SizeOfEngine} configured to trust declared sizes uses {@link #heapSize()} instead of walking the object
+ *   graph, so the reported size must include every object reachable from this one that the mapping retains.
+ * </P>
+ */
+public interface HeapSized {
+
+  /**
+   * Returns the number of heap bytes retained by this object, including itself.
+   *
+   * @return the retained heap size in bytes, never negative
+   */
+  long heapSize();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.spi.store.heap;
+
+/**
+ * Per cache function sizing mappings in place of a {@link SizeOfEngine} object graph walk.
+ * <P>
+ *   The store still adds its own per mapping overhead to the returned size.
+ * </P>
+ * <P>
+ *   Only mappings whose value is retained as a plain object are sized by the function. Values held in serialized
+ *   form, as by a store by value heap tier, retain their serialized bytes rather than the object the function would
+ *   see: such mappings keep being sized by walking their object graph.
+ * </P>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public interface SizeOfFunction<K, V> {
+
+  /**
+   * Returns the heap size retained by the given key and value.
+   *
+   * @param key the key of the mapping
+   * @param value the value of the mapping
+   * @return the retained heap size in bytes, never negative
+   */
+  long sizeof(K key, V value);
+}
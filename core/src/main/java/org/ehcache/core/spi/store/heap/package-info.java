@@ -15,7 +15,7 @@
  */
 
 /**
- * Package for SPI related to the use of <a href="https://github.com/ehcache/sizeof">sizeof</a> in the on-heap
- * {@link org.ehcache.core.spi.store.Store store} in Ehcache
+ * Package for SPI related to the use of <a href="https://github.com/ehcache/sizeof">sizeof</a> and to the eviction
+ * policy in the on-heap {@link org.ehcache.core.spi.store.Store store} in Ehcache
  */
 package org.ehcache.core.spi.store.heap;
\ No newline at end of file
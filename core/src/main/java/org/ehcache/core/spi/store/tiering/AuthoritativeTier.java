@@ -23,6 +23,8 @@ import org.ehcache.spi.service.PluralService;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
 
+import java.util.Map;
+
 /**
  * Authoritative tier, that is the lower most tier of a multi tiered store.
  * <P>
@@ -52,6 +54,18 @@ public interface AuthoritativeTier<K, V> extends Store<K, V> {
    */
   ValueHolder<V> computeIfAbsentAndFault(K key, Function<? super K, ? extends V> mappingFunction) throws StoreAccessException;
 
+  /**
+   * Marks the mappings as not evictable and performs bulkComputeIfAbsent() atomically for each key.
+   *
+   * @param keys the keys to retrieve or compute
+   * @param mappingFunction the function that generates new values for the absent keys
+   *
+   * @return a map of each key to its value holder, or to {@code null}
+   *
+   * @throws StoreAccessException if the mappings can't be retrieved or updated.
+   */
+  Map<K, ValueHolder<V>> bulkComputeIfAbsentAndFault(Iterable<? extends K> keys, Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction) throws StoreAccessException;
+
   /**
    * This marks a mapping as evictable again if it matches the {@link org.ehcache.core.spi.store.Store.ValueHolder}
    * received.
@@ -24,6 +24,9 @@ import org.ehcache.spi.service.PluralService;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
 
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Caching tier is the abstraction for tiers sitting atop the {@link AuthoritativeTier}.
  * <P>
@@ -51,6 +54,26 @@ public interface CachingTier<K, V> extends ConfigurationChangeSupport {
    */
   Store.ValueHolder<V> getOrComputeIfAbsent(K key, Function<K, Store.ValueHolder<V>> source) throws StoreAccessException;
 
+  /**
+   * Bulk version of {@link #getOrComputeIfAbsent(Object, Function)}.
+   * <P>
+   *   Value holders present in the caching tier are returned directly, while all the missing keys are handed
+   *   <em>once</em> to the {@code source} function. The value holders it returns are then installed in this tier.
+   * </P>
+   * <P>
+   *   Note that in case of expired value holders, the key will be mapped to {@code null} and the mapping will be invalidated.
+   * </P>
+   *
+   * @param keys the keys
+   * @param source the function that computes the value holders of the keys absent from this tier, with
+   *               {@code null} value holders for keys that have no mapping
+   *
+   * @return a map of each key to its value holder, or to {@code null}
+   *
+   * @throws StoreAccessException if the mappings cannot be retrieved or stored
+   */
+  Map<K, Store.ValueHolder<V>> bulkGetOrComputeIfAbsent(Iterable<? extends K> keys, Function<Set<? extends K>, Map<K, Store.ValueHolder<V>>> source) throws StoreAccessException;
+
   /**
    * Removes a mapping, triggering the {@link InvalidationListener} if registered.
    *
@@ -0,0 +1,168 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core;
+
+import org.ehcache.Status;
+import org.ehcache.core.spi.service.ExecutionService;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.hamcrest.CoreMatchers;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Provides testing of the inline versus offloaded execution of {@link AsyncEhcache} operations.
+ */
+public class AsyncEhcacheTest extends EhcacheBasicCrudBase {
+
+  @Mock
+  protected CacheLoaderWriter<String, String> cacheLoaderWriter;
+
+  @Mock
+  protected ExecutionService executionService;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testHeapOnlyCacheCompletesInline() throws Exception {
+    FakeStore fakeStore = new FakeStore(Collections.singletonMap("key", "value"));
+    Ehcache<String, String> ehcache = new Ehcache<String, String>(CACHE_CONFIGURATION, fakeStore, cacheEventDispatcher,
+        LoggerFactory.getLogger(Ehcache.class + "-" + "AsyncEhcacheTest"));
+    ehcache.init();
+    AsyncEhcache<String, String> asyncCache = new AsyncEhcache<String, String>(ehcache, fakeStore, executionService);
+
+    Future<String> get = asyncCache.getAsync("key");
+    assertThat(get.isDone(), is(true));
+    assertThat(get.get(), is("value"));
+    Future<Void> put = asyncCache.putAsync("otherKey", "otherValue");
+    assertThat(put.isDone(), is(true));
+    assertThat(fakeStore.getEntryMap().get("otherKey"), is("otherValue"));
+
+    assertThat(asyncCache.getInlineCompletionCount(), is(2L));
+    assertThat(asyncCache.getOffloadedOperationCount(), is(0L));
+    verifyZeroInteractions(executionService);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testHeapHitCompletesInline() throws Exception {
+    Store<String, String> heapPeekStore = mockHeapPeekStore();
+    Store.ValueHolder<String> valueHolder = mockValueHolder("value");
+    when(((Store.HeapPeek<String, String>) heapPeekStore).peekHeap("key")).thenReturn(valueHolder);
+    when(heapPeekStore.computeIfAbsent(eq("key"), getAnyFunction())).thenReturn(valueHolder);
+    AsyncEhcache<String, String> asyncCache = getAsyncCache(heapPeekStore);
+
+    Future<String> get = asyncCache.getAsync("key");
+    assertThat(get.isDone(), is(true));
+    assertThat(get.get(), is("value"));
+
+    assertThat(asyncCache.getInlineCompletionCount(), is(1L));
+    verifyZeroInteractions(executionService);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testHeapMissIsOffloaded() throws Exception {
+    Store<String, String> heapPeekStore = mockHeapPeekStore();
+    when(executionService.getUnorderedExecutor(anyString(), any(BlockingQueue.class))).thenReturn(executor);
+    AsyncEhcache<String, String> asyncCache = getAsyncCache(heapPeekStore);
+
+    Future<String> get = asyncCache.getAsync("key");
+    assertThat(get.get(10, TimeUnit.SECONDS), nullValue());
+
+    assertThat(asyncCache.getInlineCompletionCount(), is(0L));
+    assertThat(asyncCache.getOffloadedOperationCount(), is(1L));
+    verify(heapPeekStore).computeIfAbsent(eq("key"), getAnyFunction());
+  }
+
+  @Test
+  public void testInlineFailureIsReportedThroughFuture() throws Exception {
+    FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    Ehcache<String, String> ehcache = new Ehcache<String, String>(CACHE_CONFIGURATION, fakeStore, cacheEventDispatcher,
+        LoggerFactory.getLogger(Ehcache.class + "-" + "AsyncEhcacheTest"));
+    AsyncEhcache<String, String> asyncCache = new AsyncEhcache<String, String>(ehcache, fakeStore, executionService);
+
+    Future<String> get = asyncCache.getAsync("key");
+    assertThat(get.isDone(), is(true));
+    try {
+      get.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+    }
+  }
+
+  @Test
+  public void testNullKeyFailsOnCallingThread() throws Exception {
+    AsyncEhcache<String, String> asyncCache = getAsyncCache(mockHeapPeekStore());
+    try {
+      asyncCache.getAsync(null);
+      fail("Expected NullPointerException");
+    } catch (NullPointerException e) {
+      // expected
+    }
+    verifyZeroInteractions(executionService);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Store<String, String> mockHeapPeekStore() {
+    return mock(Store.class, withSettings().extraInterfaces(Store.HeapPeek.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Store.ValueHolder<String> mockValueHolder(String value) {
+    Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    when(valueHolder.value()).thenReturn(value);
+    return valueHolder;
+  }
+
+  private AsyncEhcache<String, String> getAsyncCache(Store<String, String> store) {
+    final EhcacheWithLoaderWriter<String, String> ehcache = new EhcacheWithLoaderWriter<String, String>(CACHE_CONFIGURATION, store, cacheLoaderWriter, cacheEventDispatcher, LoggerFactory.getLogger(EhcacheWithLoaderWriter.class + "-" + "AsyncEhcacheTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), CoreMatchers.is(Status.AVAILABLE));
+    return new AsyncEhcache<String, String>(ehcache, store, executionService);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core;
+
+import org.ehcache.Status;
+import org.ehcache.core.spi.store.BinaryValueStore;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.exceptions.StoreAccessException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Provides testing of the {@link BinaryEhcache} view.
+ */
+public class BinaryEhcacheTest {
+
+  private InternalCache<String, String> cache;
+  private Store<String, String> store;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    cache = mock(InternalCache.class);
+    when(cache.getStatus()).thenReturn(Status.AVAILABLE);
+    store = mock(Store.class, withSettings().extraInterfaces(BinaryValueStore.class));
+    when(binaryValueStore().supportsBinaryValues()).thenReturn(true);
+  }
+
+  @Test
+  public void testStoreWithoutBinaryValuesIsRejected() {
+    when(binaryValueStore().supportsBinaryValues()).thenReturn(false);
+    assertThat(BinaryEhcache.supportsBinaryValues(store), is(false));
+    try {
+      new BinaryEhcache<String>(cache, store);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReadsAreServedByTheStore() throws Exception {
+    ByteBuffer value = ByteBuffer.wrap(new byte[] {1, 2, 3});
+    when(binaryValueStore().getBinaryValue("key")).thenReturn(value);
+    ByteBuffer target = ByteBuffer.allocate(8);
+    when(binaryValueStore().copyBinaryValue("key", target)).thenReturn(3);
+
+    BinaryEhcache<String> binaryCache = new BinaryEhcache<String>(cache, store);
+    assertThat(binaryCache.getBinaryValue("key"), is(value));
+    assertThat(binaryCache.copyBinaryValue("key", target), is(3));
+  }
+
+  @Test
+  public void testStoreFailureRemovesTheMapping() throws Exception {
+    when(binaryValueStore().getBinaryValue("key")).thenThrow(new StoreAccessException("failed"));
+
+    BinaryEhcache<String> binaryCache = new BinaryEhcache<String>(cache, store);
+    assertThat(binaryCache.getBinaryValue("key"), nullValue());
+    verify(store).remove("key");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnavailableCacheCannotBeRead() {
+    when(cache.getStatus()).thenReturn(Status.UNINITIALIZED);
+    new BinaryEhcache<String>(cache, store).getBinaryValue("key");
+  }
+
+  @SuppressWarnings("unchecked")
+  private BinaryValueStore<String> binaryValueStore() {
+    return (BinaryValueStore<String>) store;
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core;
+
+import org.ehcache.Status;
+import org.ehcache.exceptions.CacheWritingException;
+import org.ehcache.spi.loaderwriter.AsyncCacheLoaderWriter;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.hamcrest.CoreMatchers;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Provides testing of {@link EhcacheWithLoaderWriter} operations backed by an {@link AsyncCacheLoaderWriter}.
+ */
+public class EhcacheWithLoaderWriterAsyncLoaderWriterTest extends EhcacheBasicCrudBase {
+
+  @Test
+  public void testGetInstallsMappingOnLoadCompletion() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    final FakeAsyncLoaderWriter loaderWriter = new FakeAsyncLoaderWriter();
+    loaderWriter.pendingLoad = new FutureTask<String>(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return "value";
+      }
+    });
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    final AtomicReference<String> result = new AtomicReference<String>();
+    Thread getter = new Thread() {
+      @Override
+      public void run() {
+        result.set(ehcache.get("key"));
+      }
+    };
+    getter.start();
+    while (getter.getState() == Thread.State.RUNNABLE || getter.getState() == Thread.State.NEW) {
+      Thread.sleep(10);
+    }
+
+    assertThat(fakeStore.getEntryMap().isEmpty(), is(true));
+    loaderWriter.pendingLoad.run();
+    getter.join(TimeUnit.SECONDS.toMillis(10));
+
+    assertThat(result.get(), is("value"));
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "value"));
+  }
+
+  @Test
+  public void testPutWritesAsynchronously() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    final FakeAsyncLoaderWriter loaderWriter = new FakeAsyncLoaderWriter();
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    ehcache.put("key", "value");
+
+    assertThat(loaderWriter.written, is("value"));
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "value"));
+  }
+
+  @Test
+  public void testPutInstallsMappingOnWriteCompletion() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.singletonMap("key", "oldValue"));
+    final FakeAsyncLoaderWriter loaderWriter = new FakeAsyncLoaderWriter();
+    final FutureTask<Void> pendingWrite = new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        return null;
+      }
+    });
+    loaderWriter.pendingWrite = pendingWrite;
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    Thread putter = startPut(ehcache, "key", "value", new AtomicReference<Throwable>());
+
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "oldValue"));
+    pendingWrite.run();
+    putter.join(TimeUnit.SECONDS.toMillis(10));
+
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "value"));
+  }
+
+  @Test
+  public void testFailedWriteDoesNotEvictLaterWrite() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    final FakeAsyncLoaderWriter loaderWriter = new FakeAsyncLoaderWriter();
+    final Exception writeFailure = new Exception("first write failed");
+    final FutureTask<Void> firstWrite = new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        throw writeFailure;
+      }
+    });
+    loaderWriter.pendingWrite = firstWrite;
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    AtomicReference<Throwable> firstFailure = new AtomicReference<Throwable>();
+    Thread firstPutter = startPut(ehcache, "key", "first", firstFailure);
+
+    loaderWriter.pendingWrite = null;
+    ehcache.put("key", "second");
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "second"));
+
+    firstWrite.run();
+    firstPutter.join(TimeUnit.SECONDS.toMillis(10));
+
+    assertThat(firstFailure.get(), instanceOf(CacheWritingException.class));
+    assertThat(firstFailure.get().getCause(), is((Throwable) writeFailure));
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "second"));
+  }
+
+  @Test
+  public void testFailedAsynchronousPutEvictsMapping() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.singletonMap("key", "oldValue"));
+    final FakeAsyncLoaderWriter loaderWriter = new FakeAsyncLoaderWriter();
+    loaderWriter.writeFailure = new Exception("write failed");
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    try {
+      ehcache.put("key", "value");
+      fail("Expected CacheWritingException");
+    } catch (CacheWritingException e) {
+      assertThat(e.getCause(), is((Throwable) loaderWriter.writeFailure));
+    }
+    assertThat(fakeStore.getEntryMap().containsKey("key"), is(false));
+  }
+
+  @Test
+  public void testRemoveDeletesAsynchronously() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.singletonMap("key", "value"));
+    final FakeAsyncLoaderWriter loaderWriter = new FakeAsyncLoaderWriter();
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    ehcache.remove("key");
+
+    assertThat(loaderWriter.deleted, is("key"));
+    assertThat(fakeStore.getEntryMap().containsKey("key"), is(false));
+  }
+
+  /**
+   * Starts a put on another thread, returning once that thread is waiting on the write.
+   */
+  private static Thread startPut(final EhcacheWithLoaderWriter<String, String> ehcache, final String key, final String value,
+                                 final AtomicReference<Throwable> failure) throws InterruptedException {
+    Thread putter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          ehcache.put(key, value);
+        } catch (Throwable t) {
+          failure.set(t);
+        }
+      }
+    };
+    putter.start();
+    while (putter.getState() == Thread.State.RUNNABLE || putter.getState() == Thread.State.NEW) {
+      Thread.sleep(10);
+    }
+    return putter;
+  }
+
+  private EhcacheWithLoaderWriter<String, String> getEhcache(FakeStore fakeStore, FakeAsyncLoaderWriter loaderWriter) {
+    final EhcacheWithLoaderWriter<String, String> ehcache = new EhcacheWithLoaderWriter<String, String>(CACHE_CONFIGURATION, fakeStore, loaderWriter, cacheEventDispatcher, LoggerFactory.getLogger(EhcacheWithLoaderWriter.class + "-" + "EhcacheWithLoaderWriterAsyncLoaderWriterTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), CoreMatchers.is(Status.AVAILABLE));
+    return ehcache;
+  }
+
+  /**
+   * An asynchronous loader writer failing on the blocking methods the tested operations must not use.
+   */
+  private static final class FakeAsyncLoaderWriter implements CacheLoaderWriter<String, String>, AsyncCacheLoaderWriter<String, String> {
+
+    private volatile FutureTask<String> pendingLoad;
+    private volatile FutureTask<Void> pendingWrite;
+    private volatile Exception writeFailure;
+    private volatile String written;
+    private volatile String deleted;
+
+    @Override
+    public FutureTask<String> loadAsync(String key) throws Exception {
+      return pendingLoad;
+    }
+
+    @Override
+    public FutureTask<Map<String, String>> loadAllAsync(Iterable<? extends String> keys) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FutureTask<Void> writeAsync(final String key, final String value) throws Exception {
+      if (pendingWrite != null) {
+        return pendingWrite;
+      }
+      return completed(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          if (writeFailure != null) {
+            throw writeFailure;
+          }
+          written = value;
+          return null;
+        }
+      });
+    }
+
+    @Override
+    public FutureTask<Void> writeAllAsync(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FutureTask<Void> deleteAsync(final String key) throws Exception {
+      return completed(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          deleted = key;
+          return null;
+        }
+      });
+    }
+
+    @Override
+    public FutureTask<Void> deleteAllAsync(Iterable<? extends String> keys) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String load(String key) throws Exception {
+      throw new AssertionError("Blocking load used");
+    }
+
+    @Override
+    public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+      throw new AssertionError("Blocking loadAll used");
+    }
+
+    @Override
+    public void write(String key, String value) throws Exception {
+      throw new AssertionError("Blocking write used");
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) throws Exception {
+      throw new AssertionError("Blocking writeAll used");
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+      throw new AssertionError("Blocking delete used");
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends String> keys) throws Exception {
+      throw new AssertionError("Blocking deleteAll used");
+    }
+
+    private static <T> FutureTask<T> completed(Callable<T> callable) {
+      FutureTask<T> task = new FutureTask<T>(callable);
+      task.run();
+      return task;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core;
+
+import org.ehcache.Status;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.core.config.BaseCacheConfiguration;
+import org.ehcache.core.config.ResourcePoolsHelper;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.time.TimeSource;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.hamcrest.CoreMatchers;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Provides testing of refresh ahead in {@link EhcacheWithLoaderWriter#get(Object)}.
+ */
+public class EhcacheWithLoaderWriterRefreshAheadTest extends EhcacheBasicCrudBase {
+
+  private static final CacheConfiguration<String, String> TTL_CACHE_CONFIGURATION =
+      new BaseCacheConfiguration<String, String>(String.class, String.class, null,
+          null, Expirations.timeToLiveExpiration(new Duration(10, TimeUnit.SECONDS)), ResourcePoolsHelper.createHeapOnlyPools());
+
+  @Mock
+  protected CacheLoaderWriter<String, String> cacheLoaderWriter;
+
+  private long now;
+
+  @Test
+  public void testHitOutsideRefreshWindowDoesNotReload() throws Exception {
+    mockHit("key", "value", 10000L);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(0.2f, executor);
+
+    now = 7000L;
+    assertThat(ehcache.get("key"), is("value"));
+
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+    verify(cacheLoaderWriter, never()).load(any(String.class));
+  }
+
+  @Test
+  public void testHitInsideRefreshWindowReloadsInBackground() throws Exception {
+    mockHit("key", "value", 10000L);
+    when(cacheLoaderWriter.load("key")).thenReturn("newValue");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(0.2f, executor);
+
+    now = 9000L;
+    assertThat(ehcache.get("key"), is("value"));
+
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+    verify(cacheLoaderWriter).load("key");
+    verify(store).compute(eq("key"), getAnyBiFunction(), getBooleanNullaryFunction());
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockHit(String key, String value, long expirationTime) throws Exception {
+    Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    when(valueHolder.value()).thenReturn(value);
+    when(valueHolder.expirationTime(TimeUnit.MILLISECONDS)).thenReturn(expirationTime);
+    when(store.computeIfAbsent(eq(key), getAnyFunction())).thenReturn(valueHolder);
+  }
+
+  private EhcacheWithLoaderWriter<String, String> getEhcache(float refreshAheadFactor, ExecutorService executor) {
+    final EhcacheWithLoaderWriter<String, String> ehcache = new EhcacheWithLoaderWriter<String, String>(TTL_CACHE_CONFIGURATION, this.store, cacheLoaderWriter, cacheEventDispatcher, LoggerFactory.getLogger(EhcacheWithLoaderWriter.class + "-" + "EhcacheWithLoaderWriterRefreshAheadTest"));
+    ehcache.enableRefreshAhead(refreshAheadFactor, executor, new TimeSource() {
+      @Override
+      public long getTimeMillis() {
+        return now;
+      }
+    });
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), CoreMatchers.is(Status.AVAILABLE));
+    return ehcache;
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core;
+
+import org.ehcache.Status;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.core.config.BaseCacheConfiguration;
+import org.ehcache.core.config.ResourcePoolsHelper;
+import org.ehcache.exceptions.CacheLoadingException;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.hamcrest.CoreMatchers;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Provides testing of the single flight loads {@link EhcacheWithLoaderWriter#get(Object)} performs when the cache has
+ * no heap tier, or batches its loads.
+ */
+public class EhcacheWithLoaderWriterSingleFlightLoadTest extends EhcacheBasicCrudBase {
+
+  private static final CacheConfiguration<String, String> OFFHEAP_CACHE_CONFIGURATION =
+      new BaseCacheConfiguration<String, String>(String.class, String.class, null,
+          null, null, ResourcePoolsHelper.createOffheapOnlyPools(1));
+
+  @Test
+  public void testConcurrentGetsShareOneLoad() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    final BlockingLoaderWriter loaderWriter = new BlockingLoaderWriter("value");
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    final List<AtomicReference<String>> results = new ArrayList<AtomicReference<String>>();
+    final List<Thread> getters = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      final AtomicReference<String> result = new AtomicReference<String>();
+      Thread getter = new Thread() {
+        @Override
+        public void run() {
+          result.set(ehcache.get("key"));
+        }
+      };
+      results.add(result);
+      getters.add(getter);
+      getter.start();
+    }
+
+    assertThat(loaderWriter.loading.await(10, TimeUnit.SECONDS), is(true));
+    for (Thread getter : getters) {
+      while (getter.getState() == Thread.State.RUNNABLE || getter.getState() == Thread.State.NEW) {
+        Thread.sleep(10);
+      }
+    }
+    loaderWriter.release.countDown();
+    for (Thread getter : getters) {
+      getter.join();
+    }
+
+    assertThat(loaderWriter.loads.get(), is(1));
+    for (AtomicReference<String> result : results) {
+      assertThat(result.get(), is("value"));
+    }
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "value"));
+  }
+
+  @Test
+  public void testRemoveDuringLoadPreventsInstall() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    final BlockingLoaderWriter loaderWriter = new BlockingLoaderWriter("stale");
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    final AtomicReference<String> result = new AtomicReference<String>();
+    Thread getter = new Thread() {
+      @Override
+      public void run() {
+        result.set(ehcache.get("key"));
+      }
+    };
+    getter.start();
+
+    assertThat(loaderWriter.loading.await(10, TimeUnit.SECONDS), is(true));
+    ehcache.remove("key");
+    loaderWriter.release.countDown();
+    getter.join();
+
+    assertThat(result.get(), is("stale"));
+    assertThat(fakeStore.getEntryMap().containsKey("key"), is(false));
+    assertThat(loaderWriter.deletes.get(), is(1));
+
+    assertThat(ehcache.get("key"), is("stale"));
+    assertThat(loaderWriter.loads.get(), is(2));
+    assertThat(fakeStore.getEntryMap(), hasEntry("key", "stale"));
+  }
+
+  @Test
+  public void testFailedLoadIsNotRetained() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    final BlockingLoaderWriter loaderWriter = new BlockingLoaderWriter("value") {
+      @Override
+      public String load(String key) throws Exception {
+        if (loads.incrementAndGet() == 1) {
+          throw new Exception("backend down");
+        }
+        return "value";
+      }
+    };
+    final EhcacheWithLoaderWriter<String, String> ehcache = getEhcache(fakeStore, loaderWriter);
+
+    try {
+      ehcache.get("key");
+      fail();
+    } catch (CacheLoadingException e) {
+      assertThat(e.getCause().getMessage(), is("backend down"));
+    }
+    assertThat(fakeStore.getEntryMap().containsKey("key"), is(false));
+
+    assertThat(ehcache.get("key"), is("value"));
+    assertThat(loaderWriter.loads.get(), is(2));
+  }
+
+  @Test
+  public void testLoadBatchingBatchesHeapCacheMisses() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    final List<String> batch = Collections.synchronizedList(new ArrayList<String>());
+    final BlockingLoaderWriter loaderWriter = new BlockingLoaderWriter(null) {
+      @Override
+      public String load(String key) throws Exception {
+        throw new AssertionError("Miss should have been batched");
+      }
+
+      @Override
+      public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+        Map<String, String> loaded = new HashMap<String, String>();
+        for (String key : keys) {
+          batch.add(key);
+          loaded.put(key, "value-" + key);
+        }
+        loads.incrementAndGet();
+        return loaded;
+      }
+    };
+    final EhcacheWithLoaderWriter<String, String> ehcache = new EhcacheWithLoaderWriter<String, String>(CACHE_CONFIGURATION, fakeStore, loaderWriter, cacheEventDispatcher, LoggerFactory.getLogger(EhcacheWithLoaderWriter.class + "-" + "EhcacheWithLoaderWriterSingleFlightLoadTest"));
+    ehcache.enableLoadBatching(2, 10, TimeUnit.SECONDS);
+    ehcache.init();
+
+    final AtomicReference<String> result = new AtomicReference<String>();
+    Thread getter = new Thread() {
+      @Override
+      public void run() {
+        result.set(ehcache.get("key1"));
+      }
+    };
+    getter.start();
+
+    assertThat(ehcache.get("key2"), is("value-key2"));
+    getter.join(TimeUnit.SECONDS.toMillis(10));
+
+    assertThat(result.get(), is("value-key1"));
+    assertThat(loaderWriter.loads.get(), is(1));
+    assertThat(batch, containsInAnyOrder("key1", "key2"));
+    assertThat(fakeStore.getEntryMap(), hasEntry("key1", "value-key1"));
+    assertThat(fakeStore.getEntryMap(), hasEntry("key2", "value-key2"));
+  }
+
+  private EhcacheWithLoaderWriter<String, String> getEhcache(FakeStore fakeStore, CacheLoaderWriter<String, String> cacheLoaderWriter) {
+    final EhcacheWithLoaderWriter<String, String> ehcache = new EhcacheWithLoaderWriter<String, String>(OFFHEAP_CACHE_CONFIGURATION, fakeStore, cacheLoaderWriter, cacheEventDispatcher, LoggerFactory.getLogger(EhcacheWithLoaderWriter.class + "-" + "EhcacheWithLoaderWriterSingleFlightLoadTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), CoreMatchers.is(Status.AVAILABLE));
+    return ehcache;
+  }
+
+  /**
+   * Loader whose first load blocks until released.
+   */
+  private static class BlockingLoaderWriter implements CacheLoaderWriter<String, String> {
+
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final AtomicInteger deletes = new AtomicInteger();
+    private final String value;
+
+    BlockingLoaderWriter(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String load(String key) throws Exception {
+      if (loads.incrementAndGet() == 1 && value != null) {
+        loading.countDown();
+        release.await();
+      }
+      return value;
+    }
+
+    @Override
+    public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void write(String key, String value) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+      deletes.incrementAndGet();
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends String> keys) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
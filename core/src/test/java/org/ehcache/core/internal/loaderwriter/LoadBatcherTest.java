@@ -0,0 +1,159 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.core.internal.loaderwriter;
+
+import org.ehcache.exceptions.BulkCacheLoadingException;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class LoadBatcherTest {
+
+  @Test
+  public void testConcurrentLoadsShareOneLoadAll() throws Exception {
+    RecordingLoaderWriter delegate = new RecordingLoaderWriter();
+    final LoadBatcher<String, String> batcher = new LoadBatcher<String, String>(delegate, 4, 10, TimeUnit.SECONDS);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 4; i++) {
+        final String key = "key" + i;
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return batcher.load(key);
+          }
+        }));
+      }
+      for (int i = 0; i < 4; i++) {
+        assertThat(results.get(i).get(10, TimeUnit.SECONDS), is("value-key" + i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(delegate.batches.size(), is(1));
+    assertThat(delegate.batches.get(0), containsInAnyOrder("key0", "key1", "key2", "key3"));
+    assertThat(batcher.getBatchCount(), is(1L));
+    assertThat(batcher.getBatchedKeyCount(), is(4L));
+    assertThat(batcher.getAverageBatchSize(), is(4.0));
+  }
+
+  @Test
+  public void testLoadIsBoundedByMaxDelay() throws Exception {
+    RecordingLoaderWriter delegate = new RecordingLoaderWriter();
+    LoadBatcher<String, String> batcher = new LoadBatcher<String, String>(delegate, 100, 10, TimeUnit.MILLISECONDS);
+
+    assertThat(batcher.load("key"), is("value-key"));
+    assertThat(batcher.load("other"), is("value-other"));
+
+    assertThat(delegate.batches.size(), is(2));
+    assertThat(batcher.getAverageBatchSize(), is(1.0));
+  }
+
+  @Test
+  public void testBulkFailureIsReportedPerKey() throws Exception {
+    RecordingLoaderWriter delegate = new RecordingLoaderWriter() {
+      @Override
+      public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+        Map<String, String> successes = super.loadAll(keys);
+        Map<String, Exception> failures = new HashMap<String, Exception>();
+        failures.put("bad", new Exception("bad key"));
+        successes.remove("bad");
+        throw new BulkCacheLoadingException(failures, successes);
+      }
+    };
+    final LoadBatcher<String, String> batcher = new LoadBatcher<String, String>(delegate, 2, 10, TimeUnit.SECONDS);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> good = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return batcher.load("good");
+        }
+      });
+      try {
+        batcher.load("bad");
+        fail("Expected Exception");
+      } catch (Exception e) {
+        assertThat(e.getMessage(), is("bad key"));
+      }
+      assertThat(good.get(10, TimeUnit.SECONDS), is("value-good"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static class RecordingLoaderWriter implements CacheLoaderWriter<String, String> {
+
+    final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+    @Override
+    public String load(String key) throws Exception {
+      throw new AssertionError("Single key load should have been batched");
+    }
+
+    @Override
+    public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+      List<String> batch = new ArrayList<String>();
+      Map<String, String> loaded = new HashMap<String, String>();
+      for (String key : keys) {
+        batch.add(key);
+        loaded.put(key, "value-" + key);
+      }
+      batches.add(batch);
+      return loaded;
+    }
+
+    @Override
+    public void write(String key, String value) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends String> keys) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -19,22 +19,38 @@ package org.ehcache.config.builders;
 import org.ehcache.config.CacheConfiguration;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.config.BaseCacheConfiguration;
 import org.ehcache.core.config.store.StoreEventSourceConfiguration;
+import org.ehcache.core.spi.store.heap.HeapEvictionPolicy;
 import org.ehcache.core.spi.store.heap.SizeOfEngine;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
 import org.ehcache.expiry.Expiry;
 import org.ehcache.impl.config.copy.DefaultCopierConfiguration;
 import org.ehcache.impl.config.event.DefaultCacheEventDispatcherConfiguration;
 import org.ehcache.impl.config.event.DefaultCacheEventListenerConfiguration;
 import org.ehcache.impl.config.event.DefaultEventSourceConfiguration;
 import org.ehcache.impl.config.loaderwriter.DefaultCacheLoaderWriterConfiguration;
+import org.ehcache.impl.config.loaderwriter.DefaultRefreshAheadConfiguration;
+import org.ehcache.impl.config.loaderwriter.DefaultLoadBatchingConfiguration;
 import org.ehcache.impl.config.serializer.DefaultSerializerConfiguration;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
+import org.ehcache.impl.config.store.ValueCompressionConfiguration;
+import org.ehcache.impl.config.store.disk.OffHeapDiskStoreCheckpointConfiguration;
 import org.ehcache.impl.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.impl.copy.SerializingCopier;
+import org.ehcache.impl.internal.loaderwriter.AsyncCacheLoaderWriterAdapter;
+import org.ehcache.impl.config.store.heap.BackgroundEvictionConfiguration;
+import org.ehcache.impl.config.store.heap.ExpiryIndexConfiguration;
+import org.ehcache.impl.config.store.heap.ReadBufferConfiguration;
 import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration;
+import org.ehcache.impl.config.store.heap.HeapEvictionPolicyConfiguration;
+import org.ehcache.impl.config.store.heap.SizeOfFunctionConfiguration;
+import org.ehcache.impl.config.store.offheap.OffHeapEvictionConfiguration;
 import org.ehcache.spi.copy.Copier;
+import org.ehcache.spi.loaderwriter.AsyncCacheLoaderWriter;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
 import org.ehcache.spi.serialization.Serializer;
 import org.ehcache.spi.service.ServiceConfiguration;
@@ -43,6 +59,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.ehcache.config.builders.ResourcePoolsBuilder.newResourcePoolsBuilder;
 import static org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration.DEFAULT_MAX_OBJECT_SIZE;
@@ -293,6 +310,22 @@ public class CacheConfigurationBuilder<K, V> implements Builder<CacheConfigurati
     return otherBuilder;
   }
 
+  /**
+   * Adds an {@link AsyncCacheLoaderWriter} to the configured builder.
+   * <P/>
+   * The cache waits on loads and on single key writes without holding any store lock, see
+   * {@link AsyncCacheLoaderWriterAdapter}.
+   *
+   * @param loaderWriter the asynchronous loaderwriter to use
+   * @return a new builder with the added loaderwriter configuration
+   */
+  public CacheConfigurationBuilder<K, V> withAsyncLoaderWriter(AsyncCacheLoaderWriter<K, V> loaderWriter) {
+    if (loaderWriter == null) {
+      throw new NullPointerException("Null loaderWriter");
+    }
+    return withLoaderWriter(new AsyncCacheLoaderWriterAdapter<K, V>(loaderWriter));
+  }
+
   /**
    * Adds a {@link CacheLoaderWriter} configured through a class and optional constructor arguments to the configured
    * builder.
@@ -316,6 +349,56 @@ public class CacheConfigurationBuilder<K, V> implements Builder<CacheConfigurati
     return otherBuilder;
   }
 
+  /**
+   * Adds a {@link ServiceConfiguration} making the configured {@link CacheLoaderWriter} reload entries asynchronously,
+   * on the default thread pool, when they are hit within the given fraction of their time to live before expiry.
+   *
+   * @param refreshAheadFactor the fraction of the time to live during which hits trigger a reload
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withRefreshAhead(float refreshAheadFactor) {
+    return withRefreshAhead(refreshAheadFactor, null);
+  }
+
+  /**
+   * Adds a {@link ServiceConfiguration} making the configured {@link CacheLoaderWriter} reload entries asynchronously,
+   * on the given thread pool, when they are hit within the given fraction of their time to live before expiry.
+   *
+   * @param refreshAheadFactor the fraction of the time to live during which hits trigger a reload
+   * @param threadPoolAlias the thread pool alias
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withRefreshAhead(float refreshAheadFactor, String threadPoolAlias) {
+    DefaultRefreshAheadConfiguration configuration = new DefaultRefreshAheadConfiguration(refreshAheadFactor, threadPoolAlias);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    DefaultRefreshAheadConfiguration existingServiceConfiguration = otherBuilder.getExistingServiceConfiguration(DefaultRefreshAheadConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
+  /**
+   * Adds a {@link ServiceConfiguration} making concurrent single key loads on the configured {@link CacheLoaderWriter}
+   * be collected into batches loaded through {@link CacheLoaderWriter#loadAll(Iterable)}.
+   *
+   * @param maxBatchSize the maximum number of keys in a batch
+   * @param maxDelay the maximum time a load waits for its batch to fill up
+   * @param unit the unit of {@code maxDelay}
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withLoaderBatching(int maxBatchSize, long maxDelay, TimeUnit unit) {
+    DefaultLoadBatchingConfiguration configuration = new DefaultLoadBatchingConfiguration(maxBatchSize, maxDelay, unit);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    DefaultLoadBatchingConfiguration existingServiceConfiguration = otherBuilder.getExistingServiceConfiguration(DefaultLoadBatchingConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
   /**
    * Adds by-value semantic using the cache key serializer for the key on heap.
    * <P/>
@@ -561,6 +644,102 @@ public class CacheConfigurationBuilder<K, V> implements Builder<CacheConfigurati
     return otherBuilder;
   }
 
+  /**
+   * Adds an {@link OffHeapDiskStoreCheckpointConfiguration} making the disk tier periodically checkpoint its index, so
+   * that it recovers its mappings after an unclean shutdown.
+   *
+   * @param interval the delay between two checkpoints
+   * @param unit the unit of {@code interval}
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withDiskStoreCheckpoints(long interval, TimeUnit unit) {
+    OffHeapDiskStoreCheckpointConfiguration configuration = new OffHeapDiskStoreCheckpointConfiguration(interval, unit);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    OffHeapDiskStoreCheckpointConfiguration existingServiceConfiguration = getExistingServiceConfiguration(OffHeapDiskStoreCheckpointConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
+  /**
+   * Adds a {@link BackgroundEvictionConfiguration} making the heap tier evict on the given thread pool instead of on
+   * the writing threads.
+   * <P>
+   * Writers still evict inline once the heap tier exceeds its capacity by more than the overshoot.
+   *
+   * @param threadPoolAlias the thread pool alias, {@code null} for the default pool
+   * @param overshootPercentage how far, as a percentage of capacity, the heap tier may grow before writers evict
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withBackgroundHeapEviction(String threadPoolAlias, int overshootPercentage) {
+    BackgroundEvictionConfiguration configuration = new BackgroundEvictionConfiguration(threadPoolAlias, overshootPercentage);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    BackgroundEvictionConfiguration existingServiceConfiguration = getExistingServiceConfiguration(BackgroundEvictionConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
+  /**
+   * Adds a {@link ReadBufferConfiguration} making the heap tier buffer the access time updates of reads.
+   *
+   * @param stripes the number of buffer stripes
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withHeapReadBuffer(int stripes) {
+    ReadBufferConfiguration configuration = new ReadBufferConfiguration(stripes);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    ReadBufferConfiguration existingServiceConfiguration = getExistingServiceConfiguration(ReadBufferConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
+  /**
+   * Adds an {@link ExpiryIndexConfiguration} making the heap tier index its mappings by expiration time.
+   *
+   * @param evictionHorizon how close to its expiration a mapping must be to be evicted ahead of sampled candidates
+   * @param unit the unit of {@code evictionHorizon}
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withHeapExpiryIndex(long evictionHorizon, TimeUnit unit) {
+    ExpiryIndexConfiguration configuration = new ExpiryIndexConfiguration(evictionHorizon, unit);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    ExpiryIndexConfiguration existingServiceConfiguration = getExistingServiceConfiguration(ExpiryIndexConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
+  /**
+   * Adds an {@link ExpiryReaperConfiguration} making the heap and off heap tiers remove expired mappings in the
+   * background.
+   *
+   * @param threadPoolAlias the thread pool alias, {@code null} for the default pool
+   * @param interval the delay between two reaper runs
+   * @param timeBudget the time a single reaper run may spend scanning
+   * @param unit the unit of {@code interval} and {@code timeBudget}
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withExpiryReaper(String threadPoolAlias, long interval, long timeBudget, TimeUnit unit) {
+    ExpiryReaperConfiguration configuration = new ExpiryReaperConfiguration(threadPoolAlias, interval, timeBudget, unit);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    ExpiryReaperConfiguration existingServiceConfiguration = getExistingServiceConfiguration(ExpiryReaperConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
   /**
    * Adds or updates the {@link DefaultSizeOfEngineConfiguration} with the specified object graph maximum size to the configured
    * builder.
@@ -577,7 +756,8 @@ public class CacheConfigurationBuilder<K, V> implements Builder<CacheConfigurati
       otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(DEFAULT_MAX_OBJECT_SIZE, DEFAULT_UNIT, size));
     } else {
       otherBuilder.serviceConfigurations.remove(configuration);
-      otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(configuration.getMaxObjectSize(), configuration.getUnit(), size));
+      otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(configuration.getMaxObjectSize(), configuration.getUnit(), size,
+          configuration.getSizingMode(), configuration.getSamplingInterval()));
     }
     return otherBuilder;
   }
@@ -599,8 +779,130 @@ public class CacheConfigurationBuilder<K, V> implements Builder<CacheConfigurati
       otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(size, unit, DEFAULT_OBJECT_GRAPH_SIZE));
     } else {
       otherBuilder.serviceConfigurations.remove(configuration);
-      otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(size, unit, configuration.getMaxObjectGraphSize()));
+      otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(size, unit, configuration.getMaxObjectGraphSize(),
+          configuration.getSizingMode(), configuration.getSamplingInterval()));
+    }
+    return otherBuilder;
+  }
+
+  /**
+   * Adds or updates the {@link DefaultSizeOfEngineConfiguration} with the specified sizing mode to the configured
+   * builder.
+   * </P>
+   * {@link SizeOfEngine} is what enables the heap tier to be sized in {@link MemoryUnit}.
+   *
+   * @param sizingMode the sizing mode
+   * @param samplingInterval the number of mappings sized from a sample before it is measured again
+   * @return a new builder with the added / updated configuration
+   *
+   * @see DefaultSizeOfEngineConfiguration.SizingMode
+   */
+  public CacheConfigurationBuilder<K, V> withSizeOfSizingMode(DefaultSizeOfEngineConfiguration.SizingMode sizingMode, int samplingInterval) {
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    DefaultSizeOfEngineConfiguration configuration = getExistingServiceConfiguration(DefaultSizeOfEngineConfiguration.class);
+    if (configuration == null) {
+      otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(DEFAULT_MAX_OBJECT_SIZE, DEFAULT_UNIT, DEFAULT_OBJECT_GRAPH_SIZE,
+          sizingMode, samplingInterval));
+    } else {
+      otherBuilder.serviceConfigurations.remove(configuration);
+      otherBuilder.serviceConfigurations.add(new DefaultSizeOfEngineConfiguration(configuration.getMaxObjectSize(), configuration.getUnit(),
+          configuration.getMaxObjectGraphSize(), sizingMode, samplingInterval));
+    }
+    return otherBuilder;
+  }
+
+  /**
+   * Adds a {@link SizeOfFunctionConfiguration} with the specified sizing function to the configured builder.
+   * <P>
+   * A byte sized heap tier then sizes mappings with the function instead of walking their object graph. Values stored
+   * by value on heap are held in serialized form, and still sized by walking their object graph.
+   *
+   * @param sizeOfFunction the function returning the heap size of a key and value
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withSizeOfFunction(SizeOfFunction<? super K, ? super V> sizeOfFunction) {
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    SizeOfFunctionConfiguration existingServiceConfiguration = otherBuilder.getExistingServiceConfiguration(SizeOfFunctionConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(new SizeOfFunctionConfiguration(sizeOfFunction));
+    return otherBuilder;
+  }
+
+  /**
+   * Adds a {@link HeapEvictionPolicyConfiguration} with the specified eviction policy factory to the configured
+   * builder.
+   * <P>
+   * The {@link HeapEvictionPolicy} decides, when the heap tier is full, which mapping is evicted instead of the sampled
+   * eviction victim, if any.
+   *
+   * @param factory the factory creating the eviction policy of the heap tier
+   * @return a new builder with the added configuration
+   *
+   * @see HeapEvictionPolicyConfiguration#tinyLfu()
+   */
+  public CacheConfigurationBuilder<K, V> withHeapEvictionPolicy(HeapEvictionPolicy.Factory factory) {
+    return withHeapEvictionPolicy(new HeapEvictionPolicyConfiguration(factory));
+  }
+
+  /**
+   * Adds a {@link HeapEvictionPolicyConfiguration} selecting the built-in W-TinyLFU admission policy to the configured
+   * builder.
+   *
+   * @return a new builder with the added configuration
+   *
+   * @see #withHeapEvictionPolicy(HeapEvictionPolicy.Factory)
+   */
+  public CacheConfigurationBuilder<K, V> withTinyLfuHeapEviction() {
+    return withHeapEvictionPolicy(HeapEvictionPolicyConfiguration.tinyLfu());
+  }
+
+  private CacheConfigurationBuilder<K, V> withHeapEvictionPolicy(HeapEvictionPolicyConfiguration configuration) {
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    HeapEvictionPolicyConfiguration existingServiceConfiguration = otherBuilder.getExistingServiceConfiguration(HeapEvictionPolicyConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
+  /**
+   * Adds an {@link OffHeapEvictionConfiguration} with the specified eviction mode to the configured builder.
+   * <P>
+   * {@link OffHeapEvictionConfiguration.Mode#FREQUENCY} makes the off heap tier favour keeping frequently read
+   * mappings over recently touched ones.
+   *
+   * @param mode the eviction mode of the off heap tier
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withOffHeapEvictionMode(OffHeapEvictionConfiguration.Mode mode) {
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    OffHeapEvictionConfiguration existingServiceConfiguration = otherBuilder.getExistingServiceConfiguration(OffHeapEvictionConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(new OffHeapEvictionConfiguration(mode));
+    return otherBuilder;
+  }
+
+  /**
+   * Adds a {@link ValueCompressionConfiguration} making the tiers backed by the given resource types compress the
+   * values they hold.
+   *
+   * @param threshold the size in bytes below which values are not compressed
+   * @param resourceTypes the resource types whose tiers compress values, off heap and/or disk
+   * @return a new builder with the added configuration
+   */
+  public CacheConfigurationBuilder<K, V> withValueCompression(int threshold, ResourceType.Core... resourceTypes) {
+    ValueCompressionConfiguration configuration = new ValueCompressionConfiguration(threshold, resourceTypes);
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    ValueCompressionConfiguration existingServiceConfiguration = otherBuilder.getExistingServiceConfiguration(ValueCompressionConfiguration.class);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
     }
+    otherBuilder.serviceConfigurations.add(configuration);
     return otherBuilder;
   }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.loaderwriter;
+
+import org.ehcache.core.config.loaderwriter.LoadBatchingConfiguration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link org.ehcache.spi.service.ServiceConfiguration} enabling the batching of concurrent misses into
+ * {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter#loadAll(Iterable)} calls for a cache with a
+ * {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter}.
+ */
+public class DefaultLoadBatchingConfiguration implements LoadBatchingConfiguration {
+
+  private final int maxBatchSize;
+  private final long maxDelay;
+  private final TimeUnit unit;
+
+  /**
+   * Creates a new configuration with the given batch bounds.
+   *
+   * @param maxBatchSize the maximum number of keys in a batch
+   * @param maxDelay the maximum time a load waits for its batch to fill up
+   * @param unit the unit of {@code maxDelay}
+   */
+  public DefaultLoadBatchingConfiguration(int maxBatchSize, long maxDelay, TimeUnit unit) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1");
+    }
+    if (maxDelay < 0) {
+      throw new IllegalArgumentException("Batch delay must be positive or zero");
+    }
+    if (unit == null) {
+      throw new NullPointerException("Batch delay unit can't be null");
+    }
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelay = maxDelay;
+    this.unit = unit;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public TimeUnit getUnit() {
+    return unit;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<CacheLoaderWriterProvider> getServiceType() {
+    return CacheLoaderWriterProvider.class;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.loaderwriter;
+
+import org.ehcache.core.config.loaderwriter.RefreshAheadConfiguration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+
+/**
+ * {@link org.ehcache.spi.service.ServiceConfiguration} enabling refresh ahead of entries nearing expiry for a cache
+ * with a {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter}.
+ */
+public class DefaultRefreshAheadConfiguration implements RefreshAheadConfiguration {
+
+  private final float refreshAheadFactor;
+  private final String threadPoolAlias;
+
+  /**
+   * Creates a new configuration reloading entries on the default thread pool.
+   *
+   * @param refreshAheadFactor the fraction of the time to live during which hits trigger a reload
+   */
+  public DefaultRefreshAheadConfiguration(float refreshAheadFactor) {
+    this(refreshAheadFactor, null);
+  }
+
+  /**
+   * Creates a new configuration reloading entries on the given thread pool.
+   *
+   * @param refreshAheadFactor the fraction of the time to live during which hits trigger a reload
+   * @param threadPoolAlias the thread pool alias, {@code null} for the default pool
+   */
+  public DefaultRefreshAheadConfiguration(float refreshAheadFactor, String threadPoolAlias) {
+    if (!(refreshAheadFactor > 0 && refreshAheadFactor < 1)) {
+      throw new IllegalArgumentException("Refresh ahead factor must be between 0 and 1 (exclusive)");
+    }
+    this.refreshAheadFactor = refreshAheadFactor;
+    this.threadPoolAlias = threadPoolAlias;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public float getRefreshAheadFactor() {
+    return refreshAheadFactor;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<CacheLoaderWriterProvider> getServiceType() {
+    return CacheLoaderWriterProvider.class;
+  }
+}
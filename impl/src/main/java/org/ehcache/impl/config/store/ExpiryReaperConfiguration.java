@@ -0,0 +1,124 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store;
+
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ServiceConfiguration} for the default on heap and off heap {@link Store stores} enabling the background
+ * removal of expired mappings.
+ * <P>
+ *   A reaper task periodically runs on a scheduled executor of the
+ *   {@link org.ehcache.core.spi.service.ExecutionService ExecutionService}. Each run resumes scanning where the
+ *   previous one stopped, removes the expired mappings it finds and stops once its time budget is spent.
+ * </P>
+ */
+public class ExpiryReaperConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  /**
+   * Default delay between two reaper runs, in milliseconds
+   */
+  public static final long DEFAULT_INTERVAL = 1000L;
+
+  /**
+   * Default time budget of a reaper run, in milliseconds
+   */
+  public static final long DEFAULT_TIME_BUDGET = 10L;
+
+  private final String threadPoolAlias;
+  private final long interval;
+  private final long timeBudget;
+  private final TimeUnit unit;
+
+  /**
+   * Creates a new configuration instance using the default thread pool, interval and time budget.
+   */
+  public ExpiryReaperConfiguration() {
+    this(null, DEFAULT_INTERVAL, DEFAULT_TIME_BUDGET, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a new configuration instance.
+   *
+   * @param threadPoolAlias the thread pool running the reaper, {@code null} for the default pool
+   * @param interval the delay between the end of a run and the start of the next one
+   * @param timeBudget the time a single run may spend scanning
+   * @param unit the unit of {@code interval} and {@code timeBudget}
+   */
+  public ExpiryReaperConfiguration(String threadPoolAlias, long interval, long timeBudget, TimeUnit unit) {
+    if (unit == null) {
+      throw new NullPointerException("TimeUnit cannot be null");
+    }
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Interval can only accept positive values.");
+    }
+    if (timeBudget <= 0) {
+      throw new IllegalArgumentException("TimeBudget can only accept positive values.");
+    }
+    this.threadPoolAlias = threadPoolAlias;
+    this.interval = interval;
+    this.timeBudget = timeBudget;
+    this.unit = unit;
+  }
+
+  /**
+   * Returns the alias of the thread pool running the reaper.
+   *
+   * @return the thread pool alias, {@code null} for the default pool
+   */
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  /**
+   * Returns the delay between two reaper runs.
+   *
+   * @return the interval, in {@link #getUnit()}
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  /**
+   * Returns the time a single reaper run may spend scanning.
+   *
+   * @return the time budget, in {@link #getUnit()}
+   */
+  public long getTimeBudget() {
+    return timeBudget;
+  }
+
+  /**
+   * Returns the unit of the interval and time budget.
+   *
+   * @return the time unit
+   */
+  public TimeUnit getUnit() {
+    return unit;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store;
+
+import org.ehcache.config.ResourceType;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@link ServiceConfiguration} for the default off heap and disk {@link Store stores} enabling the compression of
+ * the serialized values they hold.
+ * <P>
+ *   Compression is enabled per resource pool: only the tiers backed by the listed resource types compress their
+ *   values. Values serializing to less than the threshold are stored as is, as are values that do not shrink.
+ * </P>
+ */
+public class ValueCompressionConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  /**
+   * Default size, in bytes, below which values are not compressed
+   */
+  public static final int DEFAULT_THRESHOLD = 256;
+
+  private final int threshold;
+  private final Set<ResourceType.Core> resourceTypes;
+
+  /**
+   * Creates a new configuration instance compressing values from the default threshold.
+   *
+   * @param resourceTypes the resource types whose tiers compress values
+   */
+  public ValueCompressionConfiguration(ResourceType.Core... resourceTypes) {
+    this(DEFAULT_THRESHOLD, resourceTypes);
+  }
+
+  /**
+   * Creates a new configuration instance.
+   *
+   * @param threshold the size in bytes below which values are not compressed
+   * @param resourceTypes the resource types whose tiers compress values, off heap and/or disk
+   */
+  public ValueCompressionConfiguration(int threshold, ResourceType.Core... resourceTypes) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold can only accept positive values.");
+    }
+    if (resourceTypes.length == 0) {
+      throw new IllegalArgumentException("At least one resource type must be compressed.");
+    }
+    Set<ResourceType.Core> types = EnumSet.copyOf(Arrays.asList(resourceTypes));
+    if (types.contains(ResourceType.Core.HEAP)) {
+      throw new IllegalArgumentException("Values can only be compressed in the off heap and disk tiers.");
+    }
+    this.threshold = threshold;
+    this.resourceTypes = Collections.unmodifiableSet(types);
+  }
+
+  /**
+   * Returns the size below which values are not compressed.
+   *
+   * @return the threshold, in bytes
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Returns the resource types whose tiers compress values.
+   *
+   * @return the compressed resource types
+   */
+  public Set<ResourceType.Core> getResourceTypes() {
+    return resourceTypes;
+  }
+
+  /**
+   * Tells whether the tier backed by the given resource type compresses values.
+   *
+   * @param resourceType the resource type of the tier
+   * @return {@code true} if values are compressed in that tier
+   */
+  public boolean isCompressing(ResourceType resourceType) {
+    return resourceTypes.contains(resourceType);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
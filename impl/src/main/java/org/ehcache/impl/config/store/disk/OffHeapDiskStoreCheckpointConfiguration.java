@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.disk;
+
+import org.ehcache.impl.internal.store.disk.OffHeapDiskStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ServiceConfiguration} for the default {@link OffHeapDiskStore} enabling periodic checkpoints of its index.
+ * <P>
+ *   The index of a disk store is otherwise only written on shutdown, so that a disk store that was not closed
+ *   cleanly starts empty. With checkpoints enabled, values are stored with a checksum and such a store instead
+ *   recovers the mappings of its last checkpoint that are still intact on disk. The checkpoints run on the thread
+ *   pool of the disk store.
+ * </P>
+ */
+public class OffHeapDiskStoreCheckpointConfiguration implements ServiceConfiguration<OffHeapDiskStore.Provider> {
+
+  /**
+   * Default delay between two checkpoints, in milliseconds
+   */
+  public static final long DEFAULT_INTERVAL = 60000L;
+
+  private final long interval;
+  private final TimeUnit unit;
+
+  /**
+   * Creates a new configuration instance using the default interval.
+   */
+  public OffHeapDiskStoreCheckpointConfiguration() {
+    this(DEFAULT_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a new configuration instance.
+   *
+   * @param interval the delay between the end of a checkpoint and the start of the next one
+   * @param unit the unit of {@code interval}
+   */
+  public OffHeapDiskStoreCheckpointConfiguration(long interval, TimeUnit unit) {
+    if (unit == null) {
+      throw new NullPointerException("TimeUnit cannot be null");
+    }
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Interval can only accept positive values.");
+    }
+    this.interval = interval;
+    this.unit = unit;
+  }
+
+  /**
+   * Returns the delay between two checkpoints.
+   *
+   * @return the interval, in {@link #getUnit()}
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  /**
+   * Returns the unit of the interval.
+   *
+   * @return the time unit
+   */
+  public TimeUnit getUnit() {
+    return unit;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<OffHeapDiskStore.Provider> getServiceType() {
+    return OffHeapDiskStore.Provider.class;
+  }
+}
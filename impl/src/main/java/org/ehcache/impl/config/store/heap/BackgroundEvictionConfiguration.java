@@ -0,0 +1,87 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.heap;
+
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} for the default {@link org.ehcache.core.spi.store.Store on heap store} moving eviction
+ * off the writing threads.
+ * <P>
+ *   Writes that take the heap tier over capacity schedule a maintenance task on a scheduled executor of the
+ *   {@link org.ehcache.core.spi.service.ExecutionService ExecutionService}, which evicts back down to capacity in
+ *   batches. Writers only evict inline once the tier exceeds its capacity by more than the configured overshoot.
+ * </P>
+ */
+public class BackgroundEvictionConfiguration implements ServiceConfiguration<OnHeapStore.Provider> {
+
+  /**
+   * Default overshoot, as a percentage of the heap tier capacity
+   */
+  public static final int DEFAULT_OVERSHOOT_PERCENTAGE = 10;
+
+  private final String threadPoolAlias;
+  private final int overshootPercentage;
+
+  /**
+   * Creates a new configuration instance using the default thread pool and overshoot.
+   */
+  public BackgroundEvictionConfiguration() {
+    this(null, DEFAULT_OVERSHOOT_PERCENTAGE);
+  }
+
+  /**
+   * Creates a new configuration instance.
+   *
+   * @param threadPoolAlias the thread pool running the eviction task, {@code null} for the default pool
+   * @param overshootPercentage how far, as a percentage of capacity, the heap tier may grow before writers evict inline
+   */
+  public BackgroundEvictionConfiguration(String threadPoolAlias, int overshootPercentage) {
+    if (overshootPercentage < 0) {
+      throw new IllegalArgumentException("Overshoot percentage cannot be negative");
+    }
+    this.threadPoolAlias = threadPoolAlias;
+    this.overshootPercentage = overshootPercentage;
+  }
+
+  /**
+   * Returns the alias of the thread pool running the eviction task.
+   *
+   * @return the thread pool alias, {@code null} for the default pool
+   */
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  /**
+   * Returns how far the heap tier may grow over its capacity before writers evict inline.
+   *
+   * @return the overshoot, as a percentage of capacity
+   */
+  public int getOvershootPercentage() {
+    return overshootPercentage;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<OnHeapStore.Provider> getServiceType() {
+    return OnHeapStore.Provider.class;
+  }
+}
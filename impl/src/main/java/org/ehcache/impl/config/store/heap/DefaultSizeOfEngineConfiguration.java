@@ -40,9 +40,21 @@ public class DefaultSizeOfEngineConfiguration implements ServiceConfiguration<Si
    */
   public static final MemoryUnit DEFAULT_UNIT = MemoryUnit.B;
 
+  /**
+   * Default sizing mode
+   */
+  public static final SizingMode DEFAULT_SIZING_MODE = SizingMode.DEEP;
+
+  /**
+   * Default number of mappings sized from a sample before the sample is measured again
+   */
+  public static final int DEFAULT_SAMPLING_INTERVAL = 100;
+
   private final long objectGraphSize;
   private final long maxObjectSize;
   private final MemoryUnit unit;
+  private final SizingMode sizingMode;
+  private final int samplingInterval;
 
   /**
    * Creates a new configuration object with the provided parameters.
@@ -52,12 +64,34 @@ public class DefaultSizeOfEngineConfiguration implements ServiceConfiguration<Si
    * @param objectGraphSize the maximum object graph size
    */
   public DefaultSizeOfEngineConfiguration(long size, MemoryUnit unit, long objectGraphSize) {
+    this(size, unit, objectGraphSize, DEFAULT_SIZING_MODE, DEFAULT_SAMPLING_INTERVAL);
+  }
+
+  /**
+   * Creates a new configuration object with the provided parameters.
+   *
+   * @param size the maximum object size
+   * @param unit the object size unit
+   * @param objectGraphSize the maximum object graph size
+   * @param sizingMode the sizing mode
+   * @param samplingInterval the number of mappings sized from a sample before it is measured again, only used by
+   *                         {@link SizingMode#SAMPLED}
+   */
+  public DefaultSizeOfEngineConfiguration(long size, MemoryUnit unit, long objectGraphSize, SizingMode sizingMode, int samplingInterval) {
     if (size <= 0 || objectGraphSize <= 0) {
       throw new IllegalArgumentException("ObjectGraphSize/ObjectSize can only accept positive values.");
     }
+    if (sizingMode == null) {
+      throw new NullPointerException("SizingMode cannot be null");
+    }
+    if (samplingInterval <= 0) {
+      throw new IllegalArgumentException("SamplingInterval can only accept positive values.");
+    }
     this.objectGraphSize = objectGraphSize;
     this.maxObjectSize = size;
     this.unit = unit;
+    this.sizingMode = sizingMode;
+    this.samplingInterval = samplingInterval;
   }
 
   /**
@@ -108,4 +142,52 @@ public class DefaultSizeOfEngineConfiguration implements ServiceConfiguration<Si
     return this.unit;
   }
 
+  /**
+   * Returns the sizing mode.
+   *
+   * @return the sizing mode
+   */
+  public SizingMode getSizingMode() {
+    return this.sizingMode;
+  }
+
+  /**
+   * Returns the number of mappings sized from a sample before the sample is measured again.
+   *
+   * @return the sampling interval
+   *
+   * @see SizingMode#SAMPLED
+   */
+  public int getSamplingInterval() {
+    return this.samplingInterval;
+  }
+
+  /**
+   * The ways mappings can be sized.
+   */
+  public enum SizingMode {
+    /**
+     * Every mapping is sized by walking its whole object graph.
+     */
+    DEEP,
+    /**
+     * Keys and values of well known leaf types - {@code String}, boxed primitives and primitive arrays - are sized
+     * from memoized per class sizes, other mappings are sized by walking their object graph.
+     */
+    MEMOIZED,
+    /**
+     * As {@link #MEMOIZED}, but values of other types are sized from a per class sample, measured again every
+     * {@link DefaultSizeOfEngineConfiguration#getSamplingInterval() sampling interval} mappings.
+     * <P>
+     *   This is only accurate when values of a given class have similar sizes.
+     * </P>
+     */
+    SAMPLED,
+    /**
+     * As {@link #MEMOIZED}, but keys and values implementing {@link org.ehcache.core.spi.store.heap.HeapSized} are
+     * sized from the size they declare.
+     */
+    DECLARED
+  }
+
 }
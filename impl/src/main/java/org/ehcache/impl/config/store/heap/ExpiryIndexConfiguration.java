@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.heap;
+
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ServiceConfiguration} for the default {@link org.ehcache.core.spi.store.Store on heap store} indexing its
+ * mappings by expiration time.
+ * <P>
+ *   The index lets the expiry reaper visit only the mappings that are due instead of scanning the whole tier, and
+ *   makes eviction prefer mappings expiring within the configured horizon over sampled candidates. Enabling the index
+ *   enables the expiry reaper with its default settings unless it is configured explicitly.
+ * </P>
+ */
+public class ExpiryIndexConfiguration implements ServiceConfiguration<OnHeapStore.Provider> {
+
+  /**
+   * Default eviction horizon, in milliseconds
+   */
+  public static final long DEFAULT_EVICTION_HORIZON = 1000L;
+
+  private final long evictionHorizon;
+  private final TimeUnit unit;
+
+  /**
+   * Creates a new configuration instance using the default eviction horizon.
+   */
+  public ExpiryIndexConfiguration() {
+    this(DEFAULT_EVICTION_HORIZON, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a new configuration instance.
+   *
+   * @param evictionHorizon how close to its expiration a mapping must be to be evicted ahead of sampled candidates
+   * @param unit the unit of {@code evictionHorizon}
+   */
+  public ExpiryIndexConfiguration(long evictionHorizon, TimeUnit unit) {
+    if (unit == null) {
+      throw new NullPointerException("TimeUnit cannot be null");
+    }
+    if (evictionHorizon < 0) {
+      throw new IllegalArgumentException("Eviction horizon cannot be negative");
+    }
+    this.evictionHorizon = evictionHorizon;
+    this.unit = unit;
+  }
+
+  /**
+   * Returns how close to its expiration a mapping must be to be evicted ahead of sampled candidates.
+   *
+   * @return the eviction horizon, in {@link #getUnit()}
+   */
+  public long getEvictionHorizon() {
+    return evictionHorizon;
+  }
+
+  /**
+   * Returns the unit of the eviction horizon.
+   *
+   * @return the time unit
+   */
+  public TimeUnit getUnit() {
+    return unit;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<OnHeapStore.Provider> getServiceType() {
+    return OnHeapStore.Provider.class;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.heap;
+
+import org.ehcache.core.spi.store.heap.HeapEvictionPolicy;
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
+import org.ehcache.impl.internal.store.heap.TinyLfuHeapEvictionPolicy;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} for the default {@link org.ehcache.core.spi.store.Store on heap store} selecting the
+ * {@link HeapEvictionPolicy} to use.
+ * <P>
+ *   Without this configuration, the on heap store evicts the sampled victim without any admission check.
+ * </P>
+ */
+public class HeapEvictionPolicyConfiguration implements ServiceConfiguration<OnHeapStore.Provider> {
+
+  private final HeapEvictionPolicy.Factory factory;
+
+  /**
+   * Creates a new configuration instance using the provided eviction policy factory.
+   *
+   * @param factory the factory creating the eviction policy of each store
+   */
+  public HeapEvictionPolicyConfiguration(HeapEvictionPolicy.Factory factory) {
+    if (factory == null) {
+      throw new NullPointerException("Heap eviction policy factory cannot be null");
+    }
+    this.factory = factory;
+  }
+
+  /**
+   * Creates a new configuration instance selecting the built-in TinyLFU admission policy.
+   *
+   * @return a TinyLFU eviction policy configuration
+   */
+  public static HeapEvictionPolicyConfiguration tinyLfu() {
+    return new HeapEvictionPolicyConfiguration(new TinyLfuHeapEvictionPolicy.Factory());
+  }
+
+  /**
+   * Returns the configured eviction policy factory.
+   *
+   * @return the eviction policy factory
+   */
+  public HeapEvictionPolicy.Factory getFactory() {
+    return factory;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<OnHeapStore.Provider> getServiceType() {
+    return OnHeapStore.Provider.class;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.heap;
+
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} for the default {@link org.ehcache.core.spi.store.Store on heap store} making reads
+ * record their access in striped read buffers.
+ * <P>
+ *   By default a read updates the access time and hit count of the mapping in place, so threads reading the same
+ *   hot mappings keep writing to the same memory. With read buffers, accesses that do not change the expiration time
+ *   are recorded in per thread stripes and replayed in batches, before evicting or when a stripe fills up. Recording
+ *   is lossy: accesses are dropped under contention, making access times and hit counts approximate.
+ * </P>
+ */
+public class ReadBufferConfiguration implements ServiceConfiguration<OnHeapStore.Provider> {
+
+  /**
+   * Default number of stripes, rounded up to a power of two and capped to 64 by the store
+   */
+  public static final int DEFAULT_STRIPES = 4 * Runtime.getRuntime().availableProcessors();
+
+  private final int stripes;
+
+  /**
+   * Creates a new configuration instance using the default number of stripes.
+   */
+  public ReadBufferConfiguration() {
+    this(DEFAULT_STRIPES);
+  }
+
+  /**
+   * Creates a new configuration instance.
+   *
+   * @param stripes the number of buffer stripes, rounded up to a power of two and capped to 64
+   */
+  public ReadBufferConfiguration(int stripes) {
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("Stripes can only accept positive values.");
+    }
+    this.stripes = stripes;
+  }
+
+  /**
+   * Returns the number of buffer stripes.
+   *
+   * @return the number of stripes
+   */
+  public int getStripes() {
+    return stripes;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<OnHeapStore.Provider> getServiceType() {
+    return OnHeapStore.Provider.class;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.heap;
+
+import org.ehcache.core.spi.store.heap.SizeOfEngineProvider;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} for the default {@link SizeOfEngineProvider} making a cache size its mappings with a
+ * user provided {@link SizeOfFunction} instead of walking their object graph.
+ * <P>
+ *   The maximum object size of the cache still applies to the sizes returned by the function. Mappings of a heap tier
+ *   storing values by value, in serialized form, are still sized by walking their object graph.
+ * </P>
+ */
+public class SizeOfFunctionConfiguration implements ServiceConfiguration<SizeOfEngineProvider> {
+
+  private final SizeOfFunction<?, ?> sizeOfFunction;
+
+  /**
+   * Creates a new configuration instance using the provided sizing function.
+   *
+   * @param sizeOfFunction the function sizing the mappings of the cache
+   */
+  public SizeOfFunctionConfiguration(SizeOfFunction<?, ?> sizeOfFunction) {
+    if (sizeOfFunction == null) {
+      throw new NullPointerException("SizeOfFunction cannot be null");
+    }
+    this.sizeOfFunction = sizeOfFunction;
+  }
+
+  /**
+   * Returns the configured sizing function.
+   *
+   * @return the sizing function
+   */
+  public SizeOfFunction<?, ?> getSizeOfFunction() {
+    return sizeOfFunction;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<SizeOfEngineProvider> getServiceType() {
+    return SizeOfEngineProvider.class;
+  }
+}
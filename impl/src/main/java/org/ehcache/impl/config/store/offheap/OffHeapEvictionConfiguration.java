@@ -0,0 +1,76 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.offheap;
+
+import org.ehcache.impl.internal.store.offheap.OffHeapStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} for the default {@link org.ehcache.core.spi.store.Store off heap store} selecting how
+ * its segments pick eviction victims.
+ * <P>
+ *   Without this configuration, the off heap store uses {@link Mode#CLOCK clock} eviction.
+ * </P>
+ */
+public class OffHeapEvictionConfiguration implements ServiceConfiguration<OffHeapStore.Provider> {
+
+  /**
+   * The eviction modes supported by the off heap store.
+   */
+  public enum Mode {
+    /**
+     * Plain clock eviction, where a single access bit per mapping decides eviction.
+     */
+    CLOCK,
+    /**
+     * Clock eviction biased by a per segment frequency sketch, evicting the least frequently accessed of several
+     * clock candidates.
+     */
+    FREQUENCY
+  }
+
+  private final Mode mode;
+
+  /**
+   * Creates a new configuration instance using the provided eviction mode.
+   *
+   * @param mode the eviction mode
+   */
+  public OffHeapEvictionConfiguration(Mode mode) {
+    if (mode == null) {
+      throw new NullPointerException("Off heap eviction mode cannot be null");
+    }
+    this.mode = mode;
+  }
+
+  /**
+   * Returns the configured eviction mode.
+   *
+   * @return the eviction mode
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<OffHeapStore.Provider> getServiceType() {
+    return OffHeapStore.Provider.class;
+  }
+}
@@ -44,11 +44,15 @@ public class DefaultTimeSourceService implements TimeSourceService {
 
   @Override
   public void start(ServiceProvider<Service> serviceProvider) {
-    // no-op
+    if (timeSource instanceof TickingTimeSource) {
+      ((TickingTimeSource) timeSource).start();
+    }
   }
 
   @Override
   public void stop() {
-    // no-op
+    if (timeSource instanceof TickingTimeSource) {
+      ((TickingTimeSource) timeSource).stop();
+    }
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal;
+
+import org.ehcache.core.spi.time.TimeSource;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.ehcache.impl.internal.util.ThreadFactoryUtil.threadFactory;
+
+/**
+ * A {@link TimeSource} reading the system clock from a ticker thread and handing out the last value it read.
+ * <P>
+ *   Reading the time then costs a single volatile read, at the price of the time being up to one resolution behind.
+ *   It is meant for caches where {@link System#currentTimeMillis()} shows in the profile of every operation. The
+ *   system clock is read directly when the ticker is not running.
+ * </P>
+ */
+public class TickingTimeSource implements TimeSource {
+
+  private static final long NOT_TICKING = -1L;
+
+  private final long resolution;
+  private final TimeUnit unit;
+
+  private volatile long time = NOT_TICKING;
+  private ScheduledExecutorService ticker;
+
+  /**
+   * Creates a new time source ticking at the given resolution.
+   *
+   * @param resolution the delay between two reads of the system clock
+   * @param unit the unit of {@code resolution}
+   */
+  public TickingTimeSource(long resolution, TimeUnit unit) {
+    if (unit == null) {
+      throw new NullPointerException("TimeUnit cannot be null");
+    }
+    if (resolution <= 0) {
+      throw new IllegalArgumentException("Resolution can only accept positive values.");
+    }
+    this.resolution = resolution;
+    this.unit = unit;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTimeMillis() {
+    long now = time;
+    if (now == NOT_TICKING) {
+      return System.currentTimeMillis();
+    }
+    return now;
+  }
+
+  /**
+   * Starts the ticker thread, does nothing if it is already running.
+   */
+  public synchronized void start() {
+    if (ticker == null) {
+      time = System.currentTimeMillis();
+      ticker = Executors.newSingleThreadScheduledExecutor(threadFactory("time-source"));
+      ticker.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          time = System.currentTimeMillis();
+        }
+      }, resolution, resolution, unit);
+    }
+  }
+
+  /**
+   * Stops the ticker thread, the system clock is read directly afterwards.
+   */
+  public synchronized void stop() {
+    if (ticker != null) {
+      ticker.shutdownNow();
+      ticker = null;
+      time = NOT_TICKING;
+    }
+  }
+
+  /**
+   * Returns the delay between two reads of the system clock.
+   *
+   * @return the resolution, in {@link #getUnit()}
+   */
+  public long getResolution() {
+    return resolution;
+  }
+
+  /**
+   * Returns the unit of the resolution.
+   *
+   * @return the time unit
+   */
+  public TimeUnit getUnit() {
+    return unit;
+  }
+}
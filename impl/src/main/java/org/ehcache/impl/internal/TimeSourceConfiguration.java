@@ -19,6 +19,8 @@ import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.core.spi.time.TimeSourceService;
 import org.ehcache.spi.service.ServiceCreationConfiguration;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Configuration for the {@link TimeSourceService}
  *
@@ -37,6 +39,17 @@ public class TimeSourceConfiguration implements ServiceCreationConfiguration<Tim
     this.timeSource = timeSource;
   }
 
+  /**
+   * Constructor for this configuration object selecting a {@link TickingTimeSource}, which the
+   * {@link TimeSourceService} starts and stops with itself.
+   *
+   * @param resolution the delay between two reads of the system clock
+   * @param unit the unit of {@code resolution}
+   */
+  public TimeSourceConfiguration(long resolution, TimeUnit unit) {
+    this(new TickingTimeSource(resolution, unit));
+  }
+
   @Override
   public Class<TimeSourceService> getServiceType() {
     return TimeSourceService.class;
@@ -0,0 +1,136 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.loaderwriter;
+
+import org.ehcache.exceptions.BulkCacheWritingException;
+import org.ehcache.spi.loaderwriter.AsyncCacheLoaderWriter;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Exposes an {@link AsyncCacheLoaderWriter} as a {@link CacheLoaderWriter}.
+ * <P>
+ *   The blocking methods wait on the {@link Future} returned by the delegate and throw the cause of its failure.
+ *   The asynchronous methods are passed through, caches detecting them wait for completion outside of any store lock.
+ * </P>
+ */
+public class AsyncCacheLoaderWriterAdapter<K, V> implements CacheLoaderWriter<K, V>, AsyncCacheLoaderWriter<K, V> {
+
+  private final AsyncCacheLoaderWriter<K, V> delegate;
+
+  /**
+   * Creates a new adapter for the given asynchronous loader writer.
+   *
+   * @param delegate the asynchronous loader writer
+   */
+  public AsyncCacheLoaderWriterAdapter(AsyncCacheLoaderWriter<K, V> delegate) {
+    if (delegate == null) {
+      throw new NullPointerException("AsyncCacheLoaderWriter cannot be null");
+    }
+    this.delegate = delegate;
+  }
+
+  /**
+   * Returns the adapted asynchronous loader writer.
+   *
+   * @return the adapted loader writer
+   */
+  public AsyncCacheLoaderWriter<K, V> getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public V load(K key) throws Exception {
+    return await(delegate.loadAsync(key));
+  }
+
+  @Override
+  public Map<K, V> loadAll(Iterable<? extends K> keys) throws Exception {
+    return await(delegate.loadAllAsync(keys));
+  }
+
+  @Override
+  public void write(K key, V value) throws Exception {
+    await(delegate.writeAsync(key, value));
+  }
+
+  @Override
+  public void writeAll(Iterable<? extends Map.Entry<? extends K, ? extends V>> entries) throws BulkCacheWritingException, Exception {
+    await(delegate.writeAllAsync(entries));
+  }
+
+  @Override
+  public void delete(K key) throws Exception {
+    await(delegate.deleteAsync(key));
+  }
+
+  @Override
+  public void deleteAll(Iterable<? extends K> keys) throws BulkCacheWritingException, Exception {
+    await(delegate.deleteAllAsync(keys));
+  }
+
+  @Override
+  public Future<V> loadAsync(K key) throws Exception {
+    return delegate.loadAsync(key);
+  }
+
+  @Override
+  public Future<Map<K, V>> loadAllAsync(Iterable<? extends K> keys) throws Exception {
+    return delegate.loadAllAsync(keys);
+  }
+
+  @Override
+  public Future<Void> writeAsync(K key, V value) throws Exception {
+    return delegate.writeAsync(key, value);
+  }
+
+  @Override
+  public Future<Void> writeAllAsync(Iterable<? extends Map.Entry<? extends K, ? extends V>> entries) throws Exception {
+    return delegate.writeAllAsync(entries);
+  }
+
+  @Override
+  public Future<Void> deleteAsync(K key) throws Exception {
+    return delegate.deleteAsync(key);
+  }
+
+  @Override
+  public Future<Void> deleteAllAsync(Iterable<? extends K> keys) throws Exception {
+    return delegate.deleteAllAsync(keys);
+  }
+
+  private static <T> T await(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw e;
+      }
+    }
+  }
+}
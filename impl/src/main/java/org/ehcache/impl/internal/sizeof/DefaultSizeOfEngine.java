@@ -15,17 +15,27 @@
  */
 package org.ehcache.impl.internal.sizeof;
 
+import org.ehcache.core.spi.store.heap.HeapSized;
 import org.ehcache.core.spi.store.heap.LimitExceededException;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
+import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration.SizingMode;
 import org.ehcache.impl.internal.concurrent.ConcurrentHashMap;
 import org.ehcache.impl.copy.IdentityCopier;
 import org.ehcache.impl.internal.sizeof.listeners.EhcacheVisitorListener;
 import org.ehcache.impl.internal.sizeof.listeners.exceptions.VisitorListenerException;
 import org.ehcache.impl.internal.store.heap.holders.CopiedOnHeapKey;
+import org.ehcache.impl.internal.store.heap.holders.OnHeapValueHolder;
 import org.ehcache.sizeof.SizeOf;
 import org.ehcache.sizeof.SizeOfFilterSource;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.spi.store.heap.SizeOfEngine;
 
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration.DEFAULT_SAMPLING_INTERVAL;
+import static org.ehcache.impl.internal.sizeof.ShapeSizes.NOT_A_LEAF;
+
 /**
  * @author Abhilash
  *
@@ -38,22 +48,147 @@ public class DefaultSizeOfEngine implements SizeOfEngine {
   private final long chmTreeBinOffset;
   private final long onHeapKeyOffset;
   private final SizeOfFilterSource filterSource = new SizeOfFilterSource(true);
+  private final int samplingInterval;
+  private final boolean declaredSizes;
+  private final SizeOfFunction<?, ?> sizeOfFunction;
+  private final ShapeSizes shapeSizes;
+  private final ConcurrentMap<Class<?>, Sample> samples;
 
   public DefaultSizeOfEngine(long maxObjectGraphSize, long maxObjectSize) {
+    this(maxObjectGraphSize, maxObjectSize, SizingMode.DEEP, DEFAULT_SAMPLING_INTERVAL);
+  }
+
+  public DefaultSizeOfEngine(long maxObjectGraphSize, long maxObjectSize, SizingMode sizingMode, int samplingInterval) {
+    this(maxObjectGraphSize, maxObjectSize, sizingMode, samplingInterval, null);
+  }
+
+  public DefaultSizeOfEngine(long maxObjectGraphSize, long maxObjectSize, SizingMode sizingMode, int samplingInterval, SizeOfFunction<?, ?> sizeOfFunction) {
     this.maxObjectGraphSize = maxObjectGraphSize;
     this.maxObjectSize = maxObjectSize;
+    this.samplingInterval = samplingInterval;
+    this.declaredSizes = sizingMode == SizingMode.DECLARED;
+    this.sizeOfFunction = sizeOfFunction;
     this.sizeOf = SizeOf.newInstance(filterSource.getFilters());
     this.onHeapKeyOffset = sizeOf.deepSizeOf(new CopiedOnHeapKey(new Object(), new IdentityCopier()));
     this.chmTreeBinOffset = sizeOf.deepSizeOf(ConcurrentHashMap.FAKE_TREE_BIN);
+    this.shapeSizes = sizingMode == SizingMode.DEEP && sizeOfFunction == null ? null : new ShapeSizes(sizeOf);
+    this.samples = sizingMode == SizingMode.SAMPLED ? new ConcurrentHashMap<Class<?>, Sample>() : null;
   }
 
   @Override
   public <K, V> long sizeof(K key, Store.ValueHolder<V> holder) throws LimitExceededException {
+    if (shapeSizes != null && holder instanceof OnHeapValueHolder) {
+      // serialized holders retain no value object, their bytes are walked whatever the sizing mode or function
+      V value = ((OnHeapValueHolder<V>) holder).storedValue();
+      if (value != null) {
+        if (sizeOfFunction != null) {
+          return functionSizeof(key, holder, value) + this.chmTreeBinOffset + this.onHeapKeyOffset;
+        }
+        long keySize = shapeSize(key);
+        if (keySize != NOT_A_LEAF) {
+          return shapeSizeof(key, keySize, holder, value) + this.chmTreeBinOffset + this.onHeapKeyOffset;
+        }
+      }
+    }
+    return deepSizeof(key, holder) + this.chmTreeBinOffset + this.onHeapKeyOffset;
+  }
+
+  private <K, V> long deepSizeof(K key, Store.ValueHolder<V> holder) throws LimitExceededException {
     try {
-      return sizeOf.deepSizeOf(new EhcacheVisitorListener(maxObjectGraphSize, maxObjectSize), key, holder) + this.chmTreeBinOffset + this.onHeapKeyOffset;
+      return sizeOf.deepSizeOf(new EhcacheVisitorListener(maxObjectGraphSize, maxObjectSize), key, holder);
     } catch (VisitorListenerException e) {
       throw new LimitExceededException(e.getMessage());
     }
   }
 
+  private <K, V> long shapeSizeof(K key, long keySize, Store.ValueHolder<V> holder, V value) throws LimitExceededException {
+    long holderSize = shapeSizes.shallowSize(holder);
+    long objectCount = ShapeSizes.leafObjectCount(key) + 1;
+    long valueSize;
+    if (value == key) {
+      valueSize = 0;
+    } else {
+      valueSize = shapeSize(value);
+      if (valueSize == NOT_A_LEAF) {
+        if (samples == null || value instanceof String || value.getClass().isArray()) {
+          // variable length values cannot be sized from a per class sample
+          return deepSizeof(key, holder);
+        }
+        return sampledSizeof(key, keySize + holderSize, holder, value);
+      }
+      objectCount += ShapeSizes.leafObjectCount(value);
+    }
+    if (objectCount > maxObjectGraphSize) {
+      throw new LimitExceededException("Max Object Graph Size reached for the object : " + value);
+    }
+    long size = keySize + holderSize + valueSize;
+    if (size > maxObjectSize) {
+      throw new LimitExceededException("Max Object Size reached for the object : " + value);
+    }
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <K, V> long functionSizeof(K key, Store.ValueHolder<V> holder, V value) throws LimitExceededException {
+    long size = ((SizeOfFunction<K, V>) sizeOfFunction).sizeof(key, value) + shapeSizes.shallowSize(holder);
+    if (size > maxObjectSize) {
+      throw new LimitExceededException("Max Object Size reached for the object : " + value);
+    }
+    return size;
+  }
+
+  private long shapeSize(Object object) {
+    if (declaredSizes && object instanceof HeapSized) {
+      return ((HeapSized) object).heapSize();
+    }
+    return shapeSizes.leafSize(object);
+  }
+
+  private <K, V> long sampledSizeof(K key, long baseSize, Store.ValueHolder<V> holder, V value) throws LimitExceededException {
+    Class<?> type = value.getClass();
+    Sample sample = samples.get(type);
+    if (sample == null || sample.expired()) {
+      long size = deepSizeof(key, holder);
+      if (sample == null) {
+        samples.putIfAbsent(type, new Sample(size - baseSize, samplingInterval));
+      } else {
+        sample.update(size - baseSize);
+      }
+      return size;
+    } else {
+      long size = baseSize + sample.size;
+      if (size > maxObjectSize) {
+        throw new LimitExceededException("Max Object Size reached for the object : " + value);
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Last measured size of the values of a class, measured again once a number of values have been sized from it.
+   * <P>
+   *   Updates are racy: concurrent puts may measure the same class twice, which only costs the measurement.
+   * </P>
+   */
+  private static final class Sample {
+    private final int interval;
+    private final AtomicInteger remaining;
+    private volatile long size;
+
+    Sample(long size, int interval) {
+      this.size = size;
+      this.interval = interval;
+      this.remaining = new AtomicInteger(interval);
+    }
+
+    boolean expired() {
+      return remaining.decrementAndGet() < 0;
+    }
+
+    void update(long size) {
+      this.size = size;
+      remaining.set(interval);
+    }
+  }
+
 }
@@ -19,11 +19,16 @@ import org.ehcache.config.ResourceUnit;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.internal.service.ServiceLocator;
 import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration;
+import org.ehcache.impl.config.store.heap.SizeOfFunctionConfiguration;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.ehcache.core.spi.store.heap.SizeOfEngine;
 import org.ehcache.core.spi.store.heap.SizeOfEngineProvider;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
+
+import static org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration.DEFAULT_SAMPLING_INTERVAL;
+import static org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration.DEFAULT_SIZING_MODE;
 
 /**
  * @author Abhilash
@@ -56,10 +61,12 @@ public class DefaultSizeOfEngineProvider implements SizeOfEngineProvider {
       return new NoopSizeOfEngine(); // Noop Size of Engine
     }
     DefaultSizeOfEngineConfiguration config = ServiceLocator.findSingletonAmongst(DefaultSizeOfEngineConfiguration.class, serviceConfigs);
+    SizeOfFunctionConfiguration functionConfig = ServiceLocator.findSingletonAmongst(SizeOfFunctionConfiguration.class, (Object[]) serviceConfigs);
+    SizeOfFunction<?, ?> sizeOfFunction = functionConfig == null ? null : functionConfig.getSizeOfFunction();
     if(config != null) {
       long maxSize = config.getUnit().toBytes(config.getMaxObjectSize());
-      return new DefaultSizeOfEngine(config.getMaxObjectGraphSize(), maxSize);
+      return new DefaultSizeOfEngine(config.getMaxObjectGraphSize(), maxSize, config.getSizingMode(), config.getSamplingInterval(), sizeOfFunction);
     }
-    return new DefaultSizeOfEngine(maxObjectGraphSize, maxObjectSize);
+    return new DefaultSizeOfEngine(maxObjectGraphSize, maxObjectSize, DEFAULT_SIZING_MODE, DEFAULT_SAMPLING_INTERVAL, sizeOfFunction);
   }
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.sizeof;
+
+import org.ehcache.sizeof.SizeOf;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoized sizes of object shapes.
+ * <P>
+ *   Leaf objects - boxed primitives, primitive arrays and {@code String} - have a deep size that only depends on their
+ *   class and length. Their sizes are derived from the reflective sizing once, and only used if they agree with it
+ *   for every calibration length, so that unexpected JVM layouts fall back to walking the object graph. Boxed
+ *   primitives cached by their {@code valueOf} methods size to zero, as they do with the reflective sizing.
+ * </P>
+ */
+class ShapeSizes {
+
+  /**
+   * Marker returned for objects that are not leaves.
+   */
+  static final long NOT_A_LEAF = -1L;
+
+  private static final int CALIBRATION_LENGTH = 64;
+
+  /**
+   * Freshly allocated instances, the cached ones returned by {@code valueOf} are flyweights that size to nothing.
+   */
+  @SuppressWarnings("deprecation")
+  private static final Object[] BOXED_SAMPLES = {
+      new Boolean(true), new Byte((byte) 1), new Character('a'), new Short((short) 1000),
+      new Integer(1000), new Long(1000L), new Float(1f), new Double(1d)
+  };
+  private static final Class<?>[] ARRAY_COMPONENTS = {
+      boolean.class, byte.class, char.class, short.class, int.class, float.class, long.class, double.class
+  };
+  private static final int[] ARRAY_SCALES = {1, 1, 2, 2, 4, 4, 8, 8};
+
+  private final SizeOf sizeOf;
+  private final ConcurrentMap<Class<?>, Long> shallowSizes = new ConcurrentHashMap<Class<?>, Long>();
+  private final Map<Class<?>, Long> boxedSizes = new HashMap<Class<?>, Long>();
+  private final Map<Class<?>, ArrayShape> arrayShapes = new HashMap<Class<?>, ArrayShape>();
+  private final long stringSize;
+  private final ArrayShape stringValueShape;
+
+  ShapeSizes(SizeOf sizeOf) {
+    this.sizeOf = sizeOf;
+    for (Object sample : BOXED_SAMPLES) {
+      long size = sizeOf.sizeOf(sample);
+      if (size == sizeOf.deepSizeOf(sample)) {
+        boxedSizes.put(sample.getClass(), size);
+      }
+    }
+    long alignment = alignment();
+    for (int i = 0; i < ARRAY_COMPONENTS.length; i++) {
+      ArrayShape shape = calibrate(ARRAY_COMPONENTS[i], ARRAY_SCALES[i], alignment);
+      if (shape != null) {
+        arrayShapes.put(Array.newInstance(ARRAY_COMPONENTS[i], 0).getClass(), shape);
+      }
+    }
+    this.stringSize = sizeOf.sizeOf("");
+    this.stringValueShape = calibrateString(arrayShapes.get(char[].class));
+  }
+
+  /**
+   * Returns the deep size of a leaf object.
+   *
+   * @param object the object to size
+   * @return the deep size, or {@link #NOT_A_LEAF} if the object is not a known leaf
+   */
+  long leafSize(Object object) {
+    Class<?> type = object.getClass();
+    if (type == String.class) {
+      return stringValueShape == null ? NOT_A_LEAF : stringSize + stringValueShape.size(((String) object).length());
+    } else if (type.isArray()) {
+      ArrayShape shape = arrayShapes.get(type);
+      return shape == null ? NOT_A_LEAF : shape.size(Array.getLength(object));
+    } else {
+      Long size = boxedSizes.get(type);
+      if (size == null) {
+        return NOT_A_LEAF;
+      }
+      return isFlyweight(object) ? 0L : size;
+    }
+  }
+
+  /**
+   * Tells whether a boxed primitive is one of the instances cached by its {@code valueOf} method, which the reflective
+   * sizing treats as shared and does not count.
+   *
+   * @param boxed a boxed primitive
+   * @return {@code true} if the instance is a cached flyweight
+   */
+  static boolean isFlyweight(Object boxed) {
+    if (boxed instanceof Boolean) {
+      return boxed == Boolean.TRUE || boxed == Boolean.FALSE;
+    } else if (boxed instanceof Byte) {
+      return boxed == Byte.valueOf((Byte) boxed);
+    } else if (boxed instanceof Character) {
+      char value = (Character) boxed;
+      return value <= 127 && boxed == Character.valueOf(value);
+    } else if (boxed instanceof Short) {
+      short value = (Short) boxed;
+      return value >= -128 && value <= 127 && boxed == Short.valueOf(value);
+    } else if (boxed instanceof Integer) {
+      int value = (Integer) boxed;
+      return value >= -128 && value <= 127 && boxed == Integer.valueOf(value);
+    } else if (boxed instanceof Long) {
+      long value = (Long) boxed;
+      return value >= -128 && value <= 127 && boxed == Long.valueOf(value);
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the number of objects the deep size of a leaf accounts for.
+   *
+   * @param object a leaf object
+   * @return the object count
+   */
+  static int leafObjectCount(Object object) {
+    return object instanceof String ? 2 : 1;
+  }
+
+  /**
+   * Returns the shallow size of the given object, memoized per class.
+   *
+   * @param object the object to size
+   * @return the shallow size
+   */
+  long shallowSize(Object object) {
+    Class<?> type = object.getClass();
+    Long size = shallowSizes.get(type);
+    if (size == null) {
+      size = sizeOf.sizeOf(object);
+      shallowSizes.putIfAbsent(type, size);
+    }
+    return size;
+  }
+
+  private long alignment() {
+    long alignment = Long.MAX_VALUE;
+    long previous = sizeOf.sizeOf(new byte[0]);
+    for (int i = 1; i <= CALIBRATION_LENGTH; i++) {
+      long size = sizeOf.sizeOf(new byte[i]);
+      if (size != previous) {
+        alignment = Math.min(alignment, size - previous);
+        previous = size;
+      }
+    }
+    return alignment == Long.MAX_VALUE ? 8L : alignment;
+  }
+
+  private ArrayShape calibrate(Class<?> component, int scale, long alignment) {
+    long empty = sizeOf.sizeOf(Array.newInstance(component, 0));
+    int fitting = 0;
+    while (fitting < CALIBRATION_LENGTH && sizeOf.sizeOf(Array.newInstance(component, fitting + 1)) == empty) {
+      fitting++;
+    }
+    ArrayShape shape = new ArrayShape(empty - fitting * scale, scale, alignment);
+    for (int i = 0; i <= CALIBRATION_LENGTH; i++) {
+      if (shape.size(i) != sizeOf.sizeOf(Array.newInstance(component, i))) {
+        return null;
+      }
+    }
+    return shape;
+  }
+
+  private ArrayShape calibrateString(ArrayShape charArrayShape) {
+    if (charArrayShape == null) {
+      return null;
+    }
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i <= CALIBRATION_LENGTH; i++) {
+      if (stringSize + charArrayShape.size(i) != sizeOf.deepSizeOf(builder.toString())) {
+        return null;
+      }
+      builder.append((char) ('a' + i % 26));
+    }
+    return charArrayShape;
+  }
+
+  private static final class ArrayShape {
+    private final long base;
+    private final long scale;
+    private final long alignment;
+
+    ArrayShape(long base, long scale, long alignment) {
+      this.base = base;
+      this.scale = scale;
+      this.alignment = alignment;
+    }
+
+    long size(int length) {
+      long size = base + length * scale;
+      return (size + alignment - 1) / alignment * alignment;
+    }
+  }
+}
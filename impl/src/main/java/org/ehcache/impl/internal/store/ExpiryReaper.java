@@ -0,0 +1,227 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store;
+
+import org.ehcache.core.spi.time.TimeSource;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.statistics.StatisticsManager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background task incrementally removing the expired mappings of a store.
+ * <P>
+ *   Expired mappings are otherwise only removed when an operation touches them, so stores with short lived mappings
+ *   and sparse reads keep dead mappings around. Each run of the reaper asks the store to resume its sweep until the
+ *   run time budget is spent, the store being responsible for remembering where the sweep stopped.
+ * </P>
+ * <P>
+ *   The reaper registers the {@code expiryReaperScannedMappings}, {@code expiryReaperExpiredMappings},
+ *   {@code expiryReaperReclaimedBytes} and {@code expiryReaperScanRate} statistics on the store.
+ * </P>
+ */
+public final class ExpiryReaper implements Runnable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ExpiryReaper.class);
+
+  private final Sweepable store;
+  private final TimeSource timeSource;
+  private final ScheduledExecutorService executor;
+  private final long intervalNanos;
+  private final long timeBudgetNanos;
+
+  private final AtomicLong scannedMappings = new AtomicLong();
+  private final AtomicLong expiredMappings = new AtomicLong();
+  private final AtomicLong reclaimedBytes = new AtomicLong();
+  private volatile long scanRate;
+
+  /**
+   * Creates a new reaper, registering its statistics against the given context.
+   *
+   * @param store the store to sweep
+   * @param timeSource the time source expiry is checked against
+   * @param executor the executor running the reaper, shut down when the reaper is stopped
+   * @param configuration the reaper settings
+   * @param statisticsContext the object the reaper statistics are attached to
+   * @param statisticsTag the tag of the reaper statistics
+   */
+  public ExpiryReaper(Sweepable store, TimeSource timeSource, ScheduledExecutorService executor, ExpiryReaperConfiguration configuration,
+                      Object statisticsContext, String statisticsTag) {
+    this.store = store;
+    this.timeSource = timeSource;
+    this.executor = executor;
+    this.intervalNanos = configuration.getUnit().toNanos(configuration.getInterval());
+    this.timeBudgetNanos = configuration.getUnit().toNanos(configuration.getTimeBudget());
+
+    Set<String> tags = Collections.singleton(statisticsTag);
+    StatisticsManager.createPassThroughStatistic(statisticsContext, "expiryReaperScannedMappings", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return scannedMappings.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(statisticsContext, "expiryReaperExpiredMappings", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return expiredMappings.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(statisticsContext, "expiryReaperReclaimedBytes", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return reclaimedBytes.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(statisticsContext, "expiryReaperScanRate", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return scanRate;
+      }
+    });
+  }
+
+  /**
+   * Schedules the periodic reaper runs.
+   */
+  public void start() {
+    try {
+      executor.scheduleWithFixedDelay(this, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Expiry reaper could not be scheduled, expired mappings will only be removed when accessed", e);
+    }
+  }
+
+  /**
+   * Cancels the reaper runs, interrupting the current one if any.
+   */
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Runs a single sweep of the store, bounded by the time budget.
+   */
+  @Override
+  public void run() {
+    Progress progress = new Progress();
+    long start = System.nanoTime();
+    try {
+      store.sweep(timeSource.getTimeMillis(), start + timeBudgetNanos, progress);
+    } catch (RuntimeException re) {
+      // Letting the exception escape would cancel all subsequent runs
+      LOG.warn("Expiry reaper run failed", re);
+    }
+    long elapsed = Math.max(System.nanoTime() - start, 1L);
+    scannedMappings.addAndGet(progress.scanned);
+    expiredMappings.addAndGet(progress.expired);
+    reclaimedBytes.addAndGet(progress.reclaimedBytes);
+    scanRate = progress.scanned * TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  /**
+   * Returns the number of mappings scanned since the reaper was created.
+   *
+   * @return the scanned mapping count
+   */
+  public long getScannedMappings() {
+    return scannedMappings.get();
+  }
+
+  /**
+   * Returns the number of expired mappings removed since the reaper was created.
+   *
+   * @return the expired mapping count
+   */
+  public long getExpiredMappings() {
+    return expiredMappings.get();
+  }
+
+  /**
+   * Returns the number of bytes freed by the removal of expired mappings since the reaper was created.
+   *
+   * @return the reclaimed bytes, only accounted for when the store knows the size of its mappings
+   */
+  public long getReclaimedBytes() {
+    return reclaimedBytes.get();
+  }
+
+  /**
+   * Returns the scan rate of the last run.
+   *
+   * @return the number of mappings scanned per second during the last run
+   */
+  public long getScanRate() {
+    return scanRate;
+  }
+
+  /**
+   * The store side of the reaper.
+   */
+  public interface Sweepable {
+
+    /**
+     * Resumes the sweep of the store mappings, removing the expired ones and firing the matching expiry events.
+     * <P>
+     *   Implementations stop once the deadline has passed, but always make some progress, or once a whole pass
+     *   over the mappings has completed.
+     * </P>
+     *
+     * @param now the current time, in milliseconds, expiry is checked against
+     * @param deadline the {@link System#nanoTime()} value at which the sweep should stop
+     * @param progress the run progress to report to
+     */
+    void sweep(long now, long deadline, Progress progress);
+  }
+
+  /**
+   * Progress of a single reaper run.
+   */
+  public static final class Progress {
+
+    private long scanned;
+    private long expired;
+    private long reclaimedBytes;
+
+    /**
+     * Records scanned mappings.
+     *
+     * @param mappings the number of mappings scanned
+     */
+    public void scanned(int mappings) {
+      scanned += mappings;
+    }
+
+    /**
+     * Records removed expired mappings.
+     *
+     * @param mappings the number of mappings removed
+     * @param bytes the number of bytes freed by their removal, {@code 0} if unknown
+     */
+    public void expired(int mappings, long bytes) {
+      expired += mappings;
+      reclaimedBytes += bytes;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store;
+
+/**
+ * A count-min sketch of 4-bit counters estimating how often keys were accessed.
+ * <P>
+ *   Each key is mapped to four counters, its frequency being the minimum of them. Once the number of increments
+ *   reaches ten times the configured size, all counters are halved so that the sketch ages out stale popularity.
+ * </P>
+ * <P>
+ *   Updates are not synchronized: concurrent increments may be lost, which only makes the estimate slightly lower.
+ * </P>
+ */
+public final class FrequencySketch {
+
+  public static final int DEFAULT_SIZE = 4096;
+  public static final int MAX_FREQUENCY = 15;
+
+  private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * Creates a sketch suited to tracking the given number of keys.
+   *
+   * @param expectedKeys the expected number of distinct keys, or a negative value if unknown
+   */
+  public FrequencySketch(long expectedKeys) {
+    int size = expectedKeys <= 0 ? DEFAULT_SIZE : (int) Math.min(Math.max(expectedKeys, 16L), 1 << 30);
+    this.table = new long[ceilingPowerOfTwo(size)];
+    this.tableMask = table.length - 1;
+    this.sampleSize = 10 * size;
+  }
+
+  /**
+   * Returns the estimated number of accesses to the key, capped at {@link #MAX_FREQUENCY}.
+   *
+   * @param key the key to look up
+   * @return the estimated frequency
+   */
+  public int frequency(Object key) {
+    return frequency(key.hashCode());
+  }
+
+  /**
+   * Returns the estimated number of accesses to the key with the given hash code, capped at {@link #MAX_FREQUENCY}.
+   *
+   * @param keyHashCode the {@link Object#hashCode() hash code} of the key to look up
+   * @return the estimated frequency
+   */
+  public int frequency(int keyHashCode) {
+    int hash = spread(keyHashCode);
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      long word = table[indexOf(hash, i)];
+      int count = (int) ((word >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Records an access to the key.
+   *
+   * @param key the accessed key
+   */
+  public void increment(Object key) {
+    increment(key.hashCode());
+  }
+
+  /**
+   * Records an access to the key with the given hash code.
+   *
+   * @param keyHashCode the {@link Object#hashCode() hash code} of the accessed key
+   */
+  public void increment(int keyHashCode) {
+    int hash = spread(keyHashCode);
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    long word = table[index];
+    if ((word & mask) != mask) {
+      table[index] = word + (1L << offset);
+      return true;
+    }
+    return false;
+  }
+
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions = (additions >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private static int ceilingPowerOfTwo(int x) {
+    return 1 << -Integer.numberOfLeadingZeros(x - 1);
+  }
+}
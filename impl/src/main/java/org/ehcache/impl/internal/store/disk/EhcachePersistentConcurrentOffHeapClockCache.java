@@ -25,11 +25,14 @@ import org.terracotta.offheapstore.Metadata;
 import org.terracotta.offheapstore.MetadataTuple;
 import org.terracotta.offheapstore.Segment;
 import org.terracotta.offheapstore.disk.persistent.AbstractPersistentConcurrentOffHeapCache;
+import org.terracotta.offheapstore.disk.persistent.Persistent;
 
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import static org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment.VETOED;
 import static org.terracotta.offheapstore.Metadata.PINNED;
@@ -41,6 +44,11 @@ import static org.terracotta.offheapstore.MetadataTuple.metadataTuple;
  */
 public class EhcachePersistentConcurrentOffHeapClockCache<K, V> extends AbstractPersistentConcurrentOffHeapCache<K, V> implements EhcacheOffHeapBackingMap<K, V> {
 
+  /**
+   * Magic number heading the index written by {@link #persist(java.io.ObjectOutput)}, checked when reading it back.
+   */
+  private static final int INDEX_MAGIC = 1463898953;
+
   private final EvictionVeto<? super K, ? super V> evictionVeto;
   private final AtomicLong[] counters;
 
@@ -246,4 +254,34 @@ public class EhcachePersistentConcurrentOffHeapClockCache<K, V> extends Abstract
   public long nextIdFor(final K key) {
     return counters[getIndexFor(key.hashCode())].getAndIncrement();
   }
+
+  @Override
+  public int segmentIndexFor(K key) {
+    return getIndexFor(key.hashCode());
+  }
+
+  /**
+   * Writes the same index as {@link #persist(java.io.ObjectOutput)} while the map remains in use.
+   * <P>
+   *   Segments are handled one at a time under their write lock, their pending writes being flushed first so that
+   *   their part of the index only references data already handed to the file system.
+   * </P>
+   *
+   * @param output the stream to write the index to
+   * @throws IOException if the index cannot be written
+   */
+  public void checkpoint(ObjectOutput output) throws IOException {
+    output.writeInt(INDEX_MAGIC);
+    output.writeInt(segments.length);
+    for (Segment<K, V> segment : segments) {
+      Lock lock = segment.writeLock();
+      lock.lock();
+      try {
+        ((Persistent) segment).flush();
+        ((Persistent) segment).persist(output);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
 }
@@ -22,6 +22,8 @@ import org.ehcache.config.Eviction;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourceType;
+import org.ehcache.impl.config.store.ValueCompressionConfiguration;
+import org.ehcache.impl.config.store.disk.OffHeapDiskStoreCheckpointConfiguration;
 import org.ehcache.impl.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.events.StoreEventDispatcher;
@@ -33,6 +35,7 @@ import org.ehcache.impl.internal.store.offheap.EhcacheOffHeapBackingMap;
 import org.ehcache.impl.internal.store.offheap.OffHeapValueHolder;
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
 import org.ehcache.impl.internal.store.offheap.portability.SerializerPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompression;
 import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.core.spi.time.TimeSourceService;
 import org.ehcache.spi.ServiceProvider;
@@ -50,6 +53,7 @@ import org.ehcache.spi.service.ServiceDependencies;
 import org.ehcache.core.internal.util.ConcurrentWeakIdentityHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terracotta.offheapstore.Segment;
 import org.terracotta.offheapstore.disk.paging.MappedPageSource;
 import org.terracotta.offheapstore.disk.persistent.Persistent;
 import org.terracotta.offheapstore.disk.persistent.PersistentPortability;
@@ -57,6 +61,8 @@ import org.terracotta.offheapstore.disk.storage.FileBackedStorageEngine;
 import org.terracotta.offheapstore.storage.portability.Portability;
 import org.terracotta.offheapstore.util.Factory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -71,6 +77,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -93,17 +101,29 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
   private final ExecutionService executionService;
   private final String threadPoolAlias;
   private final int writerConcurrency;
+  private final OffHeapDiskStoreCheckpointConfiguration checkpointConfiguration;
+  private final Object checkpointLock = new Object();
+  private volatile ValueCompression valueCompression;
+  private volatile ScheduledExecutorService checkpointExecutor;
 
   private volatile EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> map;
 
   public OffHeapDiskStore(FileBasedPersistenceContext fileBasedPersistenceContext,
                           ExecutionService executionService, String threadPoolAlias, int writerConcurrency,
                           final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes) {
+    this(fileBasedPersistenceContext, executionService, threadPoolAlias, writerConcurrency, config, timeSource, eventDispatcher, sizeInBytes, null);
+  }
+
+  public OffHeapDiskStore(FileBasedPersistenceContext fileBasedPersistenceContext,
+                          ExecutionService executionService, String threadPoolAlias, int writerConcurrency,
+                          final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes,
+                          OffHeapDiskStoreCheckpointConfiguration checkpointConfiguration) {
     super("local-disk", config, timeSource, eventDispatcher);
     this.fileBasedPersistenceContext = fileBasedPersistenceContext;
     this.executionService = executionService;
     this.threadPoolAlias = threadPoolAlias;
     this.writerConcurrency = writerConcurrency;
+    this.checkpointConfiguration = checkpointConfiguration;
 
     EvictionVeto<? super K, ? super V> veto = config.getEvictionVeto();
     if (veto != null) {
@@ -135,6 +155,10 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
       } catch (IOException ex) {
         throw new RuntimeException(ex);
       }
+    } else if (dataFile.isFile() && checkpointConfiguration != null && getCheckpointFile().isFile()) {
+      LOGGER.warn("There is no index for data file {}, probably due to an unclean shutdown. Recovering the mappings of the last checkpoint.",
+                  dataFile.getName());
+      return salvageBackingMap(size, keySerializer, valueSerializer, evictionVeto, getCheckpointFile());
     } else {
       return createBackingMap(size, keySerializer, valueSerializer, evictionVeto);
     }
@@ -154,6 +178,16 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
         LOGGER.info("The index for data file {} is more recent than the data file itself by {}ms : this is harmless.",
                     dataFile.getName(), -delta);
       } else if (delta > TimeUnit.SECONDS.toMillis(1)) {
+        if (checkpointConfiguration != null) {
+          LOGGER.warn("The index for data file {} is out of date by {}ms, probably due to an unclean shutdown. Recovering the mappings of the last checkpoint.",
+                      dataFile.getName(), delta);
+          File checkpointFile = getCheckpointFile();
+          if (checkpointFile.isFile() && readTimestamp(checkpointFile) > dataTimestampFromIndex) {
+            return salvageBackingMap(size, keySerializer, valueSerializer, evictionVeto, checkpointFile);
+          } else {
+            return salvageBackingMap(size, keySerializer, valueSerializer, evictionVeto, indexFile);
+          }
+        }
         LOGGER.warn("The index for data file {} is out of date by {}ms, probably due to an unclean shutdown. Creating a new empty store.",
                     dataFile.getName(), delta);
         return createBackingMap(size, keySerializer, valueSerializer, evictionVeto);
@@ -165,7 +199,7 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
       MappedPageSource source = new MappedPageSource(dataFile, false, size);
       try {
         PersistentPortability<K> keyPortability = persistent(new SerializerPortability<K>(keySerializer));
-        PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer));
+        PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer, false, valueCompression, checksums()));
         DiskWriteThreadPool writeWorkers = new DiskWriteThreadPool(executionService, threadPoolAlias, writerConcurrency);
 
         Factory<FileBackedStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = FileBackedStorageEngine.createFactory(source,
@@ -206,7 +240,7 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
       throw new RuntimeException(e);
     }
     PersistentPortability<K> keyPortability = persistent(new SerializerPortability<K>(keySerializer));
-    PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer));
+    PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer, false, valueCompression, checksums()));
     DiskWriteThreadPool writeWorkers = new DiskWriteThreadPool(executionService, threadPoolAlias, writerConcurrency);
 
     Factory<FileBackedStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = FileBackedStorageEngine.createFactory(source,
@@ -222,6 +256,200 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
   }
 
+  private OffHeapValueHolderPortability.Checksums checksums() {
+    // checksums are what allows recovering from a checkpoint safely
+    return checkpointConfiguration == null ? OffHeapValueHolderPortability.Checksums.NONE : OffHeapValueHolderPortability.Checksums.STORED;
+  }
+
+  /**
+   * Creates a new backing map holding the mappings of the given index that are still intact in the data file.
+   * <P>
+   *   After an unclean shutdown, the data file may have changed since the index was written: space freed since then
+   *   may have been reused and writes may have been lost. The data file is thus moved aside and only the mappings
+   *   whose key leads back to them and whose value checksum matches are copied to the new backing map.
+   * </P>
+   */
+  private EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> salvageBackingMap(long size, Serializer<K> keySerializer, Serializer<V> valueSerializer, EvictionVeto<K, OffHeapValueHolder<V>> evictionVeto, File index) {
+    File dataFile = getDataFile();
+    File salvageFile = getSalvageFile();
+    if (salvageFile.exists() && !salvageFile.delete()) {
+      LOGGER.warn("Unable to delete {}, creating a new empty store.", salvageFile.getName());
+      return createBackingMap(size, keySerializer, valueSerializer, evictionVeto);
+    }
+    if (!dataFile.renameTo(salvageFile)) {
+      LOGGER.warn("Unable to move data file {} aside, creating a new empty store.", dataFile.getName());
+      return createBackingMap(size, keySerializer, valueSerializer, evictionVeto);
+    }
+
+    EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> backingMap = createBackingMap(size, keySerializer, valueSerializer, evictionVeto);
+    try {
+      copyVerifiedMappings(salvageFile, index, size, keySerializer, valueSerializer, evictionVeto, backingMap);
+      LOGGER.info("Recovered {} mappings of data file {} from {}.", backingMap.longSize(), dataFile.getName(), index.getName());
+    } catch (Exception e) {
+      LOGGER.warn("Recovery of data file {} from {} stopped after {} mappings. " + e.getMessage(),
+                  dataFile.getName(), index.getName(), backingMap.longSize());
+      LOGGER.debug("Exception during recovery", e);
+    } finally {
+      if (!salvageFile.delete()) {
+        LOGGER.warn("Unable to delete {} after recovery.", salvageFile.getAbsolutePath());
+      }
+    }
+    return backingMap;
+  }
+
+  private void copyVerifiedMappings(File salvageFile, File index, long size, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                    EvictionVeto<K, OffHeapValueHolder<V>> evictionVeto,
+                                    EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> target) throws IOException {
+    FileInputStream fin = new FileInputStream(index);
+    try {
+      ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(fin));
+      input.readLong();
+
+      MappedPageSource source = new MappedPageSource(salvageFile, false, size);
+      EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> salvaged;
+      try {
+        PersistentPortability<K> keyPortability = persistent(new SerializerPortability<K>(keySerializer));
+        PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer, false, null,
+            OffHeapValueHolderPortability.Checksums.VERIFIED));
+        DiskWriteThreadPool writeWorkers = new DiskWriteThreadPool(executionService, threadPoolAlias, writerConcurrency);
+
+        Factory<FileBackedStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = FileBackedStorageEngine.createFactory(source,
+            keyPortability, elementPortability, writeWorkers, false);
+
+        EhcachePersistentSegmentFactory<K, OffHeapValueHolder<V>> factory = new EhcachePersistentSegmentFactory<K, OffHeapValueHolder<V>>(
+            source,
+            storageEngineFactory,
+            64,
+            evictionVeto,
+            mapEvictionListener, false);
+        salvaged = new EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>>(input, evictionVeto, factory);
+        salvaged.bootstrap(input);
+      } catch (IOException e) {
+        source.close();
+        throw e;
+      }
+
+      try {
+        for (Segment<K, OffHeapValueHolder<V>> segment : salvaged.getSegments()) {
+          copyVerifiedMappings(segment, salvaged, target);
+        }
+      } finally {
+        salvaged.close();
+      }
+    } finally {
+      fin.close();
+    }
+  }
+
+  private static <K, V> void copyVerifiedMappings(Segment<K, OffHeapValueHolder<V>> segment,
+                                                  EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> source,
+                                                  EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> target) {
+    java.util.Iterator<K> keys = null;
+    while (true) {
+      K key;
+      try {
+        // creating the iterator already reads the first key
+        if (keys == null) {
+          keys = segment.keySet().iterator();
+        }
+        if (!keys.hasNext()) {
+          return;
+        }
+        key = keys.next();
+      } catch (RuntimeException e) {
+        LOGGER.debug("Unreadable key, skipping the rest of the segment", e);
+        return;
+      }
+      try {
+        // a key read from reused space does not lead back to its slot
+        OffHeapValueHolder<V> valueHolder = source.get(key);
+        if (valueHolder != null) {
+          target.put(key, detach(valueHolder));
+        }
+      } catch (RuntimeException e) {
+        LOGGER.debug("Mapping failing verification, skipping it", e);
+      }
+    }
+  }
+
+  /**
+   * Writes the index of the current mappings to the checkpoint file, replacing the previous checkpoint once complete.
+   *
+   * @throws IOException if the checkpoint cannot be written
+   */
+  void checkpoint() throws IOException {
+    synchronized (checkpointLock) {
+      EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> localMap = map;
+      if (localMap == null) {
+        return;
+      }
+      File checkpointFile = getCheckpointFile();
+      File temporaryFile = new File(checkpointFile.getPath() + ".tmp");
+      FileOutputStream fout = new FileOutputStream(temporaryFile);
+      try {
+        ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(fout));
+        output.writeLong(System.currentTimeMillis());
+        localMap.checkpoint(output);
+        output.flush();
+        fout.getFD().sync();
+      } finally {
+        fout.close();
+      }
+      if (!temporaryFile.renameTo(checkpointFile)) {
+        // renaming does not replace an existing file on every platform
+        if (!checkpointFile.delete() || !temporaryFile.renameTo(checkpointFile)) {
+          throw new IOException("Unable to replace checkpoint " + checkpointFile.getAbsolutePath());
+        }
+      }
+    }
+  }
+
+  private void startCheckpoints() {
+    OffHeapDiskStoreCheckpointConfiguration configuration = checkpointConfiguration;
+    if (configuration == null) {
+      return;
+    }
+    ScheduledExecutorService executor = executionService.getScheduledExecutor(threadPoolAlias);
+    long intervalNanos = configuration.getUnit().toNanos(configuration.getInterval());
+    try {
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            checkpoint();
+          } catch (Exception e) {
+            LOGGER.warn("Checkpoint of data file {} failed, recovery after an unclean shutdown will use the previous one",
+                getDataFile().getName(), e);
+          }
+        }
+      }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+      checkpointExecutor = executor;
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Checkpoints could not be scheduled, data file {} will not be recovered after an unclean shutdown",
+          getDataFile().getName(), e);
+    }
+  }
+
+  private void stopCheckpoints() {
+    ScheduledExecutorService executor = checkpointExecutor;
+    if (executor != null) {
+      checkpointExecutor = null;
+      // not interrupting a running checkpoint, which would close the channels of the data file
+      executor.shutdown();
+    }
+  }
+
+  private static long readTimestamp(File index) throws IOException {
+    FileInputStream fin = new FileInputStream(index);
+    try {
+      return new ObjectInputStream(fin).readLong();
+    } catch (IOException e) {
+      return Long.MIN_VALUE;
+    } finally {
+      fin.close();
+    }
+  }
+
   @Override
   protected EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> backingMap() {
     return map;
@@ -235,6 +463,14 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
     return new File(fileBasedPersistenceContext.getDirectory(), "ehcache-disk-store.index");
   }
 
+  private File getCheckpointFile() {
+    return new File(fileBasedPersistenceContext.getDirectory(), "ehcache-disk-store.checkpoint");
+  }
+
+  private File getSalvageFile() {
+    return new File(fileBasedPersistenceContext.getDirectory(), "ehcache-disk-store.data.salvage");
+  }
+
   @ServiceDependencies({TimeSourceService.class, SerializationProvider.class, ExecutionService.class})
   public static class Provider implements Store.Provider, AuthoritativeTier.Provider {
 
@@ -280,7 +516,7 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
       String threadPoolAlias;
       int writerConcurrency;
-      OffHeapDiskStoreConfiguration config = findSingletonAmongst(OffHeapDiskStoreConfiguration.class, serviceConfigs);
+      OffHeapDiskStoreConfiguration config = findSingletonAmongst(OffHeapDiskStoreConfiguration.class, (Object[]) serviceConfigs);
       if (config == null) {
         threadPoolAlias = defaultThreadPool;
         writerConcurrency = 1;
@@ -294,7 +530,12 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
         OffHeapDiskStore<K, V> offHeapStore = new OffHeapDiskStore<K, V>(persistenceContext,
                 executionService, threadPoolAlias, writerConcurrency,
-                storeConfig, timeSource, eventDispatcher, unit.toBytes(diskPool.getSize()));
+                storeConfig, timeSource, eventDispatcher, unit.toBytes(diskPool.getSize()),
+                findSingletonAmongst(OffHeapDiskStoreCheckpointConfiguration.class, (Object[]) serviceConfigs));
+        ValueCompressionConfiguration compressionConfiguration = findSingletonAmongst(ValueCompressionConfiguration.class, (Object[]) serviceConfigs);
+        if (compressionConfiguration != null && compressionConfiguration.isCompressing(ResourceType.Core.DISK)) {
+          offHeapStore.valueCompression = offHeapStore.createValueCompression(compressionConfiguration.getThreshold());
+        }
         createdStores.add(offHeapStore);
         return offHeapStore;
       } catch (CachePersistenceException cpex) {
@@ -315,18 +556,23 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
     }
 
     static <K, V> void close(final OffHeapDiskStore<K, V> resource) throws IOException {
-      EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> localMap = resource.map;
-      if (localMap != null) {
-        resource.map = null;
-        localMap.flush();
-        ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(resource.getIndexFile()));
-        try {
-          output.writeLong(System.currentTimeMillis());
-          localMap.persist(output);
-        } finally {
-          output.close();
+      resource.stopCheckpoints();
+      synchronized (resource.checkpointLock) {
+        EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> localMap = resource.map;
+        if (localMap != null) {
+          resource.map = null;
+          localMap.flush();
+          ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(resource.getIndexFile()));
+          try {
+            output.writeLong(System.currentTimeMillis());
+            localMap.persist(output);
+          } finally {
+            output.close();
+          }
+          localMap.close();
+          // the index now supersedes any checkpoint
+          resource.getCheckpointFile().delete();
         }
-        localMap.close();
       }
     }
 
@@ -335,7 +581,9 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
       if (!createdStores.contains(resource)) {
         throw new IllegalArgumentException("Given store is not managed by this provider : " + resource);
       }
-      init((OffHeapDiskStore)resource);
+      OffHeapDiskStore<?, ?> diskStore = (OffHeapDiskStore) resource;
+      init(diskStore);
+      diskStore.startCheckpoints();
     }
 
     static <K, V> void init(final OffHeapDiskStore<K, V> resource) {
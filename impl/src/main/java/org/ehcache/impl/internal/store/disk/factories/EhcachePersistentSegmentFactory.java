@@ -19,6 +19,7 @@ package org.ehcache.impl.internal.store.disk.factories;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment;
 import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment.EvictionListener;
+import org.ehcache.impl.internal.store.offheap.factories.SlottedSegment;
 import org.terracotta.offheapstore.Metadata;
 import org.terracotta.offheapstore.disk.paging.MappedPageSource;
 import org.terracotta.offheapstore.disk.persistent.PersistentReadWriteLockedOffHeapClockCache;
@@ -26,6 +27,7 @@ import org.terracotta.offheapstore.disk.persistent.PersistentStorageEngine;
 import org.terracotta.offheapstore.pinning.PinnableSegment;
 import org.terracotta.offheapstore.util.Factory;
 
+import java.nio.IntBuffer;
 import java.util.concurrent.locks.Lock;
 
 import static org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment.VETOED;
@@ -64,7 +66,7 @@ public class EhcachePersistentSegmentFactory<K, V> implements Factory<PinnableSe
     }
   }
 
-  public static class EhcachePersistentSegment<K, V> extends PersistentReadWriteLockedOffHeapClockCache<K, V> {
+  public static class EhcachePersistentSegment<K, V> extends PersistentReadWriteLockedOffHeapClockCache<K, V> implements SlottedSegment<K, V> {
 
     private final EvictionVeto<? super K, ? super V> evictionVeto;
     private final EvictionListener<K, V> evictionListener;
@@ -96,6 +98,24 @@ public class EhcachePersistentSegmentFactory<K, V> implements Factory<PinnableSe
       return super.evictable(status) && ((status & VETOED) == 0);
     }
 
+    @Override
+    public V getValueAtSlot(int slot) {
+      IntBuffer table = hashtable;
+      int offset = slot * ENTRY_SIZE;
+      if (table == null || offset >= table.capacity() || (table.get(offset + STATUS) & STATUS_USED) == 0) {
+        return null;
+      }
+      return getAtTableOffset(offset);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public K getKeyAtSlot(int slot) {
+      int offset = slot * ENTRY_SIZE;
+      IntBuffer entry = ((IntBuffer) hashtable.duplicate().position(offset).limit(offset + ENTRY_SIZE)).slice();
+      return (K) storageEngine.readKey(readLong(entry, ENCODING), entry.get(KEY_HASHCODE));
+    }
+
     @Override
     public boolean evict(int index, boolean shrink) {
       Lock lock = writeLock();
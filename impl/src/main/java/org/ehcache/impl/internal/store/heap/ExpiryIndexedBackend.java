@@ -0,0 +1,142 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.config.EvictionVeto;
+import org.ehcache.core.spi.function.BiFunction;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.impl.internal.store.heap.holders.OnHeapValueHolder;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Backend removing keys from the expiry index whenever their mapping is removed, whatever the removal path.
+ * <P>
+ *   Removals done by compute functions are unindexed from within the function, while the key cannot be written
+ *   concurrently, so that a mapping installed right after cannot lose its schedule.
+ * </P>
+ */
+class ExpiryIndexedBackend<K, V> implements Backend<K, V> {
+
+  private final Backend<K, V> delegate;
+  private final StripedTimerWheel<K> index;
+
+  ExpiryIndexedBackend(Backend<K, V> delegate, StripedTimerWheel<K> index) {
+    this.delegate = delegate;
+    this.index = index;
+  }
+
+  @Override
+  public OnHeapValueHolder<V> remove(K key) {
+    OnHeapValueHolder<V> removed = delegate.remove(key);
+    if (removed != null) {
+      index.remove(key);
+    }
+    return removed;
+  }
+
+  @Override
+  public OnHeapValueHolder<V> computeIfPresent(K key, BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> biFunction) {
+    return delegate.computeIfPresent(key, unindexing(biFunction));
+  }
+
+  @Override
+  public OnHeapValueHolder<V> compute(K key, BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> biFunction) {
+    return delegate.compute(key, unindexing(biFunction));
+  }
+
+  @Override
+  public Backend<K, V> clear() {
+    return new ExpiryIndexedBackend<K, V>(delegate.clear(), index);
+  }
+
+  @Override
+  public Iterable<K> keySet() {
+    return delegate.keySet();
+  }
+
+  @Override
+  public Iterator<Map.Entry<K, OnHeapValueHolder<V>>> entrySetIterator() {
+    return delegate.entrySetIterator();
+  }
+
+  @Override
+  public OnHeapValueHolder<V> get(K key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  public OnHeapValueHolder<V> putIfAbsent(K key, OnHeapValueHolder<V> value) {
+    return delegate.putIfAbsent(key, value);
+  }
+
+  @Override
+  public boolean remove(K key, OnHeapValueHolder<V> value) {
+    if (delegate.remove(key, value)) {
+      index.remove(key);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
+    return delegate.replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public int size() {
+    return delegate.size();
+  }
+
+  @Override
+  public long byteSize() {
+    return delegate.byteSize();
+  }
+
+  @Override
+  public long naturalSize() {
+    return delegate.naturalSize();
+  }
+
+  @Override
+  public void updateUsageInBytesIfRequired(long delta) {
+    delegate.updateUsageInBytesIfRequired(delta);
+  }
+
+  @Override
+  public Map.Entry<K, OnHeapValueHolder<V>> getEvictionCandidate(Random random, int size, Comparator<? super Store.ValueHolder<V>> prioritizer, EvictionVeto<Object, OnHeapValueHolder<?>> evictionVeto) {
+    return delegate.getEvictionCandidate(random, size, prioritizer, evictionVeto);
+  }
+
+  private BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> unindexing(final BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> biFunction) {
+    return new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
+      @Override
+      public OnHeapValueHolder<V> apply(K key, OnHeapValueHolder<V> present) {
+        OnHeapValueHolder<V> result = biFunction.apply(key, present);
+        if (result == null && present != null) {
+          index.remove(key);
+        }
+        return result;
+      }
+    };
+  }
+}
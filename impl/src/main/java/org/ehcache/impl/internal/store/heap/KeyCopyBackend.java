@@ -24,6 +24,7 @@ import org.ehcache.impl.internal.store.heap.holders.CopiedOnHeapKey;
 import org.ehcache.impl.internal.store.heap.holders.LookupOnlyOnHeapKey;
 import org.ehcache.impl.internal.store.heap.holders.OnHeapKey;
 import org.ehcache.impl.internal.store.heap.holders.OnHeapValueHolder;
+import org.ehcache.impl.internal.store.heap.holders.ReusableLookupOnHeapKey;
 import org.ehcache.spi.copy.Copier;
 
 import java.util.AbstractMap;
@@ -41,6 +42,14 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 class KeyCopyBackend<K, V> implements Backend<K, V> {
 
+  // per backend rather than static so that pooled threads do not pin this classloader once the store is gone
+  private final ThreadLocal<ReusableLookupOnHeapKey<K>> lookupKeys = new ThreadLocal<ReusableLookupOnHeapKey<K>>() {
+    @Override
+    protected ReusableLookupOnHeapKey<K> initialValue() {
+      return new ReusableLookupOnHeapKey<K>();
+    }
+  };
+
   private final ConcurrentHashMap<OnHeapKey<K>, OnHeapValueHolder<V>> keyCopyMap;
   private final boolean byteSized;
   private final Copier<K> keyCopier;
@@ -191,7 +200,16 @@ class KeyCopyBackend<K, V> implements Backend<K, V> {
 
   @Override
   public OnHeapValueHolder<V> get(K key) {
-    return keyCopyMap.get(lookupOnlyKey(key));
+    // reusing a per thread lookup key keeps hits from allocating
+    ReusableLookupOnHeapKey<K> lookupKey = lookupKeys.get();
+    if (!lookupKey.acquire(key)) {
+      return keyCopyMap.get(lookupOnlyKey(key));
+    }
+    try {
+      return keyCopyMap.get(lookupKey);
+    } finally {
+      lookupKey.release();
+    }
   }
 
   @Override
@@ -28,13 +28,21 @@ import org.ehcache.config.ResourceType;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.events.StoreEventDispatcher;
 import org.ehcache.core.events.StoreEventSink;
+import org.ehcache.core.spi.service.ExecutionService;
 import org.ehcache.exceptions.StoreAccessException;
+import org.ehcache.core.spi.store.heap.HeapEvictionPolicy;
 import org.ehcache.core.spi.store.heap.LimitExceededException;
 import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
 import org.ehcache.expiry.Expiry;
 import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
 import org.ehcache.core.spi.function.NullaryFunction;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
+import org.ehcache.impl.config.store.heap.BackgroundEvictionConfiguration;
+import org.ehcache.impl.config.store.heap.ExpiryIndexConfiguration;
+import org.ehcache.impl.config.store.heap.ReadBufferConfiguration;
+import org.ehcache.impl.config.store.heap.HeapEvictionPolicyConfiguration;
 import org.ehcache.impl.copy.IdentityCopier;
 import org.ehcache.impl.internal.concurrent.ConcurrentHashMap;
 import org.ehcache.impl.copy.SerializingCopier;
@@ -42,6 +50,7 @@ import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
 import org.ehcache.impl.internal.events.ScopedStoreEventDispatcher;
 import org.ehcache.impl.internal.sizeof.NoopSizeOfEngine;
 import org.ehcache.impl.internal.store.heap.holders.CopiedOnHeapValueHolder;
+import org.ehcache.impl.internal.store.heap.holders.LeanOnHeapValueHolder;
 import org.ehcache.impl.internal.store.heap.holders.OnHeapValueHolder;
 import org.ehcache.impl.internal.store.heap.holders.SerializedOnHeapValueHolder;
 import org.ehcache.core.spi.time.TimeSource;
@@ -53,6 +62,7 @@ import org.ehcache.core.spi.store.events.StoreEventSource;
 import org.ehcache.core.spi.store.tiering.CachingTier;
 import org.ehcache.core.spi.store.tiering.HigherCachingTier;
 import org.ehcache.impl.internal.store.BinaryValueHolder;
+import org.ehcache.impl.internal.store.ExpiryReaper;
 import org.ehcache.spi.copy.Copier;
 import org.ehcache.spi.copy.CopyProvider;
 import org.ehcache.spi.service.Service;
@@ -71,6 +81,8 @@ import org.terracotta.offheapstore.util.FindbugsSuppressWarnings;
 import org.terracotta.statistics.StatisticsManager;
 import org.terracotta.statistics.observer.OperationObserver;
 
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -81,15 +93,19 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.ehcache.core.exceptions.StorePassThroughException.handleRuntimeException;
+import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmongst;
 import static org.ehcache.core.util.ValueSuppliers.supplierOf;
 import static org.terracotta.statistics.StatisticBuilder.operation;
 
@@ -105,15 +121,31 @@ import static org.terracotta.statistics.StatisticBuilder.operation;
  *   <li>Statistics</li>
  * </ul></p>
  *
- * The storage of mappings is handled by a {@link ConcurrentHashMap} accessed through {@link Backend}.
+ * The storage of mappings is handled by a {@link ConcurrentHashMap} accessed through {@link Backend}, except for
+ * {@code Long} and {@code Integer} keys stored by reference, which are stored unboxed by a {@link PrimitiveKeyBackend}.
  */
-public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
+public class OnHeapStore<K, V> implements Store<K,V>, Store.HeapPeek<K, V>, HigherCachingTier<K, V> {
 
   private static final Logger LOG = LoggerFactory.getLogger(OnHeapStore.class);
 
   private static final int ATTEMPT_RATIO = 4;
   private static final int EVICTION_RATIO = 2;
 
+  /**
+   * Number of mappings the background eviction task evicts before yielding its thread.
+   */
+  private static final int BACKGROUND_EVICTION_BATCH = 64;
+
+  /**
+   * Number of mappings the expiry reaper scans between two checks of its deadline.
+   */
+  private static final int SWEEP_DEADLINE_CHECK_INTERVAL = 64;
+
+  /**
+   * Number of keys looked up in the expiry index when searching for a mapping about to expire to evict.
+   */
+  private static final int EXPIRING_CANDIDATE_ATTEMPTS = 4;
+
   private static final EvictionVeto<Object, OnHeapValueHolder<?>> EVICTION_VETO = new EvictionVeto<Object, OnHeapValueHolder<?>>() {
     @Override
     public boolean vetoes(Object key, OnHeapValueHolder<?> value) {
@@ -141,6 +173,23 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
   };
 
+  private static final HeapEvictionPolicy ALWAYS_ADMIT = new HeapEvictionPolicy() {
+    @Override
+    public void recordAccess(Object key) {
+      // Do nothing
+    }
+
+    @Override
+    public Object selectVictim(Object candidateKey, Object victimKey) {
+      return victimKey;
+    }
+
+    @Override
+    public void resize(long maximumEntries) {
+      // Do nothing
+    }
+  };
+
   static final int SAMPLE_SIZE = 8;
   private volatile Backend<K, V> map;
 
@@ -152,10 +201,34 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
 
   private volatile long capacity;
   private final EvictionVeto<? super K, ? super V> evictionVeto;
+  private final HeapEvictionPolicy evictionPolicy;
   private final Expiry<? super K, ? super V> expiry;
+  private final boolean leanValueHolders;
   private final TimeSource timeSource;
   private final StoreEventDispatcher<K, V> storeEventDispatcher;
   private volatile InvalidationListener<K, V> invalidationListener = NULL_INVALIDATION_LISTENER;
+  private final ScheduledExecutorService maintenanceExecutor;
+  private final int evictionOvershootPercentage;
+  private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+  private final Runnable evictionTask = new Runnable() {
+    @Override
+    public void run() {
+      evictInBackground();
+    }
+  };
+  private volatile ExpiryReaper expiryReaper;
+  private volatile StripedReadBuffer<OnHeapValueHolder<V>> readBuffer;
+  private final StripedReadBuffer.Consumer<OnHeapValueHolder<V>> accessReplay = new StripedReadBuffer.Consumer<OnHeapValueHolder<V>>() {
+    @Override
+    public void accept(OnHeapValueHolder<V> valueHolder) {
+      valueHolder.accessed(timeSource.getTimeMillis(), null);
+    }
+  };
+  private volatile StripedTimerWheel<K> expiryIndex;
+  private final Queue<K> dueExpiries = new ArrayDeque<K>();
+  private long expiringEvictionHorizon;
+  private Backend<K, V> sweptMap;
+  private java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> sweepCursor;
 
   private CacheConfigurationChangeListener cacheConfigurationChangeListener = new CacheConfigurationChangeListener() {
     @Override
@@ -171,6 +244,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
             capacity = ((MemoryUnit)pool.getUnit()).toBytes(pool.getSize());
           } else {
             capacity = pool.getSize();
+            evictionPolicy.resize(capacity);
           }
         }
       }
@@ -203,6 +277,26 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   };
 
   public OnHeapStore(final Configuration<K, V> config, final TimeSource timeSource, Copier<K> keyCopier, Copier<V> valueCopier, SizeOfEngine sizeOfEngine, StoreEventDispatcher<K, V> eventDispatcher) {
+    this(config, timeSource, keyCopier, valueCopier, sizeOfEngine, eventDispatcher, null);
+  }
+
+  public OnHeapStore(final Configuration<K, V> config, final TimeSource timeSource, Copier<K> keyCopier, Copier<V> valueCopier, SizeOfEngine sizeOfEngine,
+                     StoreEventDispatcher<K, V> eventDispatcher, HeapEvictionPolicy.Factory evictionPolicyFactory) {
+    this(config, timeSource, keyCopier, valueCopier, sizeOfEngine, eventDispatcher, evictionPolicyFactory, null, null);
+  }
+
+  /**
+   * Creates a new on heap store.
+   *
+   * @param backgroundEviction the background eviction settings, or {@code null} to evict on the writing threads
+   * @param maintenanceExecutor the executor running background tasks, required when {@code backgroundEviction} is set
+   */
+  public OnHeapStore(final Configuration<K, V> config, final TimeSource timeSource, Copier<K> keyCopier, Copier<V> valueCopier, SizeOfEngine sizeOfEngine,
+                     StoreEventDispatcher<K, V> eventDispatcher, HeapEvictionPolicy.Factory evictionPolicyFactory,
+                     BackgroundEvictionConfiguration backgroundEviction, ScheduledExecutorService maintenanceExecutor) {
+    if (backgroundEviction != null && maintenanceExecutor == null) {
+      throw new NullPointerException("maintenanceExecutor must not be null when evicting in the background");
+    }
     if (keyCopier == null) {
       throw new NullPointerException("keyCopier must not be null");
     }
@@ -222,13 +316,25 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     } else {
       this.evictionVeto = config.getEvictionVeto();
     }
+    if (evictionPolicyFactory == null) {
+      this.evictionPolicy = ALWAYS_ADMIT;
+    } else {
+      this.evictionPolicy = evictionPolicyFactory.create(byteSized ? -1 : capacity);
+    }
     this.keyType = config.getKeyType();
     this.valueType = config.getValueType();
     this.expiry = config.getExpiry();
+    this.leanValueHolders = !byteSized && expiry == Expirations.noExpiration() && !(valueCopier instanceof SerializingCopier);
     this.valueCopier = valueCopier;
     this.storeEventDispatcher = eventDispatcher;
+    this.maintenanceExecutor = maintenanceExecutor;
+    this.evictionOvershootPercentage = backgroundEviction == null ? -1 : backgroundEviction.getOvershootPercentage();
     if (keyCopier instanceof IdentityCopier) {
-      this.map = new SimpleBackend<K, V>(byteSized);
+      if (PrimitiveKeyBackend.supports(keyType)) {
+        this.map = new PrimitiveKeyBackend<K, V>(keyType, byteSized);
+      } else {
+        this.map = new SimpleBackend<K, V>(byteSized);
+      }
     } else {
       this.map = new KeyCopyBackend<K, V>(byteSized, keyCopier);
     }
@@ -265,15 +371,22 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   private OnHeapValueHolder<V> internalGet(final K key, final boolean updateAccess) throws StoreAccessException {
     getObserver.begin();
     try {
-      OnHeapValueHolder<V> mapping = getQuiet(key);
-
+      OnHeapValueHolder<V> mapping = map.get(key);
       if (mapping == null) {
         getObserver.end(StoreOperationOutcomes.GetOutcome.MISS);
         return null;
       }
 
+      // the time is read once, a hit that neither expires nor gets a new expiry must not allocate
+      long now = timeSource.getTimeMillis();
+      if (mapping.isExpired(now, TimeUnit.MILLISECONDS)) {
+        expireMappingUnderLock(key, mapping);
+        getObserver.end(StoreOperationOutcomes.GetOutcome.MISS);
+        return null;
+      }
+
       if (updateAccess) {
-        setAccessTimeAndExpiryThenReturnMappingOutsideLock(key, mapping, timeSource.getTimeMillis());
+        setAccessTimeAndExpiryThenReturnMappingOutsideLock(key, mapping, now);
       }
       getObserver.end(StoreOperationOutcomes.GetOutcome.HIT);
       return mapping;
@@ -307,6 +420,21 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     return getQuiet(key) != null;
   }
 
+  @Override
+  public ValueHolder<V> peekHeap(final K key) throws StoreAccessException {
+    checkKey(key);
+    try {
+      OnHeapValueHolder<V> mapping = map.get(key);
+      if (mapping == null || mapping instanceof Fault || mapping.isExpired(timeSource.getTimeMillis(), TimeUnit.MILLISECONDS)) {
+        return null;
+      }
+      return mapping;
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+      return null;
+    }
+  }
+
   @Override
   public PutStatus put(final K key, final V value) throws StoreAccessException {
     putObserver.begin();
@@ -348,7 +476,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       });
       storeEventDispatcher.releaseEventSink(eventSink);
 
-      enforceCapacity();
+      enforceCapacity(key);
 
       StoreOperationOutcomes.PutOutcome outcome = statOutcome.get();
       putObserver.end(outcome);
@@ -456,7 +584,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       storeEventDispatcher.releaseEventSink(eventSink);
 
       if (entryActuallyAdded.get()) {
-        enforceCapacity();
+        enforceCapacity(key);
         putIfAbsentObserver.end(StoreOperationOutcomes.PutIfAbsentOutcome.PUT);
       } else {
         putIfAbsentObserver.end(StoreOperationOutcomes.PutIfAbsentOutcome.HIT);
@@ -562,7 +690,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       });
       OnHeapValueHolder<V> valueHolder = returnValue.get();
       storeEventDispatcher.releaseEventSink(eventSink);
-      enforceCapacity();
+      enforceCapacity(null);
       if (valueHolder != null) {
         replaceObserver.end(StoreOperationOutcomes.ReplaceOutcome.REPLACED);
       } else {
@@ -617,7 +745,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
         }
       });
       storeEventDispatcher.releaseEventSink(eventSink);
-      enforceCapacity();
+      enforceCapacity(null);
       ReplaceStatus replaceStatus = outcome.get();
       switch (replaceStatus) {
         case HIT:
@@ -641,6 +769,10 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   @Override
   public void clear() {
     this.map = map.clear();
+    StripedTimerWheel<K> index = expiryIndex;
+    if (index != null) {
+      index.clear();
+    }
   }
 
   private void invalidate() {
@@ -700,56 +832,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
         });
         cachedValue = backEnd.putIfAbsent(key, fault);
         if (cachedValue == null) {
-          try {
-            final ValueHolder<V> value = fault.get();
-            final OnHeapValueHolder<V> newValue;
-            if(value != null) {
-              newValue = importValueFromLowerTier(key, value, now, backEnd, fault);
-              if (newValue == null) {
-                // Inline expiry or sizing failure
-                backEnd.remove(key, fault);
-                getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED);
-                return value;
-              }
-            } else {
-              backEnd.remove(key, fault);
-              getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.MISS);
-              return null;
-            }
-
-            if (backEnd.replace(key, fault, newValue)) {
-              getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULTED);
-              updateUsageInBytesIfRequired(newValue.size());
-              enforceCapacity();
-              return getValue(newValue);
-            } else {
-              final AtomicReference<ValueHolder<V>> invalidatedValue = new AtomicReference<ValueHolder<V>>();
-              backEnd.computeIfPresent(key, new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
-                @Override
-                public OnHeapValueHolder<V> apply(K mappedKey, OnHeapValueHolder<V> mappedValue) {
-                  notifyInvalidation(key, mappedValue);
-                  invalidatedValue.set(mappedValue);
-                  updateUsageInBytesIfRequired(mappedValue.size());
-                  return null;
-                }
-              });
-              ValueHolder<V> p = getValue(invalidatedValue.get());
-              if (p != null) {
-                if (p.isExpired(now, TimeUnit.MILLISECONDS)) {
-                  getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED_MISS);
-                  return null;
-                } else {
-                  getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED);
-                  return p;
-                }
-              }
-              getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED);
-              return newValue;
-            }
-          } catch (Throwable e) {
-            backEnd.remove(key, fault);
-            throw new StoreAccessException(e);
-          }
+          return resolveFault(key, fault, backEnd, now);
         }
       }
 
@@ -771,6 +854,150 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
   }
 
+  /**
+   * Completes the fault installed for the key by this thread, replacing it with the faulted value, and returns the
+   * value to hand out. The fault is removed if it cannot be replaced.
+   */
+  private ValueHolder<V> resolveFault(final K key, final Fault<V> fault, final Backend<K, V> backEnd, final long now) throws StoreAccessException {
+    try {
+      final ValueHolder<V> value = fault.get();
+      final OnHeapValueHolder<V> newValue;
+      if(value != null) {
+        newValue = importValueFromLowerTier(key, value, now, backEnd, fault);
+        if (newValue == null) {
+          // Inline expiry or sizing failure
+          backEnd.remove(key, fault);
+          getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED);
+          return value;
+        }
+      } else {
+        backEnd.remove(key, fault);
+        getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.MISS);
+        return null;
+      }
+
+      if (backEnd.replace(key, fault, newValue)) {
+        getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULTED);
+        updateUsageInBytesIfRequired(newValue.size());
+        enforceCapacity(key);
+        return getValue(newValue);
+      } else {
+        final AtomicReference<ValueHolder<V>> invalidatedValue = new AtomicReference<ValueHolder<V>>();
+        backEnd.computeIfPresent(key, new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
+          @Override
+          public OnHeapValueHolder<V> apply(K mappedKey, OnHeapValueHolder<V> mappedValue) {
+            notifyInvalidation(key, mappedValue);
+            invalidatedValue.set(mappedValue);
+            updateUsageInBytesIfRequired(mappedValue.size());
+            return null;
+          }
+        });
+        ValueHolder<V> p = getValue(invalidatedValue.get());
+        if (p != null) {
+          if (p.isExpired(now, TimeUnit.MILLISECONDS)) {
+            getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED_MISS);
+            return null;
+          } else {
+            getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED);
+            return p;
+          }
+        }
+        getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULT_FAILED);
+        return newValue;
+      }
+    } catch (Throwable e) {
+      backEnd.remove(key, fault);
+      throw new StoreAccessException(e);
+    }
+  }
+
+  @Override
+  public Map<K, ValueHolder<V>> bulkGetOrComputeIfAbsent(Iterable<? extends K> keys, Function<Set<? extends K>, Map<K, ValueHolder<V>>> source) throws StoreAccessException {
+    try {
+      final Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+      final Set<K> missingKeys = new HashSet<K>();
+      final long now = timeSource.getTimeMillis();
+
+      for (K key : keys) {
+        checkKey(key);
+        OnHeapValueHolder<V> cachedValue = map.get(key);
+        if (cachedValue == null || cachedValue instanceof Fault) {
+          // In-flight faults are joined when the missing keys get installed
+          missingKeys.add(key);
+        } else if (cachedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
+          expireMappingUnderLock(key, cachedValue);
+          missingKeys.add(key);
+        } else {
+          getOrComputeIfAbsentObserver.begin();
+          result.put(key, setAccessTimeAndExpiryThenReturnMappingOutsideLock(key, cachedValue, now));
+          getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.HIT);
+        }
+      }
+
+      if (!missingKeys.isEmpty()) {
+        // Install faults first, so that concurrent readers of these keys wait for this load instead of starting their own
+        final Backend<K, V> backEnd = map;
+        final Set<K> faultedKeys = new HashSet<K>();
+        final NullaryFunction<Map<K, ValueHolder<V>>> bulkLoad = new NullaryFunction<Map<K, ValueHolder<V>>>() {
+          private Map<K, ValueHolder<V>> loaded;
+
+          @Override
+          public synchronized Map<K, ValueHolder<V>> apply() {
+            if (loaded == null) {
+              loaded = source.apply(faultedKeys);
+            }
+            return loaded;
+          }
+        };
+        final Map<K, Fault<V>> faults = new HashMap<K, Fault<V>>();
+        // readers joining a fault early wait here until the set of keys to load is complete
+        synchronized (bulkLoad) {
+          for (final K key : missingKeys) {
+            Fault<V> fault = new Fault<V>(new NullaryFunction<ValueHolder<V>>() {
+              @Override
+              public ValueHolder<V> apply() {
+                return bulkLoad.apply().get(key);
+              }
+            });
+            if (backEnd.putIfAbsent(key, fault) == null) {
+              faultedKeys.add(key);
+              faults.put(key, fault);
+            }
+          }
+        }
+
+        final Map<K, Fault<V>> unresolved = new HashMap<K, Fault<V>>(faults);
+        try {
+          for (Map.Entry<K, Fault<V>> fault : faults.entrySet()) {
+            getOrComputeIfAbsentObserver.begin();
+            result.put(fault.getKey(), resolveFault(fault.getKey(), fault.getValue(), backEnd, now));
+            unresolved.remove(fault.getKey());
+          }
+        } finally {
+          for (Map.Entry<K, Fault<V>> fault : unresolved.entrySet()) {
+            backEnd.remove(fault.getKey(), fault.getValue());
+          }
+        }
+
+        // Keys faulted in by other threads in the meantime are joined, or loaded on their own if that fault completed
+        for (K key : missingKeys) {
+          if (!faults.containsKey(key)) {
+            result.put(key, getOrComputeIfAbsent(key, new Function<K, ValueHolder<V>>() {
+              @Override
+              public ValueHolder<V> apply(K k) {
+                return source.apply(Collections.singleton(k)).get(k);
+              }
+            }));
+          }
+        }
+      }
+      return result;
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+      return null;
+    }
+  }
+
   private void invalidateInGetOrComputeIfAbsent(Backend<K, V> map, final K key, final ValueHolder<V> value, final Fault<V> fault, final long now, final Duration expiration) {
     map.computeIfPresent(key, new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
       @Override
@@ -881,8 +1108,6 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
    */
   private static class Fault<V> extends OnHeapValueHolder<V> {
 
-    private static final int FAULT_ID = -1;
-
     @IgnoreSizeOf
     private final NullaryFunction<ValueHolder<V>> source;
     private ValueHolder<V> value;
@@ -890,7 +1115,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     private boolean complete;
 
     public Fault(final NullaryFunction<ValueHolder<V>> source) {
-      super(FAULT_ID, 0, true);
+      super(0, true);
       this.source = source;
     }
 
@@ -1081,7 +1306,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
         computeResult = valueHeld.get();
       }
       storeEventDispatcher.releaseEventSink(eventSink);
-      enforceCapacity();
+      enforceCapacity(key);
       computeObserver.end(outcome.get());
       return computeResult;
     } catch (RuntimeException re) {
@@ -1138,7 +1363,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
 
       storeEventDispatcher.releaseEventSink(eventSink);
       if (computeResult != null) {
-        enforceCapacity();
+        enforceCapacity(key);
       }
       computeIfAbsentObserver.end(outcome.get());
       if (computeResult == null && previousValueHolder != null) {
@@ -1233,6 +1458,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   }
 
   private OnHeapValueHolder<V> setAccessTimeAndExpiryThenReturnMappingOutsideLock(K key, OnHeapValueHolder<V> valueHolder, long now) {
+    evictionPolicy.recordAccess(key);
     Duration duration;
     try {
       duration = expiry.getExpiryForAccess(key, valueHolder);
@@ -1240,6 +1466,16 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
       duration = Duration.ZERO;
     }
+    if (duration == null) {
+      StripedReadBuffer<OnHeapValueHolder<V>> buffer = readBuffer;
+      if (buffer != null) {
+        // expiry is untouched, the access time and hit count can be updated later
+        if (buffer.offer(valueHolder)) {
+          buffer.tryDrain(accessReplay);
+        }
+        return valueHolder;
+      }
+    }
     valueHolder.accessed(now, duration);
     if (Duration.ZERO.equals(duration)) {
       // Expires mapping through computeIfPresent
@@ -1251,6 +1487,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
 
   private OnHeapValueHolder<V> setAccessTimeAndExpiryThenReturnMappingUnderLock(K key, OnHeapValueHolder<V> valueHolder, long now,
                                                                        StoreEventSink<K, V> eventSink) {
+    evictionPolicy.recordAccess(key);
     Duration duration = Duration.ZERO;
     try {
       duration = expiry.getExpiryForAccess(key, valueHolder);
@@ -1295,6 +1532,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     if (newValue == null) {
       throw new NullPointerException();
     }
+    evictionPolicy.recordAccess(key);
 
     Duration duration = Duration.ZERO;
     try {
@@ -1334,6 +1572,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     if (value == null) {
       throw new NullPointerException();
     }
+    evictionPolicy.recordAccess(key);
 
     Duration duration;
     try {
@@ -1359,6 +1598,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   }
 
   private OnHeapValueHolder<V> importValueFromLowerTier(K key, ValueHolder<V> valueHolder, long now, Backend<K, V> backEnd, Fault<V> fault) {
+    evictionPolicy.recordAccess(key);
     Duration expiration = Duration.ZERO;
     try {
       expiration = expiry.getExpiryForAccess(key, valueHolder);
@@ -1373,7 +1613,9 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
 
     try{
-      return cloneValueHolder(key, valueHolder, now, expiration, true);
+      OnHeapValueHolder<V> clonedValueHolder = cloneValueHolder(key, valueHolder, now, expiration, true);
+      indexExpiry(key, clonedValueHolder);
+      return clonedValueHolder;
     } catch (LimitExceededException e) {
       LOG.warn(e.getMessage());
       invalidateInGetOrComputeIfAbsent(backEnd, key, valueHolder, fault, now, expiration);
@@ -1383,19 +1625,22 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   }
 
   private OnHeapValueHolder<V> cloneValueHolder(K key, ValueHolder<V> valueHolder, long now, Duration expiration, boolean sizingEnabled) throws LimitExceededException {
-    V realValue = valueHolder.value();
-    boolean veto = checkVeto(key, realValue);
     OnHeapValueHolder<V> clonedValueHolder = null;
-    if(valueCopier instanceof SerializingCopier) {
-      if (valueHolder instanceof BinaryValueHolder && ((BinaryValueHolder) valueHolder).isBinaryValueAvailable()) {
-        clonedValueHolder = new SerializedOnHeapValueHolder<V>(valueHolder, ((BinaryValueHolder) valueHolder).getBinaryValue(),
-            veto, ((SerializingCopier<V>) valueCopier).getSerializer(), now, expiration);
-      } else {
+    if (valueCopier instanceof SerializingCopier
+        && valueHolder instanceof BinaryValueHolder && ((BinaryValueHolder) valueHolder).isBinaryValueAvailable()) {
+      // the binary form is carried over as is, the value itself is only needed by a configured eviction veto
+      boolean veto = evictionVeto != Eviction.none() && checkVeto(key, valueHolder.value());
+      clonedValueHolder = new SerializedOnHeapValueHolder<V>(valueHolder, ((BinaryValueHolder) valueHolder).getBinaryValue(),
+          veto, ((SerializingCopier<V>) valueCopier).getSerializer(), now, expiration);
+    } else {
+      V realValue = valueHolder.value();
+      boolean veto = checkVeto(key, realValue);
+      if (valueCopier instanceof SerializingCopier) {
         clonedValueHolder = new SerializedOnHeapValueHolder<V>(valueHolder, realValue, veto,
             ((SerializingCopier<V>) valueCopier).getSerializer(), now, expiration);
+      } else {
+        clonedValueHolder = new CopiedOnHeapValueHolder<V>(valueHolder, realValue, veto, valueCopier, now, expiration);
       }
-    } else {
-      clonedValueHolder = new CopiedOnHeapValueHolder<V>(valueHolder, realValue, veto, valueCopier, now, expiration);
     }
     if (sizingEnabled) {
       clonedValueHolder.setSize(getSizeOfKeyValuePairs(key, clonedValueHolder));
@@ -1412,15 +1657,31 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     OnHeapValueHolder<V> valueHolder;
     if (valueCopier instanceof SerializingCopier) {
       valueHolder = new SerializedOnHeapValueHolder<V>(value, creationTime, expirationTime, veto, ((SerializingCopier<V>) valueCopier).getSerializer());
+    } else if (leanValueHolders) {
+      valueHolder = new LeanOnHeapValueHolder<V>(value, creationTime, veto, valueCopier);
     } else {
       valueHolder = new CopiedOnHeapValueHolder<V>(value, creationTime, expirationTime, veto, valueCopier);
     }
-    if (size) {
+    // lean holders only exist in count sized stores, which do not track sizes
+    if (size && !leanValueHolders) {
       valueHolder.setSize(getSizeOfKeyValuePairs(key, valueHolder));
     }
+    indexExpiry(key, valueHolder);
     return valueHolder;
   }
 
+  private void indexExpiry(K key, OnHeapValueHolder<V> valueHolder) {
+    StripedTimerWheel<K> index = expiryIndex;
+    if (index != null) {
+      long expirationTime = valueHolder.expirationTime(TimeUnit.MILLISECONDS);
+      if (expirationTime == ValueHolder.NO_EXPIRE) {
+        index.remove(key);
+      } else {
+        index.schedule(key, expirationTime);
+      }
+    }
+  }
+
   private boolean checkVeto(K key, V value) {
     try {
       return evictionVeto.vetoes(key, value);
@@ -1453,13 +1714,33 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     return map.byteSize();
   }
 
+  /**
+   * Evicts mappings until the store is back under capacity, or the eviction attempts are exhausted.
+   *
+   * @param newcomer the key of the mapping just installed, subject to admission by the eviction policy, or
+   *                 {@code null} if no mapping was installed
+   */
   @FindbugsSuppressWarnings("QF_QUESTIONABLE_FOR_LOOP")
-  protected void enforceCapacity() {
+  protected void enforceCapacity(K newcomer) {
+    if (evictionOvershootPercentage >= 0) {
+      long size = map.naturalSize();
+      long currentCapacity = capacity;
+      if (size <= currentCapacity) {
+        return;
+      }
+      scheduleEviction();
+      if (size <= currentCapacity + currentCapacity * evictionOvershootPercentage / 100) {
+        return;
+      }
+    }
+    if (capacity < map.naturalSize()) {
+      drainReadBuffer();
+    }
     StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
     try {
       for (int attempts = 0, evicted = 0; attempts < ATTEMPT_RATIO && evicted < EVICTION_RATIO
               && capacity < map.naturalSize(); attempts++) {
-        if (evict(eventSink)) {
+        if (evict(eventSink, newcomer)) {
           evicted++;
         }
       }
@@ -1470,21 +1751,276 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
   }
 
+  private void scheduleEviction() {
+    if (evictionScheduled.compareAndSet(false, true)) {
+      try {
+        maintenanceExecutor.execute(evictionTask);
+      } catch (RejectedExecutionException e) {
+        evictionScheduled.set(false);
+        LOG.debug("Background eviction task rejected, the store is being closed", e);
+      }
+    }
+  }
+
+  /**
+   * Evicts a batch of mappings on the maintenance executor, rescheduling itself until the store is back under capacity.
+   */
+  void evictInBackground() {
+    drainReadBuffer();
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      for (int attempts = 0, evicted = 0; attempts < BACKGROUND_EVICTION_BATCH * ATTEMPT_RATIO && evicted < BACKGROUND_EVICTION_BATCH
+              && capacity < map.naturalSize(); attempts++) {
+        if (evict(eventSink)) {
+          evicted++;
+        }
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      LOG.warn("Background eviction failed", re);
+    } finally {
+      evictionScheduled.set(false);
+    }
+    if (capacity < map.naturalSize()) {
+      scheduleEviction();
+    }
+  }
+
+  /**
+   * Makes reads record their access in a striped, lossy buffer replayed before evicting, instead of updating the
+   * value holder in place.
+   * <P>
+   *   Only accesses that leave the expiration time untouched are buffered.
+   * </P>
+   *
+   * @param stripes the number of buffer stripes
+   */
+  void enableReadBuffer(int stripes) {
+    readBuffer = new StripedReadBuffer<OnHeapValueHolder<V>>(stripes);
+  }
+
+  /**
+   * Replays the buffered accesses, if any and if no other thread is already doing so.
+   */
+  void drainReadBuffer() {
+    StripedReadBuffer<OnHeapValueHolder<V>> buffer = readBuffer;
+    if (buffer != null) {
+      buffer.tryDrain(accessReplay);
+    }
+  }
+
+  void stopMaintenance() {
+    if (maintenanceExecutor != null) {
+      maintenanceExecutor.shutdownNow();
+    }
+    ExpiryReaper reaper = expiryReaper;
+    if (reaper != null) {
+      reaper.stop();
+    }
+  }
+
+  void startExpiryReaper(ExpiryReaperConfiguration configuration, ScheduledExecutorService executor) {
+    ExpiryReaper reaper = new ExpiryReaper(new ExpiryReaper.Sweepable() {
+      @Override
+      public void sweep(long now, long deadline, ExpiryReaper.Progress progress) {
+        sweepExpired(now, deadline, progress);
+      }
+    }, timeSource, executor, configuration, this, "onheap-store");
+    expiryReaper = reaper;
+    reaper.start();
+  }
+
+  /**
+   * Resumes the sweep for expired mappings, restarting from the first mapping once a pass completes or the map is
+   * cleared. When the expiry index is enabled only the mappings it reports as due are visited.
+   */
+  void sweepExpired(long now, long deadline, ExpiryReaper.Progress progress) {
+    drainReadBuffer();
+    StripedTimerWheel<K> index = expiryIndex;
+    if (index != null) {
+      sweepExpiryIndex(index, now, deadline, progress);
+      return;
+    }
+    Backend<K, V> currentMap = map;
+    if (sweptMap != currentMap || sweepCursor == null || !sweepCursor.hasNext()) {
+      sweptMap = currentMap;
+      sweepCursor = currentMap.entrySetIterator();
+    }
+    int scanned = 0;
+    try {
+      while (sweepCursor.hasNext()) {
+        if (scanned > 0 && scanned % SWEEP_DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+          return;
+        }
+        Map.Entry<K, OnHeapValueHolder<V>> entry = sweepCursor.next();
+        scanned++;
+        OnHeapValueHolder<V> value = entry.getValue();
+        if (!(value instanceof Fault) && value.isExpired(now, TimeUnit.MILLISECONDS)) {
+          expireSweptMapping(entry.getKey(), value, progress);
+        }
+      }
+    } finally {
+      progress.scanned(scanned);
+    }
+  }
+
+  /**
+   * Removes the mappings the expiry index reports as expired, only visiting those. Keys left over when the deadline
+   * passes are kept for the next run.
+   */
+  private void sweepExpiryIndex(StripedTimerWheel<K> index, long now, long deadline, ExpiryReaper.Progress progress) {
+    index.advance(now, dueExpiries);
+    int scanned = 0;
+    try {
+      while (!dueExpiries.isEmpty()) {
+        if (scanned > 0 && scanned % SWEEP_DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+          return;
+        }
+        K key = dueExpiries.poll();
+        scanned++;
+        OnHeapValueHolder<V> value = map.get(key);
+        if (value == null || value instanceof Fault) {
+          continue;
+        }
+        if (value.isExpired(now, TimeUnit.MILLISECONDS)) {
+          expireSweptMapping(key, value, progress);
+        } else {
+          // expiration was pushed back, by an access for instance
+          indexExpiry(key, value);
+        }
+      }
+    } finally {
+      progress.scanned(scanned);
+    }
+  }
+
+  /**
+   * Makes the heap tier index its mappings by expiration time.
+   * <P>
+   *   Caches whose mappings never expire are left unindexed.
+   * </P>
+   *
+   * @param evictionHorizon how close to its expiration, in milliseconds, a mapping must be to be evicted ahead of
+   *                        sampled candidates
+   */
+  void enableExpiryIndex(long evictionHorizon) {
+    if (expiry != Expirations.noExpiration()) {
+      expiringEvictionHorizon = evictionHorizon;
+      StripedTimerWheel<K> index = new StripedTimerWheel<K>(timeSource.getTimeMillis());
+      expiryIndex = index;
+      // every removal of a mapping, whatever the path, then unindexes its key
+      map = new ExpiryIndexedBackend<K, V>(map, index);
+    }
+  }
+
+  boolean isExpiryIndexed() {
+    return expiryIndex != null;
+  }
+
+  int getExpiryIndexSize() {
+    StripedTimerWheel<K> index = expiryIndex;
+    return index == null ? 0 : index.size();
+  }
+
+  /**
+   * Looks in the expiry index for a mapping expiring within the eviction horizon.
+   *
+   * @return the mapping to evict, or {@code null} if none is about to expire
+   */
+  private Map.Entry<K, OnHeapValueHolder<V>> getExpiringEvictionCandidate() {
+    StripedTimerWheel<K> index = expiryIndex;
+    if (index == null) {
+      return null;
+    }
+    long deadline = timeSource.getTimeMillis() + expiringEvictionHorizon;
+    for (int attempts = 0; attempts < EXPIRING_CANDIDATE_ATTEMPTS; attempts++) {
+      K key = index.peek(deadline);
+      if (key == null) {
+        return null;
+      }
+      OnHeapValueHolder<V> value = map.get(key);
+      if (value == null) {
+        index.remove(key);
+      } else if (value instanceof Fault || value.veto()) {
+        return null;
+      } else if (value.expirationTime(TimeUnit.MILLISECONDS) > deadline) {
+        indexExpiry(key, value);
+      } else {
+        return new AbstractMap.SimpleImmutableEntry<K, OnHeapValueHolder<V>>(key, value);
+      }
+    }
+    return null;
+  }
+
+  private void expireSweptMapping(final K key, final OnHeapValueHolder<V> value, final ExpiryReaper.Progress progress) {
+    final StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      map.computeIfPresent(key, new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
+        @Override
+        public OnHeapValueHolder<V> apply(K mappedKey, OnHeapValueHolder<V> mappedValue) {
+          if (mappedValue == value) {
+            fireOnExpirationEvent(mappedKey, mappedValue, eventSink);
+            updateUsageInBytesIfRequired(- mappedValue.size());
+            progress.expired(1, mappedValue.size());
+            return null;
+          }
+          return mappedValue;
+        }
+      });
+      storeEventDispatcher.releaseEventSink(eventSink);
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      throw re;
+    }
+  }
+
   /**
    * Try to evict a mapping.
    * @return true if a mapping was evicted, false otherwise.
    * @param eventSink target of eviction event
    */
   boolean evict(final StoreEventSink<K, V> eventSink) {
+    return evict(eventSink, null);
+  }
+
+  /**
+   * Try to evict a mapping, letting the eviction policy pick between the sampled victim and the newcomer.
+   * @return true if a mapping was evicted, false otherwise.
+   * @param eventSink target of eviction event
+   * @param newcomer key of the mapping just installed, or {@code null}
+   */
+  boolean evict(final StoreEventSink<K, V> eventSink, final K newcomer) {
     evictionObserver.begin();
-    final Random random = new Random();
 
-    @SuppressWarnings("unchecked")
-    Map.Entry<K, OnHeapValueHolder<V>> candidate = map.getEvictionCandidate(random, SAMPLE_SIZE, EVICTION_PRIORITIZER, EVICTION_VETO);
+    Map.Entry<K, OnHeapValueHolder<V>> candidate = getExpiringEvictionCandidate();
+    boolean expiring = candidate != null;
+
+    if (candidate == null) {
+      final Random random = new Random();
+
+      @SuppressWarnings("unchecked")
+      Map.Entry<K, OnHeapValueHolder<V>> sampled = map.getEvictionCandidate(random, SAMPLE_SIZE, EVICTION_PRIORITIZER, EVICTION_VETO);
+      candidate = sampled;
+    }
 
     if (candidate == null) {
       // 2nd attempt without any veto
-      candidate = map.getEvictionCandidate(random, SAMPLE_SIZE, EVICTION_PRIORITIZER, Eviction.<Object, OnHeapValueHolder<?>>none());
+      candidate = map.getEvictionCandidate(new Random(), SAMPLE_SIZE, EVICTION_PRIORITIZER, Eviction.<Object, OnHeapValueHolder<?>>none());
+    }
+
+    if (candidate != null && !expiring && newcomer != null && !(candidate.getValue() instanceof Fault) && !newcomer.equals(candidate.getKey())) {
+      Object selected = evictionPolicy.selectVictim(newcomer, candidate.getKey());
+      if (!candidate.getKey().equals(selected)) {
+        // The policy only ever hands back keys it got from this store
+        @SuppressWarnings("unchecked")
+        K selectedKey = (K) selected;
+        OnHeapValueHolder<V> selectedValue = map.get(selectedKey);
+        if (selectedValue != null && !(selectedValue instanceof Fault) && !selectedValue.veto()) {
+          // The policy deems that mapping colder than the sampled victim, it is the one evicted
+          candidate = new AbstractMap.SimpleImmutableEntry<K, OnHeapValueHolder<V>>(selectedKey, selectedValue);
+        }
+      }
     }
 
     if (candidate == null) {
@@ -1546,7 +2082,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     return (o1 == o2) || (o1 != null && o1.equals(o2));
   }
 
-  @ServiceDependencies({TimeSourceService.class, CopyProvider.class, SizeOfEngineProvider.class})
+  @ServiceDependencies({TimeSourceService.class, CopyProvider.class, SizeOfEngineProvider.class, ExecutionService.class})
   public static class Provider implements Store.Provider, CachingTier.Provider, HigherCachingTier.Provider {
 
     private volatile ServiceProvider<Service> serviceProvider;
@@ -1571,7 +2107,31 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
 
       SizeOfEngineProvider sizeOfEngineProvider = serviceProvider.getService(SizeOfEngineProvider.class);
       SizeOfEngine sizeOfEngine = sizeOfEngineProvider.createSizeOfEngine(storeConfig.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getUnit(), serviceConfigs);
-      OnHeapStore<K, V> onHeapStore = new OnHeapStore<K, V>(storeConfig, timeSource, keyCopier, valueCopier, sizeOfEngine, eventDispatcher);
+      HeapEvictionPolicyConfiguration evictionPolicyConfiguration = findSingletonAmongst(HeapEvictionPolicyConfiguration.class, (Object[]) serviceConfigs);
+      HeapEvictionPolicy.Factory evictionPolicyFactory = evictionPolicyConfiguration == null ? null : evictionPolicyConfiguration.getFactory();
+      BackgroundEvictionConfiguration backgroundEviction = findSingletonAmongst(BackgroundEvictionConfiguration.class, (Object[]) serviceConfigs);
+      ScheduledExecutorService maintenanceExecutor = null;
+      if (backgroundEviction != null) {
+        maintenanceExecutor = serviceProvider.getService(ExecutionService.class).getScheduledExecutor(backgroundEviction.getThreadPoolAlias());
+      }
+      OnHeapStore<K, V> onHeapStore = new OnHeapStore<K, V>(storeConfig, timeSource, keyCopier, valueCopier, sizeOfEngine, eventDispatcher,
+          evictionPolicyFactory, backgroundEviction, maintenanceExecutor);
+      ReadBufferConfiguration readBuffer = findSingletonAmongst(ReadBufferConfiguration.class, (Object[]) serviceConfigs);
+      if (readBuffer != null) {
+        onHeapStore.enableReadBuffer(readBuffer.getStripes());
+      }
+      ExpiryIndexConfiguration expiryIndex = findSingletonAmongst(ExpiryIndexConfiguration.class, (Object[]) serviceConfigs);
+      if (expiryIndex != null) {
+        onHeapStore.enableExpiryIndex(expiryIndex.getUnit().toMillis(expiryIndex.getEvictionHorizon()));
+      }
+      ExpiryReaperConfiguration expiryReaper = findSingletonAmongst(ExpiryReaperConfiguration.class, (Object[]) serviceConfigs);
+      if (expiryReaper == null && onHeapStore.isExpiryIndexed()) {
+        // the expiry index is drained by the reaper
+        expiryReaper = new ExpiryReaperConfiguration();
+      }
+      if (expiryReaper != null) {
+        onHeapStore.startExpiryReaper(expiryReaper, serviceProvider.getService(ExecutionService.class).getScheduledExecutor(expiryReaper.getThreadPoolAlias()));
+      }
       createdStores.add(onHeapStore);
       return onHeapStore;
     }
@@ -1586,6 +2146,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
 
     static void close(final OnHeapStore onHeapStore) {
+      onHeapStore.stopMaintenance();
       onHeapStore.clear();
     }
 
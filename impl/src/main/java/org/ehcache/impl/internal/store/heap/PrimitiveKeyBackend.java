@@ -0,0 +1,711 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.config.EvictionVeto;
+import org.ehcache.core.spi.function.BiFunction;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.impl.internal.store.heap.holders.OnHeapValueHolder;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Backend for {@code Long} and {@code Integer} keys, storing them unboxed in open addressing tables.
+ * <P>
+ *   Mappings are spread over lock striped segments, each holding an array of keys and a parallel array of value
+ *   holders probed linearly. No node object is allocated per mapping and removals shift back the following entries
+ *   instead of leaving tombstones. Reads do not lock, and compute functions run outside of the segment lock, only
+ *   excluding the other writers of their key, much like the bin locks of the
+ *   {@link org.ehcache.impl.internal.concurrent.ConcurrentHashMap} used by the other backends.
+ * </P>
+ *
+ * @param <K> the key type, either {@code Long} or {@code Integer}
+ * @param <V> the value type
+ */
+class PrimitiveKeyBackend<K, V> implements Backend<K, V> {
+
+  private static final int SEGMENT_COUNT = 16;
+  private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+
+  private final KeyType keyType;
+  private final boolean byteSized;
+  private final AtomicLong byteSize = new AtomicLong(0L);
+  private final Segment[] segments;
+
+  /**
+   * Tells whether this backend can store keys of the given type.
+   *
+   * @param keyType the configured key type
+   * @return {@code true} for {@code Long} and {@code Integer}
+   */
+  static boolean supports(Class<?> keyType) {
+    return keyType == Long.class || keyType == Integer.class;
+  }
+
+  PrimitiveKeyBackend(Class<K> keyType, boolean byteSized) {
+    if (keyType == Long.class) {
+      this.keyType = KeyType.LONG;
+    } else if (keyType == Integer.class) {
+      this.keyType = KeyType.INTEGER;
+    } else {
+      throw new IllegalArgumentException("Unsupported key type " + keyType);
+    }
+    this.byteSized = byteSized;
+    this.segments = new Segment[SEGMENT_COUNT];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  private PrimitiveKeyBackend(KeyType keyType, boolean byteSized) {
+    this.keyType = keyType;
+    this.byteSized = byteSized;
+    this.segments = new Segment[SEGMENT_COUNT];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  @Override
+  public OnHeapValueHolder<V> remove(K key) {
+    long k = keyType.unbox(key);
+    int hash = hash(k);
+    return this.<V>segmentFor(hash).remove(k, hash, null);
+  }
+
+  @Override
+  public boolean remove(K key, OnHeapValueHolder<V> value) {
+    if (value == null) {
+      return false;
+    }
+    long k = keyType.unbox(key);
+    int hash = hash(k);
+    return this.<V>segmentFor(hash).remove(k, hash, value) != null;
+  }
+
+  @Override
+  public OnHeapValueHolder<V> computeIfPresent(K key, BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> biFunction) {
+    long k = keyType.unbox(key);
+    int hash = hash(k);
+    return this.<V>segmentFor(hash).compute(key, k, hash, biFunction, true);
+  }
+
+  @Override
+  public OnHeapValueHolder<V> compute(K key, BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> biFunction) {
+    long k = keyType.unbox(key);
+    int hash = hash(k);
+    return this.<V>segmentFor(hash).compute(key, k, hash, biFunction, false);
+  }
+
+  @Override
+  public Backend<K, V> clear() {
+    return new PrimitiveKeyBackend<K, V>(keyType, byteSized);
+  }
+
+  @Override
+  public Iterable<K> keySet() {
+    return new Iterable<K>() {
+      @Override
+      public Iterator<K> iterator() {
+        final Iterator<Map.Entry<K, OnHeapValueHolder<V>>> entries = entrySetIterator();
+        return new Iterator<K>() {
+          @Override
+          public boolean hasNext() {
+            return entries.hasNext();
+          }
+
+          @Override
+          public K next() {
+            return entries.next().getKey();
+          }
+
+          @Override
+          public void remove() {
+            entries.remove();
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Map.Entry<K, OnHeapValueHolder<V>>> entrySetIterator() {
+    return new EntryIterator();
+  }
+
+  @Override
+  public OnHeapValueHolder<V> get(K key) {
+    long k = keyType.unbox(key);
+    int hash = hash(k);
+    return this.<V>segmentFor(hash).get(k, hash);
+  }
+
+  @Override
+  public OnHeapValueHolder<V> putIfAbsent(K key, OnHeapValueHolder<V> value) {
+    long k = keyType.unbox(key);
+    int hash = hash(k);
+    return this.<V>segmentFor(hash).putIfAbsent(k, hash, value);
+  }
+
+  @Override
+  public boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
+    long k = keyType.unbox(key);
+    int hash = hash(k);
+    return this.<V>segmentFor(hash).replace(k, hash, oldValue, newValue);
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.count;
+    }
+    return size;
+  }
+
+  @Override
+  public long byteSize() {
+    if (byteSized) {
+      return byteSize.get();
+    } else {
+      throw new IllegalStateException("This store is not byte sized");
+    }
+  }
+
+  @Override
+  public long naturalSize() {
+    if (byteSized) {
+      return byteSize.get();
+    } else {
+      return size();
+    }
+  }
+
+  @Override
+  public void updateUsageInBytesIfRequired(long delta) {
+    if (byteSized) {
+      byteSize.addAndGet(delta);
+    }
+  }
+
+  @Override
+  public Map.Entry<K, OnHeapValueHolder<V>> getEvictionCandidate(Random random, int size, Comparator<? super Store.ValueHolder<V>> prioritizer, EvictionVeto<Object, OnHeapValueHolder<?>> evictionVeto) {
+    if (size == 0) {
+      return null;
+    }
+    int start = random.nextInt(segments.length);
+    Candidate<V> candidate = new Candidate<V>(size);
+    for (int i = 0; i < segments.length && candidate.remaining > 0; i++) {
+      this.<V>segment(start + i).sample(random, keyType, candidate, prioritizer, evictionVeto);
+    }
+    if (candidate.value == null) {
+      return null;
+    } else {
+      return new AbstractMap.SimpleEntry<K, OnHeapValueHolder<V>>(this.<K>box(candidate.key), candidate.value);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T box(long key) {
+    return (T) keyType.box(key);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Segment<T> segmentFor(int hash) {
+    return segments[hash >>> SEGMENT_SHIFT];
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Segment<T> segment(int index) {
+    return segments[index & (segments.length - 1)];
+  }
+
+  private static int hash(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+  private enum KeyType {
+    LONG {
+      @Override
+      long unbox(Object key) {
+        return (Long) key;
+      }
+
+      @Override
+      Object box(long key) {
+        return key;
+      }
+    },
+    INTEGER {
+      @Override
+      long unbox(Object key) {
+        return (Integer) key;
+      }
+
+      @Override
+      Object box(long key) {
+        return (int) key;
+      }
+    };
+
+    abstract long unbox(Object key);
+
+    abstract Object box(long key);
+  }
+
+  private static final class Candidate<V> {
+    int remaining;
+    long key;
+    OnHeapValueHolder<V> value;
+
+    Candidate(int size) {
+      this.remaining = size;
+    }
+  }
+
+  private static final class Snapshot {
+    long[] keys = new long[0];
+    Object[] values = new Object[0];
+    int length;
+  }
+
+  /**
+   * An open addressing table, written under its lock and read optimistically.
+   * <P>
+   *   Writers make {@code version} odd while changing the table, readers retry, and eventually take the lock, when the
+   *   version they started from was odd or has changed since. A slot only gets a new key while its value is
+   *   {@code null}, so that a value read twice around its key is known to belong to that key.
+   * </P>
+   * <P>
+   *   Compute functions run without the lock: the key is reserved while the function runs and the other writers of
+   *   that key wait for the reservation to be released.
+   * </P>
+   */
+  private static final class Segment<V> extends ReentrantLock {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 4;
+
+    private final Condition reservationReleased = newCondition();
+    private volatile Table<V> table = new Table<V>(INITIAL_CAPACITY);
+    private volatile int version;
+    private volatile int count;
+
+    private long[] reservedKeys = new long[4];
+    private Thread[] reservationOwners = new Thread[4];
+    private int reservations;
+
+    OnHeapValueHolder<V> get(long key, int hash) {
+      for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+        int startVersion = version;
+        if ((startVersion & 1) == 0) {
+          OnHeapValueHolder<V> value = table.get(key, hash);
+          if (version == startVersion) {
+            return value;
+          }
+        }
+      }
+      lock();
+      try {
+        return table.get(key, hash);
+      } finally {
+        unlock();
+      }
+    }
+
+    <K> OnHeapValueHolder<V> compute(K boxedKey, long key, int hash, BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> function, boolean onlyIfPresent) {
+      OnHeapValueHolder<V> oldValue;
+      boolean reserved;
+      lock();
+      try {
+        reserved = reserve(key);
+        oldValue = table.get(key, hash);
+        if (onlyIfPresent && oldValue == null) {
+          release(key, reserved);
+          return null;
+        }
+      } finally {
+        unlock();
+      }
+
+      OnHeapValueHolder<V> newValue = null;
+      boolean applied = false;
+      try {
+        newValue = function.apply(boxedKey, oldValue);
+        applied = true;
+      } finally {
+        lock();
+        try {
+          if (applied) {
+            beginWrite();
+            try {
+              int index = table.indexOf(key, hash);
+              if (newValue == null) {
+                if (index >= 0) {
+                  removeAt(index);
+                }
+              } else if (index >= 0) {
+                table.values.set(index, newValue);
+              } else {
+                insert(key, hash, newValue);
+              }
+            } finally {
+              endWrite();
+            }
+          }
+          release(key, reserved);
+        } finally {
+          unlock();
+        }
+      }
+      return newValue;
+    }
+
+    OnHeapValueHolder<V> putIfAbsent(long key, int hash, OnHeapValueHolder<V> value) {
+      lock();
+      try {
+        awaitReservation(key);
+        int index = table.indexOf(key, hash);
+        if (index >= 0) {
+          return table.values.get(index);
+        }
+        beginWrite();
+        try {
+          insert(key, hash, value);
+        } finally {
+          endWrite();
+        }
+        return null;
+      } finally {
+        unlock();
+      }
+    }
+
+    boolean replace(long key, int hash, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
+      lock();
+      try {
+        awaitReservation(key);
+        int index = table.indexOf(key, hash);
+        if (index >= 0 && table.values.get(index).equals(oldValue)) {
+          beginWrite();
+          try {
+            table.values.set(index, newValue);
+          } finally {
+            endWrite();
+          }
+          return true;
+        }
+        return false;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Removes the mapping for the key, only if mapped to {@code expected} when non-null.
+     */
+    OnHeapValueHolder<V> remove(long key, int hash, OnHeapValueHolder<V> expected) {
+      lock();
+      try {
+        awaitReservation(key);
+        int index = table.indexOf(key, hash);
+        if (index < 0) {
+          return null;
+        }
+        OnHeapValueHolder<V> value = table.values.get(index);
+        if (expected != null && !value.equals(expected)) {
+          return null;
+        }
+        beginWrite();
+        try {
+          removeAt(index);
+        } finally {
+          endWrite();
+        }
+        return value;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Copies the mappings of this segment, so that iterating does not hold the lock.
+     */
+    void snapshot(Snapshot snapshot) {
+      lock();
+      try {
+        if (snapshot.keys.length < count) {
+          snapshot.keys = new long[count];
+          snapshot.values = new Object[count];
+        }
+        Table<V> t = table;
+        int n = 0;
+        for (int i = 0; i < t.length(); i++) {
+          OnHeapValueHolder<V> value = t.values.get(i);
+          if (value != null) {
+            snapshot.keys[n] = t.keys.get(i);
+            snapshot.values[n] = value;
+            n++;
+          }
+        }
+        snapshot.length = n;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Samples mappings without locking, which concurrent writes may make skip or repeat some mappings.
+     */
+    void sample(Random random, KeyType keyType, Candidate<V> candidate, Comparator<? super Store.ValueHolder<V>> prioritizer, EvictionVeto<Object, OnHeapValueHolder<?>> evictionVeto) {
+      if (count == 0) {
+        return;
+      }
+      Table<V> t = table;
+      int mask = t.length() - 1;
+      int start = random.nextInt(t.length());
+      for (int i = 0; i < t.length() && candidate.remaining > 0; i++) {
+        int index = (start + i) & mask;
+        OnHeapValueHolder<V> value = t.values.get(index);
+        if (value == null) {
+          continue;
+        }
+        long key = t.keys.get(index);
+        if (t.values.get(index) != value) {
+          continue;
+        }
+        if (!evictionVeto.vetoes(keyType.box(key), value)) {
+          if (candidate.value == null || prioritizer.compare(value, candidate.value) > 0) {
+            candidate.key = key;
+            candidate.value = value;
+          }
+          candidate.remaining--;
+        }
+      }
+    }
+
+    /**
+     * Reserves the key for the calling thread, waiting for any other thread's reservation to be released.
+     *
+     * @return {@code false} if the calling thread already held the reservation
+     */
+    private boolean reserve(long key) {
+      Thread current = Thread.currentThread();
+      for (int i = reservationOf(key); i >= 0; i = reservationOf(key)) {
+        if (reservationOwners[i] == current) {
+          return false;
+        }
+        reservationReleased.awaitUninterruptibly();
+      }
+      if (reservations == reservedKeys.length) {
+        reservedKeys = Arrays.copyOf(reservedKeys, reservations << 1);
+        reservationOwners = Arrays.copyOf(reservationOwners, reservations << 1);
+      }
+      reservedKeys[reservations] = key;
+      reservationOwners[reservations] = current;
+      reservations++;
+      return true;
+    }
+
+    private void release(long key, boolean reserved) {
+      if (reserved) {
+        int i = reservationOf(key);
+        reservations--;
+        reservedKeys[i] = reservedKeys[reservations];
+        reservationOwners[i] = reservationOwners[reservations];
+        reservationOwners[reservations] = null;
+        reservationReleased.signalAll();
+      }
+    }
+
+    /**
+     * Waits until no other thread holds a reservation on the key.
+     */
+    private void awaitReservation(long key) {
+      for (int i = reservationOf(key); i >= 0 && reservationOwners[i] != Thread.currentThread(); i = reservationOf(key)) {
+        reservationReleased.awaitUninterruptibly();
+      }
+    }
+
+    private int reservationOf(long key) {
+      for (int i = 0; i < reservations; i++) {
+        if (reservedKeys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private void beginWrite() {
+      version++;
+    }
+
+    private void endWrite() {
+      version++;
+    }
+
+    private void insert(long key, int hash, OnHeapValueHolder<V> value) {
+      if ((count + 1) * 3 > table.length() * 2) {
+        resize();
+      }
+      Table<V> t = table;
+      int mask = t.length() - 1;
+      int index = hash & mask;
+      while (t.values.get(index) != null) {
+        index = (index + 1) & mask;
+      }
+      t.keys.set(index, key);
+      t.values.set(index, value);
+      count++;
+    }
+
+    /**
+     * Removes the entry at the given index and shifts back the entries of the same probe sequence.
+     */
+    private void removeAt(int index) {
+      Table<V> t = table;
+      int mask = t.length() - 1;
+      t.values.set(index, null);
+      int gap = index;
+      for (int i = (index + 1) & mask; t.values.get(i) != null; i = (i + 1) & mask) {
+        long key = t.keys.get(i);
+        int home = hash(key) & mask;
+        if (((i - home) & mask) >= ((i - gap) & mask)) {
+          t.keys.set(gap, key);
+          t.values.set(gap, t.values.get(i));
+          t.values.set(i, null);
+          gap = i;
+        }
+      }
+      count--;
+    }
+
+    private void resize() {
+      Table<V> oldTable = table;
+      Table<V> newTable = new Table<V>(oldTable.length() << 1);
+      int mask = newTable.length() - 1;
+      for (int i = 0; i < oldTable.length(); i++) {
+        OnHeapValueHolder<V> value = oldTable.values.get(i);
+        if (value != null) {
+          long key = oldTable.keys.get(i);
+          int index = hash(key) & mask;
+          while (newTable.values.get(index) != null) {
+            index = (index + 1) & mask;
+          }
+          newTable.keys.set(index, key);
+          newTable.values.set(index, value);
+        }
+      }
+      table = newTable;
+    }
+  }
+
+  /**
+   * Parallel key and value arrays, a {@code null} value marking a free slot.
+   */
+  private static final class Table<V> {
+
+    final AtomicLongArray keys;
+    final AtomicReferenceArray<OnHeapValueHolder<V>> values;
+
+    Table(int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      this.values = new AtomicReferenceArray<OnHeapValueHolder<V>>(capacity);
+    }
+
+    int length() {
+      return values.length();
+    }
+
+    OnHeapValueHolder<V> get(long key, int hash) {
+      int index = indexOf(key, hash);
+      return index < 0 ? null : values.get(index);
+    }
+
+    /**
+     * Probes for the key, at most once around the table as concurrent writes may leave it without free slot.
+     */
+    int indexOf(long key, int hash) {
+      int mask = length() - 1;
+      int index = hash & mask;
+      for (int i = 0; i <= mask; i++, index = (index + 1) & mask) {
+        if (values.get(index) == null) {
+          return -1;
+        } else if (keys.get(index) == key) {
+          return index;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Weakly consistent iterator, copying one segment at a time.
+   */
+  private final class EntryIterator implements Iterator<Map.Entry<K, OnHeapValueHolder<V>>> {
+
+    private final Snapshot snapshot = new Snapshot();
+    private int nextSegment = 0;
+    private int position = 0;
+    private Map.Entry<K, OnHeapValueHolder<V>> last;
+
+    @Override
+    public boolean hasNext() {
+      while (position >= snapshot.length && nextSegment < segments.length) {
+        segments[nextSegment++].snapshot(snapshot);
+        position = 0;
+      }
+      return position < snapshot.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, OnHeapValueHolder<V>> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = new AbstractMap.SimpleEntry<K, OnHeapValueHolder<V>>(PrimitiveKeyBackend.this.<K>box(snapshot.keys[position]), (OnHeapValueHolder<V>) snapshot.values[position]);
+      snapshot.values[position++] = null;
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      PrimitiveKeyBackend.this.remove(last.getKey(), last.getValue());
+      last = null;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped, lossy buffer recording reads so that they can be replayed in batches by a single thread.
+ * <P>
+ *   Each reading thread offers to the stripe its id hashes to, a bounded ring buffer. Offers failing on contention
+ *   or on a full stripe are dropped: the buffer trades accuracy of the recorded reads for readers never waiting nor
+ *   writing to shared state other than their stripe. Draining is guarded by a lock that is only ever tried, so a
+ *   single thread replays the recorded reads while the others carry on.
+ * </P>
+ *
+ * @param <E> the recorded element type
+ */
+class StripedReadBuffer<E> {
+
+  /**
+   * Number of elements a stripe holds, a power of two.
+   */
+  static final int STRIPE_SIZE = 16;
+  private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+  private static final int MAX_STRIPES = 64;
+
+  private final Stripe<E>[] stripes;
+  private final int stripesMask;
+  private final ReentrantLock drainLock = new ReentrantLock();
+
+  /**
+   * Creates a new buffer, the number of stripes is rounded up to a power of two.
+   *
+   * @param stripes the requested number of stripes
+   */
+  @SuppressWarnings("unchecked")
+  StripedReadBuffer(int stripes) {
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("Stripes can only accept positive values.");
+    }
+    int count = 1;
+    while (count < stripes && count < MAX_STRIPES) {
+      count <<= 1;
+    }
+    this.stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      this.stripes[i] = new Stripe<E>();
+    }
+    this.stripesMask = count - 1;
+  }
+
+  /**
+   * Records an element in the stripe of the calling thread, dropping it if the stripe is contended or full.
+   *
+   * @param element the element to record
+   * @return {@code true} if the stripe is full and the buffer should be drained
+   */
+  boolean offer(E element) {
+    long threadId = Thread.currentThread().getId();
+    int hash = (int) (threadId ^ (threadId >>> 32)) * 0x9E3779B9;
+    return stripes[(hash >>> 16) & stripesMask].offer(element);
+  }
+
+  /**
+   * Replays the recorded elements unless another thread is already draining.
+   *
+   * @param consumer the consumer replaying the elements
+   */
+  void tryDrain(Consumer<? super E> consumer) {
+    if (drainLock.tryLock()) {
+      try {
+        for (Stripe<E> stripe : stripes) {
+          stripe.drain(consumer);
+        }
+      } finally {
+        drainLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Receives the elements drained from a {@link StripedReadBuffer}.
+   *
+   * @param <E> the element type
+   */
+  interface Consumer<E> {
+
+    void accept(E element);
+  }
+
+  private static final class Stripe<E> {
+
+    private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<E>(STRIPE_SIZE);
+    private final AtomicLong writeCounter = new AtomicLong();
+    private volatile long readCounter;
+
+    boolean offer(E element) {
+      long head = readCounter;
+      long tail = writeCounter.get();
+      long size = tail - head;
+      if (size >= STRIPE_SIZE) {
+        return true;
+      }
+      if (writeCounter.compareAndSet(tail, tail + 1)) {
+        buffer.lazySet((int) (tail & STRIPE_MASK), element);
+        return size + 1 >= STRIPE_SIZE;
+      }
+      return false;
+    }
+
+    void drain(Consumer<? super E> consumer) {
+      long head = readCounter;
+      long tail = writeCounter.get();
+      try {
+        while (head < tail) {
+          int index = (int) (head & STRIPE_MASK);
+          E element = buffer.get(index);
+          if (element == null) {
+            // slot claimed but not yet published
+            break;
+          }
+          buffer.lazySet(index, null);
+          head++;
+          consumer.accept(element);
+        }
+      } finally {
+        readCounter = head;
+      }
+    }
+  }
+}
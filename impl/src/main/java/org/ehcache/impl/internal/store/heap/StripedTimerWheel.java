@@ -0,0 +1,119 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import java.util.Collection;
+
+/**
+ * {@link TimerWheel}s striped by key hash, so that concurrent writers of different keys rarely contend on the same
+ * wheel monitor.
+ * <P>
+ *   A key always lands in the same stripe, its schedules and removals hence apply in the order they were made.
+ * </P>
+ *
+ * @param <K> the key type
+ */
+class StripedTimerWheel<K> {
+
+  private final TimerWheel<K>[] stripes;
+  private final int mask;
+
+  StripedTimerWheel(long now) {
+    this(now, Runtime.getRuntime().availableProcessors());
+  }
+
+  @SuppressWarnings("unchecked")
+  StripedTimerWheel(long now, int concurrency) {
+    int count = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+    this.stripes = new TimerWheel[count];
+    this.mask = count - 1;
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new TimerWheel<K>(now);
+    }
+  }
+
+  /**
+   * Schedules the key at the given expiration time, replacing any previous schedule of the key.
+   *
+   * @param key the key to schedule
+   * @param expirationTime the expiration time of the key
+   */
+  void schedule(K key, long expirationTime) {
+    stripeFor(key).schedule(key, expirationTime);
+  }
+
+  /**
+   * Removes the key from the wheel.
+   *
+   * @param key the key to remove
+   */
+  void remove(K key) {
+    stripeFor(key).remove(key);
+  }
+
+  /**
+   * Advances every stripe to the given time, removing the keys which expired in the meantime.
+   *
+   * @param now the time to advance to
+   * @param expired collects the removed keys
+   */
+  void advance(long now, Collection<? super K> expired) {
+    for (TimerWheel<K> stripe : stripes) {
+      stripe.advance(now, expired);
+    }
+  }
+
+  /**
+   * Returns a key expiring no later than the given deadline.
+   *
+   * @param deadline the latest acceptable expiration time
+   * @return a key expiring before the deadline, or {@code null} if none was found
+   */
+  K peek(long deadline) {
+    for (TimerWheel<K> stripe : stripes) {
+      K key = stripe.peek(deadline);
+      if (key != null) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of keys in the wheel.
+   *
+   * @return the number of scheduled keys
+   */
+  int size() {
+    int size = 0;
+    for (TimerWheel<K> stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  void clear() {
+    for (TimerWheel<K> stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  private TimerWheel<K> stripeFor(K key) {
+    int hash = key.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & mask];
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hierarchical timer wheel indexing keys by expiration time, in milliseconds.
+ * <P>
+ *   Keys are placed in buckets of increasingly coarse granularity depending on how far in the future they expire:
+ *   about a second, a minute, an hour, a day and an overflow bucket beyond a few days. Advancing the wheel only visits
+ *   the buckets whose time span has elapsed, so expired keys are found in time proportional to their number, keys
+ *   from coarse buckets being cascaded into finer ones as their expiration gets closer.
+ * </P>
+ * <P>
+ *   The wheel is an index and not the source of truth: it may hold keys whose mapping has been removed or whose
+ *   expiration time has been updated since they were scheduled, callers are expected to check the mapping itself.
+ *   All operations are guarded by the wheel monitor.
+ * </P>
+ *
+ * @param <K> the key type
+ */
+class TimerWheel<K> {
+
+  private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+  private static final long[] SPANS = {
+      1L << 10,   // 1.02s
+      1L << 16,   // 1.09m
+      1L << 22,   // 1.17h
+      1L << 27,   // 1.55d
+      1L << 29,   // 6.21d
+      1L << 29
+  };
+  private static final int[] SHIFT = {
+      Long.numberOfTrailingZeros(SPANS[0]),
+      Long.numberOfTrailingZeros(SPANS[1]),
+      Long.numberOfTrailingZeros(SPANS[2]),
+      Long.numberOfTrailingZeros(SPANS[3]),
+      Long.numberOfTrailingZeros(SPANS[4])
+  };
+
+  /**
+   * Number of nodes of a bucket looked at when peeking for a key expiring before a deadline.
+   */
+  private static final int PEEK_LIMIT = 16;
+
+  private final Node<K>[][] wheel;
+  private final Map<K, Node<K>> nodes = new HashMap<K, Node<K>>();
+  private long time;
+
+  @SuppressWarnings("unchecked")
+  TimerWheel(long now) {
+    this.time = now;
+    this.wheel = new Node[BUCKETS.length][];
+    for (int i = 0; i < BUCKETS.length; i++) {
+      wheel[i] = new Node[BUCKETS[i]];
+      for (int j = 0; j < BUCKETS[i]; j++) {
+        wheel[i][j] = new Node<K>(null);
+      }
+    }
+  }
+
+  /**
+   * Schedules the key at the given expiration time, replacing any previous schedule of the key.
+   *
+   * @param key the key to schedule
+   * @param expirationTime the expiration time of the key
+   */
+  synchronized void schedule(K key, long expirationTime) {
+    Node<K> node = nodes.get(key);
+    if (node == null) {
+      node = new Node<K>(key);
+      nodes.put(key, node);
+    } else {
+      node.unlink();
+    }
+    node.expirationTime = expirationTime;
+    link(node);
+  }
+
+  /**
+   * Removes the key from the wheel.
+   *
+   * @param key the key to remove
+   */
+  synchronized void remove(K key) {
+    Node<K> node = nodes.remove(key);
+    if (node != null) {
+      node.unlink();
+    }
+  }
+
+  /**
+   * Advances the wheel to the given time, removing the keys which expired in the meantime.
+   * <P>
+   *   Buckets are only visited once their span has elapsed, keys are hence reported up to one finest bucket span,
+   *   about a second, after their expiration time.
+   * </P>
+   *
+   * @param now the time to advance to
+   * @param expired collects the removed keys
+   */
+  synchronized void advance(long now, Collection<? super K> expired) {
+    long previousTime = time;
+    if (now <= previousTime) {
+      return;
+    }
+    time = now;
+    for (int i = 0; i < SHIFT.length; i++) {
+      long previousTicks = previousTime >>> SHIFT[i];
+      long currentTicks = now >>> SHIFT[i];
+      long delta = currentTicks - previousTicks;
+      if (delta <= 0L) {
+        break;
+      }
+      expire(i, previousTicks, delta, expired);
+    }
+  }
+
+  /**
+   * Returns a key expiring no later than the given deadline, looking at the soonest buckets first.
+   *
+   * @param deadline the latest acceptable expiration time
+   * @return a key expiring before the deadline, or {@code null} if none was found
+   */
+  synchronized K peek(long deadline) {
+    for (int i = 0; i < SHIFT.length; i++) {
+      Node<K>[] buckets = wheel[i];
+      long ticks = time >>> SHIFT[i];
+      for (int j = 0; j < buckets.length; j++) {
+        if (((ticks + j) << SHIFT[i]) > deadline) {
+          return null;
+        }
+        Node<K> sentinel = buckets[(int) ((ticks + j) & (buckets.length - 1))];
+        int looked = 0;
+        for (Node<K> node = sentinel.next; node != sentinel && looked < PEEK_LIMIT; node = node.next, looked++) {
+          if (node.expirationTime <= deadline) {
+            return node.key;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of keys in the wheel.
+   *
+   * @return the number of scheduled keys
+   */
+  synchronized int size() {
+    return nodes.size();
+  }
+
+  synchronized void clear() {
+    nodes.clear();
+    for (Node<K>[] buckets : wheel) {
+      for (Node<K> sentinel : buckets) {
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+      }
+    }
+  }
+
+  private void expire(int level, long previousTicks, long delta, Collection<? super K> expired) {
+    Node<K>[] buckets = wheel[level];
+    int mask = buckets.length - 1;
+    int steps = (int) Math.min(1L + delta, buckets.length);
+    int start = (int) (previousTicks & mask);
+    for (int i = start; i < start + steps; i++) {
+      Node<K> sentinel = buckets[i & mask];
+      Node<K> node = sentinel.next;
+      sentinel.prev = sentinel;
+      sentinel.next = sentinel;
+      while (node != sentinel) {
+        Node<K> next = node.next;
+        node.prev = null;
+        node.next = null;
+        if (node.expirationTime <= time) {
+          nodes.remove(node.key);
+          expired.add(node.key);
+        } else {
+          link(node);
+        }
+        node = next;
+      }
+    }
+  }
+
+  private void link(Node<K> node) {
+    Node<K> sentinel = findBucket(node.expirationTime);
+    node.next = sentinel;
+    node.prev = sentinel.prev;
+    sentinel.prev.next = node;
+    sentinel.prev = node;
+  }
+
+  private Node<K> findBucket(long expirationTime) {
+    // already due keys go to the current bucket, which the next advance visits first
+    long bucketTime = Math.max(expirationTime, time);
+    long duration = bucketTime - time;
+    int last = BUCKETS.length - 1;
+    for (int i = 0; i < last; i++) {
+      if (duration < SPANS[i + 1]) {
+        long ticks = bucketTime >>> SHIFT[i];
+        return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+      }
+    }
+    return wheel[last][0];
+  }
+
+  private static final class Node<K> {
+
+    private final K key;
+    private long expirationTime;
+    private Node<K> prev;
+    private Node<K> next;
+
+    private Node(K key) {
+      this.key = key;
+      this.prev = this;
+      this.next = this;
+    }
+
+    private void unlink() {
+      if (next != null) {
+        next.prev = prev;
+        prev.next = next;
+        next = null;
+        prev = null;
+      }
+    }
+  }
+}
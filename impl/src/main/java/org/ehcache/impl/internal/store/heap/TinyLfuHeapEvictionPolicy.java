@@ -0,0 +1,124 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.core.spi.store.heap.HeapEvictionPolicy;
+import org.ehcache.impl.internal.store.FrequencySketch;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * {@link HeapEvictionPolicy} implementing W-TinyLFU admission.
+ * <P>
+ *   Accesses are recorded in a {@link FrequencySketch}, which also remembers keys that are no longer mapped. Newly
+ *   installed mappings first go through a small admission window holding about one percent of the entries, so that a
+ *   burst of new keys gets the time to build up some frequency. The mapping leaving the window is only kept if its key
+ *   was accessed more often than the key of the sampled victim. This protects the frequently used mappings from being
+ *   flushed by a scan over many keys accessed once.
+ * </P>
+ * <P>
+ *   Until the window is full, newcomers are filtered directly and only the admitted ones enter the window.
+ * </P>
+ */
+public class TinyLfuHeapEvictionPolicy implements HeapEvictionPolicy {
+
+  private static final int WINDOW_DIVISOR = 100;
+  private static final int DEFAULT_WINDOW_SIZE = 16;
+
+  private final LinkedHashSet<Object> window = new LinkedHashSet<Object>();
+  private volatile FrequencySketch sketch;
+  private long maximumEntries;
+  private int windowSize;
+
+  /**
+   * Creates a new policy sized for the given number of entries.
+   *
+   * @param maximumEntries the maximum number of entries of the store, or {@code -1} if unknown
+   */
+  public TinyLfuHeapEvictionPolicy(long maximumEntries) {
+    this.sketch = new FrequencySketch(maximumEntries);
+    this.maximumEntries = maximumEntries;
+    this.windowSize = windowSize(maximumEntries);
+  }
+
+  @Override
+  public void recordAccess(Object key) {
+    sketch.increment(key);
+  }
+
+  @Override
+  public Object selectVictim(Object candidateKey, Object victimKey) {
+    synchronized (window) {
+      FrequencySketch sketch = this.sketch;
+      window.remove(candidateKey);
+      if (window.size() < windowSize) {
+        if (sketch.frequency(candidateKey) > sketch.frequency(victimKey)) {
+          window.add(candidateKey);
+          return victimKey;
+        }
+        return candidateKey;
+      }
+
+      window.add(candidateKey);
+      Iterator<Object> eldest = window.iterator();
+      Object graduate = eldest.next();
+      eldest.remove();
+      return sketch.frequency(graduate) > sketch.frequency(victimKey) ? victimKey : graduate;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   The frequency history is dropped when the capacity actually changes, as the sketch is sized after it.
+   * </P>
+   */
+  @Override
+  public void resize(long maximumEntries) {
+    synchronized (window) {
+      if (maximumEntries == this.maximumEntries) {
+        return;
+      }
+      this.sketch = new FrequencySketch(maximumEntries);
+      this.maximumEntries = maximumEntries;
+      this.windowSize = windowSize(maximumEntries);
+      for (Iterator<Object> eldest = window.iterator(); window.size() > windowSize; ) {
+        eldest.next();
+        eldest.remove();
+      }
+    }
+  }
+
+  private static int windowSize(long maximumEntries) {
+    if (maximumEntries <= 0) {
+      return DEFAULT_WINDOW_SIZE;
+    }
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, maximumEntries / WINDOW_DIVISOR));
+  }
+
+  /**
+   * {@link HeapEvictionPolicy.Factory} for {@link TinyLfuHeapEvictionPolicy}.
+   */
+  public static class Factory implements HeapEvictionPolicy.Factory {
+
+    @Override
+    public HeapEvictionPolicy create(long maximumEntries) {
+      return new TinyLfuHeapEvictionPolicy(maximumEntries);
+    }
+  }
+}
@@ -24,7 +24,7 @@ import org.ehcache.spi.copy.Copier;
 /**
  * @author Albin Suresh
  */
-public class CopiedOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
+public class CopiedOnHeapValueHolder<V> extends ExpirableOnHeapValueHolder<V> {
   private final V copiedValue;
   @IgnoreSizeOf
   private final Copier<V> valueCopier;
@@ -77,4 +77,9 @@ public class CopiedOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
   public V value() {
     return valueCopier.copyForRead(copiedValue);
   }
+
+  @Override
+  public V storedValue() {
+    return copiedValue;
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap.holders;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * On heap value holder carrying an identifier, an expiration time and a computed size.
+ */
+public abstract class ExpirableOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
+
+  private static final AtomicLongFieldUpdater<ExpirableOnHeapValueHolder> EXPIRATIONTIME_UPDATER = AtomicLongFieldUpdater.newUpdater(ExpirableOnHeapValueHolder.class, "expirationTime");
+
+  private final long id;
+  private volatile long expirationTime;
+  private long size;
+
+  protected ExpirableOnHeapValueHolder(long id, long creationTime, boolean veto) {
+    this(id, creationTime, NO_EXPIRE, veto);
+  }
+
+  protected ExpirableOnHeapValueHolder(long id, long creationTime, long expirationTime, boolean veto) {
+    super(creationTime, veto);
+    this.id = id;
+    this.expirationTime = expirationTime;
+  }
+
+  @Override
+  public long getId() {
+    return id;
+  }
+
+  @Override
+  public long size() {
+    return this.size;
+  }
+
+  @Override
+  public void setSize(long size) {
+    if (this.size != 0) {
+      throw new UnsupportedOperationException("Cannot change the size if it is done already");
+    }
+    this.size = size;
+  }
+
+  @Override
+  public long expirationTime(TimeUnit unit) {
+    final long expire = this.expirationTime;
+    if (expire == NO_EXPIRE) {
+      return NO_EXPIRE;
+    }
+    return unit.convert(expire, TIME_UNIT);
+  }
+
+  @Override
+  public void setExpirationTime(long expirationTime, TimeUnit unit) {
+    if (expirationTime == NO_EXPIRE) {
+      updateExpirationTime(NO_EXPIRE);
+    } else if (expirationTime <= 0) {
+      throw new IllegalArgumentException("invalid expiration time: " + expirationTime);
+    } else {
+      updateExpirationTime(TIME_UNIT.convert(expirationTime, unit));
+    }
+  }
+
+  private void updateExpirationTime(long update) {
+    while (true) {
+      long current = this.expirationTime;
+      if (current >= update) {
+        break;
+      }
+      if (EXPIRATIONTIME_UPDATER.compareAndSet(this, current, update)) {
+        break;
+      }
+    }
+  }
+}
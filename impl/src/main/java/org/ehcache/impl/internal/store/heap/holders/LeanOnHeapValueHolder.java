@@ -0,0 +1,86 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap.holders;
+
+import org.ehcache.sizeof.annotations.IgnoreSizeOf;
+import org.ehcache.spi.copy.Copier;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact on heap value holder for caches that never expire mappings and are not sized in bytes.
+ * <P>
+ *   It carries no identifier, expiration time or size, so it can only be created for new mappings of such caches.
+ * </P>
+ */
+public class LeanOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
+
+  private final V copiedValue;
+  @IgnoreSizeOf
+  private final Copier<V> valueCopier;
+
+  public LeanOnHeapValueHolder(V value, long creationTime, boolean veto, Copier<V> valueCopier) {
+    super(creationTime, veto);
+    if (value == null) {
+      throw new NullPointerException("null value");
+    }
+    if (valueCopier == null) {
+      throw new NullPointerException("null copier");
+    }
+    this.valueCopier = valueCopier;
+    this.copiedValue = valueCopier.copyForWrite(value);
+  }
+
+  @Override
+  public V value() {
+    return valueCopier.copyForRead(copiedValue);
+  }
+
+  @Override
+  public V storedValue() {
+    return copiedValue;
+  }
+
+  @Override
+  public long getId() {
+    return -1;
+  }
+
+  @Override
+  public long size() {
+    return 0L;
+  }
+
+  @Override
+  public void setSize(long size) {
+    if (size != 0) {
+      throw new UnsupportedOperationException("Lean value holders are not sized");
+    }
+  }
+
+  @Override
+  public long expirationTime(TimeUnit unit) {
+    return NO_EXPIRE;
+  }
+
+  @Override
+  public void setExpirationTime(long expirationTime, TimeUnit unit) {
+    if (expirationTime != NO_EXPIRE) {
+      throw new UnsupportedOperationException("Lean value holders do not expire");
+    }
+  }
+}
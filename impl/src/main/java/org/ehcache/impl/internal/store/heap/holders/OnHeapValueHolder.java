@@ -16,27 +16,38 @@
 
 package org.ehcache.impl.internal.store.heap.holders;
 
-import org.ehcache.impl.internal.store.AbstractValueHolder;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.expiry.Duration;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static java.lang.String.format;
 
 /**
+ * Base of the on heap value holders, tracking creation time, access time, hits and veto status.
+ * <P>
+ *   Identifier, expiration time and size are left to subclasses, so that holders of caches which do not need them
+ *   do not pay for the fields.
+ * </P>
+ *
  * @author Ludovic Orban
  */
-public abstract class OnHeapValueHolder<V> extends AbstractValueHolder<V> {
+public abstract class OnHeapValueHolder<V> implements Store.ValueHolder<V> {
 
   public static final TimeUnit TIME_UNIT = TimeUnit.MILLISECONDS;
 
-  private final boolean veto;
-  private long size;
+  private static final AtomicLongFieldUpdater<OnHeapValueHolder> HITS_UPDATER = AtomicLongFieldUpdater.newUpdater(OnHeapValueHolder.class, "hits");
+  private static final AtomicLongFieldUpdater<OnHeapValueHolder> ACCESSTIME_UPDATER = AtomicLongFieldUpdater.newUpdater(OnHeapValueHolder.class, "lastAccessTime");
 
-  protected OnHeapValueHolder(long id, long creationTime, boolean veto) {
-    super(id, creationTime);
-    this.veto = veto;
-  }
+  private final long creationTime;
+  private volatile long lastAccessTime;
+  private volatile long hits;
+  private final boolean veto;
 
-  protected OnHeapValueHolder(long id, long creationTime, long expirationTime, boolean veto) {
-    super(id, creationTime, expirationTime);
+  protected OnHeapValueHolder(long creationTime, boolean veto) {
+    this.creationTime = creationTime;
+    this.lastAccessTime = creationTime;
     this.veto = veto;
   }
 
@@ -44,27 +55,115 @@ public abstract class OnHeapValueHolder<V> extends AbstractValueHolder<V> {
     return veto;
   }
 
-  public long size() {
-    return this.size;
+  public abstract long size();
+
+  public abstract void setSize(long size);
+
+  public abstract void setExpirationTime(long expirationTime, TimeUnit unit);
+
+  /**
+   * Returns the value object retained by this holder, as opposed to the copy {@link #value()} may return.
+   *
+   * @return the retained value, or {@code null} if the value is not retained as a plain object
+   */
+  public V storedValue() {
+    return null;
   }
 
-  public void setSize(long size) {
-    if (this.size != 0) {
-      throw new UnsupportedOperationException("Cannot change the size if it is done already");
+  public void accessed(long now, Duration expiration) {
+    if (expiration != null) {
+      if (expiration.isForever()) {
+        setExpirationTime(Store.ValueHolder.NO_EXPIRE, null);
+      } else {
+        long millis = TIME_UNIT.convert(expiration.getAmount(), expiration.getTimeUnit());
+        long newExpirationTime;
+        if (millis == Long.MAX_VALUE) {
+          newExpirationTime = Long.MAX_VALUE;
+        } else {
+          newExpirationTime = now + millis;
+          if (newExpirationTime < 0) {
+            newExpirationTime = Long.MAX_VALUE;
+          }
+        }
+        setExpirationTime(newExpirationTime, TIME_UNIT);
+      }
     }
-    this.size = size;
+    setLastAccessTime(now, TIME_UNIT);
+    HITS_UPDATER.getAndIncrement(this);
   }
 
   @Override
-  final protected TimeUnit nativeTimeUnit() {
-    return TIME_UNIT;
+  public long creationTime(TimeUnit unit) {
+    return unit.convert(creationTime, TIME_UNIT);
+  }
+
+  @Override
+  public boolean isExpired(long expirationTime, TimeUnit unit) {
+    final long expire = expirationTime(TIME_UNIT);
+    if (expire == NO_EXPIRE) {
+      return false;
+    }
+    return expire <= TIME_UNIT.convert(expirationTime, unit);
+  }
+
+  @Override
+  public long lastAccessTime(TimeUnit unit) {
+    return unit.convert(lastAccessTime, TIME_UNIT);
+  }
+
+  public void setLastAccessTime(long lastAccessTime, TimeUnit unit) {
+    long update = TIME_UNIT.convert(lastAccessTime, unit);
+    while (true) {
+      long current = this.lastAccessTime;
+      if (current >= update) {
+        break;
+      }
+      if (ACCESSTIME_UPDATER.compareAndSet(this, current, update)) {
+        break;
+      }
+    }
+  }
+
+  @Override
+  public float hitRate(long now, TimeUnit unit) {
+    final long endTime = TimeUnit.NANOSECONDS.convert(now, TimeUnit.MILLISECONDS);
+    final long startTime = TimeUnit.NANOSECONDS.convert(creationTime, TIME_UNIT);
+    float duration = (endTime - startTime)/(float)TimeUnit.NANOSECONDS.convert(1, unit);
+    return (hits/duration);
+  }
+
+  @Override
+  public long hits() {
+    return this.hits;
+  }
+
+  protected void setHits(long hits) {
+    HITS_UPDATER.set(this, hits);
+  }
+
+  @Override
+  public int hashCode() {
+    long expirationTime = expirationTime(TIME_UNIT);
+    int result = 1;
+    result = 31 * result + (int)(creationTime ^ (creationTime >>> 32));
+    result = 31 * result + (int)(lastAccessTime ^ (lastAccessTime >>> 32));
+    result = 31 * result + (int)(expirationTime ^ (expirationTime >>> 32));
+    return result;
   }
 
   @Override
   public boolean equals(Object obj) {
     if (obj != null && this.getClass().equals(obj.getClass())) {
-      return super.equals(obj);
+      OnHeapValueHolder<?> other = (OnHeapValueHolder<?>) obj;
+      return other.creationTime == creationTime
+          && other.lastAccessTime == lastAccessTime
+          && other.expirationTime(TIME_UNIT) == expirationTime(TIME_UNIT);
     }
     return false;
   }
+
+  @Override
+  public String toString() {
+    return format("%s", value());
+  }
 }
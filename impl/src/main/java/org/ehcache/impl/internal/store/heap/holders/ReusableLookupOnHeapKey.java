@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap.holders;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Mutable counterpart of {@link LookupOnlyOnHeapKey}, meant to be reused by a single thread for successive lookups.
+ * <P>
+ *   A key is {@link #acquire(Object) acquired} for the duration of a lookup and {@link #release() released} right
+ *   after, so that the looked up key is not retained.
+ * </P>
+ *
+ * @param <K> the key type
+ */
+public final class ReusableLookupOnHeapKey<K> implements OnHeapKey<K> {
+
+  private K actualKeyObject;
+  private int hashCode;
+
+  /**
+   * Points this lookup key at the given key.
+   *
+   * @param key the key to look up
+   * @return {@code false} if this lookup key is already in use, for instance by a lookup reentering from a key's
+   * {@code equals} or {@code hashCode}
+   */
+  public boolean acquire(K key) {
+    if (actualKeyObject != null) {
+      return false;
+    }
+    // hash first so that a throwing hashCode() leaves this key free for the next lookup
+    int hash = key.hashCode();
+    actualKeyObject = key;
+    hashCode = hash;
+    return true;
+  }
+
+  /**
+   * Releases the looked up key.
+   */
+  public void release() {
+    actualKeyObject = null;
+  }
+
+  @Override
+  public K getActualKeyObject() {
+    return actualKeyObject;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @SuppressFBWarnings("EQ_CHECK_FOR_OPERAND_NOT_COMPATIBLE_WITH_THIS")
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof CopiedOnHeapKey) {
+      return actualKeyObject.equals(((CopiedOnHeapKey)other).getCopiedKey());
+    } else if (other instanceof OnHeapKey) {
+      return actualKeyObject.equals(((OnHeapKey)other).getActualKeyObject());
+    }
+    return false;
+  }
+}
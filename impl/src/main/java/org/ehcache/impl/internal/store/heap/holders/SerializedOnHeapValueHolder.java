@@ -24,7 +24,7 @@ import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
 
-public class SerializedOnHeapValueHolder<V> extends OnHeapValueHolder<V> implements BinaryValueHolder {
+public class SerializedOnHeapValueHolder<V> extends ExpirableOnHeapValueHolder<V> implements BinaryValueHolder {
   private final ByteBuffer buffer;
   @IgnoreSizeOf
   private final Serializer<V> serializer;
@@ -16,13 +16,19 @@
 
 package org.ehcache.impl.internal.store.offheap;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 
@@ -38,6 +44,8 @@ import org.ehcache.core.spi.function.Function;
 import org.ehcache.core.spi.function.NullaryFunction;
 import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory;
+import org.ehcache.impl.internal.store.offheap.factories.SlottedSegment;
+import org.ehcache.core.spi.store.BinaryValueStore;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.spi.store.events.StoreEventSource;
 import org.ehcache.core.spi.store.tiering.AuthoritativeTier;
@@ -46,7 +54,10 @@ import org.ehcache.core.spi.store.tiering.LowerCachingTier;
 import org.ehcache.core.statistics.AuthoritativeTierOperationOutcomes;
 import org.ehcache.core.statistics.LowerCachingTierOperationsOutcome;
 import org.ehcache.core.statistics.StoreOperationOutcomes;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
 import org.ehcache.impl.internal.store.BinaryValueHolder;
+import org.ehcache.impl.internal.store.ExpiryReaper;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.offheapstore.Segment;
@@ -58,10 +69,21 @@ import static org.ehcache.core.exceptions.StorePassThroughException.handleRuntim
 import static org.ehcache.core.util.ValueSuppliers.supplierOf;
 import static org.terracotta.statistics.StatisticBuilder.operation;
 
-public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K, V>, LowerCachingTier<K, V> {
+public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K, V>, LowerCachingTier<K, V>, BinaryValueStore<K> {
 
   private static final Logger LOG = LoggerFactory.getLogger(AbstractOffHeapStore.class);
 
+  /**
+   * Number of mappings the expiry reaper scans between two checks of its deadline.
+   */
+  private static final int SWEEP_DEADLINE_CHECK_INTERVAL = 64;
+
+  /**
+   * Number of keys a bulk operation processes per segment write lock acquisition. Only store mutations run under that
+   * lock, user mapping functions never do: this bounds how long a large bulk operation makes other threads wait.
+   */
+  static final int BULK_KEYS_PER_LOCK = 16;
+
   private static final CachingTier.InvalidationListener NULL_INVALIDATION_LISTENER = new CachingTier.InvalidationListener() {
     @Override
     public void onInvalidation(Object key, ValueHolder valueHolder) {
@@ -69,6 +91,7 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     }
   };
 
+  private final String statisticsTag;
   private final Class<K> keyType;
   private final Class<V> valueType;
   private final TimeSource timeSource;
@@ -99,8 +122,12 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
   private volatile Callable<Void> valve;
   protected BackingMapEvictionListener<K, V> mapEvictionListener;
   private volatile CachingTier.InvalidationListener<K, V> invalidationListener = NULL_INVALIDATION_LISTENER;
+  private volatile ExpiryReaper expiryReaper;
+  private int sweepSegment;
+  private int sweepPosition;
 
   public AbstractOffHeapStore(String statisticsTag, Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher) {
+    this.statisticsTag = statisticsTag;
     keyType = config.getKeyType();
     valueType = config.getValueType();
     expiry = config.getExpiry();
@@ -263,6 +290,80 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     return internalGet(key, false, false) != null;
   }
 
+  @Override
+  public boolean supportsBinaryValues() {
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getBinaryValue(K key) throws StoreAccessException {
+    final AtomicReference<ByteBuffer> binaryValue = new AtomicReference<ByteBuffer>();
+    readBinaryValue(key, new Function<ByteBuffer, Void>() {
+      @Override
+      public Void apply(ByteBuffer storedValue) {
+        ByteBuffer copy = ByteBuffer.allocate(storedValue.remaining());
+        copy.put(storedValue).flip();
+        binaryValue.set(copy.asReadOnlyBuffer());
+        return null;
+      }
+    });
+    return binaryValue.get();
+  }
+
+  @Override
+  public int copyBinaryValue(K key, final ByteBuffer target) throws StoreAccessException {
+    final AtomicInteger size = new AtomicInteger(-1);
+    readBinaryValue(key, new Function<ByteBuffer, Void>() {
+      @Override
+      public Void apply(ByteBuffer storedValue) {
+        size.set(storedValue.remaining());
+        if (storedValue.remaining() <= target.remaining()) {
+          target.put(storedValue);
+        }
+        return null;
+      }
+    });
+    return size.get();
+  }
+
+  /**
+   * Hands the stored binary form of the value mapped to {@code key} to {@code reader}, under the segment lock.
+   * The buffer handed over must not escape the reader, its memory is reused once the lock is released.
+   */
+  private void readBinaryValue(K key, final Function<ByteBuffer, Void> reader) throws StoreAccessException {
+    checkKey(key);
+    getObserver.begin();
+    final StoreEventSink<K, V> eventSink = eventDispatcher.eventSink();
+    final AtomicBoolean hit = new AtomicBoolean();
+    try {
+      backingMap().computeIfPresent(key, new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
+        @Override
+        public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
+          long now = timeSource.getTimeMillis();
+
+          if (mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
+            onExpiration(mappedKey, mappedValue, eventSink);
+            return null;
+          }
+
+          // mappings are always decoded by OffHeapValueHolderPortability
+          reader.apply(((LazyOffHeapValueHolder<V>) mappedValue).getStoredBinaryValue());
+          hit.set(true);
+          return setAccessTimeAndExpiryThenReturnMapping(mappedKey, mappedValue, now, eventSink);
+        }
+      });
+      eventDispatcher.releaseEventSink(eventSink);
+    } catch (RuntimeException re) {
+      eventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+    }
+    if (hit.get()) {
+      getObserver.end(StoreOperationOutcomes.GetOutcome.HIT);
+    } else {
+      getObserver.end(StoreOperationOutcomes.GetOutcome.MISS);
+    }
+  }
+
   @Override
   public PutStatus put(final K key, final V value) throws StoreAccessException {
     putObserver.begin();
@@ -636,64 +737,17 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
 
   @Override
   public ValueHolder<V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction, final NullaryFunction<Boolean> replaceEqual) throws StoreAccessException {
-    computeObserver.begin();
     checkKey(key);
+    return compute(key, new ComputeFunction(mappingFunction, replaceEqual));
+  }
 
-    final AtomicBoolean write = new AtomicBoolean(false);
-    final AtomicReference<OffHeapValueHolder<V>> valueHeld = new AtomicReference<OffHeapValueHolder<V>>();
+  private ValueHolder<V> compute(K key, ComputeFunction computeFunction) throws StoreAccessException {
     final StoreEventSink<K, V> eventSink = eventDispatcher.eventSink();
-    BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>> computeFunction = new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
-      @Override
-      public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
-        long now = timeSource.getTimeMillis();
-        V existingValue = null;
-        if (mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
-          if (mappedValue != null) {
-            onExpiration(mappedKey, mappedValue, eventSink);
-          }
-          mappedValue = null;
-        } else {
-          existingValue = mappedValue.value();
-        }
-        V computedValue = mappingFunction.apply(mappedKey, existingValue);
-        if (computedValue == null) {
-          if (mappedValue != null) {
-            write.set(true);
-            eventSink.removed(mappedKey, mappedValue);
-          }
-          return null;
-        } else if (safeEquals(existingValue, computedValue) && !replaceEqual.apply()) {
-          if (mappedValue != null) {
-            OffHeapValueHolder<V> valueHolder = setAccessTimeAndExpiryThenReturnMapping(mappedKey, mappedValue, now, eventSink);
-            if (valueHolder == null) {
-              valueHeld.set(mappedValue);
-            }
-            return valueHolder;
-          } else {
-            return null;
-          }
-        }
-
-        checkValue(computedValue);
-        write.set(true);
-        if (mappedValue != null) {
-          OffHeapValueHolder<V> valueHolder = newUpdatedValueHolder(key, computedValue, mappedValue, now, eventSink);
-          if (valueHolder == null) {
-            valueHeld.set(new BasicOffHeapValueHolder<V>(mappedValue.getId(), computedValue, now, now));
-          }
-          return valueHolder;
-        } else {
-          return newCreateValueHolder(key, computedValue, now, eventSink);
-        }
-      }
-    };
-
-    OffHeapValueHolder<V> result;
     try {
+      ValueHolder<V> result;
       while (true) {
         try {
-          // TODO review as computeFunction can have side effects
-          result = backingMap().compute(key, computeFunction, false);
+          result = applyCompute(key, computeFunction, eventSink);
           break;
         } catch (OversizeMappingException e) {
           handleOversizeMappingException(key, e);
@@ -701,21 +755,7 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
           handleRuntimeException(re);
         }
       }
-      if (result == null && valueHeld.get() != null) {
-        result = valueHeld.get();
-      }
       eventDispatcher.releaseEventSink(eventSink);
-      if (result == null) {
-        if (write.get()) {
-          computeObserver.end(StoreOperationOutcomes.ComputeOutcome.REMOVED);
-        } else {
-          computeObserver.end(StoreOperationOutcomes.ComputeOutcome.MISS);
-        }
-      } else if (write.get()) {
-        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.PUT);
-      } else {
-        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.HIT);
-      }
       return result;
     } catch (StoreAccessException caex) {
       eventDispatcher.releaseEventSinkAfterFailure(eventSink, caex);
@@ -726,59 +766,43 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     }
   }
 
+  private ValueHolder<V> applyCompute(K key, ComputeFunction computeFunction, StoreEventSink<K, V> eventSink) {
+    computeObserver.begin();
+    computeFunction.reset(eventSink);
+    // TODO review as computeFunction can have side effects
+    OffHeapValueHolder<V> result = backingMap().compute(key, computeFunction, false);
+    if (result == null && computeFunction.valueHeld != null) {
+      result = computeFunction.valueHeld;
+    }
+    if (result == null) {
+      if (computeFunction.write) {
+        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.REMOVED);
+      } else {
+        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.MISS);
+      }
+    } else if (computeFunction.write) {
+      computeObserver.end(StoreOperationOutcomes.ComputeOutcome.PUT);
+    } else {
+      computeObserver.end(StoreOperationOutcomes.ComputeOutcome.HIT);
+    }
+    return result;
+  }
+
   @Override
   public ValueHolder<V> computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) throws StoreAccessException {
     return internalComputeIfAbsent(key, mappingFunction, false, false);
   }
 
   private Store.ValueHolder<V> internalComputeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction, boolean fault, final boolean delayedDeserialization) throws StoreAccessException {
-    if (fault) {
-      computeIfAbsentAndFaultObserver.begin();
-    } else {
-      computeIfAbsentObserver.begin();
-    }
     checkKey(key);
 
-    final AtomicBoolean write = new AtomicBoolean(false);
-    final AtomicReference<OffHeapValueHolder<V>> valueHeld = new AtomicReference<OffHeapValueHolder<V>>();
+    final ComputeIfAbsentFunction computeFunction = new ComputeIfAbsentFunction(mappingFunction, delayedDeserialization);
     final StoreEventSink<K, V> eventSink = eventDispatcher.eventSink();
-    BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>> computeFunction = new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
-      @Override
-      public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
-        long now = timeSource.getTimeMillis();
-        if (mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
-          if (mappedValue != null) {
-            onExpiration(mappedKey, mappedValue, eventSink);
-          }
-          write.set(true);
-          V computedValue = mappingFunction.apply(mappedKey);
-          if (computedValue == null) {
-            return null;
-          } else {
-            checkValue(computedValue);
-            return newCreateValueHolder(mappedKey, computedValue, now, eventSink);
-          }
-        } else {
-          OffHeapValueHolder<V> valueHolder = setAccessTimeAndExpiryThenReturnMapping(mappedKey, mappedValue, now, eventSink);
-          if (valueHolder != null) {
-            if (delayedDeserialization) {
-              mappedValue.detach();
-            } else {
-              mappedValue.forceDeserialization();
-            }
-          } else {
-            valueHeld.set(mappedValue);
-          }
-          return valueHolder;
-        }
-      }
-    };
-
-    OffHeapValueHolder<V> computeResult;
     try {
+      ValueHolder<V> computeResult;
       while (true) {
         try {
-          computeResult = backingMap().compute(key, computeFunction, fault);
+          computeResult = applyComputeIfAbsent(key, computeFunction, fault, eventSink);
           break;
         } catch (OversizeMappingException e) {
           handleOversizeMappingException(key, e);
@@ -786,31 +810,7 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
           handleRuntimeException(re);
         }
       }
-      if (computeResult == null && valueHeld.get() != null) {
-        computeResult = valueHeld.get();
-      }
       eventDispatcher.releaseEventSink(eventSink);
-      if (write.get()) {
-        if (computeResult != null) {
-          if (fault) {
-            computeIfAbsentAndFaultObserver.end(AuthoritativeTierOperationOutcomes.ComputeIfAbsentAndFaultOutcome.PUT);
-          } else {
-            computeIfAbsentObserver.end(StoreOperationOutcomes.ComputeIfAbsentOutcome.PUT);
-          }
-        } else {
-          if (fault) {
-            computeIfAbsentAndFaultObserver.end(AuthoritativeTierOperationOutcomes.ComputeIfAbsentAndFaultOutcome.NOOP);
-          } else {
-            computeIfAbsentObserver.end(StoreOperationOutcomes.ComputeIfAbsentOutcome.NOOP);
-          }
-        }
-      } else {
-        if (fault) {
-          computeIfAbsentAndFaultObserver.end(AuthoritativeTierOperationOutcomes.ComputeIfAbsentAndFaultOutcome.HIT);
-        } else {
-          computeIfAbsentObserver.end(StoreOperationOutcomes.ComputeIfAbsentOutcome.HIT);
-        }
-      }
       return computeResult;
     } catch (StoreAccessException caex) {
       eventDispatcher.releaseEventSinkAfterFailure(eventSink, caex);
@@ -821,6 +821,41 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     }
   }
 
+  private ValueHolder<V> applyComputeIfAbsent(K key, ComputeIfAbsentFunction computeFunction, boolean fault, StoreEventSink<K, V> eventSink) {
+    if (fault) {
+      computeIfAbsentAndFaultObserver.begin();
+    } else {
+      computeIfAbsentObserver.begin();
+    }
+    computeFunction.reset(eventSink);
+    OffHeapValueHolder<V> computeResult = backingMap().compute(key, computeFunction, fault);
+    if (computeResult == null && computeFunction.valueHeld != null) {
+      computeResult = computeFunction.valueHeld;
+    }
+    if (computeFunction.write) {
+      if (computeResult != null) {
+        if (fault) {
+          computeIfAbsentAndFaultObserver.end(AuthoritativeTierOperationOutcomes.ComputeIfAbsentAndFaultOutcome.PUT);
+        } else {
+          computeIfAbsentObserver.end(StoreOperationOutcomes.ComputeIfAbsentOutcome.PUT);
+        }
+      } else {
+        if (fault) {
+          computeIfAbsentAndFaultObserver.end(AuthoritativeTierOperationOutcomes.ComputeIfAbsentAndFaultOutcome.NOOP);
+        } else {
+          computeIfAbsentObserver.end(StoreOperationOutcomes.ComputeIfAbsentOutcome.NOOP);
+        }
+      }
+    } else {
+      if (fault) {
+        computeIfAbsentAndFaultObserver.end(AuthoritativeTierOperationOutcomes.ComputeIfAbsentAndFaultOutcome.HIT);
+      } else {
+        computeIfAbsentObserver.end(StoreOperationOutcomes.ComputeIfAbsentOutcome.HIT);
+      }
+    }
+    return computeResult;
+  }
+
   @Override
   public Map<K, ValueHolder<V>> bulkCompute(Set<? extends K> keys, Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> remappingFunction) throws StoreAccessException {
     return bulkCompute(keys, remappingFunction, REPLACE_EQUALS_TRUE);
@@ -828,69 +863,334 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
 
   @Override
   public Map<K, ValueHolder<V>> bulkCompute(Set<? extends K> keys, final Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> remappingFunction, NullaryFunction<Boolean> replaceEqual) throws StoreAccessException {
-    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
-    for (K key : keys) {
-      checkKey(key);
-      BiFunction<K, V, V> biFunction = new BiFunction<K, V, V>() {
-        @Override
-        public V apply(final K k, final V v) {
-          Map.Entry<K, V> entry = new Map.Entry<K, V>() {
-            @Override
-            public K getKey() {
-              return k;
-            }
+    BiFunction<K, V, V> biFunction = new BiFunction<K, V, V>() {
+      @Override
+      public V apply(final K k, final V v) {
+        Map.Entry<K, V> entry = new Map.Entry<K, V>() {
+          @Override
+          public K getKey() {
+            return k;
+          }
 
-            @Override
-            public V getValue() {
-              return v;
-            }
+          @Override
+          public V getValue() {
+            return v;
+          }
 
-            @Override
-            public V setValue(V value) {
-              throw new UnsupportedOperationException();
-            }
-          };
-          java.util.Iterator<? extends Map.Entry<? extends K, ? extends V>> iterator = remappingFunction.apply(Collections
-              .singleton(entry)).iterator();
-          Map.Entry<? extends K, ? extends V> result = iterator.next();
-          if (result != null) {
-            checkKey(result.getKey());
-            return result.getValue();
-          } else {
-            return null;
+          @Override
+          public V setValue(V value) {
+            throw new UnsupportedOperationException();
           }
+        };
+        java.util.Iterator<? extends Map.Entry<? extends K, ? extends V>> iterator = remappingFunction.apply(Collections
+            .singleton(entry)).iterator();
+        Map.Entry<? extends K, ? extends V> result = iterator.next();
+        if (result != null) {
+          checkKey(result.getKey());
+          return result.getValue();
+        } else {
+          return null;
         }
-      };
-      ValueHolder<V> computed = compute(key, biFunction, replaceEqual);
-      result.put(key, computed);
+      }
+    };
+    // the remapping function may write through to a system of record, so keys are not batched under a segment lock
+    ComputeFunction computeFunction = new ComputeFunction(biFunction, replaceEqual);
+    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+    for (K key : keys) {
+      checkKey(key);
+      result.put(key, compute(key, computeFunction));
     }
     return result;
   }
 
   @Override
   public Map<K, ValueHolder<V>> bulkComputeIfAbsent(Set<? extends K> keys, final Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction) throws StoreAccessException {
-    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+    return internalBulkComputeIfAbsent(keys, mappingFunction, false, false);
+  }
+
+  /**
+   * Computes the absent keys in three passes, so that the mapping function, a loader possibly, is invoked once for all
+   * of them and outside of any segment lock.
+   * <P>
+   *   The first pass serves the hits and expires the stale mappings, collecting the absent keys. The mapping function
+   *   then computes all of these at once. The last pass installs the computed values, unless a mapping got installed
+   *   for the key in the meantime, in which case that mapping is kept.
+   * </P>
+   */
+  private Map<K, ValueHolder<V>> internalBulkComputeIfAbsent(Iterable<? extends K> keys, final Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction,
+                                                            final boolean fault, boolean delayedDeserialization) throws StoreAccessException {
+    final Set<K> absentKeys = new LinkedHashSet<K>();
+    final ComputeIfAbsentFunction lookupFunction = new ComputeIfAbsentFunction(new Function<K, V>() {
+      @Override
+      public V apply(K k) {
+        absentKeys.add(k);
+        return null;
+      }
+    }, delayedDeserialization);
+    Map<K, ValueHolder<V>> result = applyPerSegment(keys, new SegmentBatchOperation<K, V>() {
+      @Override
+      public ValueHolder<V> apply(K key, StoreEventSink<K, V> eventSink) {
+        return applyLookup(key, lookupFunction, fault, eventSink);
+      }
+    });
+    if (absentKeys.isEmpty()) {
+      return result;
+    }
+
+    final Map<K, V> computed = new HashMap<K, V>();
+    try {
+      for (Map.Entry<? extends K, ? extends V> entry : mappingFunction.apply(absentKeys)) {
+        if (entry != null) {
+          checkKey(entry.getKey());
+          computed.put(entry.getKey(), entry.getValue());
+        }
+      }
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+    }
+
+    final ComputeIfAbsentFunction installFunction = new ComputeIfAbsentFunction(new Function<K, V>() {
+      @Override
+      public V apply(K k) {
+        return computed.get(k);
+      }
+    }, delayedDeserialization);
+    result.putAll(applyPerSegment(absentKeys, new SegmentBatchOperation<K, V>() {
+      @Override
+      public ValueHolder<V> apply(K key, StoreEventSink<K, V> eventSink) {
+        return applyComputeIfAbsent(key, installFunction, fault, eventSink);
+      }
+    }));
+    return result;
+  }
+
+  /**
+   * Looks up {@code key} as a {@code computeIfAbsent} would, leaving absent keys to {@code lookupFunction}.
+   * <P>
+   *   Only hits are recorded in the statistics here, absent keys being recorded once their value is installed.
+   * </P>
+   */
+  private ValueHolder<V> applyLookup(K key, ComputeIfAbsentFunction lookupFunction, boolean fault, StoreEventSink<K, V> eventSink) {
+    lookupFunction.reset(eventSink);
+    OffHeapValueHolder<V> valueHolder = backingMap().compute(key, lookupFunction, fault);
+    if (valueHolder == null && lookupFunction.valueHeld != null) {
+      valueHolder = lookupFunction.valueHeld;
+    }
+    if (!lookupFunction.write) {
+      if (fault) {
+        computeIfAbsentAndFaultObserver.begin();
+        computeIfAbsentAndFaultObserver.end(AuthoritativeTierOperationOutcomes.ComputeIfAbsentAndFaultOutcome.HIT);
+      } else {
+        computeIfAbsentObserver.begin();
+        computeIfAbsentObserver.end(StoreOperationOutcomes.ComputeIfAbsentOutcome.HIT);
+      }
+    }
+    return valueHolder;
+  }
+
+  /**
+   * Applies an operation to all the keys, grouped by backing map segment.
+   * <P>
+   *   Each segment write lock is taken once for up to {@link #BULK_KEYS_PER_LOCK} of its keys, instead of once per
+   *   key, and released in between so that a large bulk operation does not hold it for all its keys. The operation
+   *   must not invoke user mapping functions, as these may perform I/O. If a mapping does not fit, the lock is released
+   *   before making room in the other segments, and the batch resumes with the failed key.
+   * </P>
+   *
+   * @param keys the keys to operate on
+   * @param operation the operation applied to each key under its segment write lock
+   * @return a map of each key to the value holder returned by the operation
+   *
+   * @throws StoreAccessException if the operation fails for a key
+   */
+  private Map<K, ValueHolder<V>> applyPerSegment(Iterable<? extends K> keys, SegmentBatchOperation<K, V> operation) throws StoreAccessException {
+    EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> map = backingMap();
+    Map<Integer, List<K>> keysPerSegment = new HashMap<Integer, List<K>>();
     for (K key : keys) {
       checkKey(key);
-      Function<K, V> function = new Function<K, V>() {
-        @Override
-        public V apply(K k) {
-          java.util.Iterator<? extends Map.Entry<? extends K, ? extends V>> iterator = mappingFunction.apply(Collections.singleton(k)).iterator();
-          Map.Entry<? extends K, ? extends V> result = iterator.next();
-          if (result != null) {
-            checkKey(result.getKey());
-            return result.getValue();
-          } else {
-            return null;
+      Integer segmentIndex = map.segmentIndexFor(key);
+      List<K> segmentKeys = keysPerSegment.get(segmentIndex);
+      if (segmentKeys == null) {
+        segmentKeys = new ArrayList<K>();
+        keysPerSegment.put(segmentIndex, segmentKeys);
+      }
+      segmentKeys.add(key);
+    }
+
+    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+    List<Segment<K, OffHeapValueHolder<V>>> segments = map.getSegments();
+    for (Map.Entry<Integer, List<K>> batch : keysPerSegment.entrySet()) {
+      Lock lock = segments.get(batch.getKey()).writeLock();
+      List<K> segmentKeys = batch.getValue();
+      int next = 0;
+      while (next < segmentKeys.size()) {
+        OversizeMappingException oversize = null;
+        final StoreEventSink<K, V> eventSink = eventDispatcher.eventSink();
+        try {
+          int end = Math.min(segmentKeys.size(), next + BULK_KEYS_PER_LOCK);
+          lock.lock();
+          try {
+            for (; next < end; next++) {
+              K key = segmentKeys.get(next);
+              try {
+                result.put(key, operation.apply(key, eventSink));
+              } catch (OversizeMappingException e) {
+                oversize = e;
+                break;
+              }
+            }
+          } finally {
+            lock.unlock();
           }
+          eventDispatcher.releaseEventSink(eventSink);
+        } catch (RuntimeException re) {
+          eventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+          handleRuntimeException(re);
+        }
+        if (oversize != null) {
+          // Shrinking the other segments takes their locks, so this must happen outside of the batch lock
+          handleOversizeMappingException(segmentKeys.get(next), oversize);
         }
-      };
-      ValueHolder<V> computed = computeIfAbsent(key, function);
-      result.put(key, computed);
+      }
     }
     return result;
   }
 
+  /**
+   * Single key operation run by {@link #applyPerSegment(Iterable, SegmentBatchOperation)}.
+   */
+  private interface SegmentBatchOperation<K, V> {
+    ValueHolder<V> apply(K key, StoreEventSink<K, V> eventSink);
+  }
+
+  /**
+   * The backing map function behind {@code compute}.
+   * <P>
+   *   A single instance is reused across all the keys of a bulk operation, its per key state being reset before each
+   *   use.
+   * </P>
+   */
+  private final class ComputeFunction implements BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>> {
+
+    private final BiFunction<? super K, ? super V, ? extends V> mappingFunction;
+    private final NullaryFunction<Boolean> replaceEqual;
+    private StoreEventSink<K, V> eventSink;
+    private boolean write;
+    private OffHeapValueHolder<V> valueHeld;
+
+    ComputeFunction(BiFunction<? super K, ? super V, ? extends V> mappingFunction, NullaryFunction<Boolean> replaceEqual) {
+      this.mappingFunction = mappingFunction;
+      this.replaceEqual = replaceEqual;
+    }
+
+    void reset(StoreEventSink<K, V> eventSink) {
+      this.eventSink = eventSink;
+      this.write = false;
+      this.valueHeld = null;
+    }
+
+    @Override
+    public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
+      long now = timeSource.getTimeMillis();
+      V existingValue = null;
+      if (mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
+        if (mappedValue != null) {
+          onExpiration(mappedKey, mappedValue, eventSink);
+        }
+        mappedValue = null;
+      } else {
+        existingValue = mappedValue.value();
+      }
+      V computedValue = mappingFunction.apply(mappedKey, existingValue);
+      if (computedValue == null) {
+        if (mappedValue != null) {
+          write = true;
+          eventSink.removed(mappedKey, mappedValue);
+        }
+        return null;
+      } else if (safeEquals(existingValue, computedValue) && !replaceEqual.apply()) {
+        if (mappedValue != null) {
+          OffHeapValueHolder<V> valueHolder = setAccessTimeAndExpiryThenReturnMapping(mappedKey, mappedValue, now, eventSink);
+          if (valueHolder == null) {
+            valueHeld = mappedValue;
+          }
+          return valueHolder;
+        } else {
+          return null;
+        }
+      }
+
+      checkValue(computedValue);
+      write = true;
+      if (mappedValue != null) {
+        OffHeapValueHolder<V> valueHolder = newUpdatedValueHolder(mappedKey, computedValue, mappedValue, now, eventSink);
+        if (valueHolder == null) {
+          valueHeld = new BasicOffHeapValueHolder<V>(mappedValue.getId(), computedValue, now, now);
+        }
+        return valueHolder;
+      } else {
+        return newCreateValueHolder(mappedKey, computedValue, now, eventSink);
+      }
+    }
+  }
+
+  /**
+   * The backing map function behind {@code computeIfAbsent} and {@code computeIfAbsentAndFault}.
+   * <P>
+   *   A single instance is reused across all the keys of a bulk operation, its per key state being reset before each
+   *   use.
+   * </P>
+   */
+  private final class ComputeIfAbsentFunction implements BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>> {
+
+    private final Function<? super K, ? extends V> mappingFunction;
+    private final boolean delayedDeserialization;
+    private StoreEventSink<K, V> eventSink;
+    private boolean write;
+    private OffHeapValueHolder<V> valueHeld;
+
+    ComputeIfAbsentFunction(Function<? super K, ? extends V> mappingFunction, boolean delayedDeserialization) {
+      this.mappingFunction = mappingFunction;
+      this.delayedDeserialization = delayedDeserialization;
+    }
+
+    void reset(StoreEventSink<K, V> eventSink) {
+      this.eventSink = eventSink;
+      this.write = false;
+      this.valueHeld = null;
+    }
+
+    @Override
+    public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
+      long now = timeSource.getTimeMillis();
+      if (mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
+        if (mappedValue != null) {
+          onExpiration(mappedKey, mappedValue, eventSink);
+        }
+        write = true;
+        V computedValue = mappingFunction.apply(mappedKey);
+        if (computedValue == null) {
+          return null;
+        } else {
+          checkValue(computedValue);
+          return newCreateValueHolder(mappedKey, computedValue, now, eventSink);
+        }
+      } else {
+        OffHeapValueHolder<V> valueHolder = setAccessTimeAndExpiryThenReturnMapping(mappedKey, mappedValue, now, eventSink);
+        if (valueHolder != null) {
+          if (delayedDeserialization) {
+            mappedValue.detach();
+          } else {
+            mappedValue.forceDeserialization();
+          }
+        } else {
+          valueHeld = mappedValue;
+        }
+        return valueHolder;
+      }
+    }
+  }
+
   @Override
   public ValueHolder<V> getAndFault(K key) throws StoreAccessException {
     getAndFaultObserver.begin();
@@ -929,6 +1229,11 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     return internalComputeIfAbsent(key, mappingFunction, true, true);
   }
 
+  @Override
+  public Map<K, ValueHolder<V>> bulkComputeIfAbsentAndFault(Iterable<? extends K> keys, Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction) throws StoreAccessException {
+    return internalBulkComputeIfAbsent(keys, mappingFunction, true, true);
+  }
+
   @Override
   public boolean flush(K key, final ValueHolder<V> valueFlushed) {
     flushObserver.begin();
@@ -1192,7 +1497,8 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
 
   private OffHeapValueHolder<V> newTransferValueHolder(ValueHolder<V> valueHolder) {
     if (valueHolder instanceof BinaryValueHolder && ((BinaryValueHolder) valueHolder).isBinaryValueAvailable()) {
-      return new BinaryOffHeapValueHolder<V>(valueHolder.getId(), valueHolder.value(), ((BinaryValueHolder)valueHolder).getBinaryValue(),
+      // the value is carried in binary form, only deserialized if the eviction veto asks for it
+      return new BinaryOffHeapValueHolder<V>(valueHolder.getId(), valueHolder, ((BinaryValueHolder)valueHolder).getBinaryValue(),
           valueHolder.creationTime(OffHeapValueHolder.TIME_UNIT), valueHolder.expirationTime(OffHeapValueHolder.TIME_UNIT),
           valueHolder.lastAccessTime(OffHeapValueHolder.TIME_UNIT), valueHolder.hits());
     } else {
@@ -1289,12 +1595,184 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     expirationObserver.end(StoreOperationOutcomes.ExpirationOutcome.SUCCESS);
   }
 
+  /**
+   * Starts removing expired mappings in the background.
+   *
+   * @param configuration the reaper settings
+   * @param executor the executor running the reaper, shut down by {@link #stopExpiryReaper()}
+   */
+  protected void startExpiryReaper(ExpiryReaperConfiguration configuration, ScheduledExecutorService executor) {
+    ExpiryReaper reaper = new ExpiryReaper(new ExpiryReaper.Sweepable() {
+      @Override
+      public void sweep(long now, long deadline, ExpiryReaper.Progress progress) {
+        sweepExpired(now, deadline, progress);
+      }
+    }, timeSource, executor, configuration, this, statisticsTag);
+    expiryReaper = reaper;
+    reaper.start();
+  }
+
+  protected void stopExpiryReaper() {
+    ExpiryReaper reaper = expiryReaper;
+    if (reaper != null) {
+      expiryReaper = null;
+      reaper.stop();
+    }
+  }
+
+  /**
+   * Creates the compression of the values of this store, exposing its statistics along with the store ones.
+   *
+   * @param threshold the size in bytes below which values are not compressed
+   * @return the value compression to hand to the value portability
+   */
+  protected ValueCompression createValueCompression(int threshold) {
+    final ValueCompression compression = new ValueCompression(threshold);
+    Set<String> tags = Collections.singleton(statisticsTag);
+    StatisticsManager.createPassThroughStatistic(this, "compressedValues", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compression.getCompressedValues();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "incompressibleValues", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compression.getIncompressibleValues();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "compressionInputBytes", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compression.getInputBytes();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "compressionOutputBytes", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compression.getOutputBytes();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "compressionTime", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compression.getCompressionTime();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(this, "decompressionTime", tags, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compression.getDecompressionTime();
+      }
+    });
+    return compression;
+  }
+
+  /**
+   * Resumes the sweep for expired mappings, one backing map segment at a time.
+   */
+  void sweepExpired(long now, long deadline, ExpiryReaper.Progress progress) {
+    EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> map = backingMap();
+    if (map == null) {
+      return;
+    }
+    List<Segment<K, OffHeapValueHolder<V>>> segments = map.getSegments();
+    for (int swept = 0; swept < segments.size(); swept++) {
+      if (sweepSegment >= segments.size()) {
+        sweepSegment = 0;
+        sweepPosition = 0;
+      }
+      if (!sweepSegment(map, segments.get(sweepSegment), now, deadline, progress)) {
+        return;
+      }
+      sweepSegment++;
+      sweepPosition = 0;
+      if (System.nanoTime() - deadline >= 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Sweeps a segment under its write lock, starting at the hash table slot the previous sweep stopped at.
+   * <P>
+   *   Holding the lock makes the freed memory measurable, it is held until the segment is swept or the deadline passes.
+   *   Only the values are decoded while scanning, keys are decoded for expired mappings only. A resize of the table
+   *   between two sweeps can make the resumed sweep miss or revisit some mappings, they are handled on the next round.
+   * </P>
+   *
+   * @return {@code true} if the whole segment was swept
+   */
+  @SuppressWarnings("unchecked")
+  private boolean sweepSegment(EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> map, Segment<K, OffHeapValueHolder<V>> segment,
+                               long now, long deadline, ExpiryReaper.Progress progress) {
+    List<K> expired = new ArrayList<K>();
+    int scanned = 0;
+    boolean completed = true;
+    final StoreEventSink<K, V> eventSink = eventDispatcher.eventSink();
+    Lock lock = segment.writeLock();
+    try {
+      lock.lock();
+      try {
+        SlottedSegment<K, OffHeapValueHolder<V>> slots = (SlottedSegment<K, OffHeapValueHolder<V>>) segment;
+        long capacity = slots.getTableCapacity();
+        int slot = sweepPosition;
+        for (; slot < capacity; slot++) {
+          if (slot > sweepPosition && (slot - sweepPosition) % SWEEP_DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+            completed = false;
+            break;
+          }
+          OffHeapValueHolder<V> valueHolder = slots.getValueAtSlot(slot);
+          if (valueHolder != null) {
+            scanned++;
+            if (valueHolder.isExpired(now, OffHeapValueHolder.TIME_UNIT)) {
+              expired.add(slots.getKeyAtSlot(slot));
+            }
+          }
+        }
+        sweepPosition = slot;
+        long occupiedMemory = segment.getDataOccupiedMemory();
+        for (K key : expired) {
+          map.computeIfPresent(key, new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
+            @Override
+            public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
+              onExpiration(mappedKey, mappedValue, eventSink);
+              return null;
+            }
+          });
+        }
+        progress.expired(expired.size(), occupiedMemory - segment.getDataOccupiedMemory());
+      } finally {
+        lock.unlock();
+      }
+      eventDispatcher.releaseEventSink(eventSink);
+    } catch (RuntimeException re) {
+      eventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      throw re;
+    } finally {
+      progress.scanned(scanned);
+    }
+    return completed;
+  }
+
   protected abstract EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> backingMap();
 
   protected static <K, V> EvictionVeto<K, OffHeapValueHolder<V>> wrap(EvictionVeto<? super K, ? super V> delegate) {
     return new OffHeapEvictionVetoWrapper<K, V>(delegate);
   }
 
+  /**
+   * Detaches a value holder decoded from a backing map from the memory it was read from, so that it can be put in
+   * another backing map in binary form.
+   * <P>
+   *   Must be called while the source backing map cannot change.
+   * </P>
+   */
+  protected static <V> OffHeapValueHolder<V> detach(OffHeapValueHolder<V> valueHolder) {
+    valueHolder.detach();
+    return valueHolder;
+  }
+
   private static class OffHeapEvictionVetoWrapper<K, V> implements EvictionVeto<K, OffHeapValueHolder<V>> {
 
     private final EvictionVeto<? super K, ? super V> delegate;
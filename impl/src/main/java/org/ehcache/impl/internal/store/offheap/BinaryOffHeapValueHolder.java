@@ -16,6 +16,7 @@
 
 package org.ehcache.impl.internal.store.offheap;
 
+import org.ehcache.ValueSupplier;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.impl.internal.store.BinaryValueHolder;
 import org.terracotta.offheapstore.util.FindbugsSuppressWarnings;
@@ -23,17 +24,27 @@ import org.terracotta.offheapstore.util.FindbugsSuppressWarnings;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import static org.ehcache.core.util.ValueSuppliers.supplierOf;
+
 /**
  * BinaryOffHeapValueHolder
  */
 final class BinaryOffHeapValueHolder<V> extends OffHeapValueHolder<V> implements BinaryValueHolder {
 
   private final ByteBuffer binaryValue;
-  private final V value;
+  private final ValueSupplier<? extends V> valueSupplier;
 
   BinaryOffHeapValueHolder(long id, V value, ByteBuffer binaryValue, long creationTime, long expireTime, long lastAccessTime, long hits) {
+    this(id, supplierOf(value), binaryValue, creationTime, expireTime, lastAccessTime, hits);
+  }
+
+  /**
+   * Creates a holder whose value is only obtained from {@code valueSupplier} when asked for, so that transferring an
+   * already serialized value does not deserialize it.
+   */
+  BinaryOffHeapValueHolder(long id, ValueSupplier<? extends V> valueSupplier, ByteBuffer binaryValue, long creationTime, long expireTime, long lastAccessTime, long hits) {
     super(id, creationTime, expireTime);
-    this.value = value;
+    this.valueSupplier = valueSupplier;
     setLastAccessTime(lastAccessTime, TIME_UNIT);
     this.binaryValue = binaryValue;
     this.setHits(hits);
@@ -72,7 +83,7 @@ final class BinaryOffHeapValueHolder<V> extends OffHeapValueHolder<V> implements
 
   @Override
   public V value() {
-    return value;
+    return valueSupplier.value();
   }
 
   private void writeObject(java.io.ObjectOutputStream out) throws IOException {
@@ -20,6 +20,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
+import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment;
 
 import org.terracotta.offheapstore.MetadataTuple;
 import org.terracotta.offheapstore.Segment;
@@ -152,6 +153,7 @@ public class EhcacheConcurrentOffHeapClockCache<K, V> extends AbstractConcurrent
     MetadataTuple<V> result = computeWithMetadata(key, new org.terracotta.offheapstore.jdk8.BiFunction<K, MetadataTuple<V>, MetadataTuple<V>>() {
       @Override
       public MetadataTuple<V> apply(K k, MetadataTuple<V> current) {
+        recordAccess(k);
         V oldValue = current == null ? null : current.value();
         V newValue = mappingFunction.apply(k, oldValue);
 
@@ -172,6 +174,7 @@ public class EhcacheConcurrentOffHeapClockCache<K, V> extends AbstractConcurrent
     MetadataTuple<V> result = computeIfPresentWithMetadata(key, new org.terracotta.offheapstore.jdk8.BiFunction<K, MetadataTuple<V>, MetadataTuple<V>>() {
       @Override
       public MetadataTuple<V> apply(K k, MetadataTuple<V> current) {
+        recordAccess(k);
         V oldValue = current.value();
         V newValue = mappingFunction.apply(k, oldValue);
 
@@ -192,6 +195,7 @@ public class EhcacheConcurrentOffHeapClockCache<K, V> extends AbstractConcurrent
     MetadataTuple<V> result = computeIfPresentWithMetadata(key, new org.terracotta.offheapstore.jdk8.BiFunction<K, MetadataTuple<V>, MetadataTuple<V>>() {
       @Override
       public MetadataTuple<V> apply(K k, MetadataTuple<V> current) {
+        recordAccess(k);
         V oldValue = current.value();
         V newValue = mappingFunction.apply(k, oldValue);
 
@@ -213,6 +217,7 @@ public class EhcacheConcurrentOffHeapClockCache<K, V> extends AbstractConcurrent
     computeIfPresentWithMetadata(key, new org.terracotta.offheapstore.jdk8.BiFunction<K, MetadataTuple<V>, MetadataTuple<V>>() {
       @Override
       public MetadataTuple<V> apply(K k, MetadataTuple<V> current) {
+        recordAccess(k);
         if ((current.metadata() & Metadata.PINNED) != 0) {
           V oldValue = current.value();
           V newValue = remappingFunction.apply(k, oldValue);
@@ -240,4 +245,20 @@ public class EhcacheConcurrentOffHeapClockCache<K, V> extends AbstractConcurrent
   public long nextIdFor(final K key) {
     return counters[getIndexFor(key.hashCode())].getAndIncrement();
   }
+
+  @Override
+  public int segmentIndexFor(K key) {
+    return getIndexFor(key.hashCode());
+  }
+
+  /**
+   * Records an access in the frequency sketch of the key's segment. Called from within the compute functions so that
+   * the sketch is only ever updated under the segment write lock.
+   */
+  private void recordAccess(K key) {
+    Segment<K, V> segment = segments[getIndexFor(key.hashCode())];
+    if (segment instanceof EhcacheSegment) {
+      ((EhcacheSegment<K, V>) segment).recordAccess(key);
+    }
+  }
 }
@@ -85,5 +85,14 @@ public interface EhcacheOffHeapBackingMap<K, V> extends ConcurrentMap<K, V>, Off
 
   List<Segment<K, V>> getSegments();
 
+  /**
+   * Returns the index, in {@link #getSegments()}, of the segment holding the mapping for the given key.
+   *
+   * @param key the key to locate
+   *
+   * @return the segment index for the key
+   */
+  int segmentIndexFor(K key);
+
   boolean shrinkOthers(int excludedHash);
 }
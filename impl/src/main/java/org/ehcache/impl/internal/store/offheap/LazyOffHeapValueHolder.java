@@ -20,6 +20,7 @@ import org.ehcache.core.spi.store.Store;
 import org.ehcache.impl.internal.store.BinaryValueHolder;
 import org.ehcache.exceptions.SerializerException;
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompression;
 import org.ehcache.spi.serialization.Serializer;
 import org.terracotta.offheapstore.storage.portability.WriteContext;
 import org.terracotta.offheapstore.util.FindbugsSuppressWarnings;
@@ -37,16 +38,34 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
   private final WriteContext writeContext;
   private Mode mode;
   private ByteBuffer binaryValue;
+  private final ValueCompression decompression;
+  private volatile ByteBuffer uncompressedValue;
   private V value;
+  private long writtenAccessTime;
+  private long writtenExpireTime;
 
   public LazyOffHeapValueHolder(long id, ByteBuffer binaryValue, Serializer<V> serializer, long creationTime, long expireTime, long lastAccessTime, long hits, WriteContext writeContext) {
+    this(id, binaryValue, null, serializer, creationTime, expireTime, lastAccessTime, hits, writeContext);
+  }
+
+  /**
+   * Creates a value holder over a stored value, compressed if {@code decompression} is not {@code null}.
+   * <P>
+   *   A compressed value is only decompressed once its value or binary form is asked for, so that accesses only
+   *   touching the metadata, and detaching, do not pay for it.
+   * </P>
+   */
+  public LazyOffHeapValueHolder(long id, ByteBuffer binaryValue, ValueCompression decompression, Serializer<V> serializer, long creationTime, long expireTime, long lastAccessTime, long hits, WriteContext writeContext) {
     super(id, creationTime, expireTime);
     setLastAccessTime(lastAccessTime, TIME_UNIT);
     this.binaryValue = binaryValue;
+    this.decompression = decompression;
     this.valueSerializer = serializer;
     this.setHits(hits);
     this.writeContext = writeContext;
     this.mode = Mode.ATTACHED;
+    this.writtenAccessTime = lastAccessTime(TIME_UNIT);
+    this.writtenExpireTime = expirationTime(TIME_UNIT);
   }
 
   @Override
@@ -58,7 +77,7 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
   @Override
   public ByteBuffer getBinaryValue() throws IllegalStateException {
     if (isBinaryValueAvailable()) {
-      return binaryValue.duplicate();
+      return uncompressedValue().duplicate();
     } else {
       throw new IllegalStateException("This OffHeapValueHolder has not been prepared to hand off its binary form");
     }
@@ -69,6 +88,33 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
     return mode == Mode.DETACHED;
   }
 
+  /**
+   * Must be called under offheap lock, the returned buffer views memory that is reused once the lock is released
+   * when attached.
+   */
+  ByteBuffer getStoredBinaryValue() {
+    return uncompressedValue().duplicate();
+  }
+
+  /**
+   * Returns the uncompressed binary value, decompressing it on first use.
+   * <P>
+   *   A detached holder is shared between threads: the stored bytes are never modified, and the decompressed ones are
+   *   only published once complete. Threads racing on the first use may each decompress, which is harmless.
+   * </P>
+   */
+  private ByteBuffer uncompressedValue() {
+    if (decompression == null) {
+      return binaryValue;
+    }
+    ByteBuffer uncompressed = uncompressedValue;
+    if (uncompressed == null) {
+      uncompressed = decompression.decompress(binaryValue.duplicate());
+      uncompressedValue = uncompressed;
+    }
+    return uncompressed;
+  }
+
   @Override
   void updateMetadata(final Store.ValueHolder<V> valueFlushed) {
     if(getId() != valueFlushed.getId()) {
@@ -81,11 +127,22 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
 
   /**
    * Must be called under offheap lock, may corrupt memory otherwise
+   * <P>
+   *   Times that did not change since they were read, as is common with a coarse time source, are not rewritten.
+   * </P>
    */
   @Override
   void writeBack() {
-    writeContext.setLong(OffHeapValueHolderPortability.ACCESS_TIME_OFFSET, lastAccessTime(TimeUnit.MILLISECONDS));
-    writeContext.setLong(OffHeapValueHolderPortability.EXPIRE_TIME_OFFSET, expirationTime(TimeUnit.MILLISECONDS));
+    long accessTime = lastAccessTime(TimeUnit.MILLISECONDS);
+    if (accessTime != writtenAccessTime) {
+      writeContext.setLong(OffHeapValueHolderPortability.ACCESS_TIME_OFFSET, accessTime);
+      writtenAccessTime = accessTime;
+    }
+    long expireTime = expirationTime(TimeUnit.MILLISECONDS);
+    if (expireTime != writtenExpireTime) {
+      writeContext.setLong(OffHeapValueHolderPortability.EXPIRE_TIME_OFFSET, expireTime);
+      writtenExpireTime = expireTime;
+    }
     writeContext.setLong(OffHeapValueHolderPortability.HITS_OFFSET, hits());
     writeContext.flush();
   }
@@ -97,7 +154,7 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
   void forceDeserialization() {
     if (value == null) {
       try {
-        value = valueSerializer.read(binaryValue.duplicate());
+        value = valueSerializer.read(uncompressedValue().duplicate());
       } catch (ClassNotFoundException e) {
         throw new SerializerException(e);
       } catch (SerializerException e) {
@@ -109,6 +166,9 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
 
   /**
    * Must be called under offheap lock, may read invalid memory content otherwise
+   * <P>
+   *   A compressed value is copied as is, and decompressed once used.
+   * </P>
    */
   @Override
   void detach() {
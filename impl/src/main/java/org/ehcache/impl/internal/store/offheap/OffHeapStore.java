@@ -24,11 +24,16 @@ import org.ehcache.config.ResourceType;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.events.StoreEventDispatcher;
 import org.ehcache.exceptions.StoreAccessException;
+import org.ehcache.core.spi.service.ExecutionService;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
+import org.ehcache.impl.config.store.ValueCompressionConfiguration;
+import org.ehcache.impl.config.store.offheap.OffHeapEvictionConfiguration;
 import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
 import org.ehcache.impl.internal.events.ThreadLocalStoreEventDispatcher;
 import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory;
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
 import org.ehcache.impl.internal.store.offheap.portability.SerializerPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompression;
 import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.core.spi.time.TimeSourceService;
 import org.ehcache.spi.ServiceProvider;
@@ -40,6 +45,7 @@ import org.ehcache.spi.serialization.Serializer;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.ehcache.spi.service.ServiceDependencies;
+import org.ehcache.core.internal.service.ServiceLocator;
 import org.ehcache.core.internal.util.ConcurrentWeakIdentityHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,14 +69,27 @@ import static org.ehcache.impl.internal.store.offheap.OffHeapStoreUtils.getBuffe
  */
 public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
 
+  /**
+   * Average mapping size assumed when sizing the segment frequency sketches from the pool size.
+   */
+  private static final long ESTIMATED_MAPPING_SIZE = 1024L;
+  private static final long MAX_FREQUENCY_SKETCH_SIZE = 1L << 20;
+
   private final EvictionVeto<K, OffHeapValueHolder<V>> evictionVeto;
   private final Serializer<K> keySerializer;
   private final Serializer<V> valueSerializer;
   private final long sizeInBytes;
+  private final OffHeapEvictionConfiguration.Mode evictionMode;
+  private volatile ExpiryReaperConfiguration expiryReaperConfiguration;
+  private volatile ValueCompression valueCompression;
 
   private volatile EhcacheConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> map;
 
   public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes) {
+    this(config, timeSource, eventDispatcher, sizeInBytes, OffHeapEvictionConfiguration.Mode.CLOCK);
+  }
+
+  public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes, OffHeapEvictionConfiguration.Mode evictionMode) {
     super("local-offheap", config, timeSource, eventDispatcher);
     EvictionVeto<? super K, ? super V> veto = config.getEvictionVeto();
     if (veto != null) {
@@ -81,6 +100,7 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
     this.keySerializer = config.getKeySerializer();
     this.valueSerializer = config.getValueSerializer();
     this.sizeInBytes = sizeInBytes;
+    this.evictionMode = evictionMode;
   }
 
   @Override
@@ -91,8 +111,9 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
   private EhcacheConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> createBackingMap(long size, Serializer<K> keySerializer, Serializer<V> valueSerializer, EvictionVeto<K, OffHeapValueHolder<V>> evictionVeto) {
     HeuristicConfiguration config = new HeuristicConfiguration(size);
     PageSource source = new UpfrontAllocatingPageSource(getBufferSource(), config.getMaximumSize(), config.getMaximumChunkSize(), config.getMinimumChunkSize());
-    Portability<K> keyPortability = new SerializerPortability<K>(keySerializer);
-    Portability<OffHeapValueHolder<V>> elementPortability = new OffHeapValueHolderPortability<V>(valueSerializer);
+    // encoded buffers are copied into the pages before the write returns, so they can be reused
+    Portability<K> keyPortability = new SerializerPortability<K>(keySerializer, true);
+    Portability<OffHeapValueHolder<V>> elementPortability = new OffHeapValueHolderPortability<V>(valueSerializer, true, valueCompression);
     Factory<OffHeapBufferStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = OffHeapBufferStorageEngine.createFactory(PointerSize.INT, source, config
         .getSegmentDataPageSize(), keyPortability, elementPortability, false, true);
 
@@ -101,17 +122,25 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
                                                                                                          storageEngineFactory,
                                                                                                          config.getInitialSegmentTableSize(),
                                                                                                          evictionVeto,
-                                                                                                         mapEvictionListener);
+                                                                                                         mapEvictionListener,
+                                                                                                         frequencySketchSize(size, config.getConcurrency()));
     return new EhcacheConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>>(evictionVeto, segmentFactory, config.getConcurrency());
 
   }
 
+  private long frequencySketchSize(long size, int concurrency) {
+    if (evictionMode != OffHeapEvictionConfiguration.Mode.FREQUENCY) {
+      return 0L;
+    }
+    return Math.min(Math.max(size / concurrency / ESTIMATED_MAPPING_SIZE, 1L), MAX_FREQUENCY_SKETCH_SIZE);
+  }
+
   @Override
   protected EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> backingMap() {
     return map;
   }
 
-  @ServiceDependencies({TimeSourceService.class, SerializationProvider.class})
+  @ServiceDependencies({TimeSourceService.class, SerializationProvider.class, ExecutionService.class})
   public static class Provider implements Store.Provider, AuthoritativeTier.Provider, LowerCachingTier.Provider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Provider.class);
@@ -141,8 +170,15 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
       }
       MemoryUnit unit = (MemoryUnit)offHeapPool.getUnit();
 
+      OffHeapEvictionConfiguration evictionConfiguration = ServiceLocator.findSingletonAmongst(OffHeapEvictionConfiguration.class, (Object[]) serviceConfigs);
+      OffHeapEvictionConfiguration.Mode evictionMode = evictionConfiguration == null ? OffHeapEvictionConfiguration.Mode.CLOCK : evictionConfiguration.getMode();
 
-      OffHeapStore<K, V> offHeapStore = new OffHeapStore<K, V>(storeConfig, timeSource, eventDispatcher, unit.toBytes(offHeapPool.getSize()));
+      OffHeapStore<K, V> offHeapStore = new OffHeapStore<K, V>(storeConfig, timeSource, eventDispatcher, unit.toBytes(offHeapPool.getSize()), evictionMode);
+      offHeapStore.expiryReaperConfiguration = ServiceLocator.findSingletonAmongst(ExpiryReaperConfiguration.class, (Object[]) serviceConfigs);
+      ValueCompressionConfiguration compressionConfiguration = ServiceLocator.findSingletonAmongst(ValueCompressionConfiguration.class, (Object[]) serviceConfigs);
+      if (compressionConfiguration != null && compressionConfiguration.isCompressing(ResourceType.Core.OFFHEAP)) {
+        offHeapStore.valueCompression = offHeapStore.createValueCompression(compressionConfiguration.getThreshold());
+      }
       createdStores.add(offHeapStore);
       return offHeapStore;
     }
@@ -155,7 +191,9 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
       close((OffHeapStore)resource);
     }
 
-    static void close(final OffHeapStore resource) {EhcacheConcurrentOffHeapClockCache<Object, OffHeapValueHolder<Object>> localMap = resource.map;
+    static void close(final OffHeapStore resource) {
+      resource.stopExpiryReaper();
+      EhcacheConcurrentOffHeapClockCache<Object, OffHeapValueHolder<Object>> localMap = resource.map;
       if (localMap != null) {
         resource.map = null;
         localMap.destroy();
@@ -167,7 +205,13 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
       if (!createdStores.contains(resource)) {
         throw new IllegalArgumentException("Given store is not managed by this provider : " + resource);
       }
-      init((OffHeapStore)resource);
+      OffHeapStore<?, ?> offHeapStore = (OffHeapStore) resource;
+      init(offHeapStore);
+      ExpiryReaperConfiguration expiryReaperConfiguration = offHeapStore.expiryReaperConfiguration;
+      if (expiryReaperConfiguration != null) {
+        offHeapStore.startExpiryReaper(expiryReaperConfiguration,
+            serviceProvider.getService(ExecutionService.class).getScheduledExecutor(expiryReaperConfiguration.getThreadPoolAlias()));
+      }
     }
 
     static <K, V> void init(final OffHeapStore<K, V> resource) {
@@ -17,6 +17,7 @@
 package org.ehcache.impl.internal.store.offheap.factories;
 
 import org.ehcache.config.EvictionVeto;
+import org.ehcache.impl.internal.store.FrequencySketch;
 
 import org.terracotta.offheapstore.Metadata;
 import org.terracotta.offheapstore.ReadWriteLockedOffHeapClockCache;
@@ -25,6 +26,7 @@ import org.terracotta.offheapstore.pinning.PinnableSegment;
 import org.terracotta.offheapstore.storage.StorageEngine;
 import org.terracotta.offheapstore.util.Factory;
 
+import java.nio.IntBuffer;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -37,36 +39,81 @@ public class EhcacheSegmentFactory<K, V> implements Factory<PinnableSegment<K, V
   private final int tableSize;
   private final EvictionVeto<? super K, ? super V> evictionVeto;
   private final EhcacheSegment.EvictionListener<K, V> evictionListener;
+  private final long frequencySketchSize;
 
   public EhcacheSegmentFactory(PageSource source, Factory<? extends StorageEngine<? super K, ? super V>> storageEngineFactory, int initialTableSize, EvictionVeto<? super K, ? super V> evictionVeto, EhcacheSegment.EvictionListener<K, V> evictionListener) {
+    this(source, storageEngineFactory, initialTableSize, evictionVeto, evictionListener, 0L);
+  }
+
+  /**
+   * Creates a segment factory whose segments optionally track access frequencies.
+   *
+   * @param frequencySketchSize the number of keys each segment frequency sketch is sized for, or {@code 0} for
+   *                            plain clock eviction
+   */
+  public EhcacheSegmentFactory(PageSource source, Factory<? extends StorageEngine<? super K, ? super V>> storageEngineFactory, int initialTableSize, EvictionVeto<? super K, ? super V> evictionVeto, EhcacheSegment.EvictionListener<K, V> evictionListener, long frequencySketchSize) {
     this.storageEngineFactory = storageEngineFactory;
     this.tableSource = source;
     this.tableSize = initialTableSize;
     this.evictionVeto = evictionVeto;
     this.evictionListener = evictionListener;
+    this.frequencySketchSize = frequencySketchSize;
   }
 
   public PinnableSegment<K, V> newInstance() {
     StorageEngine<? super K, ? super V> storageEngine = storageEngineFactory.newInstance();
     try {
-      return new EhcacheSegment<K, V>(tableSource, storageEngine, tableSize, evictionVeto, evictionListener);
+      FrequencySketch frequencySketch = frequencySketchSize > 0 ? new FrequencySketch(frequencySketchSize) : null;
+      return new EhcacheSegment<K, V>(tableSource, storageEngine, tableSize, evictionVeto, evictionListener, frequencySketch);
     } catch (RuntimeException e) {
       storageEngine.destroy();
       throw e;
     }
   }
 
-  public static class EhcacheSegment<K, V> extends ReadWriteLockedOffHeapClockCache<K, V> {
+  public static class EhcacheSegment<K, V> extends ReadWriteLockedOffHeapClockCache<K, V> implements SlottedSegment<K, V> {
 
     public static final int VETOED = 1 << (Integer.SIZE - 3);
 
+    /**
+     * Number of clock candidates compared when evicting in frequency mode.
+     */
+    static final int FREQUENCY_SAMPLE_SIZE = 4;
+
     private final EvictionVeto<? super K, ? super V> evictionVeto;
     private final EvictionListener<K, V> evictionListener;
+    private final FrequencySketch frequencySketch;
 
     EhcacheSegment(PageSource source, StorageEngine<? super K, ? super V> storageEngine, int tableSize, EvictionVeto<? super K, ? super V> evictionVeto, EvictionListener<K, V> evictionListener) {
+      this(source, storageEngine, tableSize, evictionVeto, evictionListener, null);
+    }
+
+    EhcacheSegment(PageSource source, StorageEngine<? super K, ? super V> storageEngine, int tableSize, EvictionVeto<? super K, ? super V> evictionVeto, EvictionListener<K, V> evictionListener, FrequencySketch frequencySketch) {
       super(source, true, storageEngine, tableSize);
       this.evictionVeto = evictionVeto;
       this.evictionListener = evictionListener;
+      this.frequencySketch = frequencySketch;
+    }
+
+    /**
+     * Records an access to the given key when this segment tracks access frequencies.
+     * <P>
+     *   The sketch is not thread safe and is only ever touched under this segment's write lock, which callers should
+     *   already hold so that the reentrant acquisition here stays uncontended.
+     * </P>
+     *
+     * @param key the accessed key
+     */
+    public void recordAccess(Object key) {
+      if (frequencySketch != null) {
+        Lock lock = writeLock();
+        lock.lock();
+        try {
+          frequencySketch.increment(key.hashCode());
+        } finally {
+          lock.unlock();
+        }
+      }
     }
 
     @Override
@@ -90,6 +137,70 @@ public class EhcacheSegmentFactory<K, V> implements Factory<PinnableSegment<K, V
       return super.evictable(status) && ((status & VETOED) == 0);
     }
 
+    /**
+     * {@inheritDoc}
+     * <P>
+     *   When tracking access frequencies, the clock hand is advanced over up to {@link #FREQUENCY_SAMPLE_SIZE}
+     *   candidates and the least frequently accessed one is returned. Entries that are merely recently touched thus no
+     *   longer shield themselves from eviction at the expense of heavily read ones.
+     * </P>
+     */
+    @Override
+    public int getEvictionIndex() {
+      if (frequencySketch == null) {
+        return super.getEvictionIndex();
+      }
+      Lock lock = writeLock();
+      lock.lock();
+      try {
+        int victim = super.getEvictionIndex();
+        if (victim < 0) {
+          return victim;
+        }
+        int victimFrequency = frequencyAt(victim);
+        for (int i = 1; i < FREQUENCY_SAMPLE_SIZE && victimFrequency > 0; i++) {
+          int candidate = super.getEvictionIndex();
+          if (candidate < 0 || candidate == victim) {
+            break;
+          }
+          int candidateFrequency = frequencyAt(candidate);
+          if (candidateFrequency < victimFrequency) {
+            victim = candidate;
+            victimFrequency = candidateFrequency;
+          }
+        }
+        return victim;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Reads the frequency of the mapping at the given table offset from the key hash code stored in the table, so that
+     * sampling candidates never decodes keys out of the storage engine.
+     */
+    private int frequencyAt(int index) {
+      return frequencySketch.frequency(hashtable.get(index + KEY_HASHCODE));
+    }
+
+    @Override
+    public V getValueAtSlot(int slot) {
+      IntBuffer table = hashtable;
+      int offset = slot * ENTRY_SIZE;
+      if (table == null || offset >= table.capacity() || (table.get(offset + STATUS) & STATUS_USED) == 0) {
+        return null;
+      }
+      return getAtTableOffset(offset);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public K getKeyAtSlot(int slot) {
+      int offset = slot * ENTRY_SIZE;
+      IntBuffer entry = ((IntBuffer) hashtable.duplicate().position(offset).limit(offset + ENTRY_SIZE)).slice();
+      return (K) storageEngine.readKey(readLong(entry, ENCODING), entry.get(KEY_HASHCODE));
+    }
+
     @Override
     public boolean evict(int index, boolean shrink) {
       Lock lock = writeLock();
@@ -0,0 +1,50 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.offheap.factories;
+
+/**
+ * A backing map segment whose hash table can be walked slot by slot, so that a scan can stop and later resume at the
+ * slot it reached.
+ * <P>
+ *   All methods must be called while holding the segment lock.
+ * </P>
+ */
+public interface SlottedSegment<K, V> {
+
+  /**
+   * Returns the number of slots of the hash table, which changes when the table is resized.
+   *
+   * @return the table capacity
+   */
+  long getTableCapacity();
+
+  /**
+   * Returns the value mapped in the given slot.
+   *
+   * @param slot the slot index
+   * @return the value, or {@code null} if the slot does not hold a mapping
+   */
+  V getValueAtSlot(int slot);
+
+  /**
+   * Returns the key mapped in the given slot, which must hold a mapping.
+   *
+   * @param slot the slot index
+   * @return the key
+   */
+  K getKeyAtSlot(int slot);
+}
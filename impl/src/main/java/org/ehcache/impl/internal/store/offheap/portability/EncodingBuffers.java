@@ -0,0 +1,71 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.offheap.portability;
+
+import org.ehcache.spi.serialization.BufferSerializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the buffers portabilities encode into when their serializer is a {@link BufferSerializer}.
+ * <P>
+ *   When reuse is enabled, each thread keeps one buffer, so an encoded buffer is only valid until the next encoding
+ *   on the same thread. That is only safe when the storage engine copies encoded buffers before returning.
+ * </P>
+ */
+final class EncodingBuffers {
+
+  private static final int MAX_REUSED_CAPACITY = 64 * 1024;
+
+  private final ThreadLocal<ByteBuffer> reusedBuffer;
+
+  EncodingBuffers(boolean reuse) {
+    this.reusedBuffer = reuse ? new ThreadLocal<ByteBuffer>() : null;
+  }
+
+  /**
+   * Serializes {@code object} into a buffer, after {@code offset} bytes left for the caller to fill.
+   *
+   * @return a buffer holding the serial form from {@code offset}, positioned right after it
+   */
+  <T> ByteBuffer encode(BufferSerializer<T> serializer, T object, int offset) {
+    ByteBuffer buffer = acquire(offset + Math.max(serializer.estimateSize(object), 0));
+    buffer.position(offset);
+    while (!serializer.serialize(object, buffer)) {
+      int capacity = buffer.capacity() - offset;
+      buffer = acquire(offset + Math.max(serializer.estimateSize(object), 2 * capacity + 1));
+      buffer.position(offset);
+    }
+    return buffer;
+  }
+
+  private ByteBuffer acquire(int size) {
+    if (reusedBuffer == null) {
+      return ByteBuffer.allocate(size);
+    }
+    ByteBuffer buffer = reusedBuffer.get();
+    if (buffer == null || buffer.capacity() < size) {
+      buffer = ByteBuffer.allocate(size);
+      if (size <= MAX_REUSED_CAPACITY) {
+        reusedBuffer.set(buffer);
+      }
+    } else {
+      buffer.clear();
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.offheap.portability;
+
+import org.ehcache.exceptions.SerializerException;
+
+/**
+ * A pure Java codec for the LZF format, favouring speed over compression ratio.
+ * <P>
+ *   The compressed form is a sequence of chunks, each starting with a control byte. A control byte below 32 is
+ *   followed by that many plus one literal bytes. Any other control byte is a back reference: its top 3 bits hold
+ *   the match length minus 2 (7 meaning an extra length byte follows) and its low 5 bits, together with the next
+ *   byte, the distance minus 1 to the match within the last 8 KB of output.
+ * </P>
+ */
+final class LzfCodec {
+
+  static final int HASH_TABLE_SIZE = 1 << 14;
+
+  private static final int HASH_SHIFT = 32 - 14;
+  private static final int MAX_LITERAL = 32;
+  private static final int MAX_OFFSET = 1 << 13;
+  private static final int MAX_MATCH = 7 + 255 + 2;
+
+  /**
+   * Extra room needed past the output limit, as a single step writes at most that many bytes before checking it.
+   */
+  static final int OUTPUT_SLACK = 8;
+
+  private LzfCodec() {
+    // no instances
+  }
+
+  /**
+   * Compresses {@code length} bytes of {@code in} from {@code inPos} into {@code out} from {@code outPos}.
+   * <P>
+   *   The hash table does not need to be cleared between calls: stale entries fail the match verification.
+   * </P>
+   *
+   * @param outLimit the offset in {@code out} the compressed form must not exceed, {@code out} being at least
+   *                 {@link #OUTPUT_SLACK} bytes longer
+   * @param table a hash table of {@link #HASH_TABLE_SIZE} entries
+   * @return the offset in {@code out} after the compressed form, or {@code -1} if it would exceed {@code outLimit}
+   */
+  static int compress(byte[] in, int inPos, int length, byte[] out, int outPos, int outLimit, int[] table) {
+    int ip = inPos;
+    int end = inPos + length;
+    int op = outPos;
+    int literals = 0;
+    int control = op++;
+
+    while (ip < end) {
+      if (op >= outLimit) {
+        return -1;
+      }
+      if (ip < end - 2) {
+        int sequence = (in[ip] & 0xff) << 16 | (in[ip + 1] & 0xff) << 8 | (in[ip + 2] & 0xff);
+        int slot = (sequence * 0x9E3779B1) >>> HASH_SHIFT;
+        int ref = table[slot];
+        table[slot] = ip;
+        int offset = ip - ref - 1;
+        if (ref >= inPos && offset >= 0 && offset < MAX_OFFSET
+            && in[ref] == in[ip] && in[ref + 1] == in[ip + 1] && in[ref + 2] == in[ip + 2]) {
+          int match = 3;
+          int maxMatch = Math.min(end - ip, MAX_MATCH);
+          while (match < maxMatch && in[ref + match] == in[ip + match]) {
+            match++;
+          }
+
+          if (literals == 0) {
+            op--;
+          } else {
+            out[control] = (byte) (literals - 1);
+            literals = 0;
+          }
+          int len = match - 2;
+          if (len < 7) {
+            out[op++] = (byte) ((offset >> 8) + (len << 5));
+          } else {
+            out[op++] = (byte) ((offset >> 8) + (7 << 5));
+            out[op++] = (byte) (len - 7);
+          }
+          out[op++] = (byte) offset;
+          control = op++;
+          ip += match;
+          continue;
+        }
+      }
+
+      out[op++] = in[ip++];
+      if (++literals == MAX_LITERAL) {
+        out[control] = (byte) (MAX_LITERAL - 1);
+        literals = 0;
+        control = op++;
+      }
+    }
+
+    if (literals == 0) {
+      op--;
+    } else {
+      out[control] = (byte) (literals - 1);
+    }
+    return op > outLimit ? -1 : op;
+  }
+
+  /**
+   * Decompresses the bytes of {@code in} between {@code inPos} and {@code inEnd}, which must expand to exactly the
+   * bytes of {@code out} between {@code outPos} and {@code outEnd}.
+   *
+   * @throws SerializerException if the compressed form is corrupt
+   */
+  static void decompress(byte[] in, int inPos, int inEnd, byte[] out, int outPos, int outEnd) {
+    int ip = inPos;
+    int op = outPos;
+    try {
+      while (ip < inEnd) {
+        int control = in[ip++] & 0xff;
+        if (control < MAX_LITERAL) {
+          int literals = control + 1;
+          if (op + literals > outEnd) {
+            break;
+          }
+          System.arraycopy(in, ip, out, op, literals);
+          ip += literals;
+          op += literals;
+        } else {
+          int len = control >> 5;
+          if (len == 7) {
+            len += in[ip++] & 0xff;
+          }
+          len += 2;
+          int ref = op - ((control & 0x1f) << 8) - (in[ip++] & 0xff) - 1;
+          if (ref < outPos || op + len > outEnd) {
+            break;
+          }
+          // byte by byte, as the match may overlap the bytes it produces
+          for (int i = 0; i < len; i++) {
+            out[op++] = out[ref++];
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new SerializerException("Corrupt compressed value", e);
+    }
+    if (ip != inEnd || op != outEnd) {
+      throw new SerializerException("Corrupt compressed value");
+    }
+  }
+}
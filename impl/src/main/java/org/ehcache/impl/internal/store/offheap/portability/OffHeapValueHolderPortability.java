@@ -16,14 +16,17 @@
 
 package org.ehcache.impl.internal.store.offheap.portability;
 
+import org.ehcache.exceptions.SerializerException;
 import org.ehcache.impl.internal.store.BinaryValueHolder;
 import org.ehcache.impl.internal.store.offheap.LazyOffHeapValueHolder;
 import org.ehcache.impl.internal.store.offheap.OffHeapValueHolder;
+import org.ehcache.spi.serialization.BufferSerializer;
 import org.ehcache.spi.serialization.Serializer;
 import org.terracotta.offheapstore.storage.portability.WriteBackPortability;
 import org.terracotta.offheapstore.storage.portability.WriteContext;
 
 import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
 
 /**
  * OffHeapValueHolderPortability
@@ -37,31 +40,125 @@ public class OffHeapValueHolderPortability<V> implements WriteBackPortability<Of
   // 5 longs: id, access, expire, creation time, hits
   private static final int FIELDS_OVERHEAD = 40;
 
+  private static final int CHECKSUM_SIZE = 4;
+
+  // ids, including the -1 of values faulted from the heap tier, keep their three top bits equal:
+  // flipping the second and third ones flags how the value is stored
+  private static final long COMPRESSED = 1L << 62;
+  private static final long CHECKSUMMED = 1L << 61;
+
+  // compressed values stay readable when compression is no longer configured, as with a reopened disk store
+  private static final ValueCompression DECOMPRESSION = new ValueCompression(Integer.MAX_VALUE);
+
   private final Serializer<V> serializer;
+  private final EncodingBuffers encodingBuffers;
+  private final ValueCompression compression;
+  private final Checksums checksums;
 
   public OffHeapValueHolderPortability(Serializer<V> serializer) {
+    this(serializer, false);
+  }
+
+  /**
+   * Creates a portability over the given value serializer.
+   *
+   * @param serializer the value serializer to use
+   * @param reuseBuffers {@code true} if encoded buffers can be reused by the next encoding on the same thread, which
+   *                     requires the storage engine to be done with them by then
+   */
+  public OffHeapValueHolderPortability(Serializer<V> serializer, boolean reuseBuffers) {
+    this(serializer, reuseBuffers, null);
+  }
+
+  /**
+   * Creates a portability over the given value serializer, compressing the serialized values.
+   *
+   * @param serializer the value serializer to use
+   * @param reuseBuffers {@code true} if encoded buffers can be reused by the next encoding on the same thread, which
+   *                     requires the storage engine to be done with them by then
+   * @param compression the compression applied to the serialized values, {@code null} to store them as is
+   */
+  public OffHeapValueHolderPortability(Serializer<V> serializer, boolean reuseBuffers, ValueCompression compression) {
+    this(serializer, reuseBuffers, compression, Checksums.NONE);
+  }
+
+  /**
+   * Creates a portability over the given value serializer, compressing and checksumming the serialized values.
+   *
+   * @param serializer the value serializer to use
+   * @param reuseBuffers {@code true} if encoded buffers can be reused by the next encoding on the same thread, which
+   *                     requires the storage engine to be done with them by then
+   * @param compression the compression applied to the serialized values, {@code null} to store them as is
+   * @param checksums how the serialized values are checksummed
+   */
+  public OffHeapValueHolderPortability(Serializer<V> serializer, boolean reuseBuffers, ValueCompression compression, Checksums checksums) {
     this.serializer = serializer;
+    this.encodingBuffers = serializer instanceof BufferSerializer ? new EncodingBuffers(reuseBuffers) : null;
+    this.compression = compression;
+    this.checksums = checksums;
   }
 
   @Override
   public ByteBuffer encode(OffHeapValueHolder<V> valueHolder) {
-    ByteBuffer serialized;
+    int valueOffset = checksums == Checksums.NONE ? FIELDS_OVERHEAD : FIELDS_OVERHEAD + CHECKSUM_SIZE;
+    ByteBuffer byteBuffer;
     if (valueHolder instanceof BinaryValueHolder && ((BinaryValueHolder)valueHolder).isBinaryValueAvailable()) {
-      serialized = ((BinaryValueHolder)valueHolder).getBinaryValue();
+      byteBuffer = withValue(((BinaryValueHolder)valueHolder).getBinaryValue(), valueOffset);
+    } else if (encodingBuffers != null) {
+      // serialized straight after the metadata fields, saving the intermediate buffer and copy
+      byteBuffer = encodingBuffers.encode((BufferSerializer<V>) serializer, valueHolder.value(), valueOffset);
+      byteBuffer.flip();
     } else {
-      serialized = serializer.serialize(valueHolder.value());
+      byteBuffer = withValue(serializer.serialize(valueHolder.value()), valueOffset);
+    }
+
+    long flags = 0;
+    if (compression != null) {
+      ByteBuffer value = byteBuffer.duplicate();
+      value.position(valueOffset);
+      ByteBuffer compressed = compression.compress(value, valueOffset);
+      if (compressed != null) {
+        byteBuffer = compressed;
+        flags |= COMPRESSED;
+      }
+    }
+    if (checksums != Checksums.NONE) {
+      byteBuffer.putInt(FIELDS_OVERHEAD, checksum(byteBuffer, valueOffset));
+      flags |= CHECKSUMMED;
     }
-    ByteBuffer byteBuffer = ByteBuffer.allocate(serialized.remaining() + FIELDS_OVERHEAD);
-    byteBuffer.putLong(valueHolder.getId());
-    byteBuffer.putLong(valueHolder.creationTime(OffHeapValueHolder.TIME_UNIT));
-    byteBuffer.putLong(valueHolder.lastAccessTime(OffHeapValueHolder.TIME_UNIT));
-    byteBuffer.putLong(valueHolder.expirationTime(OffHeapValueHolder.TIME_UNIT));
-    byteBuffer.putLong(valueHolder.hits());
+    byteBuffer.putLong(0, valueHolder.getId() ^ flags);
+    byteBuffer.putLong(8, valueHolder.creationTime(OffHeapValueHolder.TIME_UNIT));
+    byteBuffer.putLong(ACCESS_TIME_OFFSET, valueHolder.lastAccessTime(OffHeapValueHolder.TIME_UNIT));
+    byteBuffer.putLong(EXPIRE_TIME_OFFSET, valueHolder.expirationTime(OffHeapValueHolder.TIME_UNIT));
+    byteBuffer.putLong(HITS_OFFSET, valueHolder.hits());
+    return byteBuffer;
+  }
+
+  private static ByteBuffer withValue(ByteBuffer serialized, int valueOffset) {
+    ByteBuffer byteBuffer = ByteBuffer.allocate(valueOffset + serialized.remaining());
+    byteBuffer.position(valueOffset);
     byteBuffer.put(serialized);
     byteBuffer.flip();
     return byteBuffer;
   }
 
+  private static int checksum(ByteBuffer byteBuffer, int from) {
+    CRC32 crc = new CRC32();
+    if (byteBuffer.hasArray()) {
+      crc.update(byteBuffer.array(), byteBuffer.arrayOffset() + from, byteBuffer.limit() - from);
+    } else {
+      ByteBuffer source = byteBuffer.duplicate();
+      source.position(from);
+      byte[] chunk = new byte[Math.min(source.remaining(), 8192)];
+      while (source.hasRemaining()) {
+        int length = Math.min(source.remaining(), chunk.length);
+        source.get(chunk, 0, length);
+        crc.update(chunk, 0, length);
+      }
+    }
+    return (int) crc.getValue();
+  }
+
   @Override
   public OffHeapValueHolder<V> decode(ByteBuffer byteBuffer) {
     return decode(byteBuffer, null);
@@ -79,7 +176,40 @@ public class OffHeapValueHolderPortability<V> implements WriteBackPortability<Of
     long lastAccessTime = byteBuffer.getLong();
     long expireTime = byteBuffer.getLong();
     long hits = byteBuffer.getLong();
-    return new LazyOffHeapValueHolder<V>(id, byteBuffer.slice(), serializer,
+    long flags = (id ^ (id >> 63)) & (COMPRESSED | CHECKSUMMED);
+    id ^= flags;
+    if ((flags & CHECKSUMMED) != 0) {
+      int checksum = byteBuffer.getInt();
+      if (checksums == Checksums.VERIFIED && checksum != checksum(byteBuffer, byteBuffer.position())) {
+        throw new SerializerException("Corrupt value, its checksum does not match");
+      }
+    } else if (checksums == Checksums.VERIFIED) {
+      throw new SerializerException("Value cannot be verified, it was stored without checksum");
+    }
+    // compressed values are decompressed by the value holder, once their content is actually needed
+    ValueCompression decompression = null;
+    if ((flags & COMPRESSED) != 0) {
+      decompression = compression == null ? DECOMPRESSION : compression;
+    }
+    return new LazyOffHeapValueHolder<V>(id, byteBuffer.slice(), decompression, serializer,
         creationTime, expireTime, lastAccessTime, hits, writeContext);
   }
+
+  /**
+   * How stored values are checksummed.
+   */
+  public enum Checksums {
+    /**
+     * Values are stored without checksum.
+     */
+    NONE,
+    /**
+     * Values are stored with a checksum of their serialized form, which is not verified when decoding.
+     */
+    STORED,
+    /**
+     * Values are stored with a checksum, and decoding fails on values whose checksum is missing or does not match.
+     */
+    VERIFIED
+  }
 }
@@ -17,6 +17,7 @@
 package org.ehcache.impl.internal.store.offheap.portability;
 
 import org.ehcache.exceptions.SerializerException;
+import org.ehcache.spi.serialization.BufferSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import org.terracotta.offheapstore.storage.portability.Portability;
@@ -29,14 +30,33 @@ import java.nio.ByteBuffer;
 public class SerializerPortability<T> implements Portability<T> {
 
   private final Serializer<T> serializer;
+  private final EncodingBuffers encodingBuffers;
 
   public SerializerPortability(Serializer<T> serializer) {
+    this(serializer, false);
+  }
+
+  /**
+   * Creates a portability over the given serializer.
+   *
+   * @param serializer the serializer to use
+   * @param reuseBuffers {@code true} if encoded buffers can be reused by the next encoding on the same thread, which
+   *                     requires the storage engine to be done with them by then
+   */
+  public SerializerPortability(Serializer<T> serializer, boolean reuseBuffers) {
     this.serializer = serializer;
+    this.encodingBuffers = serializer instanceof BufferSerializer ? new EncodingBuffers(reuseBuffers) : null;
   }
 
   @Override
   public ByteBuffer encode(T t) {
-    return serializer.serialize(t);
+    if (encodingBuffers == null) {
+      return serializer.serialize(t);
+    } else {
+      ByteBuffer encoded = encodingBuffers.encode((BufferSerializer<T>) serializer, t, 0);
+      encoded.flip();
+      return encoded;
+    }
   }
 
   @Override
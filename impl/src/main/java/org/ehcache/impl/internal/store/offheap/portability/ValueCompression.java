@@ -0,0 +1,187 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.offheap.portability;
+
+import org.ehcache.exceptions.SerializerException;
+import org.terracotta.statistics.jsr166e.LongAdder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses the serialized values of an off heap or disk store with {@link LzfCodec}, keeping track of what it
+ * costs and saves.
+ * <P>
+ *   A compressed value is laid out as its uncompressed length, as an int, followed by the compressed bytes. Values
+ *   smaller than the threshold are never compressed, and values that do not shrink are kept as they are.
+ * </P>
+ */
+public final class ValueCompression {
+
+  private static final ThreadLocal<int[]> HASH_TABLES = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[LzfCodec.HASH_TABLE_SIZE];
+    }
+  };
+
+  private final int threshold;
+  private final LongAdder compressedValues = new LongAdder();
+  private final LongAdder incompressibleValues = new LongAdder();
+  private final LongAdder inputBytes = new LongAdder();
+  private final LongAdder outputBytes = new LongAdder();
+  private final LongAdder compressionTime = new LongAdder();
+  private final LongAdder decompressionTime = new LongAdder();
+
+  /**
+   * Creates a value compression.
+   *
+   * @param threshold the size in bytes below which values are not compressed
+   */
+  public ValueCompression(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold can only accept positive values.");
+    }
+    this.threshold = threshold;
+  }
+
+  /**
+   * Returns the size in bytes below which values are not compressed.
+   *
+   * @return the compression threshold
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Compresses the remaining bytes of {@code value}, leaving {@code offset} bytes ahead of the compressed form for
+   * the caller to fill.
+   *
+   * @param value the serialized value, left untouched
+   * @param offset the number of bytes to reserve
+   * @return a buffer holding the compressed form from {@code offset}, ready to be read from its start, or
+   *         {@code null} if the value is below the threshold or does not shrink
+   */
+  public ByteBuffer compress(ByteBuffer value, int offset) {
+    int length = value.remaining();
+    if (length < threshold) {
+      return null;
+    }
+    long start = System.nanoTime();
+    byte[] in;
+    int inPos;
+    if (value.hasArray()) {
+      in = value.array();
+      inPos = value.arrayOffset() + value.position();
+    } else {
+      in = new byte[length];
+      value.duplicate().get(in);
+      inPos = 0;
+    }
+    // the compressed form, length prefix included, has to be smaller than the value
+    int outLimit = offset + length - 1;
+    byte[] out = new byte[outLimit + LzfCodec.OUTPUT_SLACK];
+    int end = LzfCodec.compress(in, inPos, length, out, offset + 4, outLimit, HASH_TABLES.get());
+    compressionTime.add(System.nanoTime() - start);
+    if (end < 0) {
+      incompressibleValues.increment();
+      return null;
+    }
+    compressedValues.increment();
+    inputBytes.add(length);
+    outputBytes.add(end - offset);
+    ByteBuffer compressed = ByteBuffer.wrap(out, 0, end);
+    compressed.putInt(offset, length);
+    return compressed;
+  }
+
+  /**
+   * Decompresses the compressed form remaining in {@code compressed}.
+   *
+   * @param compressed a buffer positioned at a compressed form, left untouched
+   * @return a buffer holding the decompressed value
+   * @throws SerializerException if the compressed form is corrupt
+   */
+  public ByteBuffer decompress(ByteBuffer compressed) {
+    long start = System.nanoTime();
+    int length = compressed.getInt(compressed.position());
+    if (length < 0) {
+      throw new SerializerException("Corrupt compressed value");
+    }
+    byte[] in;
+    int inPos;
+    int inEnd;
+    if (compressed.hasArray()) {
+      in = compressed.array();
+      inPos = compressed.arrayOffset() + compressed.position() + 4;
+      inEnd = compressed.arrayOffset() + compressed.limit();
+    } else {
+      ByteBuffer source = compressed.duplicate();
+      source.position(source.position() + 4);
+      in = new byte[source.remaining()];
+      source.get(in);
+      inPos = 0;
+      inEnd = in.length;
+    }
+    byte[] out = new byte[length];
+    LzfCodec.decompress(in, inPos, inEnd, out, 0, length);
+    decompressionTime.add(System.nanoTime() - start);
+    return ByteBuffer.wrap(out);
+  }
+
+  /**
+   * Returns the number of values stored compressed.
+   */
+  public long getCompressedValues() {
+    return compressedValues.sum();
+  }
+
+  /**
+   * Returns the number of values above the threshold kept uncompressed as they did not shrink.
+   */
+  public long getIncompressibleValues() {
+    return incompressibleValues.sum();
+  }
+
+  /**
+   * Returns the total size of the values stored compressed, before compression.
+   */
+  public long getInputBytes() {
+    return inputBytes.sum();
+  }
+
+  /**
+   * Returns the total size of the values stored compressed, after compression.
+   */
+  public long getOutputBytes() {
+    return outputBytes.sum();
+  }
+
+  /**
+   * Returns the time spent compressing values, including the ones that did not shrink, in nanoseconds.
+   */
+  public long getCompressionTime() {
+    return compressionTime.sum();
+  }
+
+  /**
+   * Returns the time spent decompressing values, in nanoseconds.
+   */
+  public long getDecompressionTime() {
+    return decompressionTime.sum();
+  }
+}
@@ -28,6 +28,7 @@ import org.ehcache.impl.internal.store.disk.OffHeapDiskStore;
 import org.ehcache.impl.internal.store.heap.OnHeapStore;
 import org.ehcache.impl.internal.store.offheap.OffHeapStore;
 import org.ehcache.spi.ServiceProvider;
+import org.ehcache.core.spi.store.BinaryValueStore;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.spi.store.events.StoreEventSource;
 import org.ehcache.core.spi.store.tiering.AuthoritativeTier;
@@ -41,6 +42,7 @@ import org.slf4j.LoggerFactory;
 import org.terracotta.context.annotations.ContextAttribute;
 import org.terracotta.statistics.StatisticsManager;
 
+import java.nio.ByteBuffer;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -61,7 +63,7 @@ import static org.ehcache.config.ResourceType.Core.OFFHEAP;
 /**
  * A {@link Store} implementation supporting a tiered caching model.
  */
-public class CacheStore<K, V> implements Store<K, V> {
+public class CacheStore<K, V> implements Store<K, V>, Store.HeapPeek<K, V>, BinaryValueStore<K> {
 
   private static final Logger LOG = LoggerFactory.getLogger(CacheStore.class);
 
@@ -133,6 +135,48 @@ public class CacheStore<K, V> implements Store<K, V> {
     return authoritativeTier.containsKey(key);
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   Binary reads are served by the authoritative tier, which holds all mappings. They are supported when that tier
+   *   supports them, that is when it stores values off heap or on disk.
+   * </P>
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean supportsBinaryValues() {
+    return authoritativeTier instanceof BinaryValueStore && ((BinaryValueStore<K>) authoritativeTier).supportsBinaryValues();
+  }
+
+  @Override
+  public ByteBuffer getBinaryValue(K key) throws StoreAccessException {
+    return binaryAuthoritativeTier().getBinaryValue(key);
+  }
+
+  @Override
+  public int copyBinaryValue(K key, ByteBuffer target) throws StoreAccessException {
+    return binaryAuthoritativeTier().copyBinaryValue(key, target);
+  }
+
+  @SuppressWarnings("unchecked")
+  private BinaryValueStore<K> binaryAuthoritativeTier() {
+    if (supportsBinaryValues()) {
+      return (BinaryValueStore<K>) authoritativeTier;
+    } else {
+      throw new UnsupportedOperationException("Authoritative tier " + authoritativeTier.getClass().getName() + " cannot read binary values");
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueHolder<V> peekHeap(K key) throws StoreAccessException {
+    CachingTier<K, V> cachingTier = cachingTier();
+    if (cachingTier instanceof HeapPeek) {
+      return ((HeapPeek<K, V>) cachingTier).peekHeap(key);
+    }
+    return null;
+  }
+
   @Override
   public PutStatus put(final K key, final V value) throws StoreAccessException {
     try {
@@ -306,13 +350,20 @@ public class CacheStore<K, V> implements Store<K, V> {
   }
 
   @Override
-  public Map<K, ValueHolder<V>> bulkComputeIfAbsent(Set<? extends K> keys, Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction) throws StoreAccessException {
+  public Map<K, ValueHolder<V>> bulkComputeIfAbsent(Set<? extends K> keys, final Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction) throws StoreAccessException {
     try {
-      return authoritativeTier.bulkComputeIfAbsent(keys, mappingFunction);
-    } finally {
-      for (K key : keys) {
-        cachingTier().invalidate(key);
-      }
+      return cachingTier().bulkGetOrComputeIfAbsent(keys, new Function<Set<? extends K>, Map<K, ValueHolder<V>>>() {
+        @Override
+        public Map<K, ValueHolder<V>> apply(Set<? extends K> missingKeys) {
+          try {
+            return authoritativeTier.bulkComputeIfAbsentAndFault(missingKeys, mappingFunction);
+          } catch (StoreAccessException cae) {
+            throw new ComputationException(cae);
+          }
+        }
+      });
+    } catch (ComputationException ce) {
+      throw ce.getStoreAccessException();
     }
   }
 
@@ -532,6 +583,21 @@ public class CacheStore<K, V> implements Store<K, V> {
       return apply;
     }
 
+    @Override
+    public Map<K, ValueHolder<V>> bulkGetOrComputeIfAbsent(final Iterable<? extends K> keys, final Function<Set<? extends K>, Map<K, ValueHolder<V>>> source) throws StoreAccessException {
+      final Set<K> keySet = new HashSet<K>();
+      for (K key : keys) {
+        keySet.add(key);
+      }
+      final Map<K, ValueHolder<V>> result = source.apply(keySet);
+      for (Map.Entry<K, ValueHolder<V>> entry : result.entrySet()) {
+        if (entry.getValue() != null) {
+          authoritativeTier.flush(entry.getKey(), entry.getValue());
+        }
+      }
+      return result;
+    }
+
     @Override
     public void invalidate(final K key) throws StoreAccessException {
       // noop
@@ -32,8 +32,11 @@ import org.terracotta.statistics.StatisticsManager;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
 import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmongst;
@@ -41,7 +44,7 @@ import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmon
 /**
  * A {@link CachingTier} implementation supporting a cache hierarchy.
  */
-public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
+public class CompoundCachingTier<K, V> implements CachingTier<K, V>, Store.HeapPeek<K, V> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CompoundCachingTier.class);
 
@@ -119,6 +122,47 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
     }
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public Store.ValueHolder<V> peekHeap(K key) throws StoreAccessException {
+    if (higher instanceof Store.HeapPeek) {
+      return ((Store.HeapPeek<K, V>) higher).peekHeap(key);
+    }
+    return null;
+  }
+
+  @Override
+  public Map<K, Store.ValueHolder<V>> bulkGetOrComputeIfAbsent(Iterable<? extends K> keys, final Function<Set<? extends K>, Map<K, Store.ValueHolder<V>>> source) throws StoreAccessException {
+    try {
+      return higher.bulkGetOrComputeIfAbsent(keys, new Function<Set<? extends K>, Map<K, Store.ValueHolder<V>>>() {
+        @Override
+        public Map<K, Store.ValueHolder<V>> apply(Set<? extends K> missingKeys) {
+          try {
+            Map<K, Store.ValueHolder<V>> result = new HashMap<K, Store.ValueHolder<V>>();
+            Set<K> lowerMissingKeys = new HashSet<K>();
+            for (K key : missingKeys) {
+              Store.ValueHolder<V> valueHolder = lower.getAndRemove(key);
+              if (valueHolder != null) {
+                result.put(key, valueHolder);
+              } else {
+                lowerMissingKeys.add(key);
+              }
+            }
+
+            if (!lowerMissingKeys.isEmpty()) {
+              result.putAll(source.apply(lowerMissingKeys));
+            }
+            return result;
+          } catch (StoreAccessException cae) {
+            throw new ComputationException(cae);
+          }
+        }
+      });
+    } catch (ComputationException ce) {
+      throw ce.getStoreAccessException();
+    }
+  }
+
   @Override
   public void invalidate(final K key) throws StoreAccessException {
     try {
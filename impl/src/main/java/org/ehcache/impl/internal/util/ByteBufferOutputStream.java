@@ -0,0 +1,85 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.util;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} writing into a {@link ByteBuffer}, from its position onward.
+ * <P>
+ *   Writes going past the limit of the buffer are counted but dropped, {@link #size()} then tells how many bytes the
+ *   complete output needs. The position of the target buffer is only moved on {@link #commit()}.
+ * </P>
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+  private final ByteBuffer buffer;
+  private final int start;
+  private int size;
+
+  public ByteBufferOutputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.start = buffer.position();
+  }
+
+  @Override
+  public void write(int b) {
+    int index = start + size;
+    if (index < buffer.limit()) {
+      buffer.put(index, (byte) b);
+    }
+    size++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new IndexOutOfBoundsException();
+    }
+    int index = start + size;
+    if (len <= buffer.limit() - index) {
+      ByteBuffer target = buffer.duplicate();
+      target.position(index);
+      target.put(b, off, len);
+    }
+    size += len;
+  }
+
+  /**
+   * Returns the number of bytes written to this stream, including those that did not fit.
+   *
+   * @return the size of the output
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Moves the position of the target buffer past the output if it all fit.
+   *
+   * @return {@code true} if the whole output fit in the target buffer
+   */
+  public boolean commit() {
+    if (size <= buffer.limit() - start) {
+      buffer.position(start + size);
+      return true;
+    } else {
+      return false;
+    }
+  }
+}
@@ -38,6 +38,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ehcache.exceptions.SerializerException;
 import org.ehcache.impl.internal.util.ByteBufferInputStream;
+import org.ehcache.impl.internal.util.ByteBufferOutputStream;
+import org.ehcache.spi.serialization.BufferSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 /**
@@ -47,8 +49,13 @@ import org.ehcache.spi.serialization.Serializer;
  * between the integer representation and the {@link ObjectStreamClass}, and the
  * {@code Class} and the integer representation are stored in a single on-heap
  * map.
+ * <p>
+ * The size estimate used when serializing into a caller supplied buffer is the
+ * size of the last instance serialized.
  */
-public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
+public class CompactJavaSerializer<T> implements BufferSerializer<T>, Closeable {
+
+  private static final int INITIAL_SIZE_HINT = 64;
 
   private final AtomicInteger nextStreamIndex = new AtomicInteger(0);
 
@@ -57,6 +64,8 @@ public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
 
   private final transient ClassLoader loader;
 
+  private volatile int sizeHint = INITIAL_SIZE_HINT;
+
   /**
    * Constructor to enable this serializer as a transient one.
    *
@@ -103,6 +112,34 @@ public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int estimateSize(T object) {
+    return sizeHint;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean serialize(T object, ByteBuffer target) throws SerializerException {
+    try {
+      ByteBufferOutputStream bout = new ByteBufferOutputStream(target);
+      ObjectOutputStream oout = getObjectOutputStream(bout);
+      try {
+        oout.writeObject(object);
+      } finally {
+        oout.close();
+      }
+      sizeHint = bout.size();
+      return bout.commit();
+    } catch (IOException e) {
+      throw new SerializerException(e);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -28,6 +28,7 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Map;
 import org.ehcache.exceptions.SerializerException;
+import org.ehcache.spi.serialization.BufferSerializer;
 import org.ehcache.spi.serialization.Serializer;
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
 
@@ -39,7 +40,7 @@ import org.ehcache.core.spi.service.FileBasedPersistenceContext;
  * {@code Class} and the integer representation are stored in a single on-heap
  * map.
  */
-public class CompactPersistentJavaSerializer<T> implements Serializer<T>, Closeable {
+public class CompactPersistentJavaSerializer<T> implements BufferSerializer<T>, Closeable {
 
   private final File stateFile;
   private final CompactJavaSerializer<T> serializer;
@@ -111,6 +112,22 @@ public class CompactPersistentJavaSerializer<T> implements Serializer<T>, Closea
     return serializer.serialize(object);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int estimateSize(T object) {
+    return serializer.estimateSize(object);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean serialize(T object, ByteBuffer target) throws SerializerException {
+    return serializer.serialize(object, target);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -17,6 +17,7 @@
 package org.ehcache.impl.serialization;
 
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.BufferSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
@@ -25,7 +26,7 @@ import java.nio.ByteBuffer;
  * Default {@link Serializer} for {@code Long} type. Simply writes the long value
  * to a byte buffer.
  */
-public class LongSerializer implements Serializer<Long> {
+public class LongSerializer implements BufferSerializer<Long> {
 
   /**
    * No arg constructor
@@ -71,6 +72,27 @@ public class LongSerializer implements Serializer<Long> {
     return byteBuffer;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int estimateSize(Long object) {
+    return 8;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean serialize(Long object, ByteBuffer target) {
+    long l = object;
+    if (target.remaining() < 8) {
+      return false;
+    }
+    target.putLong(l);
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    */
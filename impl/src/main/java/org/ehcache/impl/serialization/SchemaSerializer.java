@@ -0,0 +1,1103 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.serialization;
+
+import java.io.Closeable;
+import java.io.Externalizable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.exceptions.SerializerException;
+import org.ehcache.spi.serialization.BufferSerializer;
+import org.ehcache.spi.serialization.Serializer;
+
+/**
+ * A serializer writing objects field by field, driven by a per class schema built once by reflection.
+ * <p>
+ * Instances of plain classes, those having a no-arg constructor and no custom Java serialization methods, are written
+ * as a class id followed by tagged field values, with no stream header nor class descriptors. Class names and field
+ * names are mapped to small integers in a registry held by the serializer, and persisted alongside the cache when
+ * used for a persistent one.
+ * <p>
+ * Fields are matched by name when reading, which allows classes to evolve: fields unknown to the reading class are
+ * skipped, and fields missing from the data keep the value assigned by the no-arg constructor.
+ * <p>
+ * Strings, boxed primitives, enums, arrays and the common {@code java.util} lists, sets and maps are encoded natively.
+ * Any other value, as well as object graphs too deep to be written recursively (including cyclic ones), is written
+ * with Java serialization. Shared references within an object graph are written once per reference.
+ * <p>
+ * This serializer is not the default one, it can be registered for given types through
+ * {@link org.ehcache.impl.config.serializer.DefaultSerializationProviderConfiguration#addSerializerFor(Class, Class)}.
+ */
+public class SchemaSerializer<T> implements BufferSerializer<T>, Closeable {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int INITIAL_SIZE_HINT = 64;
+  private static final int MAX_DEPTH = 64;
+
+  // value kinds
+  private static final int NULL = 0;
+  private static final int OBJECT = 1;
+  private static final int STRING = 2;
+  private static final int BOOLEAN = 3;
+  private static final int BYTE = 4;
+  private static final int SHORT = 5;
+  private static final int CHAR = 6;
+  private static final int INT = 7;
+  private static final int LONG = 8;
+  private static final int FLOAT = 9;
+  private static final int DOUBLE = 10;
+  private static final int ENUM = 11;
+  private static final int OBJECT_ARRAY = 12;
+  private static final int PRIMITIVE_ARRAY = 13;
+  private static final int COLLECTION = 14;
+  private static final int MAP = 15;
+  private static final int JAVA = 16;
+
+  // field wire types
+  private static final int WIRE_VARINT = 0;
+  private static final int WIRE_ZIGZAG = 1;
+  private static final int WIRE_FIXED32 = 2;
+  private static final int WIRE_FIXED64 = 3;
+  private static final int WIRE_VALUE = 4;
+  private static final int WIRE_BITS = 3;
+
+  private static final List<Class<?>> NATIVE_COLLECTIONS = Arrays.<Class<?>>asList(ArrayList.class, LinkedList.class,
+      HashSet.class, LinkedHashSet.class);
+  private static final List<Class<?>> NATIVE_MAPS = Arrays.<Class<?>>asList(HashMap.class, ConcurrentHashMap.class);
+
+  private final ClassLoader loader;
+  private final File stateFile;
+  private final CompactJavaSerializer<Object> javaSerializer;
+  private final StringSerializer stringSerializer = new StringSerializer();
+
+  private final Object registryLock = new Object();
+  private final Map<String, Integer> classIds = new HashMap<String, Integer>();
+  private final ConcurrentMap<Integer, String> classNames = new ConcurrentHashMap<Integer, String>();
+  private final Map<String, List<String>> classFields = new HashMap<String, List<String>>();
+
+  private final ConcurrentMap<Class<?>, Codec> writeCodecs = new ConcurrentHashMap<Class<?>, Codec>();
+  private final ConcurrentMap<Integer, Codec> readCodecs = new ConcurrentHashMap<Integer, Codec>();
+
+  private volatile int sizeHint = INITIAL_SIZE_HINT;
+
+  /**
+   * Constructor to enable this serializer as a transient one.
+   *
+   * @param loader the classloader to use
+   *
+   * @see Serializer
+   */
+  public SchemaSerializer(ClassLoader loader) {
+    this.loader = loader;
+    this.stateFile = null;
+    this.javaSerializer = new CompactJavaSerializer<Object>(loader);
+  }
+
+  /**
+   * Constructor to enable this serializer as a persistent one.
+   *
+   * @param loader the classloader to use
+   * @param persistence the persistence context to use
+   *
+   * @see Serializer
+   */
+  public SchemaSerializer(ClassLoader loader, FileBasedPersistenceContext persistence) throws IOException, ClassNotFoundException {
+    this.loader = loader;
+    this.stateFile = new File(persistence.getDirectory(), "SchemaSerializer.state");
+    if (stateFile.exists()) {
+      this.javaSerializer = readState(stateFile);
+    } else {
+      this.javaSerializer = new CompactJavaSerializer<Object>(loader);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ByteBuffer serialize(T object) throws SerializerException {
+    ByteBuffer buffer = ByteBuffer.allocate(sizeHint);
+    while (!serialize(object, buffer)) {
+      buffer = ByteBuffer.allocate(Math.max(sizeHint, buffer.capacity() * 2));
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int estimateSize(T object) {
+    return sizeHint;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean serialize(T object, ByteBuffer target) throws SerializerException {
+    Output out = new Output(target);
+    try {
+      writeValue(out, object, 0);
+    } catch (DepthExceededException e) {
+      out.reset();
+      writeJava(out, object);
+    } catch (IllegalAccessException e) {
+      out.reset();
+      throw new SerializerException(e);
+    }
+    sizeHint = out.size();
+    if (out.fits()) {
+      return true;
+    } else {
+      out.reset();
+      return false;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+    try {
+      return (T) readValue(binary);
+    } catch (IllegalAccessException e) {
+      throw new SerializerException(e);
+    } catch (InstantiationException e) {
+      throw new SerializerException(e);
+    } catch (InvocationTargetException e) {
+      throw new SerializerException(e);
+    } catch (RuntimeException e) {
+      if (e instanceof SerializerException) {
+        throw e;
+      }
+      throw new SerializerException(e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(T object, ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+    return object.equals(read(binary));
+  }
+
+  /**
+   * Closes this serializer, persisting its registry first when used for a persistent cache.
+   *
+   * @throws IOException in case the registry cannot be persisted.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (stateFile != null) {
+        writeState(stateFile);
+      }
+    } finally {
+      writeCodecs.clear();
+      readCodecs.clear();
+      javaSerializer.close();
+    }
+  }
+
+  private void writeValue(Output out, Object value, int depth) throws IllegalAccessException {
+    if (value == null) {
+      out.writeVarint(NULL);
+      return;
+    }
+    Class<?> type = value.getClass();
+    if (type == String.class) {
+      out.writeVarint(STRING);
+      writeString(out, (String) value);
+    } else if (type == Integer.class) {
+      out.writeVarint(INT);
+      out.writeZigZag((Integer) value);
+    } else if (type == Long.class) {
+      out.writeVarint(LONG);
+      out.writeZigZag((Long) value);
+    } else if (type == Boolean.class) {
+      out.writeVarint(BOOLEAN);
+      out.write((Boolean) value ? 1 : 0);
+    } else if (type == Double.class) {
+      out.writeVarint(DOUBLE);
+      out.writeLong(Double.doubleToRawLongBits((Double) value));
+    } else if (type == Float.class) {
+      out.writeVarint(FLOAT);
+      out.writeInt(Float.floatToRawIntBits((Float) value));
+    } else if (type == Short.class) {
+      out.writeVarint(SHORT);
+      out.writeZigZag((Short) value);
+    } else if (type == Byte.class) {
+      out.writeVarint(BYTE);
+      out.write((Byte) value);
+    } else if (type == Character.class) {
+      out.writeVarint(CHAR);
+      out.writeVarint((Character) value);
+    } else if (type.isArray() && type.getComponentType().isPrimitive()) {
+      out.writeVarint(PRIMITIVE_ARRAY);
+      writePrimitiveArray(out, value);
+    } else {
+      if (depth > MAX_DEPTH) {
+        throw DepthExceededException.INSTANCE;
+      }
+      Codec codec = codecFor(value instanceof Enum<?> ? ((Enum<?>) value).getDeclaringClass() : type);
+      switch (codec.kind) {
+        case OBJECT:
+          out.writeVarint(OBJECT);
+          out.writeVarint(codec.classId);
+          writeFields(out, codec, value, depth);
+          break;
+        case ENUM:
+          out.writeVarint(ENUM);
+          out.writeVarint(codec.classId);
+          writeString(out, ((Enum<?>) value).name());
+          break;
+        case OBJECT_ARRAY:
+          Object[] array = (Object[]) value;
+          out.writeVarint(OBJECT_ARRAY);
+          out.writeVarint(codec.classId);
+          out.writeVarint(array.length);
+          for (Object element : array) {
+            writeValue(out, element, depth + 1);
+          }
+          break;
+        case COLLECTION:
+          Collection<?> collection = (Collection<?>) value;
+          out.writeVarint(COLLECTION);
+          out.writeVarint(codec.classId);
+          out.writeVarint(collection.size());
+          for (Object element : collection) {
+            writeValue(out, element, depth + 1);
+          }
+          break;
+        case MAP:
+          Map<?, ?> map = (Map<?, ?>) value;
+          out.writeVarint(MAP);
+          out.writeVarint(codec.classId);
+          out.writeVarint(map.size());
+          for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey(), depth + 1);
+            writeValue(out, entry.getValue(), depth + 1);
+          }
+          break;
+        default:
+          writeJava(out, value);
+          break;
+      }
+    }
+  }
+
+  private void writeFields(Output out, Codec codec, Object value, int depth) throws IllegalAccessException {
+    for (FieldCodec field : codec.fields) {
+      out.writeVarint(field.tag);
+      Field f = field.field;
+      switch (field.kind) {
+        case BOOLEAN:
+          out.writeVarint(f.getBoolean(value) ? 1 : 0);
+          break;
+        case CHAR:
+          out.writeVarint(f.getChar(value));
+          break;
+        case BYTE:
+          out.writeZigZag(f.getByte(value));
+          break;
+        case SHORT:
+          out.writeZigZag(f.getShort(value));
+          break;
+        case INT:
+          out.writeZigZag(f.getInt(value));
+          break;
+        case LONG:
+          out.writeZigZag(f.getLong(value));
+          break;
+        case FLOAT:
+          out.writeInt(Float.floatToRawIntBits(f.getFloat(value)));
+          break;
+        case DOUBLE:
+          out.writeLong(Double.doubleToRawLongBits(f.getDouble(value)));
+          break;
+        default:
+          writeValue(out, f.get(value), depth + 1);
+          break;
+      }
+    }
+    out.writeVarint(0);
+  }
+
+  private void writePrimitiveArray(Output out, Object array) {
+    Class<?> component = array.getClass().getComponentType();
+    int length = Array.getLength(array);
+    out.writeVarint(primitiveKind(component));
+    out.writeVarint(length);
+    if (component == byte.class) {
+      out.write((byte[]) array);
+    } else if (component == int.class) {
+      for (int i : (int[]) array) {
+        out.writeZigZag(i);
+      }
+    } else if (component == long.class) {
+      for (long l : (long[]) array) {
+        out.writeZigZag(l);
+      }
+    } else if (component == double.class) {
+      for (double d : (double[]) array) {
+        out.writeLong(Double.doubleToRawLongBits(d));
+      }
+    } else if (component == float.class) {
+      for (float f : (float[]) array) {
+        out.writeInt(Float.floatToRawIntBits(f));
+      }
+    } else if (component == char.class) {
+      for (char c : (char[]) array) {
+        out.writeVarint(c);
+      }
+    } else if (component == short.class) {
+      for (short s : (short[]) array) {
+        out.writeZigZag(s);
+      }
+    } else {
+      for (boolean b : (boolean[]) array) {
+        out.write(b ? 1 : 0);
+      }
+    }
+  }
+
+  private void writeString(Output out, String value) {
+    int length = stringSerializer.estimateSize(value);
+    out.writeVarint(length);
+    if (out.reserve(length)) {
+      stringSerializer.serialize(value, out.buffer);
+    }
+  }
+
+  private void writeJava(Output out, Object value) {
+    ByteBuffer serialized = javaSerializer.serialize(value);
+    out.writeVarint(JAVA);
+    out.writeVarint(serialized.remaining());
+    out.write(serialized);
+  }
+
+  private Object readValue(ByteBuffer in) throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException {
+    int kind = readVarint(in);
+    switch (kind) {
+      case NULL:
+        return null;
+      case STRING:
+        return readString(in);
+      case INT:
+        return (int) readZigZag(in);
+      case LONG:
+        return readZigZag(in);
+      case BOOLEAN:
+        return in.get() != 0;
+      case DOUBLE:
+        return Double.longBitsToDouble(in.getLong());
+      case FLOAT:
+        return Float.intBitsToFloat(in.getInt());
+      case SHORT:
+        return (short) readZigZag(in);
+      case BYTE:
+        return in.get();
+      case CHAR:
+        return (char) readVarint(in);
+      case PRIMITIVE_ARRAY:
+        return readPrimitiveArray(in);
+      case OBJECT: {
+        Codec codec = readCodec(readVarint(in), OBJECT);
+        Object value = codec.constructor.newInstance();
+        readFields(in, codec, value);
+        return value;
+      }
+      case ENUM: {
+        Codec codec = readCodec(readVarint(in), ENUM);
+        return readEnum(codec.type, readString(in));
+      }
+      case OBJECT_ARRAY: {
+        Codec codec = readCodec(readVarint(in), OBJECT_ARRAY);
+        int length = readVarint(in);
+        Object[] array = (Object[]) Array.newInstance(codec.type.getComponentType(), length);
+        for (int i = 0; i < length; i++) {
+          array[i] = readValue(in);
+        }
+        return array;
+      }
+      case COLLECTION: {
+        Codec codec = readCodec(readVarint(in), COLLECTION);
+        int size = readVarint(in);
+        @SuppressWarnings("unchecked")
+        Collection<Object> collection = (Collection<Object>) codec.constructor.newInstance();
+        for (int i = 0; i < size; i++) {
+          collection.add(readValue(in));
+        }
+        return collection;
+      }
+      case MAP: {
+        Codec codec = readCodec(readVarint(in), MAP);
+        int size = readVarint(in);
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> map = (Map<Object, Object>) codec.constructor.newInstance();
+        for (int i = 0; i < size; i++) {
+          Object key = readValue(in);
+          map.put(key, readValue(in));
+        }
+        return map;
+      }
+      case JAVA: {
+        int length = readVarint(in);
+        ByteBuffer serialized = in.slice();
+        serialized.limit(length);
+        in.position(in.position() + length);
+        return javaSerializer.read(serialized);
+      }
+      default:
+        throw new SerializerException("Unknown value kind " + kind);
+    }
+  }
+
+  private void readFields(ByteBuffer in, Codec codec, Object value) throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException {
+    for (int tag = readVarint(in); tag != 0; tag = readVarint(in)) {
+      int number = tag >>> WIRE_BITS;
+      int wireType = tag & ((1 << WIRE_BITS) - 1);
+      FieldCodec field = number < codec.fieldsByNumber.length ? codec.fieldsByNumber[number] : null;
+      if (field == null || field.wireType != wireType) {
+        skipField(in, wireType);
+        continue;
+      }
+      Field f = field.field;
+      switch (field.kind) {
+        case BOOLEAN:
+          f.setBoolean(value, readVarint(in) != 0);
+          break;
+        case CHAR:
+          f.setChar(value, (char) readVarint(in));
+          break;
+        case BYTE:
+          f.setByte(value, (byte) readZigZag(in));
+          break;
+        case SHORT:
+          f.setShort(value, (short) readZigZag(in));
+          break;
+        case INT:
+          f.setInt(value, (int) readZigZag(in));
+          break;
+        case LONG:
+          f.setLong(value, readZigZag(in));
+          break;
+        case FLOAT:
+          f.setFloat(value, Float.intBitsToFloat(in.getInt()));
+          break;
+        case DOUBLE:
+          f.setDouble(value, Double.longBitsToDouble(in.getLong()));
+          break;
+        default:
+          Object fieldValue = readValue(in);
+          if (fieldValue == null || f.getType().isInstance(fieldValue)) {
+            f.set(value, fieldValue);
+          }
+          break;
+      }
+    }
+  }
+
+  private Object readPrimitiveArray(ByteBuffer in) {
+    int kind = readVarint(in);
+    int length = readVarint(in);
+    switch (kind) {
+      case BYTE: {
+        byte[] array = new byte[length];
+        in.get(array);
+        return array;
+      }
+      case INT: {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = (int) readZigZag(in);
+        }
+        return array;
+      }
+      case LONG: {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = readZigZag(in);
+        }
+        return array;
+      }
+      case DOUBLE: {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = Double.longBitsToDouble(in.getLong());
+        }
+        return array;
+      }
+      case FLOAT: {
+        float[] array = new float[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = Float.intBitsToFloat(in.getInt());
+        }
+        return array;
+      }
+      case CHAR: {
+        char[] array = new char[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = (char) readVarint(in);
+        }
+        return array;
+      }
+      case SHORT: {
+        short[] array = new short[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = (short) readZigZag(in);
+        }
+        return array;
+      }
+      case BOOLEAN: {
+        boolean[] array = new boolean[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = in.get() != 0;
+        }
+        return array;
+      }
+      default:
+        throw new SerializerException("Unknown primitive array kind " + kind);
+    }
+  }
+
+  private void skipField(ByteBuffer in, int wireType) {
+    switch (wireType) {
+      case WIRE_VARINT:
+      case WIRE_ZIGZAG:
+        readVarint64(in);
+        break;
+      case WIRE_FIXED32:
+        in.position(in.position() + 4);
+        break;
+      case WIRE_FIXED64:
+        in.position(in.position() + 8);
+        break;
+      case WIRE_VALUE:
+        skipValue(in);
+        break;
+      default:
+        throw new SerializerException("Unknown wire type " + wireType);
+    }
+  }
+
+  private void skipValue(ByteBuffer in) {
+    int kind = readVarint(in);
+    switch (kind) {
+      case NULL:
+        break;
+      case STRING:
+      case JAVA: {
+        int length = readVarint(in);
+        in.position(in.position() + length);
+        break;
+      }
+      case BOOLEAN:
+      case BYTE:
+        in.get();
+        break;
+      case SHORT:
+      case CHAR:
+      case INT:
+      case LONG:
+        readVarint64(in);
+        break;
+      case FLOAT:
+        in.getInt();
+        break;
+      case DOUBLE:
+        in.getLong();
+        break;
+      case PRIMITIVE_ARRAY:
+        readPrimitiveArray(in);
+        break;
+      case OBJECT:
+        readVarint(in);
+        for (int tag = readVarint(in); tag != 0; tag = readVarint(in)) {
+          skipField(in, tag & ((1 << WIRE_BITS) - 1));
+        }
+        break;
+      case ENUM: {
+        readVarint(in);
+        int length = readVarint(in);
+        in.position(in.position() + length);
+        break;
+      }
+      case OBJECT_ARRAY:
+      case COLLECTION: {
+        readVarint(in);
+        int length = readVarint(in);
+        for (int i = 0; i < length; i++) {
+          skipValue(in);
+        }
+        break;
+      }
+      case MAP: {
+        readVarint(in);
+        int size = readVarint(in);
+        for (int i = 0; i < 2 * size; i++) {
+          skipValue(in);
+        }
+        break;
+      }
+      default:
+        throw new SerializerException("Unknown value kind " + kind);
+    }
+  }
+
+  private String readString(ByteBuffer in) {
+    int length = readVarint(in);
+    String value;
+    if (in.hasArray()) {
+      value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+      in.position(in.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      in.get(bytes);
+      value = new String(bytes, UTF_8);
+    }
+    return value;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object readEnum(Class<?> type, String name) {
+    return Enum.valueOf((Class) type, name);
+  }
+
+  private Codec codecFor(Class<?> type) {
+    Codec codec = writeCodecs.get(type);
+    if (codec == null) {
+      synchronized (registryLock) {
+        codec = writeCodecs.get(type);
+        if (codec == null) {
+          codec = createCodec(type);
+          writeCodecs.put(type, codec);
+        }
+      }
+    }
+    return codec;
+  }
+
+  private Codec readCodec(int classId, int kind) throws ClassNotFoundException {
+    Codec codec = readCodecs.get(classId);
+    if (codec == null) {
+      String className = classNames.get(classId);
+      if (className == null) {
+        throw new SerializerException("Unknown class id " + classId);
+      }
+      codec = codecFor(loadClass(className));
+      readCodecs.put(classId, codec);
+    }
+    if (codec.kind != kind) {
+      throw new SerializerException(codec.type.getName() + " can no longer be read from its serialized form");
+    }
+    return codec;
+  }
+
+  private Class<?> loadClass(String className) throws ClassNotFoundException {
+    ClassLoader cl = loader == null ? Thread.currentThread().getContextClassLoader() : loader;
+    if (cl != null) {
+      try {
+        return Class.forName(className, false, cl);
+      } catch (ClassNotFoundException e) {
+        // fall through to this class' own loader
+      }
+    }
+    return Class.forName(className, false, SchemaSerializer.class.getClassLoader());
+  }
+
+  /**
+   * Must be called holding the registry lock.
+   */
+  private Codec createCodec(Class<?> type) {
+    if (type.isEnum()) {
+      return new Codec(ENUM, classId(type), type, null, null);
+    } else if (type.isArray()) {
+      return new Codec(OBJECT_ARRAY, classId(type), type, null, null);
+    } else if (NATIVE_COLLECTIONS.contains(type)) {
+      return new Codec(COLLECTION, classId(type), type, noArgConstructor(type), null);
+    } else if (NATIVE_MAPS.contains(type)) {
+      return new Codec(MAP, classId(type), type, noArgConstructor(type), null);
+    } else if (isSchemaClass(type)) {
+      try {
+        Constructor<?> constructor = noArgConstructor(type);
+        if (constructor != null) {
+          return new Codec(OBJECT, classId(type), type, constructor, fieldCodecs(type));
+        }
+      } catch (SecurityException e) {
+        // written with Java serialization then
+      }
+    }
+    return new Codec(JAVA, -1, type, null, null);
+  }
+
+  private FieldCodec[] fieldCodecs(Class<?> type) {
+    List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+    for (Class<?> klazz = type; klazz != Object.class; klazz = klazz.getSuperclass()) {
+      hierarchy.add(0, klazz);
+    }
+    List<String> registered = classFields.get(type.getName());
+    if (registered == null) {
+      registered = new ArrayList<String>();
+      classFields.put(type.getName(), registered);
+    }
+    List<FieldCodec> fields = new ArrayList<FieldCodec>();
+    for (Class<?> klazz : hierarchy) {
+      for (Field field : klazz.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+          continue;
+        }
+        field.setAccessible(true);
+        String key = klazz.getName() + "." + field.getName();
+        int index = registered.indexOf(key);
+        if (index < 0) {
+          registered.add(key);
+          index = registered.size() - 1;
+        }
+        fields.add(new FieldCodec(field, index + 1));
+      }
+    }
+    return fields.toArray(new FieldCodec[fields.size()]);
+  }
+
+  private int classId(Class<?> type) {
+    String name = type.getName();
+    Integer id = classIds.get(name);
+    if (id == null) {
+      id = classIds.size();
+      classIds.put(name, id);
+      classNames.put(id, name);
+    }
+    return id;
+  }
+
+  private static Constructor<?> noArgConstructor(Class<?> type) {
+    try {
+      Constructor<?> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return constructor;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static boolean isSchemaClass(Class<?> type) {
+    if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || Externalizable.class.isAssignableFrom(type)) {
+      return false;
+    }
+    for (Class<?> klazz = type; klazz != Object.class; klazz = klazz.getSuperclass()) {
+      String name = klazz.getName();
+      if (name.startsWith("java.") || name.startsWith("javax.") || hasCustomSerialization(klazz)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasCustomSerialization(Class<?> klazz) {
+    for (Method method : klazz.getDeclaredMethods()) {
+      String name = method.getName();
+      if (name.equals("writeObject") || name.equals("readObject") || name.equals("readObjectNoData")
+          || name.equals("writeReplace") || name.equals("readResolve")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int primitiveKind(Class<?> type) {
+    if (type == boolean.class) {
+      return BOOLEAN;
+    } else if (type == byte.class) {
+      return BYTE;
+    } else if (type == short.class) {
+      return SHORT;
+    } else if (type == char.class) {
+      return CHAR;
+    } else if (type == int.class) {
+      return INT;
+    } else if (type == long.class) {
+      return LONG;
+    } else if (type == float.class) {
+      return FLOAT;
+    } else if (type == double.class) {
+      return DOUBLE;
+    } else {
+      return OBJECT;
+    }
+  }
+
+  private static int readVarint(ByteBuffer in) {
+    return (int) readVarint64(in);
+  }
+
+  private static long readVarint64(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new SerializerException("Malformed varint");
+  }
+
+  private static long readZigZag(ByteBuffer in) {
+    long value = readVarint64(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private CompactJavaSerializer<Object> readState(File file) throws IOException, ClassNotFoundException {
+    FileInputStream fin = new FileInputStream(file);
+    try {
+      ObjectInputStream oin = new ObjectInputStream(fin);
+      try {
+        @SuppressWarnings("unchecked")
+        Map<Integer, String> names = (Map<Integer, String>) oin.readObject();
+        @SuppressWarnings("unchecked")
+        Map<String, List<String>> fields = (Map<String, List<String>>) oin.readObject();
+        @SuppressWarnings("unchecked")
+        Map<Integer, ObjectStreamClass> javaMappings = (Map<Integer, ObjectStreamClass>) oin.readObject();
+        for (Map.Entry<Integer, String> entry : names.entrySet()) {
+          classIds.put(entry.getValue(), entry.getKey());
+          classNames.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, List<String>> entry : fields.entrySet()) {
+          classFields.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+        }
+        return new CompactJavaSerializer<Object>(loader, javaMappings);
+      } finally {
+        oin.close();
+      }
+    } finally {
+      fin.close();
+    }
+  }
+
+  private void writeState(File file) throws IOException {
+    HashMap<Integer, String> names;
+    HashMap<String, List<String>> fields = new HashMap<String, List<String>>();
+    synchronized (registryLock) {
+      names = new HashMap<Integer, String>(classNames);
+      for (Map.Entry<String, List<String>> entry : classFields.entrySet()) {
+        fields.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+      }
+    }
+    OutputStream fout = new FileOutputStream(file);
+    try {
+      ObjectOutputStream oout = new ObjectOutputStream(fout);
+      try {
+        oout.writeObject(names);
+        oout.writeObject(fields);
+        oout.writeObject(new HashMap<Integer, ObjectStreamClass>(javaSerializer.getSerializationMappings()));
+      } finally {
+        oout.close();
+      }
+    } finally {
+      fout.close();
+    }
+  }
+
+  private static final class Codec {
+    private final int kind;
+    private final int classId;
+    private final Class<?> type;
+    private final Constructor<?> constructor;
+    private final FieldCodec[] fields;
+    private final FieldCodec[] fieldsByNumber;
+
+    Codec(int kind, int classId, Class<?> type, Constructor<?> constructor, FieldCodec[] fields) {
+      this.kind = kind;
+      this.classId = classId;
+      this.type = type;
+      this.constructor = constructor;
+      this.fields = fields;
+      if (fields == null) {
+        this.fieldsByNumber = null;
+      } else {
+        int max = 0;
+        for (FieldCodec field : fields) {
+          max = Math.max(max, field.number);
+        }
+        this.fieldsByNumber = new FieldCodec[max + 1];
+        for (FieldCodec field : fields) {
+          fieldsByNumber[field.number] = field;
+        }
+      }
+    }
+  }
+
+  private static final class FieldCodec {
+    private final Field field;
+    private final int number;
+    private final int kind;
+    private final int wireType;
+    private final int tag;
+
+    FieldCodec(Field field, int number) {
+      this.field = field;
+      this.number = number;
+      this.kind = primitiveKind(field.getType());
+      switch (kind) {
+        case BOOLEAN:
+        case CHAR:
+          this.wireType = WIRE_VARINT;
+          break;
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+          this.wireType = WIRE_ZIGZAG;
+          break;
+        case FLOAT:
+          this.wireType = WIRE_FIXED32;
+          break;
+        case DOUBLE:
+          this.wireType = WIRE_FIXED64;
+          break;
+        default:
+          this.wireType = WIRE_VALUE;
+          break;
+      }
+      this.tag = (number << WIRE_BITS) | wireType;
+    }
+  }
+
+  /**
+   * Writes into a buffer from its position, counting instead of writing what does not fit.
+   */
+  private static final class Output {
+    private final ByteBuffer buffer;
+    private final int start;
+    private int missing;
+
+    Output(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.start = buffer.position();
+    }
+
+    boolean reserve(int length) {
+      if (missing == 0 && buffer.remaining() >= length) {
+        return true;
+      } else {
+        missing += length;
+        return false;
+      }
+    }
+
+    void write(int b) {
+      if (reserve(1)) {
+        buffer.put((byte) b);
+      }
+    }
+
+    void write(byte[] bytes) {
+      if (reserve(bytes.length)) {
+        buffer.put(bytes);
+      }
+    }
+
+    void write(ByteBuffer bytes) {
+      if (reserve(bytes.remaining())) {
+        buffer.put(bytes);
+      }
+    }
+
+    void writeInt(int value) {
+      if (reserve(4)) {
+        buffer.putInt(value);
+      }
+    }
+
+    void writeLong(long value) {
+      if (reserve(8)) {
+        buffer.putLong(value);
+      }
+    }
+
+    void writeVarint(long value) {
+      while ((value & ~0x7fL) != 0) {
+        write((int) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      write((int) value);
+    }
+
+    void writeZigZag(long value) {
+      writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    boolean fits() {
+      return missing == 0;
+    }
+
+    int size() {
+      return buffer.position() - start + missing;
+    }
+
+    void reset() {
+      buffer.position(start);
+      missing = 0;
+    }
+  }
+
+  private static final class DepthExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final DepthExceededException INSTANCE = new DepthExceededException();
+
+    private DepthExceededException() {
+      super(null, null);
+      setStackTrace(new StackTraceElement[0]);
+    }
+  }
+}
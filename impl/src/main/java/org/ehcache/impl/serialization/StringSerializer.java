@@ -17,6 +17,7 @@
 package org.ehcache.impl.serialization;
 
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.BufferSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
@@ -25,8 +26,12 @@ import java.nio.charset.Charset;
 /**
  * Default {@link Serializer} for {@code String} type. Simply writes the string bytes in UTF-8
  * to a byte buffer.
+ * <P>
+ *   Strings are encoded character by character straight into the target buffer, unpaired surrogates being replaced
+ *   by {@code '?'} as {@link String#getBytes(Charset)} does.
+ * </P>
  */
-public class StringSerializer implements Serializer<String> {
+public class StringSerializer implements BufferSerializer<String> {
   private static final Charset UTF_8 = Charset.forName("UTF-8");
 
   /**
@@ -67,12 +72,79 @@ public class StringSerializer implements Serializer<String> {
    */
   @Override
   public ByteBuffer serialize(String object) {
-    byte[] bytes = object.getBytes(UTF_8);
-    ByteBuffer byteBuffer = ByteBuffer.allocate(bytes.length);
-    byteBuffer.put(bytes).flip();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(estimateSize(object));
+    encode(object, byteBuffer);
+    byteBuffer.flip();
     return byteBuffer;
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   The returned size is exact.
+   * </P>
+   */
+  @Override
+  public int estimateSize(String object) {
+    int length = object.length();
+    int size = 0;
+    for (int i = 0; i < length; i++) {
+      char c = object.charAt(i);
+      if (c < 0x80) {
+        size += 1;
+      } else if (c < 0x800) {
+        size += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(object.charAt(i + 1))) {
+        size += 4;
+        i++;
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        size += 1;
+      } else {
+        size += 3;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean serialize(String object, ByteBuffer target) {
+    // no char encodes to more than 3 bytes, so the exact size only needs computing for tight buffers
+    int remaining = target.remaining();
+    if (remaining < 3L * object.length() && remaining < estimateSize(object)) {
+      return false;
+    }
+    encode(object, target);
+    return true;
+  }
+
+  private static void encode(String object, ByteBuffer target) {
+    int length = object.length();
+    for (int i = 0; i < length; i++) {
+      char c = object.charAt(i);
+      if (c < 0x80) {
+        target.put((byte) c);
+      } else if (c < 0x800) {
+        target.put((byte) (0xc0 | (c >> 6)));
+        target.put((byte) (0x80 | (c & 0x3f)));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(object.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, object.charAt(++i));
+        target.put((byte) (0xf0 | (codePoint >> 18)));
+        target.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+        target.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+        target.put((byte) (0x80 | (codePoint & 0x3f)));
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        target.put((byte) '?');
+      } else {
+        target.put((byte) (0xe0 | (c >> 12)));
+        target.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+        target.put((byte) (0x80 | (c & 0x3f)));
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,106 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.sizeof;
+
+import org.ehcache.core.spi.store.heap.HeapSized;
+import org.ehcache.core.spi.store.heap.LimitExceededException;
+import org.ehcache.core.spi.store.heap.SizeOfEngine;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
+import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration.SizingMode;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.internal.store.heap.holders.CopiedOnHeapValueHolder;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the put path sizing cost of declared sizes and sizing functions against the default object graph walk.
+ */
+public class SizeOfEngineBenchmarkITest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SizeOfEngineBenchmarkITest.class);
+
+  private static final int MAPPINGS = 10000;
+  private static final int ROUNDS = 20;
+
+  @Test
+  public void testDeclaredSizesAreCheaperThanGraphWalk() throws LimitExceededException {
+    List<CopiedOnHeapValueHolder<Dto>> holders = new ArrayList<CopiedOnHeapValueHolder<Dto>>(MAPPINGS);
+    for (int i = 0; i < MAPPINGS; i++) {
+      holders.add(new CopiedOnHeapValueHolder<Dto>(new Dto(i), 0L, false, new IdentityCopier<Dto>()));
+    }
+
+    SizeOfEngine deep = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE);
+    SizeOfEngine declared = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE, SizingMode.DECLARED, 1);
+    SizeOfEngine function = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE, SizingMode.DEEP, 1, new SizeOfFunction<Long, Dto>() {
+      @Override
+      public long sizeof(Long key, Dto value) {
+        return 24L + value.heapSize();
+      }
+    });
+
+    long deepNanos = time(deep, holders);
+    long declaredNanos = time(declared, holders);
+    long functionNanos = time(function, holders);
+
+    LOGGER.info("Sizing {} mappings - deep: {}ns/op, declared: {}ns/op, function: {}ns/op",
+        MAPPINGS, deepNanos / MAPPINGS, declaredNanos / MAPPINGS, functionNanos / MAPPINGS);
+    assertThat(declaredNanos, lessThan(deepNanos));
+    assertThat(functionNanos, lessThan(deepNanos));
+  }
+
+  private static long time(SizeOfEngine engine, List<CopiedOnHeapValueHolder<Dto>> holders) throws LimitExceededException {
+    long best = Long.MAX_VALUE;
+    long checksum = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < holders.size(); i++) {
+        checksum += engine.sizeof((long) i, holders.get(i));
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    if (checksum == 0) {
+      throw new AssertionError();
+    }
+    return best;
+  }
+
+  private static final class Dto implements HeapSized {
+    private final String name;
+    private final long[] values;
+    private final List<String> tags;
+
+    Dto(int i) {
+      this.name = "dto-" + i;
+      this.values = new long[8];
+      this.tags = new ArrayList<String>();
+      tags.add("tag-" + (i % 10));
+      tags.add("tag-" + (i % 7));
+    }
+
+    @Override
+    public long heapSize() {
+      return 24L + 24L + 2L * name.length() + 80L + 80L + 2L * (24L + 32L);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.core.internal.store.StoreConfigurationImpl;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.exceptions.StoreAccessException;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.expiry.Expiry;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.copy.ReadWriteCopier;
+import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
+import org.ehcache.impl.internal.sizeof.NoopSizeOfEngine;
+import org.ehcache.spi.copy.Copier;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import static org.ehcache.config.builders.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Checks that heap tier hits which neither expire nor get a new expiration time do not allocate, using the per thread
+ * allocation counter of HotSpot.
+ */
+public class OnHeapStoreGetAllocationITest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OnHeapStoreGetAllocationITest.class);
+
+  private static final int KEYS = 1024;
+  private static final int ROUNDS = 1000;
+
+  private com.sun.management.ThreadMXBean threadMXBean;
+  private final String[] keys = new String[KEYS];
+
+  @Before
+  public void setUp() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    threadMXBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = "key" + i;
+    }
+  }
+
+  @Test
+  public void testHitsDoNotAllocateByRef() throws StoreAccessException {
+    assertNoAllocation("by ref", newStore(Expirations.noExpiration(), new IdentityCopier<String>()));
+  }
+
+  @Test
+  public void testHitsDoNotAllocateWithCopiedKeys() throws StoreAccessException {
+    assertNoAllocation("copied keys", newStore(Expirations.noExpiration(), new ReadWriteCopier<String>() {
+      @Override
+      public String copy(String obj) {
+        return new String(obj);
+      }
+    }));
+  }
+
+  @Test
+  public void testHitsDoNotAllocateWithTimeToLive() throws StoreAccessException {
+    assertNoAllocation("time to live", newStore(Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.HOURS)),
+        new IdentityCopier<String>()));
+  }
+
+  private void assertNoAllocation(String name, OnHeapStore<String, String> store) throws StoreAccessException {
+    // warm up, until the get path is compiled
+    for (int round = 0; round < ROUNDS * 10; round++) {
+      get(store);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int round = 0; round < ROUNDS; round++) {
+      get(store);
+    }
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+    double bytesPerGet = (double) allocated / ((long) ROUNDS * KEYS);
+    LOGGER.info("{}: {} bytes allocated per get", name, bytesPerGet);
+    assertThat(bytesPerGet, lessThan(1.0));
+  }
+
+  private void get(OnHeapStore<String, String> store) throws StoreAccessException {
+    for (String key : keys) {
+      if (store.get(key) == null) {
+        throw new AssertionError("Missing key " + key);
+      }
+    }
+  }
+
+  private OnHeapStore<String, String> newStore(Expiry<? super String, ? super String> expiry, Copier<String> keyCopier) throws StoreAccessException {
+    StoreConfigurationImpl<String, String> configuration = new StoreConfigurationImpl<String, String>(String.class, String.class,
+        null, getClass().getClassLoader(), expiry, newResourcePoolsBuilder().heap(KEYS, EntryUnit.ENTRIES).build(), 1, null, null);
+    OnHeapStore<String, String> store = new OnHeapStore<String, String>(configuration, SystemTimeSource.INSTANCE,
+        keyCopier, new IdentityCopier<String>(), new NoopSizeOfEngine(),
+        NullStoreEventDispatcher.<String, String>nullStoreEventDispatcher());
+    for (String key : keys) {
+      store.put(key, "value");
+    }
+    return store;
+  }
+}
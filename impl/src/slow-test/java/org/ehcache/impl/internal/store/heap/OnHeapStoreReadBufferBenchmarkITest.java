@@ -0,0 +1,127 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.core.internal.store.StoreConfigurationImpl;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.exceptions.StoreAccessException;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
+import org.ehcache.impl.internal.sizeof.NoopSizeOfEngine;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.ehcache.config.builders.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures how the heap tier get throughput on a small hot key set scales with the number of reading threads, with
+ * access times updated in place and with read buffers.
+ */
+public class OnHeapStoreReadBufferBenchmarkITest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OnHeapStoreReadBufferBenchmarkITest.class);
+
+  private static final int HOT_KEYS = 16;
+  private static final int MAX_THREADS = 64;
+  private static final long RUN_MILLIS = 200L;
+
+  @Test
+  public void testGetThroughputScaling() throws Exception {
+    OnHeapStore<Long, String> inPlace = newStore();
+    OnHeapStore<Long, String> buffered = newStore();
+    buffered.enableReadBuffer(MAX_THREADS);
+
+    // warm up
+    throughput(inPlace, 4);
+    throughput(buffered, 4);
+
+    for (int threads = 1; threads <= MAX_THREADS; threads <<= 1) {
+      long inPlaceOps = throughput(inPlace, threads);
+      long bufferedOps = throughput(buffered, threads);
+      LOGGER.info("{} threads - in place: {} ops/s, read buffer: {} ops/s", threads, inPlaceOps, bufferedOps);
+      assertThat(inPlaceOps, greaterThan(0L));
+      // draining the read buffer costs a little on few cores, but must never collapse the throughput
+      assertThat(bufferedOps, greaterThanOrEqualTo(inPlaceOps / 4));
+    }
+  }
+
+  private static long throughput(final OnHeapStore<Long, String> store, int threads) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicLong operations = new AtomicLong();
+    final long[] failures = new long[1];
+    Thread[] readers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      readers[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+            long count = 0;
+            while (System.nanoTime() - deadline < 0) {
+              for (long key = 0; key < HOT_KEYS; key++) {
+                if (store.get(key) == null) {
+                  throw new AssertionError("Missing hot key " + key);
+                }
+              }
+              count += HOT_KEYS;
+            }
+            operations.addAndGet(count);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (StoreAccessException e) {
+            synchronized (failures) {
+              failures[0]++;
+            }
+          }
+        }
+      };
+      readers[t].start();
+    }
+    start.countDown();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    if (failures[0] > 0) {
+      throw new AssertionError(failures[0] + " readers failed");
+    }
+    return operations.get() * TimeUnit.SECONDS.toMillis(1) / RUN_MILLIS;
+  }
+
+  private static OnHeapStore<Long, String> newStore() throws StoreAccessException {
+    StoreConfigurationImpl<Long, String> configuration = new StoreConfigurationImpl<Long, String>(Long.class, String.class,
+        null, OnHeapStoreReadBufferBenchmarkITest.class.getClassLoader(), Expirations.noExpiration(),
+        newResourcePoolsBuilder().heap(HOT_KEYS, EntryUnit.ENTRIES).build(), 1, null, null);
+    OnHeapStore<Long, String> store = new OnHeapStore<Long, String>(configuration, SystemTimeSource.INSTANCE,
+        new IdentityCopier<Long>(), new IdentityCopier<String>(), new NoopSizeOfEngine(),
+        NullStoreEventDispatcher.<Long, String>nullStoreEventDispatcher());
+    for (long key = 0; key < HOT_KEYS; key++) {
+      store.put(key, "value" + key);
+    }
+    return store;
+  }
+}
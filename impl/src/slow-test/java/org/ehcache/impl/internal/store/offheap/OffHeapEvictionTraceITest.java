@@ -0,0 +1,145 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.offheap;
+
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.internal.store.StoreConfigurationImpl;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.exceptions.StoreAccessException;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.config.store.offheap.OffHeapEvictionConfiguration;
+import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
+import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.impl.serialization.StringSerializer;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Replays an access trace against the off heap store in each eviction mode and compares the hit ratios.
+ * <P>
+ *   A trace file holding one long key per line can be replayed by setting the {@value #TRACE_PROPERTY} system
+ *   property. Otherwise a seeded trace of skewed reads interleaved with one-hit scans is generated.
+ * </P>
+ */
+public class OffHeapEvictionTraceITest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapEvictionTraceITest.class);
+
+  private static final String TRACE_PROPERTY = "ehcache.offheap.trace";
+
+  private static final char[] VALUE_CHARS = new char[800];
+  static {
+    Arrays.fill(VALUE_CHARS, 'x');
+  }
+  private static final String VALUE = new String(VALUE_CHARS);
+
+  @Test
+  public void testFrequencyEvictionHitRatio() throws Exception {
+    long[] trace = loadTrace();
+
+    double clockHitRatio = replay(trace, OffHeapEvictionConfiguration.Mode.CLOCK);
+    double frequencyHitRatio = replay(trace, OffHeapEvictionConfiguration.Mode.FREQUENCY);
+
+    LOGGER.info("Replayed {} requests - clock hit ratio: {}, frequency hit ratio: {}", trace.length, clockHitRatio, frequencyHitRatio);
+    assertThat(frequencyHitRatio, greaterThanOrEqualTo(clockHitRatio));
+  }
+
+  private static double replay(long[] trace, OffHeapEvictionConfiguration.Mode mode) throws StoreAccessException {
+    StoreConfigurationImpl<Long, String> storeConfiguration = new StoreConfigurationImpl<Long, String>(Long.class, String.class,
+        null, OffHeapEvictionTraceITest.class.getClassLoader(), Expirations.noExpiration(), null, 0, new LongSerializer(), new StringSerializer());
+    OffHeapStore<Long, String> store = new OffHeapStore<Long, String>(storeConfiguration, SystemTimeSource.INSTANCE,
+        NullStoreEventDispatcher.<Long, String>nullStoreEventDispatcher(), MemoryUnit.MB.toBytes(1), mode);
+    OffHeapStore.Provider.init(store);
+    try {
+      long hits = 0;
+      for (long key : trace) {
+        if (store.get(key) != null) {
+          hits++;
+        } else {
+          store.put(key, VALUE);
+        }
+      }
+      return (double) hits / trace.length;
+    } finally {
+      OffHeapStore.Provider.close(store);
+    }
+  }
+
+  private static long[] loadTrace() throws IOException {
+    String traceFile = System.getProperty(TRACE_PROPERTY);
+    if (traceFile == null) {
+      return generateTrace(new Random(42L), 200000, 5000, 10000, 2000);
+    }
+    List<Long> keys = new ArrayList<Long>();
+    BufferedReader reader = new BufferedReader(new FileReader(traceFile));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0) {
+          keys.add(Long.parseLong(line));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    long[] trace = new long[keys.size()];
+    for (int i = 0; i < trace.length; i++) {
+      trace[i] = keys.get(i);
+    }
+    return trace;
+  }
+
+  /**
+   * Generates Zipf distributed reads over {@code distinctKeys} keys, interrupted every {@code scanInterval} requests
+   * by a scan over {@code scanLength} keys that are never requested again.
+   */
+  private static long[] generateTrace(Random random, int length, int distinctKeys, int scanInterval, int scanLength) {
+    double[] cumulative = new double[distinctKeys];
+    double sum = 0;
+    for (int i = 0; i < distinctKeys; i++) {
+      sum += 1.0 / (i + 1);
+      cumulative[i] = sum;
+    }
+
+    long[] trace = new long[length];
+    long nextScanKey = distinctKeys;
+    int i = 0;
+    while (i < length) {
+      for (int j = 0; j < scanInterval && i < length; j++) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+        trace[i++] = rank < 0 ? -rank - 1 : rank;
+      }
+      for (int j = 0; j < scanLength && i < length; j++) {
+        trace[i++] = nextScanKey++;
+      }
+    }
+    return trace;
+  }
+}
@@ -22,6 +22,7 @@ import org.ehcache.config.ResourceType;
 import org.ehcache.config.ResourceUnit;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
 import org.ehcache.exceptions.BulkCacheWritingException;
 import org.ehcache.exceptions.SerializerException;
 import org.ehcache.expiry.Duration;
@@ -29,11 +30,22 @@ import org.ehcache.expiry.Expirations;
 import org.ehcache.expiry.Expiry;
 import org.ehcache.impl.config.copy.DefaultCopierConfiguration;
 import org.ehcache.impl.config.loaderwriter.DefaultCacheLoaderWriterConfiguration;
+import org.ehcache.impl.config.loaderwriter.DefaultRefreshAheadConfiguration;
+import org.ehcache.impl.config.loaderwriter.DefaultLoadBatchingConfiguration;
 import org.ehcache.impl.config.serializer.DefaultSerializerConfiguration;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
+import org.ehcache.impl.config.store.ValueCompressionConfiguration;
+import org.ehcache.impl.config.store.disk.OffHeapDiskStoreCheckpointConfiguration;
+import org.ehcache.impl.config.store.heap.BackgroundEvictionConfiguration;
+import org.ehcache.impl.config.store.heap.ExpiryIndexConfiguration;
+import org.ehcache.impl.config.store.heap.ReadBufferConfiguration;
 import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration;
+import org.ehcache.impl.config.store.heap.SizeOfFunctionConfiguration;
 import org.ehcache.impl.internal.classes.ClassInstanceConfiguration;
+import org.ehcache.impl.internal.loaderwriter.AsyncCacheLoaderWriterAdapter;
 import org.ehcache.core.internal.service.ServiceLocator;
 import org.ehcache.spi.copy.Copier;
+import org.ehcache.spi.loaderwriter.AsyncCacheLoaderWriter;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
 import org.ehcache.spi.serialization.Serializer;
 import org.hamcrest.Matcher;
@@ -42,12 +54,15 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
 
 public class CacheConfigurationBuilderTest {
 
@@ -110,6 +125,21 @@ public class CacheConfigurationBuilderTest {
     assertThat(instance, Matchers.<Object>sameInstance(loaderWriter));
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testAsyncLoaderWriter() throws Exception {
+    AsyncCacheLoaderWriter<Object, Object> loaderWriter = mock(AsyncCacheLoaderWriter.class);
+
+    CacheConfiguration<Object, Object> cacheConfiguration = CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class)
+        .withAsyncLoaderWriter(loaderWriter)
+        .build();
+
+    DefaultCacheLoaderWriterConfiguration cacheLoaderWriterConfiguration = ServiceLocator.findSingletonAmongst(DefaultCacheLoaderWriterConfiguration.class, cacheConfiguration.getServiceConfigurations());
+    Object instance = ((ClassInstanceConfiguration) cacheLoaderWriterConfiguration).getInstance();
+    assertThat(instance, instanceOf(AsyncCacheLoaderWriterAdapter.class));
+    assertThat(((AsyncCacheLoaderWriterAdapter<Object, Object>) instance).getDelegate(), sameInstance(loaderWriter));
+  }
+
   @Test
   public void testKeySerializer() throws Exception {
     Serializer<Object> keySerializer = new Serializer<Object>() {
@@ -278,4 +308,137 @@ public class CacheConfigurationBuilderTest {
     assertEquals(sizeOfEngineConfiguration.getMaxObjectGraphSize(), 1000);
 
   }
+
+  @Test
+  public void testSizeOfSizingMode() {
+    CacheConfigurationBuilder<String, String> builder = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class);
+
+    builder = builder.withSizeOfSizingMode(DefaultSizeOfEngineConfiguration.SizingMode.SAMPLED, 50).withSizeOfMaxObjectGraph(100);
+    CacheConfiguration<String, String> configuration = builder.build();
+
+    DefaultSizeOfEngineConfiguration sizeOfEngineConfiguration = ServiceLocator.findSingletonAmongst(DefaultSizeOfEngineConfiguration.class, configuration.getServiceConfigurations());
+    assertEquals(sizeOfEngineConfiguration.getSizingMode(), DefaultSizeOfEngineConfiguration.SizingMode.SAMPLED);
+    assertEquals(sizeOfEngineConfiguration.getSamplingInterval(), 50);
+    assertEquals(sizeOfEngineConfiguration.getMaxObjectGraphSize(), 100);
+  }
+
+  @Test
+  public void testSizeOfFunction() {
+    SizeOfFunction<Object, Object> sizeOfFunction = new SizeOfFunction<Object, Object>() {
+      @Override
+      public long sizeof(Object key, Object value) {
+        return 42L;
+      }
+    };
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withSizeOfFunction(sizeOfFunction)
+        .build();
+
+    SizeOfFunctionConfiguration sizeOfFunctionConfiguration = ServiceLocator.findSingletonAmongst(SizeOfFunctionConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(sizeOfFunctionConfiguration.getSizeOfFunction(), sameInstance((Object) sizeOfFunction));
+  }
+
+  @Test
+  public void testBackgroundHeapEviction() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withBackgroundHeapEviction("maintenance", 5)
+        .build();
+
+    BackgroundEvictionConfiguration backgroundEviction = ServiceLocator.findSingletonAmongst(BackgroundEvictionConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(backgroundEviction.getThreadPoolAlias(), is("maintenance"));
+    assertThat(backgroundEviction.getOvershootPercentage(), is(5));
+  }
+
+  @Test
+  public void testExpiryReaper() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withExpiryReaper("maintenance", 2, 50, TimeUnit.SECONDS)
+        .withExpiryReaper("reaper", 500, 5, TimeUnit.MILLISECONDS)
+        .build();
+
+    ExpiryReaperConfiguration expiryReaper = ServiceLocator.findSingletonAmongst(ExpiryReaperConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(expiryReaper.getThreadPoolAlias(), is("reaper"));
+    assertThat(expiryReaper.getInterval(), is(500L));
+    assertThat(expiryReaper.getTimeBudget(), is(5L));
+    assertThat(expiryReaper.getUnit(), is(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testDiskStoreCheckpoints() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withDiskStoreCheckpoints(1, TimeUnit.MINUTES)
+        .withDiskStoreCheckpoints(30, TimeUnit.SECONDS)
+        .build();
+
+    OffHeapDiskStoreCheckpointConfiguration checkpoints = ServiceLocator.findSingletonAmongst(OffHeapDiskStoreCheckpointConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(checkpoints.getInterval(), is(30L));
+    assertThat(checkpoints.getUnit(), is(TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testValueCompression() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withValueCompression(128, ResourceType.Core.OFFHEAP)
+        .withValueCompression(512, ResourceType.Core.DISK)
+        .build();
+
+    ValueCompressionConfiguration compression = ServiceLocator.findSingletonAmongst(ValueCompressionConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(compression.getThreshold(), is(512));
+    assertThat(compression.isCompressing(ResourceType.Core.DISK), is(true));
+    assertThat(compression.isCompressing(ResourceType.Core.OFFHEAP), is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testValueCompressionRejectsHeap() {
+    CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withValueCompression(128, ResourceType.Core.HEAP, ResourceType.Core.OFFHEAP);
+  }
+
+  @Test
+  public void testHeapExpiryIndex() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withHeapExpiryIndex(1, TimeUnit.SECONDS)
+        .withHeapExpiryIndex(200, TimeUnit.MILLISECONDS)
+        .build();
+
+    ExpiryIndexConfiguration expiryIndex = ServiceLocator.findSingletonAmongst(ExpiryIndexConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(expiryIndex.getEvictionHorizon(), is(200L));
+    assertThat(expiryIndex.getUnit(), is(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testHeapReadBuffer() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withHeapReadBuffer(4)
+        .withHeapReadBuffer(16)
+        .build();
+
+    ReadBufferConfiguration readBuffer = ServiceLocator.findSingletonAmongst(ReadBufferConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(readBuffer.getStripes(), is(16));
+  }
+
+  @Test
+  public void testRefreshAhead() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withRefreshAhead(0.5f)
+        .withRefreshAhead(0.2f, "refresh")
+        .build();
+
+    DefaultRefreshAheadConfiguration refreshAhead = ServiceLocator.findSingletonAmongst(DefaultRefreshAheadConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(refreshAhead.getRefreshAheadFactor(), is(0.2f));
+    assertThat(refreshAhead.getThreadPoolAlias(), is("refresh"));
+  }
+
+  @Test
+  public void testLoaderBatching() {
+    CacheConfiguration<String, String> configuration = CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, String.class)
+        .withLoaderBatching(16, 5, TimeUnit.MILLISECONDS)
+        .withLoaderBatching(64, 2, TimeUnit.MILLISECONDS)
+        .build();
+
+    DefaultLoadBatchingConfiguration loadBatching = ServiceLocator.findSingletonAmongst(DefaultLoadBatchingConfiguration.class, configuration.getServiceConfigurations());
+    assertThat(loadBatching.getMaxBatchSize(), is(64));
+    assertThat(loadBatching.getMaxDelay(), is(2L));
+    assertThat(loadBatching.getUnit(), is(TimeUnit.MILLISECONDS));
+  }
 }
@@ -129,7 +129,7 @@ public class SerializerCountingTest {
     assertCounters(2, 1, 0, 1, 0, 0);
     printSerializationCounters("Put OffheapOnHeapCopy");
     cache.get(42L);
-    assertCounters(1, 1, 1, 0, 2, 0);
+    assertCounters(1, 1, 1, 0, 1, 0);
     printSerializationCounters("Get OffheapOnHeapCopy fault");
     cache.get(42L);
     assertCounters(0, 0, 0, 0, 1, 0);
@@ -154,7 +154,7 @@ public class SerializerCountingTest {
     assertCounters(3, 2, 0, 1, 0, 0);
     printSerializationCounters("Put DiskOffHeapOnHeapCopy");
     cache.get(42L);
-    assertCounters(1, 1, 1, 0, 2, 0);
+    assertCounters(1, 1, 1, 0, 1, 0);
     printSerializationCounters("Get DiskOffHeapOnHeapCopy fault");
     cache.get(42L);
     assertCounters(0, 0, 0, 0, 1, 0);
@@ -23,7 +23,11 @@ import org.ehcache.core.internal.service.ServiceLocator;
 import org.ehcache.spi.service.ServiceDependencies;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
@@ -49,4 +53,20 @@ public class DefaultTimeSourceServiceTest {
     assertThat(timeSourceService.getTimeSource(), sameInstance(timeSource));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testTickingTimeSourceFollowsServiceLifecycle() throws InterruptedException {
+    DefaultTimeSourceService timeSourceService = new DefaultTimeSourceService(new TimeSourceConfiguration(1, TimeUnit.HOURS));
+    TickingTimeSource timeSource = (TickingTimeSource) timeSourceService.getTimeSource();
+    assertThat(timeSource.getResolution(), is(1L));
+
+    timeSourceService.start(null);
+    long started = timeSource.getTimeMillis();
+    Thread.sleep(20);
+    assertThat(timeSource.getTimeMillis(), is(started));
+
+    timeSourceService.stop();
+    Thread.sleep(20);
+    assertThat(timeSource.getTimeMillis(), greaterThan(started));
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * TickingTimeSourceTest
+ */
+public class TickingTimeSourceTest {
+
+  @Test
+  public void testReadsSystemClockWhenNotTicking() {
+    TickingTimeSource timeSource = new TickingTimeSource(1, TimeUnit.HOURS);
+    long before = System.currentTimeMillis();
+    assertThat(timeSource.getTimeMillis(), greaterThanOrEqualTo(before));
+  }
+
+  @Test
+  public void testTimeAdvancesWhileTicking() throws InterruptedException {
+    TickingTimeSource timeSource = new TickingTimeSource(1, TimeUnit.MILLISECONDS);
+    timeSource.start();
+    try {
+      long start = timeSource.getTimeMillis();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (timeSource.getTimeMillis() == start && System.nanoTime() - deadline < 0) {
+        Thread.sleep(5);
+      }
+      assertThat(timeSource.getTimeMillis(), greaterThan(start));
+    } finally {
+      timeSource.stop();
+    }
+  }
+
+  @Test
+  public void testTimeIsCachedBetweenTicks() throws InterruptedException {
+    TickingTimeSource timeSource = new TickingTimeSource(1, TimeUnit.HOURS);
+    timeSource.start();
+    try {
+      long start = timeSource.getTimeMillis();
+      Thread.sleep(20);
+      assertThat(timeSource.getTimeMillis(), is(start));
+    } finally {
+      timeSource.stop();
+    }
+    assertThat(timeSource.getTimeMillis(), greaterThanOrEqualTo(System.currentTimeMillis() - 1));
+  }
+
+  @Test
+  public void testInvalidResolution() {
+    try {
+      new TickingTimeSource(0, TimeUnit.MILLISECONDS);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.loaderwriter;
+
+import org.ehcache.spi.loaderwriter.AsyncCacheLoaderWriter;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AsyncCacheLoaderWriterAdapterTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testLoadWaitsForTheDelegate() throws Exception {
+    AsyncCacheLoaderWriter<String, String> delegate = mock(AsyncCacheLoaderWriter.class);
+    when(delegate.loadAsync("key")).thenReturn(completed(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return "value";
+      }
+    }));
+    AsyncCacheLoaderWriterAdapter<String, String> loaderWriter = new AsyncCacheLoaderWriterAdapter<String, String>(delegate);
+
+    assertThat(loaderWriter.load("key"), is("value"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testWriteThrowsTheDelegateFailure() throws Exception {
+    final Exception failure = new Exception("write failed");
+    AsyncCacheLoaderWriter<String, String> delegate = mock(AsyncCacheLoaderWriter.class);
+    when(delegate.writeAsync("key", "value")).thenReturn(completed(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        throw failure;
+      }
+    }));
+    AsyncCacheLoaderWriterAdapter<String, String> loaderWriter = new AsyncCacheLoaderWriterAdapter<String, String>(delegate);
+
+    try {
+      loaderWriter.write("key", "value");
+      fail("Expected Exception");
+    } catch (Exception e) {
+      assertThat(e, sameInstance(failure));
+    }
+  }
+
+  private static <T> FutureTask<T> completed(Callable<T> callable) {
+    FutureTask<T> task = new FutureTask<T>(callable);
+    task.run();
+    return task;
+  }
+}
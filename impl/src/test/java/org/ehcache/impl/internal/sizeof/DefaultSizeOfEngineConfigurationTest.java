@@ -59,6 +59,18 @@ public class DefaultSizeOfEngineConfigurationTest {
     assertThat(configuration.getMaxObjectGraphSize(), equalTo(10l));
     assertThat(configuration.getMaxObjectSize(), equalTo(10l));
     assertThat(configuration.getUnit(), equalTo(MemoryUnit.B));
+    assertThat(configuration.getSizingMode(), equalTo(DefaultSizeOfEngineConfiguration.SizingMode.DEEP));
+  }
+
+  @Test
+  public void testIllegalSamplingIntervalArgument() {
+    try {
+      new DefaultSizeOfEngineConfiguration(1l, MemoryUnit.B, 1l, DefaultSizeOfEngineConfiguration.SizingMode.SAMPLED, 0);
+      fail();
+    } catch (Exception illegalArgument) {
+      assertThat(illegalArgument, instanceOf(IllegalArgumentException.class));
+      assertThat(illegalArgument.getMessage(), equalTo("SamplingInterval can only accept positive values."));
+    }
   }
 
 }
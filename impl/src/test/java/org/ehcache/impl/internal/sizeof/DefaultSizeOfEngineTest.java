@@ -16,15 +16,26 @@
 
 package org.ehcache.impl.internal.sizeof;
 
+import org.ehcache.core.spi.store.heap.HeapSized;
 import org.ehcache.core.spi.store.heap.LimitExceededException;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
+import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration.SizingMode;
 import org.ehcache.impl.copy.IdentityCopier;
 import org.ehcache.impl.internal.store.heap.holders.CopiedOnHeapValueHolder;
+import org.ehcache.impl.internal.store.heap.holders.LeanOnHeapValueHolder;
+import org.ehcache.impl.internal.store.heap.holders.SerializedOnHeapValueHolder;
+import org.ehcache.impl.serialization.JavaSerializer;
 import org.ehcache.core.spi.store.heap.SizeOfEngine;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 
 /**
@@ -56,6 +67,111 @@ public class DefaultSizeOfEngineTest {
       assertThat(limitExceededException.getMessage(), containsString("Max Object Size reached for the object"));
     }
   }
+
+  @Test
+  public void testMemoizedSizingMatchesDeepSizing() throws LimitExceededException {
+    SizeOfEngine deep = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE);
+    SizeOfEngine memoized = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE, SizingMode.MEMOIZED, 1);
+    Object[] objects = {"", "key", "a somewhat longer value", 42, 42L, 'c', true, 4.2d, 4242, 4242L, (short) 4242, '\u00e9', new byte[0], new byte[13], new char[7],
+        new long[5], new MaxDepthGreaterThanThree(), new ArrayList<Object>(Arrays.asList("a", "b"))};
+    for (Object key : objects) {
+      for (Object value : objects) {
+        assertThat(memoized.sizeof(key, new CopiedOnHeapValueHolder<Object>(value, 0L, false, new IdentityCopier<Object>())),
+            is(deep.sizeof(key, new CopiedOnHeapValueHolder<Object>(value, 0L, false, new IdentityCopier<Object>()))));
+        assertThat(memoized.sizeof(key, new LeanOnHeapValueHolder<Object>(value, 0L, false, new IdentityCopier<Object>())),
+            is(deep.sizeof(key, new LeanOnHeapValueHolder<Object>(value, 0L, false, new IdentityCopier<Object>()))));
+      }
+    }
+  }
+
+  @Test
+  public void testMemoizedSizingEnforcesMaxObjectSize() {
+    SizeOfEngine sizeOfEngine = new DefaultSizeOfEngine(Long.MAX_VALUE, 100, SizingMode.MEMOIZED, 1);
+    try {
+      sizeOfEngine.sizeof(1L, new CopiedOnHeapValueHolder<Object>(new long[100], 0L, false, new IdentityCopier<Object>()));
+      fail();
+    } catch (LimitExceededException limitExceededException) {
+      assertThat(limitExceededException.getMessage(), containsString("Max Object Size reached for the object"));
+    }
+  }
+
+  @Test
+  public void testSampledSizingRecalibrates() throws LimitExceededException {
+    SizeOfEngine sizeOfEngine = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE, SizingMode.SAMPLED, 2);
+    ArrayList<Object> small = new ArrayList<Object>();
+    ArrayList<Object> large = new ArrayList<Object>(Arrays.<Object>asList(new long[100]));
+
+    long smallSize = sizeOfEngine.sizeof(1L, new CopiedOnHeapValueHolder<Object>(small, 0L, false, new IdentityCopier<Object>()));
+    assertThat(sizeOfEngine.sizeof(1L, new CopiedOnHeapValueHolder<Object>(large, 0L, false, new IdentityCopier<Object>())), is(smallSize));
+    assertThat(sizeOfEngine.sizeof(1L, new CopiedOnHeapValueHolder<Object>(large, 0L, false, new IdentityCopier<Object>())), is(smallSize));
+    assertThat(sizeOfEngine.sizeof(1L, new CopiedOnHeapValueHolder<Object>(large, 0L, false, new IdentityCopier<Object>())), greaterThan(smallSize));
+  }
+
+  @Test
+  public void testDeclaredSizingUsesHeapSize() throws LimitExceededException {
+    SizeOfEngine sizeOfEngine = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE, SizingMode.DECLARED, 1);
+
+    long large = sizeOfEngine.sizeof(new Declared(100), new CopiedOnHeapValueHolder<Object>(new Declared(1000), 0L, false, new IdentityCopier<Object>()));
+    long small = sizeOfEngine.sizeof(new Declared(10), new CopiedOnHeapValueHolder<Object>(new Declared(10), 0L, false, new IdentityCopier<Object>()));
+    assertThat(large - small, is(1080L));
+  }
+
+  @Test
+  public void testSizeOfFunctionReplacesGraphWalk() throws LimitExceededException {
+    SizeOfEngine sizeOfEngine = new DefaultSizeOfEngine(1, Long.MAX_VALUE, SizingMode.DEEP, 1, new SizeOfFunction<Object, Object>() {
+      @Override
+      public long sizeof(Object key, Object value) {
+        return 1000L;
+      }
+    });
+    long small = sizeOfEngine.sizeof("key", new CopiedOnHeapValueHolder<Object>("value", 0L, false, new IdentityCopier<Object>()));
+    long large = sizeOfEngine.sizeof(new MaxDepthGreaterThanThree(), new CopiedOnHeapValueHolder<Object>(new MaxDepthGreaterThanThree(), 0L, false, new IdentityCopier<Object>()));
+    assertThat(large, is(small));
+  }
+
+  @Test
+  public void testSizeOfFunctionIsNotAppliedToSerializedValues() throws LimitExceededException {
+    SizeOfEngine sizeOfEngine = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE, SizingMode.DEEP, 1, new SizeOfFunction<Object, Object>() {
+      @Override
+      public long sizeof(Object key, Object value) {
+        throw new AssertionError("Serialized values should be walked");
+      }
+    });
+    SizeOfEngine deepEngine = new DefaultSizeOfEngine(Long.MAX_VALUE, Long.MAX_VALUE, SizingMode.DEEP, 1);
+    JavaSerializer<Object> serializer = new JavaSerializer<Object>(getClass().getClassLoader());
+    SerializedOnHeapValueHolder<Object> holder = new SerializedOnHeapValueHolder<Object>("value", 0L, false, serializer);
+    assertThat(sizeOfEngine.sizeof("key", holder), is(deepEngine.sizeof("key", holder)));
+  }
+
+  @Test
+  public void testSizeOfFunctionEnforcesMaxObjectSize() {
+    SizeOfEngine sizeOfEngine = new DefaultSizeOfEngine(Long.MAX_VALUE, 1000, SizingMode.DEEP, 1, new SizeOfFunction<Object, Object>() {
+      @Override
+      public long sizeof(Object key, Object value) {
+        return 1000L;
+      }
+    });
+    try {
+      sizeOfEngine.sizeof("key", new CopiedOnHeapValueHolder<Object>("value", 0L, false, new IdentityCopier<Object>()));
+      fail();
+    } catch (LimitExceededException limitExceededException) {
+      assertThat(limitExceededException.getMessage(), containsString("Max Object Size reached for the object"));
+    }
+  }
+
+  private static class Declared implements HeapSized {
+    private final long size;
+
+    private Declared(long size) {
+      this.size = size;
+    }
+
+    @Override
+    public long heapSize() {
+      return size;
+    }
+  }
+
   private static class MaxDepthGreaterThanThree {
     private Object second = new Object();
     private Object third = new Object();
@@ -27,6 +27,7 @@ import org.ehcache.impl.serialization.DoubleSerializer;
 import org.ehcache.impl.serialization.FloatSerializer;
 import org.ehcache.impl.serialization.IntegerSerializer;
 import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.impl.serialization.SchemaSerializer;
 import org.ehcache.impl.serialization.StringSerializer;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.serialization.Serializer;
@@ -102,6 +103,17 @@ public class DefaultSerializationProviderTest {
     assertThat(dsp.createValueSerializer(HashMap.class, ClassLoader.getSystemClassLoader()), instanceOf(CompactJavaSerializer.class));
   }
 
+  @Test
+  public void testCreateSchemaSerializerForRegisteredType() throws Exception {
+    DefaultSerializationProviderConfiguration dspfConfig = new DefaultSerializationProviderConfiguration();
+    dspfConfig.addSerializerFor(HashMap.class, (Class) SchemaSerializer.class);
+    DefaultSerializationProvider dsp = new DefaultSerializationProvider(dspfConfig);
+    dsp.start(providerContaining());
+
+    assertThat(dsp.createValueSerializer(HashMap.class, getSystemClassLoader()), instanceOf(SchemaSerializer.class));
+    assertThat(dspfConfig.getPersistentSerializers().containsKey(HashMap.class), is(true));
+  }
+
   @Test
   public void testCreateTransientSerializers() throws Exception {
     DefaultSerializationProviderConfiguration dspfConfig = new DefaultSerializationProviderConfiguration();
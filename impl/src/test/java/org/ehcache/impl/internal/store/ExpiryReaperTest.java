@@ -0,0 +1,105 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store;
+
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ExpiryReaperTest {
+
+  @Test
+  public void testStartSchedulesAtConfiguredInterval() {
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    ExpiryReaper reaper = new ExpiryReaper(mock(ExpiryReaper.Sweepable.class), SystemTimeSource.INSTANCE, executor,
+        new ExpiryReaperConfiguration(null, 2, 1, TimeUnit.SECONDS), this, "test");
+
+    reaper.start();
+
+    verify(executor).scheduleWithFixedDelay(reaper, TimeUnit.SECONDS.toNanos(2), TimeUnit.SECONDS.toNanos(2), TimeUnit.NANOSECONDS);
+  }
+
+  @Test
+  public void testRunsAccumulateProgress() {
+    ExpiryReaper reaper = new ExpiryReaper(new ExpiryReaper.Sweepable() {
+      @Override
+      public void sweep(long now, long deadline, ExpiryReaper.Progress progress) {
+        progress.scanned(10);
+        progress.expired(3, 300L);
+      }
+    }, SystemTimeSource.INSTANCE, mock(ScheduledExecutorService.class), new ExpiryReaperConfiguration(), this, "test");
+
+    reaper.run();
+    reaper.run();
+
+    assertThat(reaper.getScannedMappings(), is(20L));
+    assertThat(reaper.getExpiredMappings(), is(6L));
+    assertThat(reaper.getReclaimedBytes(), is(600L));
+    assertThat(reaper.getScanRate(), greaterThan(0L));
+  }
+
+  @Test
+  public void testFailingRunDoesNotPropagate() {
+    ExpiryReaper reaper = new ExpiryReaper(new ExpiryReaper.Sweepable() {
+      @Override
+      public void sweep(long now, long deadline, ExpiryReaper.Progress progress) {
+        progress.scanned(1);
+        throw new IllegalStateException("Failing sweep");
+      }
+    }, SystemTimeSource.INSTANCE, mock(ScheduledExecutorService.class), new ExpiryReaperConfiguration(), this, "test");
+
+    reaper.run();
+
+    assertThat(reaper.getScannedMappings(), is(1L));
+  }
+
+  @Test
+  public void testSweepDeadlineHonoursTimeBudget() {
+    final long[] budget = new long[1];
+    ExpiryReaper reaper = new ExpiryReaper(new ExpiryReaper.Sweepable() {
+      @Override
+      public void sweep(long now, long deadline, ExpiryReaper.Progress progress) {
+        budget[0] = deadline - System.nanoTime();
+      }
+    }, SystemTimeSource.INSTANCE, mock(ScheduledExecutorService.class),
+        new ExpiryReaperConfiguration(null, 1, 50, TimeUnit.MILLISECONDS), this, "test");
+
+    reaper.run();
+
+    assertThat(budget[0] <= TimeUnit.MILLISECONDS.toNanos(50), is(true));
+  }
+
+  @Test
+  public void testStopShutsDownExecutor() {
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    ExpiryReaper reaper = new ExpiryReaper(mock(ExpiryReaper.Sweepable.class), SystemTimeSource.INSTANCE, executor,
+        new ExpiryReaperConfiguration(), this, "test");
+
+    reaper.stop();
+
+    verify(executor).shutdownNow();
+  }
+}
@@ -24,6 +24,7 @@ import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.exceptions.StoreAccessException;
 import org.ehcache.exceptions.CachePersistenceException;
 import org.ehcache.expiry.Expiry;
+import org.ehcache.impl.config.store.disk.OffHeapDiskStoreCheckpointConfiguration;
 import org.ehcache.impl.internal.events.TestStoreEventDispatcher;
 import org.ehcache.impl.internal.executor.OnDemandExecutionService;
 import org.ehcache.impl.internal.persistence.TestLocalPersistenceService;
@@ -43,6 +44,7 @@ import org.ehcache.spi.service.ServiceConfiguration;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -52,6 +54,7 @@ import static org.ehcache.expiry.Expirations.noExpiration;
 import static org.ehcache.impl.internal.spi.TestServiceProvider.providerContaining;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -79,6 +82,51 @@ public class OffHeapDiskStoreTest extends AbstractOffHeapStoreTest {
     }
   }
 
+  @Test
+  public void testRecoveryFromCheckpoint() throws Exception {
+    OffHeapDiskStore<String, String> offHeapDiskStore = createAndInitStore(new OffHeapDiskStoreCheckpointConfiguration());
+    try {
+      offHeapDiskStore.put("key1", "value1");
+      offHeapDiskStore.checkpoint();
+      offHeapDiskStore.put("key2", "value2");
+
+      File directory = getPersistenceContext().getDirectory();
+      File checkpoint = new File(directory, "ehcache-disk-store.checkpoint");
+      File savedCheckpoint = new File(directory, "saved.checkpoint");
+      assertThat(checkpoint.renameTo(savedCheckpoint), is(true));
+
+      OffHeapDiskStore.Provider.close(offHeapDiskStore);
+
+      // simulate an unclean shutdown : no index, only the last checkpoint
+      assertThat(new File(directory, "ehcache-disk-store.index").delete(), is(true));
+      assertThat(savedCheckpoint.renameTo(checkpoint), is(true));
+
+      OffHeapDiskStore.Provider.init(offHeapDiskStore);
+      assertThat(offHeapDiskStore.get("key1").value(), is("value1"));
+      assertThat(offHeapDiskStore.get("key2"), nullValue());
+    } finally {
+      destroyStore(offHeapDiskStore);
+    }
+  }
+
+  private OffHeapDiskStore<String, String> createAndInitStore(OffHeapDiskStoreCheckpointConfiguration checkpointConfiguration) throws UnsupportedTypeException {
+    SerializationProvider serializationProvider = new DefaultSerializationProvider(null);
+    serializationProvider.start(providerContaining(persistenceService));
+    ClassLoader classLoader = getClass().getClassLoader();
+    Serializer<String> keySerializer = serializationProvider.createKeySerializer(String.class, classLoader);
+    Serializer<String> valueSerializer = serializationProvider.createValueSerializer(String.class, classLoader);
+    StoreConfigurationImpl<String, String> storeConfiguration = new StoreConfigurationImpl<String, String>(String.class, String.class,
+        null, classLoader, noExpiration(), null, 0, keySerializer, valueSerializer);
+    OffHeapDiskStore<String, String> offHeapStore = new OffHeapDiskStore<String, String>(
+            getPersistenceContext(),
+            new OnDemandExecutionService(), null, 1,
+            storeConfiguration, SystemTimeSource.INSTANCE,
+            new TestStoreEventDispatcher<String, String>(),
+            MemoryUnit.MB.toBytes(1), checkpointConfiguration);
+    OffHeapDiskStore.Provider.init(offHeapStore);
+    return offHeapStore;
+  }
+
   @Override
   protected OffHeapDiskStore<String, String> createAndInitStore(final TimeSource timeSource, final Expiry<? super String, ? super String> expiry) {
     try {
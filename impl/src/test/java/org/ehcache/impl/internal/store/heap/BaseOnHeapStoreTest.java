@@ -28,7 +28,9 @@ import org.ehcache.expiry.Expiry;
 import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
 import org.ehcache.core.spi.function.NullaryFunction;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
 import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.internal.store.ExpiryReaper;
 import org.ehcache.impl.internal.store.heap.holders.CopiedOnHeapValueHolder;
 import org.ehcache.core.spi.time.SystemTimeSource;
 import org.ehcache.core.spi.time.TimeSource;
@@ -47,15 +49,22 @@ import org.junit.Test;
 import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Exchanger;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.ehcache.impl.internal.util.Matchers.holding;
@@ -67,6 +76,7 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
@@ -263,6 +273,102 @@ public abstract class BaseOnHeapStoreTest {
     StatisticsTestUtils.validateStats(store, EnumSet.of(StoreOperationOutcomes.ExpirationOutcome.SUCCESS));
   }
 
+  @Test
+  public void testExpiryReaperRemovesExpiredMappings() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource,
+        Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.MILLISECONDS)));
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    store.startExpiryReaper(new ExpiryReaperConfiguration(), executor);
+    ArgumentCaptor<Runnable> reaper = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).scheduleWithFixedDelay(reaper.capture(), anyLong(), anyLong(), any(TimeUnit.class));
+
+    store.put("key", "value");
+    timeSource.advanceTime(1);
+    store.put("other", "value");
+    reaper.getValue().run();
+
+    checkExpiryEvent(eventSink, "key", "value");
+    assertThat(store.containsKey("other"), is(true));
+    assertThat(((ExpiryReaper) reaper.getValue()).getScannedMappings(), is(2L));
+    assertThat(((ExpiryReaper) reaper.getValue()).getExpiredMappings(), is(1L));
+    StatisticsTestUtils.validateStats(store, EnumSet.of(StoreOperationOutcomes.ExpirationOutcome.SUCCESS));
+
+    store.stopMaintenance();
+    verify(executor).shutdownNow();
+  }
+
+  @Test
+  public void testExpiryIndexDrivesExpiryReaper() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource,
+        Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.SECONDS)));
+    store.enableExpiryIndex(0L);
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    store.startExpiryReaper(new ExpiryReaperConfiguration(), executor);
+    ArgumentCaptor<Runnable> reaper = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).scheduleWithFixedDelay(reaper.capture(), anyLong(), anyLong(), any(TimeUnit.class));
+
+    store.put("key", "value");
+    timeSource.advanceTime(2000);
+    store.put("other", "value");
+    reaper.getValue().run();
+
+    checkExpiryEvent(eventSink, "key", "value");
+    assertThat(store.containsKey("other"), is(true));
+    assertThat(((ExpiryReaper) reaper.getValue()).getScannedMappings(), is(1L));
+    assertThat(((ExpiryReaper) reaper.getValue()).getExpiredMappings(), is(1L));
+
+    store.stopMaintenance();
+  }
+
+  @Test
+  public void testExpiryIndexForgetsRemovedMappings() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource,
+        Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.SECONDS)));
+    store.enableExpiryIndex(0L);
+
+    store.put("removed", "value");
+    store.put("invalidated", "value");
+    store.put("computed", "value");
+    store.put("expired", "value");
+    assertThat(store.getExpiryIndexSize(), is(4));
+
+    store.remove("removed");
+    store.invalidate("invalidated");
+    store.compute("computed", new BiFunction<String, String, String>() {
+      @Override
+      public String apply(String key, String value) {
+        return null;
+      }
+    });
+    timeSource.advanceTime(2000);
+    assertThat(store.get("expired"), nullValue());
+    assertThat(store.getExpiryIndexSize(), is(0));
+
+    store.put("key", "value");
+    store.clear();
+    assertThat(store.getExpiryIndexSize(), is(0));
+  }
+
+  @Test
+  public void testReadBufferDefersAccessUpdates() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource, Expirations.noExpiration());
+    store.enableReadBuffer(1);
+    store.put("key", "value");
+    timeSource.advanceTime(10);
+
+    ValueHolder<String> valueHolder = store.get("key");
+    assertThat(valueHolder.hits(), is(0L));
+    assertThat(valueHolder.lastAccessTime(TimeUnit.MILLISECONDS), is(0L));
+
+    store.drainReadBuffer();
+    assertThat(valueHolder.hits(), is(1L));
+    assertThat(valueHolder.lastAccessTime(TimeUnit.MILLISECONDS), is(10L));
+  }
+
   @Test
   public void testPut() throws Exception {
     OnHeapStore<String, String> store = newStore();
@@ -1033,6 +1139,77 @@ public abstract class BaseOnHeapStoreTest {
     StatisticsTestUtils.validateStats(store, EnumSet.of(StoreOperationOutcomes.ExpirationOutcome.SUCCESS));
   }
 
+  @Test
+  public void testBulkGetOrComputeIfAbsentOnlyComputesMissingKeys() throws Exception {
+    OnHeapStore<String, String> store = newStore();
+    store.put("hit", "hitValue");
+
+    final AtomicReference<Set<? extends String>> sourceKeys = new AtomicReference<Set<? extends String>>();
+    Map<String, ValueHolder<String>> result = store.bulkGetOrComputeIfAbsent(Arrays.asList("hit", "faulted", "missing"), new Function<Set<? extends String>, Map<String, ValueHolder<String>>>() {
+      @Override
+      public Map<String, ValueHolder<String>> apply(Set<? extends String> keys) {
+        sourceKeys.set(keys);
+        Map<String, ValueHolder<String>> computed = new HashMap<String, ValueHolder<String>>();
+        computed.put("faulted", new CopiedOnHeapValueHolder<String>("faultedValue", System.currentTimeMillis(), false, new IdentityCopier<String>()));
+        computed.put("missing", null);
+        return computed;
+      }
+    });
+
+    assertThat(sourceKeys.get(), equalTo((Set) new HashSet<String>(Arrays.asList("faulted", "missing"))));
+    assertThat(result.size(), is(3));
+    assertThat(result.get("hit").value(), is("hitValue"));
+    assertThat(result.get("faulted").value(), is("faultedValue"));
+    assertThat(result.get("missing"), nullValue());
+    assertThat(store.get("faulted").value(), is("faultedValue"));
+    assertThat(storeSize(store), is(2));
+    StatisticsTestUtils.validateStats(store, EnumSet.of(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.HIT,
+        CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.FAULTED, CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.MISS));
+  }
+
+  @Test
+  public void testBulkGetOrComputeIfAbsentIsJoinedByConcurrentFaults() throws Exception {
+    final OnHeapStore<String, String> store = newStore();
+    final AtomicBoolean concurrentSourceCalled = new AtomicBoolean();
+    final AtomicReference<ValueHolder<String>> concurrentResult = new AtomicReference<ValueHolder<String>>();
+    final AtomicReference<Thread> concurrentReader = new AtomicReference<Thread>();
+
+    Map<String, ValueHolder<String>> result = store.bulkGetOrComputeIfAbsent(Arrays.asList("key"), new Function<Set<? extends String>, Map<String, ValueHolder<String>>>() {
+      @Override
+      public Map<String, ValueHolder<String>> apply(Set<? extends String> keys) {
+        Thread thread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              concurrentResult.set(store.getOrComputeIfAbsent("key", new Function<String, ValueHolder<String>>() {
+                @Override
+                public ValueHolder<String> apply(String key) {
+                  concurrentSourceCalled.set(true);
+                  return null;
+                }
+              }));
+            } catch (StoreAccessException e) {
+              throw new AssertionError(e);
+            }
+          }
+        });
+        thread.start();
+        concurrentReader.set(thread);
+        try {
+          thread.join(100);
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return Collections.<String, ValueHolder<String>>singletonMap("key", new CopiedOnHeapValueHolder<String>("value", System.currentTimeMillis(), false, new IdentityCopier<String>()));
+      }
+    });
+    concurrentReader.get().join();
+
+    assertThat(result.get("key").value(), is("value"));
+    assertThat(concurrentSourceCalled.get(), is(false));
+    assertThat(concurrentResult.get().value(), is("value"));
+  }
+
   @Test
   public void testGetOrComputeIfAbsentRemovesFault() throws StoreAccessException {
     final OnHeapStore<String, String> store = newStore();
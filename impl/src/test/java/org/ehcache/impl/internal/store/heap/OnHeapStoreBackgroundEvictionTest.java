@@ -0,0 +1,162 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.ValueSupplier;
+import org.ehcache.config.EvictionVeto;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.core.events.StoreEventDispatcher;
+import org.ehcache.core.events.StoreEventSink;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.exceptions.StoreAccessException;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.expiry.Expiry;
+import org.ehcache.impl.config.store.heap.BackgroundEvictionConfiguration;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.internal.sizeof.NoopSizeOfEngine;
+import org.ehcache.spi.copy.Copier;
+import org.ehcache.spi.serialization.Serializer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.ehcache.config.builders.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OnHeapStoreBackgroundEvictionTest {
+
+  private static final int CAPACITY = 10;
+
+  private ScheduledExecutorService executor;
+  private StoreEventSink<String, String> eventSink;
+  private OnHeapStore<String, String> store;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    executor = mock(ScheduledExecutorService.class);
+    eventSink = mock(StoreEventSink.class);
+    StoreEventDispatcher<String, String> eventDispatcher = mock(StoreEventDispatcher.class);
+    when(eventDispatcher.eventSink()).thenReturn(eventSink);
+    Copier<String> copier = new IdentityCopier<String>();
+    store = new OnHeapStore<String, String>(newConfiguration(), SystemTimeSource.INSTANCE, copier, copier, new NoopSizeOfEngine(),
+        eventDispatcher, null, new BackgroundEvictionConfiguration(null, 20), executor);
+  }
+
+  @Test
+  public void testWritersDoNotEvictWithinOvershoot() throws StoreAccessException {
+    for (int i = 0; i < CAPACITY + 2; i++) {
+      store.put("key" + i, "value" + i);
+    }
+
+    assertThat(size(), is(CAPACITY + 2));
+    verify(eventSink, never()).evicted(anyString(), any(ValueSupplier.class));
+    verify(executor, times(1)).execute(any(Runnable.class));
+  }
+
+  @Test
+  public void testBackgroundTaskEvictsDownToCapacity() throws StoreAccessException {
+    for (int i = 0; i < CAPACITY + 2; i++) {
+      store.put("key" + i, "value" + i);
+    }
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).execute(task.capture());
+
+    task.getValue().run();
+
+    assertThat(size(), is(CAPACITY));
+    verify(eventSink, times(2)).evicted(anyString(), any(ValueSupplier.class));
+  }
+
+  @Test
+  public void testWritersEvictBeyondOvershoot() throws StoreAccessException {
+    for (int i = 0; i < CAPACITY * 2; i++) {
+      store.put("key" + i, "value" + i);
+    }
+
+    assertThat(size(), is(CAPACITY + 2));
+  }
+
+  private int size() throws StoreAccessException {
+    int size = 0;
+    for (Store.Iterator<?> iterator = store.iterator(); iterator.hasNext(); iterator.next()) {
+      size++;
+    }
+    return size;
+  }
+
+  private static Store.Configuration<String, String> newConfiguration() {
+    return new Store.Configuration<String, String>() {
+      @Override
+      public Class<String> getKeyType() {
+        return String.class;
+      }
+
+      @Override
+      public Class<String> getValueType() {
+        return String.class;
+      }
+
+      @Override
+      public EvictionVeto<? super String, ? super String> getEvictionVeto() {
+        return null;
+      }
+
+      @Override
+      public ClassLoader getClassLoader() {
+        return getClass().getClassLoader();
+      }
+
+      @Override
+      public Expiry<? super String, ? super String> getExpiry() {
+        return Expirations.noExpiration();
+      }
+
+      @Override
+      public ResourcePools getResourcePools() {
+        return newResourcePoolsBuilder().heap(CAPACITY, EntryUnit.ENTRIES).build();
+      }
+
+      @Override
+      public Serializer<String> getKeySerializer() {
+        throw new AssertionError();
+      }
+
+      @Override
+      public Serializer<String> getValueSerializer() {
+        throw new AssertionError();
+      }
+
+      @Override
+      public int getOrderedEventParallelism() {
+        return 1;
+      }
+    };
+  }
+}
@@ -34,12 +34,14 @@ import org.ehcache.impl.serialization.CompactJavaSerializer;
 import org.ehcache.core.spi.time.SystemTimeSource;
 import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.impl.internal.store.AbstractValueHolder;
+import org.ehcache.impl.internal.store.BinaryValueHolder;
 import org.ehcache.core.spi.store.Store.ValueHolder;
 import org.ehcache.impl.serialization.JavaSerializer;
 import org.ehcache.spi.copy.Copier;
 import org.junit.Test;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -97,6 +99,22 @@ public abstract class OnHeapStoreByValueTest extends BaseOnHeapStoreTest {
     assertThat(keyCopier.copyForReadCount, is(0));
   }
 
+  @Test
+  public void testBinaryValueFaultedWithoutDeserialization() throws Exception {
+    final CompactJavaSerializer<Long> serializer = new CompactJavaSerializer<Long>(ClassLoader.getSystemClassLoader());
+    OnHeapStore<Long, Long> store = newStore(SystemTimeSource.INSTANCE, Expirations.noExpiration(), Eviction.none(),
+        new LongCopier(), new SerializingCopier<Long>(serializer), 100);
+
+    ValueHolder<Long> computed = store.getOrComputeIfAbsent(1L, new Function<Long, ValueHolder<Long>>() {
+      @Override
+      public ValueHolder<Long> apply(final Long key) {
+        return new BinaryTransferValueHolder(serializer.serialize(key * 1000L));
+      }
+    });
+    assertThat(computed.value(), is(1000L));
+    assertThat(store.get(1L).value(), is(1000L));
+  }
+
   @Test
   public void testPutNotSerializableValue() throws Exception {
     OnHeapStore<Serializable, Serializable> store = newStore();
@@ -204,4 +222,34 @@ public abstract class OnHeapStoreByValueTest extends BaseOnHeapStoreTest {
     assertThat(s1 == s2, is(same));
     assertThat(s2 == s3, is(same));
   }
+
+  private static class BinaryTransferValueHolder extends AbstractValueHolder<Long> implements BinaryValueHolder {
+
+    private final ByteBuffer binaryValue;
+
+    BinaryTransferValueHolder(ByteBuffer binaryValue) {
+      super(-1, -1);
+      this.binaryValue = binaryValue;
+    }
+
+    @Override
+    public Long value() {
+      throw new AssertionError("Binary transfer should not deserialize the value");
+    }
+
+    @Override
+    public ByteBuffer getBinaryValue() throws IllegalStateException {
+      return binaryValue.duplicate();
+    }
+
+    @Override
+    public boolean isBinaryValueAvailable() {
+      return true;
+    }
+
+    @Override
+    protected TimeUnit nativeTimeUnit() {
+      return TimeUnit.MILLISECONDS;
+    }
+  }
 }
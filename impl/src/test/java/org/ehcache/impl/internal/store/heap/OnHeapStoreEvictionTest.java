@@ -28,7 +28,7 @@ import org.ehcache.core.spi.function.Function;
 import org.ehcache.impl.copy.IdentityCopier;
 import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
 import org.ehcache.impl.internal.sizeof.NoopSizeOfEngine;
-import org.ehcache.impl.internal.store.heap.holders.OnHeapValueHolder;
+import org.ehcache.impl.internal.store.heap.holders.ExpirableOnHeapValueHolder;
 import org.ehcache.core.spi.time.SystemTimeSource;
 import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.core.spi.store.Store;
@@ -100,7 +100,7 @@ public class OnHeapStoreEvictionTest {
             @Override
             public ValueHolder<String> apply(final String key) {
               semaphore.acquireUninterruptibly();
-              return new OnHeapValueHolder<String>(0, 0, false) {
+              return new ExpirableOnHeapValueHolder<String>(0, 0, false) {
                 @Override
                 public String value() {
                   return key;
@@ -186,9 +186,9 @@ public class OnHeapStoreEvictionTest {
     private boolean enforceCapacityWasCalled = false;
 
     @Override
-    protected void enforceCapacity() {
+    protected void enforceCapacity(K newcomer) {
       enforceCapacityWasCalled = true;
-      super.enforceCapacity();
+      super.enforceCapacity(newcomer);
     }
 
     boolean enforceCapacityWasCalled() {
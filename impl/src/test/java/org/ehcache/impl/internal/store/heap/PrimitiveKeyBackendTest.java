@@ -0,0 +1,247 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.config.EvictionVeto;
+import org.ehcache.core.spi.function.BiFunction;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.internal.store.heap.holders.CopiedOnHeapValueHolder;
+import org.ehcache.impl.internal.store.heap.holders.OnHeapValueHolder;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PrimitiveKeyBackendTest {
+
+  private static final Comparator<Store.ValueHolder<String>> BY_VALUE = new Comparator<Store.ValueHolder<String>>() {
+    @Override
+    public int compare(Store.ValueHolder<String> t, Store.ValueHolder<String> u) {
+      return t.value().compareTo(u.value());
+    }
+  };
+
+  private static final EvictionVeto<Object, OnHeapValueHolder<?>> NO_VETO = new EvictionVeto<Object, OnHeapValueHolder<?>>() {
+    @Override
+    public boolean vetoes(Object key, OnHeapValueHolder<?> value) {
+      return false;
+    }
+  };
+
+  @Test
+  public void testSupportedKeyTypes() {
+    assertThat(PrimitiveKeyBackend.supports(Long.class), is(true));
+    assertThat(PrimitiveKeyBackend.supports(Integer.class), is(true));
+    assertThat(PrimitiveKeyBackend.supports(String.class), is(false));
+    assertThat(PrimitiveKeyBackend.supports(Object.class), is(false));
+  }
+
+  @Test
+  public void testRemovalKeepsCollidingKeysReachable() {
+    PrimitiveKeyBackend<Long, String> backend = new PrimitiveKeyBackend<Long, String>(Long.class, false);
+    for (long i = 0; i < 10000; i++) {
+      assertThat(backend.putIfAbsent(i, holder("value" + i)), nullValue());
+    }
+    for (long i = 0; i < 10000; i += 2) {
+      assertThat(backend.remove(i).value(), is("value" + i));
+    }
+
+    assertThat(backend.size(), is(5000));
+    for (long i = 0; i < 10000; i++) {
+      OnHeapValueHolder<String> value = backend.get(i);
+      if (i % 2 == 0) {
+        assertThat(value, nullValue());
+      } else {
+        assertThat(value.value(), is("value" + i));
+      }
+    }
+  }
+
+  @Test
+  public void testCompute() {
+    PrimitiveKeyBackend<Integer, String> backend = new PrimitiveKeyBackend<Integer, String>(Integer.class, false);
+    final OnHeapValueHolder<String> one = holder("one");
+
+    assertThat(backend.computeIfPresent(1, constant(one)), nullValue());
+    assertThat(backend.get(1), nullValue());
+
+    assertThat(backend.compute(1, constant(one)), sameInstance(one));
+    assertThat(backend.get(1), sameInstance(one));
+
+    OnHeapValueHolder<String> two = holder("two");
+    assertThat(backend.computeIfPresent(1, constant(two)), sameInstance(two));
+    assertThat(backend.get(1), sameInstance(two));
+
+    assertThat(backend.compute(1, constant(null)), nullValue());
+    assertThat(backend.get(1), nullValue());
+    assertThat(backend.size(), is(0));
+  }
+
+  @Test
+  public void testConditionalOperations() {
+    PrimitiveKeyBackend<Long, String> backend = new PrimitiveKeyBackend<Long, String>(Long.class, false);
+    // holders compare by their times
+    OnHeapValueHolder<String> one = holder("one", 1L);
+    OnHeapValueHolder<String> two = holder("two", 2L);
+    backend.putIfAbsent(42L, one);
+
+    assertThat(backend.putIfAbsent(42L, two), sameInstance(one));
+    assertThat(backend.replace(42L, two, one), is(false));
+    assertThat(backend.replace(42L, one, two), is(true));
+    assertThat(backend.remove(42L, one), is(false));
+    assertThat(backend.remove(42L, two), is(true));
+    assertThat(backend.get(42L), nullValue());
+  }
+
+  @Test
+  public void testIterationReturnsBoxedKeys() {
+    PrimitiveKeyBackend<Integer, String> backend = new PrimitiveKeyBackend<Integer, String>(Integer.class, false);
+    Set<Integer> expected = new HashSet<Integer>();
+    for (int i = -500; i < 500; i++) {
+      backend.putIfAbsent(i, holder("value" + i));
+      expected.add(i);
+    }
+
+    Set<Object> keys = new HashSet<Object>();
+    for (Integer key : backend.keySet()) {
+      assertThat(key, instanceOf(Integer.class));
+      keys.add(key);
+    }
+    assertThat(keys, is((Set<Object>) new HashSet<Object>(expected)));
+
+    Iterator<Map.Entry<Integer, OnHeapValueHolder<String>>> iterator = backend.entrySetIterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Integer, OnHeapValueHolder<String>> entry = iterator.next();
+      assertThat(entry.getValue().value(), is("value" + entry.getKey()));
+      iterator.remove();
+    }
+    assertThat(backend.size(), is(0));
+  }
+
+  @Test
+  public void testEvictionCandidateHonoursVeto() {
+    PrimitiveKeyBackend<Long, String> backend = new PrimitiveKeyBackend<Long, String>(Long.class, false);
+    for (long i = 0; i < 100; i++) {
+      backend.putIfAbsent(i, holder(String.valueOf((char) ('a' + i % 26))));
+    }
+
+    Map.Entry<Long, OnHeapValueHolder<String>> candidate = backend.getEvictionCandidate(new Random(), 100, BY_VALUE, NO_VETO);
+    assertThat(candidate.getValue().value(), is("z"));
+
+    final long keeper = 7L;
+    candidate = backend.getEvictionCandidate(new Random(), 8, BY_VALUE, new EvictionVeto<Object, OnHeapValueHolder<?>>() {
+      @Override
+      public boolean vetoes(Object key, OnHeapValueHolder<?> value) {
+        return !key.equals(keeper);
+      }
+    });
+    assertThat(candidate.getKey(), is(keeper));
+  }
+
+  @Test
+  public void testComputeFunctionDoesNotBlockOtherKeys() throws InterruptedException {
+    final PrimitiveKeyBackend<Long, String> backend = new PrimitiveKeyBackend<Long, String>(Long.class, false);
+    final Thread writer = new Thread() {
+      @Override
+      public void run() {
+        for (long i = 2; i < 256; i++) {
+          backend.putIfAbsent(i, holder("value" + i));
+        }
+      }
+    };
+    backend.compute(1L, new BiFunction<Long, OnHeapValueHolder<String>, OnHeapValueHolder<String>>() {
+      @Override
+      public OnHeapValueHolder<String> apply(Long key, OnHeapValueHolder<String> current) {
+        writer.start();
+        try {
+          writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return holder("one");
+      }
+    });
+    assertThat(writer.isAlive(), is(false));
+    assertThat(backend.size(), is(255));
+  }
+
+  @Test
+  public void testComputeExcludesWritersOfItsKey() throws InterruptedException {
+    final PrimitiveKeyBackend<Long, String> backend = new PrimitiveKeyBackend<Long, String>(Long.class, false);
+    final OnHeapValueHolder<String> computed = holder("computed");
+    final AtomicReference<OnHeapValueHolder<String>> raced = new AtomicReference<OnHeapValueHolder<String>>();
+    final Thread writer = new Thread() {
+      @Override
+      public void run() {
+        raced.set(backend.putIfAbsent(1L, holder("raced")));
+      }
+    };
+    backend.compute(1L, new BiFunction<Long, OnHeapValueHolder<String>, OnHeapValueHolder<String>>() {
+      @Override
+      public OnHeapValueHolder<String> apply(Long key, OnHeapValueHolder<String> current) {
+        writer.start();
+        try {
+          writer.join(100);
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        assertThat(writer.isAlive(), is(true));
+        assertThat(backend.get(1L), nullValue());
+        return computed;
+      }
+    });
+    writer.join();
+    assertThat(raced.get(), sameInstance(computed));
+    assertThat(backend.get(1L), sameInstance(computed));
+  }
+
+  @Test
+  public void testEvictionCandidateOnEmptyBackend() {
+    PrimitiveKeyBackend<Long, String> backend = new PrimitiveKeyBackend<Long, String>(Long.class, false);
+    assertThat(backend.getEvictionCandidate(new Random(), 8, BY_VALUE, NO_VETO), nullValue());
+  }
+
+  private static OnHeapValueHolder<String> holder(String value) {
+    return holder(value, 0L);
+  }
+
+  private static OnHeapValueHolder<String> holder(String value, long creationTime) {
+    return new CopiedOnHeapValueHolder<String>(value, creationTime, false, new IdentityCopier<String>());
+  }
+
+  private static <K> BiFunction<K, OnHeapValueHolder<String>, OnHeapValueHolder<String>> constant(final OnHeapValueHolder<String> value) {
+    return new BiFunction<K, OnHeapValueHolder<String>, OnHeapValueHolder<String>>() {
+      @Override
+      public OnHeapValueHolder<String> apply(K key, OnHeapValueHolder<String> mappedValue) {
+        return value;
+      }
+    };
+  }
+}
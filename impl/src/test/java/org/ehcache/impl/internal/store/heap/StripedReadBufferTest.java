@@ -0,0 +1,131 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class StripedReadBufferTest {
+
+  @Test
+  public void testDrainReplaysInOrder() {
+    StripedReadBuffer<Integer> buffer = new StripedReadBuffer<Integer>(1);
+    buffer.offer(1);
+    buffer.offer(2);
+    buffer.offer(3);
+
+    List<Integer> drained = new ArrayList<Integer>();
+    buffer.tryDrain(collector(drained));
+    assertThat(drained, contains(1, 2, 3));
+
+    drained.clear();
+    buffer.tryDrain(collector(drained));
+    assertThat(drained, empty());
+  }
+
+  @Test
+  public void testFullStripeDropsAndAsksForDrain() {
+    StripedReadBuffer<Integer> buffer = new StripedReadBuffer<Integer>(1);
+    for (int i = 0; i < StripedReadBuffer.STRIPE_SIZE - 1; i++) {
+      assertThat(buffer.offer(i), is(false));
+    }
+    assertThat(buffer.offer(-1), is(true));
+    assertThat(buffer.offer(-2), is(true));
+
+    List<Integer> drained = new ArrayList<Integer>();
+    buffer.tryDrain(collector(drained));
+    assertThat(drained, hasSize(StripedReadBuffer.STRIPE_SIZE));
+
+    assertThat(buffer.offer(42), is(false));
+    drained.clear();
+    buffer.tryDrain(collector(drained));
+    assertThat(drained, contains(42));
+  }
+
+  @Test
+  public void testFailingConsumerDoesNotWedgeStripe() {
+    StripedReadBuffer<Integer> buffer = new StripedReadBuffer<Integer>(1);
+    buffer.offer(1);
+    buffer.offer(2);
+    try {
+      buffer.tryDrain(new StripedReadBuffer.Consumer<Integer>() {
+        @Override
+        public void accept(Integer element) {
+          throw new IllegalStateException();
+        }
+      });
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    List<Integer> drained = new ArrayList<Integer>();
+    buffer.tryDrain(collector(drained));
+    assertThat(drained, contains(2));
+  }
+
+  @Test
+  public void testConcurrentOffersAreNeverDuplicated() throws InterruptedException {
+    final StripedReadBuffer<Integer> buffer = new StripedReadBuffer<Integer>(4);
+    final AtomicInteger drainedCount = new AtomicInteger();
+    final StripedReadBuffer.Consumer<Integer> counter = new StripedReadBuffer.Consumer<Integer>() {
+      @Override
+      public void accept(Integer element) {
+        drainedCount.incrementAndGet();
+      }
+    };
+    final int offers = 100000;
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < offers; i++) {
+            if (buffer.offer(i)) {
+              buffer.tryDrain(counter);
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    buffer.tryDrain(counter);
+
+    assertThat(drainedCount.get(), lessThanOrEqualTo(threads.length * offers));
+  }
+
+  private static StripedReadBuffer.Consumer<Integer> collector(final List<Integer> drained) {
+    return new StripedReadBuffer.Consumer<Integer>() {
+      @Override
+      public void accept(Integer element) {
+        drained.add(element);
+      }
+    };
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class StripedTimerWheelTest {
+
+  @Test
+  public void testAdvanceCollectsDueKeysOfEveryStripe() {
+    StripedTimerWheel<Integer> wheel = new StripedTimerWheel<Integer>(0L, 4);
+    for (int i = 0; i < 64; i++) {
+      wheel.schedule(i, i < 32 ? 100L : 100000L);
+    }
+    assertThat(wheel.size(), is(64));
+
+    List<Integer> expired = new ArrayList<Integer>();
+    wheel.advance(2000L, expired);
+    List<Integer> due = new ArrayList<Integer>();
+    for (int i = 0; i < 32; i++) {
+      due.add(i);
+    }
+    assertThat(expired, containsInAnyOrder(due.toArray()));
+    assertThat(wheel.size(), is(32));
+  }
+
+  @Test
+  public void testRescheduleAndRemoveStayInTheKeyStripe() {
+    StripedTimerWheel<String> wheel = new StripedTimerWheel<String>(0L, 4);
+    wheel.schedule("key", 100L);
+    wheel.schedule("key", 100000L);
+    assertThat(wheel.size(), is(1));
+    assertThat(wheel.peek(1000L), nullValue());
+
+    wheel.remove("key");
+    assertThat(wheel.size(), is(0));
+    List<String> expired = new ArrayList<String>();
+    wheel.advance(200000L, expired);
+    assertThat(expired, empty());
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TimerWheelTest {
+
+  @Test
+  public void testAdvanceOnlyReturnsDueKeys() {
+    TimerWheel<String> wheel = new TimerWheel<String>(0L);
+    wheel.schedule("a", 100L);
+    wheel.schedule("b", 5000L);
+    wheel.schedule("c", 100000L);
+
+    List<String> expired = new ArrayList<String>();
+    wheel.advance(2000L, expired);
+    assertThat(expired, contains("a"));
+    assertThat(wheel.size(), is(2));
+
+    expired.clear();
+    wheel.advance(4999L, expired);
+    assertThat(expired, empty());
+
+    wheel.advance(6000L, expired);
+    assertThat(expired, contains("b"));
+  }
+
+  @Test
+  public void testKeysCascadeFromCoarseBuckets() {
+    TimerWheel<String> wheel = new TimerWheel<String>(0L);
+    wheel.schedule("minutes", TimeUnit.MINUTES.toMillis(5));
+    wheel.schedule("hours", TimeUnit.HOURS.toMillis(3));
+    wheel.schedule("days", TimeUnit.DAYS.toMillis(10));
+
+    List<String> expired = new ArrayList<String>();
+    for (long now = 0L; now <= TimeUnit.HOURS.toMillis(3) + TimeUnit.SECONDS.toMillis(2); now += 500L) {
+      wheel.advance(now, expired);
+    }
+    assertThat(expired, contains("minutes", "hours"));
+
+    wheel.advance(TimeUnit.DAYS.toMillis(10), expired);
+    assertThat(expired, contains("minutes", "hours", "days"));
+    assertThat(wheel.size(), is(0));
+  }
+
+  @Test
+  public void testRescheduleAndRemove() {
+    TimerWheel<String> wheel = new TimerWheel<String>(0L);
+    wheel.schedule("a", 100L);
+    wheel.schedule("b", 100L);
+    wheel.schedule("a", 10000L);
+    wheel.remove("b");
+
+    List<String> expired = new ArrayList<String>();
+    wheel.advance(5000L, expired);
+    assertThat(expired, empty());
+
+    wheel.advance(20000L, expired);
+    assertThat(expired, contains("a"));
+  }
+
+  @Test
+  public void testAlreadyDueKeyExpiresOnNextAdvance() {
+    TimerWheel<String> wheel = new TimerWheel<String>(TimeUnit.MINUTES.toMillis(1));
+    wheel.schedule("late", 10L);
+
+    List<String> expired = new ArrayList<String>();
+    wheel.advance(TimeUnit.MINUTES.toMillis(1) + TimeUnit.SECONDS.toMillis(2), expired);
+    assertThat(expired, contains("late"));
+  }
+
+  @Test
+  public void testPeekHonoursDeadline() {
+    TimerWheel<String> wheel = new TimerWheel<String>(0L);
+    wheel.schedule("soon", 500L);
+    wheel.schedule("later", TimeUnit.MINUTES.toMillis(10));
+
+    assertThat(wheel.peek(100L), nullValue());
+    assertThat(wheel.peek(1000L), is("soon"));
+
+    wheel.remove("soon");
+    assertThat(wheel.peek(1000L), nullValue());
+    assertThat(wheel.peek(TimeUnit.MINUTES.toMillis(11)), is("later"));
+  }
+
+  @Test
+  public void testClear() {
+    TimerWheel<String> wheel = new TimerWheel<String>(0L);
+    wheel.schedule("a", 100L);
+    wheel.schedule("b", TimeUnit.HOURS.toMillis(1));
+    wheel.clear();
+
+    List<String> expired = new ArrayList<String>();
+    wheel.advance(TimeUnit.DAYS.toMillis(1), expired);
+    assertThat(expired, empty());
+    assertThat(wheel.size(), is(0));
+  }
+}
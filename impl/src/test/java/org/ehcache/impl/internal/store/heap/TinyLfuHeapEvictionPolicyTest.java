@@ -0,0 +1,149 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.heap;
+
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.core.internal.store.StoreConfigurationImpl;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
+import org.ehcache.impl.internal.sizeof.NoopSizeOfEngine;
+import org.ehcache.impl.internal.store.FrequencySketch;
+import org.junit.Test;
+
+import static org.ehcache.config.builders.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class TinyLfuHeapEvictionPolicyTest {
+
+  @Test
+  public void testAdmitsMoreFrequentCandidate() {
+    TinyLfuHeapEvictionPolicy policy = new TinyLfuHeapEvictionPolicy(100);
+    policy.recordAccess("victim");
+    policy.recordAccess("candidate");
+    policy.recordAccess("candidate");
+
+    assertThat(policy.selectVictim("candidate", "victim"), is((Object) "victim"));
+  }
+
+  @Test
+  public void testRejectsColderCandidate() {
+    TinyLfuHeapEvictionPolicy policy = new TinyLfuHeapEvictionPolicy(100);
+    policy.recordAccess("candidate");
+    policy.recordAccess("victim");
+    policy.recordAccess("victim");
+
+    assertThat(policy.selectVictim("candidate", "victim"), is((Object) "candidate"));
+    assertThat(policy.selectVictim("unknown", "candidate"), is((Object) "unknown"));
+  }
+
+  @Test
+  public void testWindowDefersFilteringOfNewcomers() {
+    TinyLfuHeapEvictionPolicy policy = new TinyLfuHeapEvictionPolicy(100);
+    policy.recordAccess("warm");
+    policy.recordAccess("warm");
+    assertThat(policy.selectVictim("warm", "victim"), is((Object) "victim"));
+
+    for (int i = 0; i < 3; i++) {
+      policy.recordAccess("victim");
+    }
+    assertThat(policy.selectVictim("cold", "victim"), is((Object) "warm"));
+
+    for (int i = 0; i < 4; i++) {
+      policy.recordAccess("cold");
+    }
+    assertThat(policy.selectVictim("next", "victim"), is((Object) "victim"));
+  }
+
+  @Test
+  public void testResizeGrowsWindow() {
+    TinyLfuHeapEvictionPolicy policy = new TinyLfuHeapEvictionPolicy(100);
+    policy.resize(1000);
+
+    for (int i = 0; i < 10; i++) {
+      policy.recordAccess("window" + i);
+      assertThat(policy.selectVictim("window" + i, "victim"), is((Object) "victim"));
+    }
+    policy.recordAccess("victim");
+    policy.recordAccess("victim");
+
+    assertThat(policy.selectVictim("cold", "victim"), is((Object) "window0"));
+  }
+
+  @Test
+  public void testResizeShrinksWindow() {
+    TinyLfuHeapEvictionPolicy policy = new TinyLfuHeapEvictionPolicy(1000);
+    for (int i = 0; i < 10; i++) {
+      policy.recordAccess("window" + i);
+      assertThat(policy.selectVictim("window" + i, "victim"), is((Object) "victim"));
+    }
+    policy.resize(100);
+    policy.recordAccess("victim");
+
+    assertThat(policy.selectVictim("cold", "victim"), is((Object) "window9"));
+  }
+
+  @Test
+  public void testFrequencyIsCapped() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment("key");
+    }
+
+    assertThat(sketch.frequency("key"), is(FrequencySketch.MAX_FREQUENCY));
+  }
+
+  @Test
+  public void testFrequencyIsAgedOut() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    for (int i = 0; i < FrequencySketch.MAX_FREQUENCY; i++) {
+      sketch.increment("key");
+    }
+    for (int i = 0; i < 200; i++) {
+      sketch.increment("other" + i);
+    }
+
+    assertThat(sketch.frequency("key"), lessThan(FrequencySketch.MAX_FREQUENCY));
+  }
+
+  @Test
+  public void testScanDoesNotFlushFrequentlyAccessedMappings() throws Exception {
+    Store.Configuration<String, String> config = new StoreConfigurationImpl<String, String>(String.class, String.class, null,
+        getClass().getClassLoader(), Expirations.noExpiration(), newResourcePoolsBuilder().heap(100, EntryUnit.ENTRIES).build(), 0, null, null);
+    IdentityCopier<String> copier = new IdentityCopier<String>();
+    OnHeapStore<String, String> store = new OnHeapStore<String, String>(config, SystemTimeSource.INSTANCE, copier, copier,
+        new NoopSizeOfEngine(), NullStoreEventDispatcher.<String, String>nullStoreEventDispatcher(), new TinyLfuHeapEvictionPolicy.Factory());
+
+    for (int i = 0; i < 50; i++) {
+      store.put("hot" + i, "value");
+      for (int j = 0; j < FrequencySketch.MAX_FREQUENCY; j++) {
+        store.get("hot" + i);
+      }
+    }
+    for (int i = 0; i < 200; i++) {
+      store.put("scan" + i, "value");
+    }
+
+    for (int i = 0; i < 50; i++) {
+      assertThat(store.get("hot" + i), notNullValue());
+    }
+  }
+}
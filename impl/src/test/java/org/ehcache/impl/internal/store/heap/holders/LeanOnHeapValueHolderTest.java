@@ -0,0 +1,66 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap.holders;
+
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.expiry.Duration;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertSame;
+
+public class LeanOnHeapValueHolderTest {
+
+  @Test
+  public void testNeverExpires() {
+    LeanOnHeapValueHolder<String> valueHolder = new LeanOnHeapValueHolder<String>("value", 10L, false, new IdentityCopier<String>());
+
+    valueHolder.accessed(20L, Duration.FOREVER);
+    valueHolder.accessed(30L, null);
+
+    assertThat(valueHolder.expirationTime(TimeUnit.MILLISECONDS), is(Store.ValueHolder.NO_EXPIRE));
+    assertThat(valueHolder.isExpired(Long.MAX_VALUE, TimeUnit.MILLISECONDS), is(false));
+    assertThat(valueHolder.lastAccessTime(TimeUnit.MILLISECONDS), is(30L));
+    assertThat(valueHolder.hits(), is(2L));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testRejectsExpirationTime() {
+    LeanOnHeapValueHolder<String> valueHolder = new LeanOnHeapValueHolder<String>("value", 10L, false, new IdentityCopier<String>());
+    valueHolder.setExpirationTime(100L, TimeUnit.MILLISECONDS);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testRejectsSize() {
+    LeanOnHeapValueHolder<String> valueHolder = new LeanOnHeapValueHolder<String>("value", 10L, false, new IdentityCopier<String>());
+    valueHolder.setSize(0L);
+    valueHolder.setSize(42L);
+  }
+
+  @Test
+  public void testValueByRef() {
+    Object value = new Object();
+    LeanOnHeapValueHolder<Object> valueHolder = new LeanOnHeapValueHolder<Object>(value, 10L, false, new IdentityCopier<Object>());
+
+    assertSame(value, valueHolder.value());
+    assertThat(valueHolder.getId(), is(-1L));
+  }
+}
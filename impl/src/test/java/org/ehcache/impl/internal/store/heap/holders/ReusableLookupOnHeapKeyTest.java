@@ -0,0 +1,72 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.heap.holders;
+
+import org.ehcache.impl.copy.IdentityCopier;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class ReusableLookupOnHeapKeyTest {
+
+  @Test
+  public void testMatchesStoredKeys() {
+    ReusableLookupOnHeapKey<String> lookupKey = new ReusableLookupOnHeapKey<String>();
+    CopiedOnHeapKey<String> storedKey = new CopiedOnHeapKey<String>("key", new IdentityCopier<String>());
+
+    assertThat(lookupKey.acquire("key"), is(true));
+    assertThat(lookupKey.hashCode(), is(storedKey.hashCode()));
+    assertThat(lookupKey.equals(storedKey), is(true));
+    assertThat(lookupKey.equals(new LookupOnlyOnHeapKey<String>("other")), is(false));
+    lookupKey.release();
+  }
+
+  @Test
+  public void testCannotBeAcquiredTwice() {
+    ReusableLookupOnHeapKey<String> lookupKey = new ReusableLookupOnHeapKey<String>();
+
+    assertThat(lookupKey.acquire("key"), is(true));
+    assertThat(lookupKey.acquire("other"), is(false));
+    assertThat(lookupKey.getActualKeyObject(), is("key"));
+
+    lookupKey.release();
+    assertThat(lookupKey.getActualKeyObject(), nullValue());
+    assertThat(lookupKey.acquire("other"), is(true));
+  }
+
+  @Test
+  public void testThrowingHashCodeDoesNotLeaveKeyAcquired() {
+    ReusableLookupOnHeapKey<Object> lookupKey = new ReusableLookupOnHeapKey<Object>();
+
+    try {
+      lookupKey.acquire(new Object() {
+        @Override
+        public int hashCode() {
+          throw new IllegalStateException("no hash");
+        }
+      });
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertThat(lookupKey.getActualKeyObject(), nullValue());
+    assertThat(lookupKey.acquire("key"), is(true));
+  }
+}
@@ -29,7 +29,9 @@ import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
 import org.ehcache.core.spi.function.NullaryFunction;
 import org.ehcache.core.spi.time.TimeSource;
+import org.ehcache.impl.config.store.ExpiryReaperConfiguration;
 import org.ehcache.impl.internal.store.AbstractValueHolder;
+import org.ehcache.impl.internal.store.ExpiryReaper;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.spi.store.events.StoreEvent;
 import org.ehcache.core.spi.store.events.StoreEventListener;
@@ -41,19 +43,28 @@ import org.hamcrest.Matcher;
 import org.hamcrest.Matchers;
 import org.hamcrest.TypeSafeMatcher;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.terracotta.context.ContextElement;
 import org.terracotta.context.TreeNode;
 import org.terracotta.context.query.QueryBuilder;
+import org.terracotta.offheapstore.Segment;
 import org.terracotta.statistics.OperationStatistic;
 import org.terracotta.statistics.StatisticsManager;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.ehcache.core.util.ValueSuppliers.supplierOf;
 import static org.ehcache.impl.internal.util.Matchers.valueHeld;
@@ -63,12 +74,16 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
@@ -422,6 +437,79 @@ public abstract class AbstractOffHeapStoreTest {
     }
   }
 
+  @Test
+  public void testExpiryReaperRemovesExpiredMappings() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.timeToLiveExpiration(new Duration(10L, TimeUnit.MILLISECONDS)));
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    try {
+      final List<String> expiredKeys = new ArrayList<String>();
+      offHeapStore.getStoreEventSource().addEventListener(new StoreEventListener<String, String>() {
+
+        @Override
+        public void onEvent(StoreEvent<String, String> event) {
+          if (event.getType() == EventType.EXPIRED) {
+            expiredKeys.add(event.getKey());
+          }
+        }
+      });
+      offHeapStore.startExpiryReaper(new ExpiryReaperConfiguration(), executor);
+      ArgumentCaptor<Runnable> reaper = ArgumentCaptor.forClass(Runnable.class);
+      verify(executor).scheduleWithFixedDelay(reaper.capture(), anyLong(), anyLong(), any(TimeUnit.class));
+
+      offHeapStore.put("key1", "value1");
+      offHeapStore.put("key2", "value2");
+      timeSource.advanceTime(11);
+      offHeapStore.put("key3", "value3");
+
+      reaper.getValue().run();
+
+      assertThat(expiredKeys, containsInAnyOrder("key1", "key2"));
+      assertThat(offHeapStore.containsKey("key3"), is(true));
+      ExpiryReaper expiryReaper = (ExpiryReaper) reaper.getValue();
+      assertThat(expiryReaper.getScannedMappings(), is(3L));
+      assertThat(expiryReaper.getExpiredMappings(), is(2L));
+      assertThat(expiryReaper.getReclaimedBytes(), greaterThan(0L));
+      assertThat(getExpirationStatistic(offHeapStore).count(StoreOperationOutcomes.ExpirationOutcome.SUCCESS), is(2L));
+    } finally {
+      offHeapStore.stopExpiryReaper();
+      destroyStore(offHeapStore);
+    }
+    verify(executor).shutdownNow();
+  }
+
+  @Test
+  public void testExpiryReaperResumesWhereTheTimeBudgetRanOut() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.timeToLiveExpiration(new Duration(10L, TimeUnit.MILLISECONDS)));
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    try {
+      offHeapStore.startExpiryReaper(new ExpiryReaperConfiguration(null, 1L, 1L, TimeUnit.NANOSECONDS), executor);
+      ArgumentCaptor<Runnable> reaper = ArgumentCaptor.forClass(Runnable.class);
+      verify(executor).scheduleWithFixedDelay(reaper.capture(), anyLong(), anyLong(), any(TimeUnit.class));
+      ExpiryReaper expiryReaper = (ExpiryReaper) reaper.getValue();
+
+      for (int i = 0; i < 1000; i++) {
+        offHeapStore.put("key" + i, "value" + i);
+      }
+      timeSource.advanceTime(11);
+
+      int runs = 0;
+      while (expiryReaper.getExpiredMappings() < 1000L && runs < 10000) {
+        long scanned = expiryReaper.getScannedMappings();
+        expiryReaper.run();
+        runs++;
+        // an exhausted budget stops the sweep at the first deadline check, whether the slots held mappings or not
+        assertThat(expiryReaper.getScannedMappings() - scanned, lessThanOrEqualTo(64L));
+      }
+      assertThat(expiryReaper.getExpiredMappings(), is(1000L));
+      assertThat(runs, greaterThan(1));
+    } finally {
+      offHeapStore.stopExpiryReaper();
+      destroyStore(offHeapStore);
+    }
+  }
+
   @Test
   public void testGetWithExpiryOnAccess() throws Exception {
     TestTimeSource timeSource = new TestTimeSource();
@@ -549,6 +637,48 @@ public abstract class AbstractOffHeapStoreTest {
     }
   }
 
+  @Test
+  public void testBinaryValueReads() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      assertThat(offHeapStore.getBinaryValue("key"), nullValue());
+      assertThat(offHeapStore.copyBinaryValue("key", ByteBuffer.allocate(64)), is(-1));
+
+      offHeapStore.put("key", "value");
+      ByteBuffer binaryValue = offHeapStore.getBinaryValue("key");
+      assertThat(binaryValue.isReadOnly(), is(true));
+      assertThat(binaryValue.remaining(), greaterThan(0));
+
+      ByteBuffer target = ByteBuffer.allocate(binaryValue.remaining() + 8);
+      assertThat(offHeapStore.copyBinaryValue("key", target), is(binaryValue.remaining()));
+      assertThat(target.position(), is(binaryValue.remaining()));
+      target.flip();
+      assertThat(target, equalTo(binaryValue));
+
+      ByteBuffer tooSmall = ByteBuffer.allocate(binaryValue.remaining() - 1);
+      assertThat(offHeapStore.copyBinaryValue("key", tooSmall), is(binaryValue.remaining()));
+      assertThat(tooSmall.position(), is(0));
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
+  @Test
+  public void testBinaryValueReadOfExpiredEntry() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.timeToIdleExpiration(new Duration(10L, TimeUnit.MILLISECONDS)));
+    try {
+      offHeapStore.put("key", "value");
+      timeSource.advanceTime(20L);
+
+      assertThat(offHeapStore.getBinaryValue("key"), nullValue());
+      assertThat(getExpirationStatistic(offHeapStore).count(StoreOperationOutcomes.ExpirationOutcome.SUCCESS), is(1L));
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
   @Test
   public void testComputeExpiresOnAccess() throws StoreAccessException {
     TestTimeSource timeSource = new TestTimeSource();
@@ -674,6 +804,203 @@ public abstract class AbstractOffHeapStoreTest {
     }
   }
 
+  @Test
+  public void testBulkComputeSpanningSegments() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      Set<String> keys = new HashSet<String>();
+      for (int i = 0; i < 100; i++) {
+        keys.add("key" + i);
+      }
+      offHeapStore.put("key0", "old");
+
+      Map<String, Store.ValueHolder<String>> result = offHeapStore.bulkCompute(keys, new Function<Iterable<? extends Map.Entry<? extends String, ? extends String>>, Iterable<? extends Map.Entry<? extends String, ? extends String>>>() {
+        @Override
+        public Iterable<? extends Map.Entry<? extends String, ? extends String>> apply(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) {
+          Map<String, String> computed = new HashMap<String, String>();
+          for (Map.Entry<? extends String, ? extends String> entry : entries) {
+            computed.put(entry.getKey(), entry.getKey() + "-" + entry.getValue());
+          }
+          return computed.entrySet();
+        }
+      });
+
+      assertThat(result.keySet(), equalTo(keys));
+      for (String key : keys) {
+        String expected = key.equals("key0") ? "key0-old" : key + "-null";
+        assertThat(result.get(key).value(), is(expected));
+        assertThat(offHeapStore.get(key).value(), is(expected));
+      }
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
+  @Test
+  public void testBulkComputeIfAbsentSpanningSegmentsOnlyComputesAbsentKeys() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      Set<String> keys = new HashSet<String>();
+      for (int i = 0; i < 100; i++) {
+        keys.add("key" + i);
+        if (i % 2 == 0) {
+          offHeapStore.put("key" + i, "present");
+        }
+      }
+
+      final Set<String> computedKeys = new HashSet<String>();
+      Map<String, Store.ValueHolder<String>> result = offHeapStore.bulkComputeIfAbsent(keys, new Function<Iterable<? extends String>, Iterable<? extends Map.Entry<? extends String, ? extends String>>>() {
+        @Override
+        public Iterable<? extends Map.Entry<? extends String, ? extends String>> apply(Iterable<? extends String> absentKeys) {
+          Map<String, String> computed = new HashMap<String, String>();
+          for (String key : absentKeys) {
+            computedKeys.add(key);
+            computed.put(key, "computed");
+          }
+          return computed.entrySet();
+        }
+      });
+
+      assertThat(computedKeys.size(), is(50));
+      for (int i = 0; i < 100; i++) {
+        String expected = i % 2 == 0 ? "present" : "computed";
+        assertThat(result.get("key" + i).value(), is(expected));
+      }
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
+  @Test
+  public void testBulkComputeIfAbsentComputesAllAbsentKeysAtOnce() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    final AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      Set<String> keys = new HashSet<String>();
+      for (int i = 0; i < 100; i++) {
+        keys.add("key" + i);
+      }
+      offHeapStore.put("key0", "present");
+
+      final List<Set<String>> calls = new ArrayList<Set<String>>();
+      Map<String, Store.ValueHolder<String>> result = offHeapStore.bulkComputeIfAbsent(keys, new Function<Iterable<? extends String>, Iterable<? extends Map.Entry<? extends String, ? extends String>>>() {
+        @Override
+        public Iterable<? extends Map.Entry<? extends String, ? extends String>> apply(Iterable<? extends String> absentKeys) {
+          Set<String> call = new HashSet<String>();
+          Map<String, String> computed = new HashMap<String, String>();
+          for (String key : absentKeys) {
+            call.add(key);
+            computed.put(key, "computed");
+          }
+          calls.add(call);
+          try {
+            offHeapStore.put("key1", "installed meanwhile");
+          } catch (StoreAccessException e) {
+            throw new AssertionError(e);
+          }
+          return computed.entrySet();
+        }
+      });
+
+      assertThat(calls.size(), is(1));
+      assertThat(calls.get(0).size(), is(99));
+      assertThat(calls.get(0).contains("key0"), is(false));
+      assertThat(result.get("key0").value(), is("present"));
+      assertThat(result.get("key1").value(), is("installed meanwhile"));
+      assertThat(result.get("key2").value(), is("computed"));
+      assertThat(offHeapStore.get("key1").value(), is("installed meanwhile"));
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
+  @Test
+  public void testBulkMappingFunctionsDoNotRunUnderABatchLock() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    final AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      Set<String> keys = new HashSet<String>();
+      for (int i = 0; i < 100; i++) {
+        keys.add("key" + i);
+      }
+
+      final List<Integer> heldLocks = new ArrayList<Integer>();
+      offHeapStore.bulkComputeIfAbsent(keys, new Function<Iterable<? extends String>, Iterable<? extends Map.Entry<? extends String, ? extends String>>>() {
+        @Override
+        public Iterable<? extends Map.Entry<? extends String, ? extends String>> apply(Iterable<? extends String> absentKeys) {
+          heldLocks.add(heldWriteLocks(offHeapStore));
+          Map<String, String> computed = new HashMap<String, String>();
+          for (String key : absentKeys) {
+            computed.put(key, "computed");
+          }
+          return computed.entrySet();
+        }
+      });
+      offHeapStore.bulkCompute(keys, new Function<Iterable<? extends Map.Entry<? extends String, ? extends String>>, Iterable<? extends Map.Entry<? extends String, ? extends String>>>() {
+        @Override
+        public Iterable<? extends Map.Entry<? extends String, ? extends String>> apply(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) {
+          heldLocks.add(heldWriteLocks(offHeapStore));
+          return entries;
+        }
+      });
+
+      assertThat(heldLocks.size(), is(101));
+      assertThat(heldLocks.get(0), is(0));
+      for (int held : heldLocks.subList(1, heldLocks.size())) {
+        // the remapping of a single key, under its own segment lock only
+        assertThat(held, is(1));
+      }
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
+  private static int heldWriteLocks(AbstractOffHeapStore<String, String> offHeapStore) {
+    int held = 0;
+    for (Segment<String, ?> segment : offHeapStore.backingMap().getSegments()) {
+      held += ((ReentrantReadWriteLock.WriteLock) segment.writeLock()).getHoldCount();
+    }
+    return held;
+  }
+
+  @Test
+  public void testBulkComputeIfAbsentSpansSeveralLockAcquisitionsPerSegment() throws StoreAccessException {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      int segment = offHeapStore.backingMap().segmentIndexFor("key0");
+      Set<String> keys = new HashSet<String>();
+      for (int i = 0; keys.size() < 3 * AbstractOffHeapStore.BULK_KEYS_PER_LOCK; i++) {
+        if (offHeapStore.backingMap().segmentIndexFor("key" + i) == segment) {
+          keys.add("key" + i);
+        }
+      }
+
+      final Set<String> computedKeys = new HashSet<String>();
+      Map<String, Store.ValueHolder<String>> result = offHeapStore.bulkComputeIfAbsent(keys, new Function<Iterable<? extends String>, Iterable<? extends Map.Entry<? extends String, ? extends String>>>() {
+        @Override
+        public Iterable<? extends Map.Entry<? extends String, ? extends String>> apply(Iterable<? extends String> absentKeys) {
+          Map<String, String> computed = new HashMap<String, String>();
+          for (String key : absentKeys) {
+            computedKeys.add(key);
+            computed.put(key, key + "-computed");
+          }
+          return computed.entrySet();
+        }
+      });
+
+      assertThat(computedKeys, equalTo(keys));
+      assertThat(result.keySet(), equalTo(keys));
+      for (String key : keys) {
+        assertThat(offHeapStore.get(key).value(), is(key + "-computed"));
+      }
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
   @Test
   public void testIteratorDoesNotSkipOrExpiresEntries() throws Exception {
     TestTimeSource timeSource = new TestTimeSource();
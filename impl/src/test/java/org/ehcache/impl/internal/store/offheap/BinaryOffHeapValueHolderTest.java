@@ -16,11 +16,13 @@
 
 package org.ehcache.impl.internal.store.offheap;
 
+import org.ehcache.ValueSupplier;
 import org.ehcache.impl.serialization.StringSerializer;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -53,6 +55,23 @@ public class BinaryOffHeapValueHolderTest {
     assertThat(valueHolder.value(), is(value));
   }
 
+  @Test
+  public void testValueIsOnlyReadFromSupplierWhenAccessed() throws ClassNotFoundException {
+    final AtomicInteger reads = new AtomicInteger();
+    BinaryOffHeapValueHolder<String> lazyHolder = new BinaryOffHeapValueHolder<String>(-1, new ValueSupplier<String>() {
+      @Override
+      public String value() {
+        reads.incrementAndGet();
+        return value;
+      }
+    }, serializer.serialize(value), 0, 0, 0, 0);
+
+    assertThat(serializer.read(lazyHolder.getBinaryValue()), is(value));
+    assertThat(reads.get(), is(0));
+    assertThat(lazyHolder.value(), is(value));
+    assertThat(reads.get(), is(1));
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void testCantBeDetached() {
     valueHolder.detach();
@@ -16,17 +16,32 @@
 
 package org.ehcache.impl.internal.store.offheap;
 
+import org.ehcache.exceptions.SerializerException;
+import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompression;
 import org.ehcache.impl.serialization.JavaSerializer;
 import org.junit.Test;
 import org.terracotta.offheapstore.storage.portability.WriteContext;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * LazyOffHeapValueHolderTest
@@ -58,6 +73,76 @@ public class LazyOffHeapValueHolderTest {
     assertThat(serializer.read(binaryValue), is(testValue));
   }
 
+  @Test
+  public void testCompressedValueIsDecompressedOnFirstUse() throws ClassNotFoundException {
+    JavaSerializer<String> serializer = new JavaSerializer<String>(getClass().getClassLoader());
+    StringBuilder testValue = new StringBuilder();
+    for (int i = 0; i < 32; i++) {
+      testValue.append("Let's get binary!");
+    }
+    ValueCompression compression = new ValueCompression(0);
+    ByteBuffer compressed = compression.compress(serializer.serialize(testValue.toString()), 0);
+    LazyOffHeapValueHolder<String> valueHolder = new LazyOffHeapValueHolder<String>(1L, compressed, compression, serializer, 10L, 20L, 15L, 3, mock(WriteContext.class));
+
+    valueHolder.detach();
+    compressed.clear();
+    assertThat(serializer.read(valueHolder.getBinaryValue()), is(testValue.toString()));
+    assertThat(valueHolder.value(), is(testValue.toString()));
+  }
+
+  @Test
+  public void testConcurrentFirstUsesOfCompressedValue() throws Exception {
+    final JavaSerializer<String> serializer = new JavaSerializer<String>(getClass().getClassLoader());
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 256; i++) {
+      builder.append("Let's get binary!");
+    }
+    final String testValue = builder.toString();
+    ValueCompression compression = new ValueCompression(0);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int round = 0; round < 100; round++) {
+        final LazyOffHeapValueHolder<String> valueHolder = new LazyOffHeapValueHolder<String>(1L,
+            compression.compress(serializer.serialize(testValue), 0), compression, serializer, 10L, 20L, 15L, 3, mock(WriteContext.class));
+        valueHolder.detach();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> reads = new ArrayList<Future<String>>();
+        for (int i = 0; i < 4; i++) {
+          reads.add(executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              start.await();
+              return serializer.read(valueHolder.getBinaryValue());
+            }
+          }));
+        }
+        start.countDown();
+        for (Future<String> read : reads) {
+          assertThat(read.get(10, TimeUnit.SECONDS), is(testValue));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testDetachDoesNotDecompress() {
+    JavaSerializer<String> serializer = new JavaSerializer<String>(getClass().getClassLoader());
+    ByteBuffer corrupt = ByteBuffer.allocate(8);
+    corrupt.putInt(0, -1);
+    LazyOffHeapValueHolder<String> valueHolder = new LazyOffHeapValueHolder<String>(1L, corrupt, new ValueCompression(0), serializer, 10L, 20L, 15L, 3, mock(WriteContext.class));
+
+    valueHolder.detach();
+    try {
+      valueHolder.value();
+      fail("SerializerException expected");
+    } catch (SerializerException e) {
+      assertThat(e.getCause().getMessage(), containsString("Corrupt compressed value"));
+    }
+  }
+
   @Test
   public void testPreventAccessToBinaryValueIfNotPrepared() {
     JavaSerializer<String> serializer = new JavaSerializer<String>(getClass().getClassLoader());
@@ -72,4 +157,22 @@ public class LazyOffHeapValueHolderTest {
       assertThat(e.getMessage(), containsString("has not been prepared"));
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testWriteBackSkipsUnchangedTimes() {
+    JavaSerializer<String> serializer = new JavaSerializer<String>(getClass().getClassLoader());
+    WriteContext writeContext = mock(WriteContext.class);
+    LazyOffHeapValueHolder<String> valueHolder = new LazyOffHeapValueHolder<String>(1L, serializer.serialize("value"), serializer, 10L, 20L, 15L, 3, writeContext);
+
+    valueHolder.accessed(15L, null);
+    valueHolder.writeBack();
+    verify(writeContext, never()).setLong(eq(OffHeapValueHolderPortability.ACCESS_TIME_OFFSET), anyLong());
+    verify(writeContext, never()).setLong(eq(OffHeapValueHolderPortability.EXPIRE_TIME_OFFSET), anyLong());
+    verify(writeContext).setLong(OffHeapValueHolderPortability.HITS_OFFSET, 4L);
+
+    valueHolder.accessed(16L, null);
+    valueHolder.writeBack();
+    verify(writeContext).setLong(OffHeapValueHolderPortability.ACCESS_TIME_OFFSET, 16L);
+    verify(writeContext, never()).setLong(eq(OffHeapValueHolderPortability.EXPIRE_TIME_OFFSET), anyLong());
+  }
+}
@@ -17,9 +17,13 @@
 package org.ehcache.impl.internal.store.offheap;
 
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability.Checksums;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompression;
 import org.ehcache.impl.internal.store.AbstractValueHolder;
 import org.ehcache.impl.internal.spi.serialization.DefaultSerializationProvider;
 import org.ehcache.spi.serialization.SerializationProvider;
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.exceptions.SerializerException;
 import org.ehcache.spi.serialization.UnsupportedTypeException;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,8 +35,11 @@ import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 import static org.ehcache.impl.internal.spi.TestServiceProvider.providerContaining;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -60,6 +67,72 @@ public class OffHeapValueHolderPortabilityTest {
     assertThat(originalValue, equalTo(decoded));
   }
 
+  @Test
+  public void testEncodeDecodeWithReusedBuffers() throws UnsupportedTypeException {
+    SerializationProvider provider = new DefaultSerializationProvider(null);
+    provider.start(providerContaining());
+    OffHeapValueHolderPortability<String> portability = new OffHeapValueHolderPortability<String>(provider
+        .createValueSerializer(String.class, getClass().getClassLoader()), true);
+
+    ByteBuffer encoded = portability.encode(originalValue);
+    assertThat(encoded, equalTo(valueHolderPortability.encode(originalValue)));
+    assertThat(portability.decode(encoded), equalTo(originalValue));
+  }
+
+  @Test
+  public void testEncodeDecodeWithCompression() throws UnsupportedTypeException {
+    SerializationProvider provider = new DefaultSerializationProvider(null);
+    provider.start(providerContaining());
+    OffHeapValueHolderPortability<String> portability = new OffHeapValueHolderPortability<String>(provider
+        .createValueSerializer(String.class, getClass().getClassLoader()), false, new ValueCompression(64));
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("<item id=\"").append(i).append("\">aValue</item>");
+    }
+    OffHeapValueHolder<String> largeValue = new BasicOffHeapValueHolder<String>(-1, sb.toString(), 1L, 2L, 3L, 0);
+
+    ByteBuffer encoded = portability.encode(largeValue);
+    assertThat(encoded.remaining(), lessThan(valueHolderPortability.encode(largeValue).remaining() / 3));
+    OffHeapValueHolder<String> decoded = portability.decode(encoded.duplicate());
+    assertThat(decoded, equalTo(largeValue));
+    assertThat(decoded.value(), equalTo(largeValue.value()));
+    // compressed values remain readable once compression is no longer configured
+    assertThat(valueHolderPortability.decode(encoded.duplicate()).value(), equalTo(largeValue.value()));
+
+    assertThat(portability.encode(originalValue), equalTo(valueHolderPortability.encode(originalValue)));
+    assertThat(portability.decode(portability.encode(originalValue)), equalTo(originalValue));
+  }
+
+  @Test
+  public void testEncodeDecodeWithChecksums() throws UnsupportedTypeException {
+    SerializationProvider provider = new DefaultSerializationProvider(null);
+    provider.start(providerContaining());
+    Serializer<String> serializer = provider.createValueSerializer(String.class, getClass().getClassLoader());
+    OffHeapValueHolderPortability<String> storing = new OffHeapValueHolderPortability<String>(serializer, false, null, Checksums.STORED);
+    OffHeapValueHolderPortability<String> verifying = new OffHeapValueHolderPortability<String>(serializer, false, null, Checksums.VERIFIED);
+
+    ByteBuffer encoded = storing.encode(originalValue);
+    assertThat(storing.decode(encoded.duplicate()), equalTo(originalValue));
+    assertThat(verifying.decode(encoded.duplicate()).value(), equalTo(originalValue.value()));
+    assertThat(valueHolderPortability.decode(encoded.duplicate()).value(), equalTo(originalValue.value()));
+
+    ByteBuffer corrupted = encoded.duplicate();
+    corrupted.put(corrupted.limit() - 1, (byte) (corrupted.get(corrupted.limit() - 1) ^ 1));
+    try {
+      verifying.decode(corrupted);
+      fail("Expected SerializerException");
+    } catch (SerializerException e) {
+      assertThat(e.getMessage(), containsString("checksum"));
+    }
+
+    try {
+      verifying.decode(valueHolderPortability.encode(originalValue));
+      fail("Expected SerializerException");
+    } catch (SerializerException e) {
+      assertThat(e.getMessage(), containsString("without checksum"));
+    }
+  }
+
   @Test
   public void testWriteBackSupport() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
     ByteBuffer encoded = valueHolderPortability.encode(originalValue);
@@ -18,6 +18,7 @@ package org.ehcache.impl.internal.store.offheap.factories;
 
 import org.ehcache.config.Eviction;
 import org.ehcache.config.EvictionVeto;
+import org.ehcache.impl.internal.store.FrequencySketch;
 import org.ehcache.impl.internal.store.offheap.HeuristicConfiguration;
 import org.ehcache.impl.internal.store.offheap.portability.SerializerPortability;
 import org.ehcache.impl.internal.spi.serialization.DefaultSerializationProvider;
@@ -54,6 +55,10 @@ public class EhcacheSegmentTest {
   }
 
   private EhcacheSegmentFactory.EhcacheSegment<String, String> createTestSegment(EvictionVeto<? super String, ? super String> evictionPredicate, EhcacheSegmentFactory.EhcacheSegment.EvictionListener<String, String> evictionListener) {
+    return createTestSegment(evictionPredicate, evictionListener, null);
+  }
+
+  private EhcacheSegmentFactory.EhcacheSegment<String, String> createTestSegment(EvictionVeto<? super String, ? super String> evictionPredicate, EhcacheSegmentFactory.EhcacheSegment.EvictionListener<String, String> evictionListener, FrequencySketch frequencySketch) {
     try {
       HeuristicConfiguration configuration = new HeuristicConfiguration(1024 * 1024);
       SerializationProvider serializationProvider = new DefaultSerializationProvider(null);
@@ -64,7 +69,7 @@ public class EhcacheSegmentTest {
       Portability<String> keyPortability = new SerializerPortability<String>(keySerializer);
       Portability<String> elementPortability = new SerializerPortability<String>(valueSerializer);
       Factory<OffHeapBufferStorageEngine<String, String>> storageEngineFactory = OffHeapBufferStorageEngine.createFactory(PointerSize.INT, pageSource, configuration.getInitialSegmentTableSize(), keyPortability, elementPortability, false, true);
-      return new EhcacheSegmentFactory.EhcacheSegment<String, String>(pageSource, storageEngineFactory.newInstance(), 1, evictionPredicate, evictionListener);
+      return new EhcacheSegmentFactory.EhcacheSegment<String, String>(pageSource, storageEngineFactory.newInstance(), 1, evictionPredicate, evictionListener, frequencySketch);
     } catch (UnsupportedTypeException e) {
       throw new AssertionError(e);
     }
@@ -125,4 +130,21 @@ public class EhcacheSegmentTest {
       segment.destroy();
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testFrequencyEvictionPrefersLeastFrequentlyAccessed() {
+    EhcacheSegmentFactory.EhcacheSegment.EvictionListener<String, String> evictionListener = mock(EhcacheSegmentFactory.EhcacheSegment.EvictionListener.class);
+    EhcacheSegmentFactory.EhcacheSegment<String, String> segment = createTestSegment(Eviction.none(), evictionListener, new FrequencySketch(16));
+    try {
+      segment.put("hot", "value");
+      segment.put("cold", "value");
+      for (int i = 0; i < 10; i++) {
+        segment.recordAccess("hot");
+      }
+      segment.evict(segment.getEvictionIndex(), false);
+      verify(evictionListener).onEviction("cold", "value");
+    } finally {
+      segment.destroy();
+    }
+  }
+}
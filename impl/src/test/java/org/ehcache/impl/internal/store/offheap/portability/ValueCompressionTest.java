@@ -0,0 +1,158 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.store.offheap.portability;
+
+import org.ehcache.exceptions.SerializerException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ValueCompressionTest {
+
+  @Test
+  public void testRoundTrip() {
+    ValueCompression compression = new ValueCompression(0);
+    byte[] value = json(50);
+
+    ByteBuffer compressed = compression.compress(ByteBuffer.wrap(value), 0);
+
+    assertThat(compressed, notNullValue());
+    assertThat(compressed.remaining(), lessThan(value.length / 3));
+    assertThat(bytes(compression.decompress(compressed)), is(value));
+  }
+
+  @Test
+  public void testReservesOffset() {
+    ValueCompression compression = new ValueCompression(0);
+    byte[] value = json(10);
+
+    ByteBuffer compressed = compression.compress(ByteBuffer.wrap(value), 16);
+    compressed.position(16);
+
+    assertThat(bytes(compression.decompress(compressed)), is(value));
+  }
+
+  @Test
+  public void testRoundTripFromDirectBuffers() {
+    ValueCompression compression = new ValueCompression(0);
+    byte[] value = json(10);
+    ByteBuffer direct = ByteBuffer.allocateDirect(value.length);
+    direct.put(value).flip();
+
+    ByteBuffer compressed = compression.compress(direct, 0);
+    ByteBuffer directCompressed = ByteBuffer.allocateDirect(compressed.remaining());
+    directCompressed.put(compressed).flip();
+
+    assertThat(direct.remaining(), is(value.length));
+    assertThat(bytes(compression.decompress(directCompressed)), is(value));
+  }
+
+  @Test
+  public void testRoundTripMixedContent() {
+    ValueCompression compression = new ValueCompression(0);
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      byte[] value = new byte[random.nextInt(20000)];
+      int position = 0;
+      while (position < value.length) {
+        int run = Math.min(value.length - position, 1 + random.nextInt(300));
+        if (position > 0 && random.nextBoolean()) {
+          int from = random.nextInt(position);
+          for (int j = 0; j < run; j++) {
+            value[position + j] = value[from + j];
+          }
+        } else {
+          for (int j = 0; j < run; j++) {
+            value[position + j] = (byte) random.nextInt(random.nextBoolean() ? 4 : 256);
+          }
+        }
+        position += run;
+      }
+
+      ByteBuffer compressed = compression.compress(ByteBuffer.wrap(value), 0);
+
+      if (compressed != null) {
+        assertThat(compressed.remaining(), lessThan(value.length));
+        assertThat(bytes(compression.decompress(compressed)), is(value));
+      }
+    }
+  }
+
+  @Test
+  public void testValueBelowThresholdIsNotCompressed() {
+    ValueCompression compression = new ValueCompression(1024);
+
+    assertThat(compression.compress(ByteBuffer.wrap(json(1)), 0), nullValue());
+    assertThat(compression.getCompressedValues(), is(0L));
+    assertThat(compression.getIncompressibleValues(), is(0L));
+  }
+
+  @Test
+  public void testIncompressibleValueIsNotCompressed() {
+    ValueCompression compression = new ValueCompression(0);
+    byte[] value = new byte[4096];
+    new Random(42).nextBytes(value);
+
+    assertThat(compression.compress(ByteBuffer.wrap(value), 0), nullValue());
+    assertThat(compression.getIncompressibleValues(), is(1L));
+  }
+
+  @Test
+  public void testStatistics() {
+    ValueCompression compression = new ValueCompression(0);
+    byte[] value = json(20);
+
+    ByteBuffer compressed = compression.compress(ByteBuffer.wrap(value), 0);
+    compression.decompress(compressed);
+
+    assertThat(compression.getCompressedValues(), is(1L));
+    assertThat(compression.getInputBytes(), is((long) value.length));
+    assertThat(compression.getOutputBytes(), is((long) compressed.remaining()));
+    assertThat(compression.getCompressionTime() > 0L, is(true));
+    assertThat(compression.getDecompressionTime() > 0L, is(true));
+  }
+
+  @Test(expected = SerializerException.class)
+  public void testCorruptValueIsRejected() {
+    ValueCompression compression = new ValueCompression(0);
+    ByteBuffer compressed = compression.compress(ByteBuffer.wrap(json(20)), 0);
+    compressed.limit(compressed.limit() - 1);
+
+    compression.decompress(compressed);
+  }
+
+  private static byte[] json(int entries) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < entries; i++) {
+      sb.append("{\"id\":").append(i).append(",\"name\":\"item").append(i).append("\",\"active\":true,\"tags\":[\"a\",\"b\"]},");
+    }
+    return sb.append("]").toString().getBytes();
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+}
@@ -137,6 +137,19 @@ public class CacheStoreTest {
     verify(numberAuthoritativeTier, times(1)).getAndFault(any(Number.class));
   }
 
+  @Test
+  public void testBinaryValuesNeedABinaryAuthoritativeTier() throws Exception {
+    CacheStore<Number, CharSequence> cacheStore = new CacheStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier);
+
+    assertThat(cacheStore.supportsBinaryValues(), is(false));
+    try {
+      cacheStore.getBinaryValue(1);
+      Assert.fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
   @Test
   public void testPut() throws Exception {
     CacheStore<Number, CharSequence> cacheStore = new CacheStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier);
@@ -465,18 +478,26 @@ public class CacheStoreTest {
 
   @Test
   public void testBulkComputeIfAbsent() throws Exception {
-    when(numberAuthoritativeTier.bulkComputeIfAbsent(any(Set.class), any(Function.class))).thenAnswer(new Answer<Map<Number, Store.ValueHolder<CharSequence>>>() {
+    when(numberCachingTier.bulkGetOrComputeIfAbsent(any(Iterable.class), any(Function.class))).thenAnswer(new Answer<Map<Number, Store.ValueHolder<CharSequence>>>() {
       @Override
       public Map<Number, Store.ValueHolder<CharSequence>> answer(InvocationOnMock invocation) throws Throwable {
-        Set<Number> keys = (Set) invocation.getArguments()[0];
-        Function<Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>>, Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>>> function = (Function<Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>>, Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>>>) invocation.getArguments()[1];
+        Iterable<Number> keys = (Iterable<Number>) invocation.getArguments()[0];
+        Function<Set<? extends Number>, Map<Number, Store.ValueHolder<CharSequence>>> function = (Function<Set<? extends Number>, Map<Number, Store.ValueHolder<CharSequence>>>) invocation.getArguments()[1];
 
-        List<Map.Entry<? extends Number, ? extends CharSequence>> functionArg = new ArrayList<Map.Entry<? extends Number, ? extends CharSequence>>();
+        Set<Number> missingKeys = new HashSet<Number>();
         for (Number key : keys) {
-          functionArg.add(newMapEntry(key, null));
+          missingKeys.add(key);
         }
+        return function.apply(missingKeys);
+      }
+    });
+    when(numberAuthoritativeTier.bulkComputeIfAbsentAndFault(any(Iterable.class), any(Function.class))).thenAnswer(new Answer<Map<Number, Store.ValueHolder<CharSequence>>>() {
+      @Override
+      public Map<Number, Store.ValueHolder<CharSequence>> answer(InvocationOnMock invocation) throws Throwable {
+        Iterable<Number> keys = (Iterable<Number>) invocation.getArguments()[0];
+        Function<Iterable<? extends Number>, Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>>> function = (Function<Iterable<? extends Number>, Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>>>) invocation.getArguments()[1];
 
-        Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>> functionResult = function.apply(functionArg);
+        Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>> functionResult = function.apply(keys);
 
         Map<Number, Store.ValueHolder<CharSequence>> result = new HashMap<Number, Store.ValueHolder<CharSequence>>();
         for (Map.Entry<? extends Number, ? extends CharSequence> entry : functionResult) {
@@ -502,10 +523,52 @@ public class CacheStoreTest {
     assertThat(result.get(2).value(), Matchers.<CharSequence>equalTo("two"));
     assertThat(result.get(3).value(), Matchers.<CharSequence>equalTo("three"));
 
-    verify(numberCachingTier, times(1)).invalidate(1);
-    verify(numberCachingTier, times(1)).invalidate(2);
-    verify(numberCachingTier, times(1)).invalidate(3);
-    verify(numberAuthoritativeTier, times(1)).bulkComputeIfAbsent(any(Set.class), any(Function.class));
+    verify(numberCachingTier, never()).invalidate(any(Number.class));
+    verify(numberCachingTier, times(1)).bulkGetOrComputeIfAbsent(any(Iterable.class), any(Function.class));
+    verify(numberAuthoritativeTier, times(1)).bulkComputeIfAbsentAndFault(any(Iterable.class), any(Function.class));
+    verify(numberAuthoritativeTier, never()).bulkComputeIfAbsent(any(Set.class), any(Function.class));
+  }
+
+  @Test
+  public void testBulkComputeIfAbsentOnlySendsCachingTierMissesToAuthoritativeTier() throws Exception {
+    when(numberCachingTier.bulkGetOrComputeIfAbsent(any(Iterable.class), any(Function.class))).thenAnswer(new Answer<Map<Number, Store.ValueHolder<CharSequence>>>() {
+      @Override
+      public Map<Number, Store.ValueHolder<CharSequence>> answer(InvocationOnMock invocation) throws Throwable {
+        Function<Set<? extends Number>, Map<Number, Store.ValueHolder<CharSequence>>> function = (Function<Set<? extends Number>, Map<Number, Store.ValueHolder<CharSequence>>>) invocation.getArguments()[1];
+
+        Map<Number, Store.ValueHolder<CharSequence>> result = new HashMap<Number, Store.ValueHolder<CharSequence>>();
+        result.put(1, newValueHolder("one"));
+        result.putAll(function.apply(new HashSet<Number>(Arrays.asList(2, 3))));
+        return result;
+      }
+    });
+    when(numberAuthoritativeTier.bulkComputeIfAbsentAndFault(any(Iterable.class), any(Function.class))).thenAnswer(new Answer<Map<Number, Store.ValueHolder<CharSequence>>>() {
+      @Override
+      public Map<Number, Store.ValueHolder<CharSequence>> answer(InvocationOnMock invocation) throws Throwable {
+        Iterable<Number> keys = (Iterable<Number>) invocation.getArguments()[0];
+        Map<Number, Store.ValueHolder<CharSequence>> result = new HashMap<Number, Store.ValueHolder<CharSequence>>();
+        for (Number key : keys) {
+          assertThat(key.intValue(), Matchers.not(1));
+          result.put(key, newValueHolder("lower-" + key));
+        }
+        return result;
+      }
+    });
+
+    CacheStore<Number, CharSequence> cacheStore = new CacheStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier);
+
+    Map<Number, Store.ValueHolder<CharSequence>> result = cacheStore.bulkComputeIfAbsent(new HashSet<Number>(Arrays.asList(1, 2, 3)), new Function<Iterable<? extends Number>, Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>>>() {
+      @Override
+      public Iterable<? extends Map.Entry<? extends Number, ? extends CharSequence>> apply(Iterable<? extends Number> numbers) {
+        throw new AssertionError("Authoritative tier is mocked");
+      }
+    });
+
+    assertThat(result.size(), is(3));
+    assertThat(result.get(1).value(), Matchers.<CharSequence>equalTo("one"));
+    assertThat(result.get(2).value(), Matchers.<CharSequence>equalTo("lower-2"));
+    assertThat(result.get(3).value(), Matchers.<CharSequence>equalTo("lower-3"));
+    verify(numberAuthoritativeTier, times(1)).bulkComputeIfAbsentAndFault(any(Iterable.class), any(Function.class));
   }
 
   @Test
@@ -0,0 +1,61 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.internal.util;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ByteBufferOutputStreamTest {
+
+  @Test
+  public void testOutputFittingInBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.position(2);
+    ByteBufferOutputStream stream = new ByteBufferOutputStream(buffer);
+
+    stream.write(1);
+    stream.write(new byte[] {2, 3, 4}, 0, 3);
+    assertThat(buffer.position(), is(2));
+    assertThat(stream.size(), is(4));
+    assertThat(stream.commit(), is(true));
+    assertThat(buffer.position(), is(6));
+
+    buffer.flip().position(2);
+    assertThat(buffer, is(ByteBuffer.wrap(new byte[] {1, 2, 3, 4})));
+  }
+
+  @Test
+  public void testOutputOverflowingBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    buffer.position(1);
+    ByteBufferOutputStream stream = new ByteBufferOutputStream(buffer);
+
+    stream.write(new byte[] {1, 2, 3, 4}, 0, 4);
+    stream.write(5);
+    assertThat(stream.size(), is(5));
+    assertThat(stream.commit(), is(false));
+    assertThat(buffer.position(), is(1));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testNegativeLength() {
+    new ByteBufferOutputStream(ByteBuffer.allocate(4)).write(new byte[4], 0, -1);
+  }
+}
@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Random;
 
@@ -67,6 +68,28 @@ public class BasicSerializationTest {
 
   }
 
+  @Test
+  public void testSerializeIntoBuffer() throws ClassNotFoundException {
+    CompactJavaSerializer<Serializable> test = new CompactJavaSerializer<Serializable>(null);
+
+    HashMap<Integer, String> input = new HashMap<Integer, String>();
+    for (int i = 0; i < 100; i++) {
+      input.put(i, Integer.toString(i));
+    }
+    ByteBuffer expected = test.serialize(input);
+
+    ByteBuffer small = ByteBuffer.allocate(16);
+    Assert.assertFalse(test.serialize(input, small));
+    Assert.assertEquals(0, small.position());
+    Assert.assertEquals(expected.remaining(), test.estimateSize(input));
+
+    ByteBuffer target = ByteBuffer.allocate(test.estimateSize(input));
+    Assert.assertTrue(test.serialize(input, target));
+    target.flip();
+    Assert.assertEquals(expected, target);
+    Assert.assertEquals(input, test.read(target));
+  }
+
   private static final Class[] PRIMITIVE_CLASSES = new Class[] {
      boolean.class, byte.class, char.class, short.class,
      int.class, long.class, float.class, double.class, void.class
@@ -20,6 +20,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import static org.hamcrest.Matchers.is;
@@ -46,6 +47,18 @@ public class LongSerializerTest {
     }
   }
 
+  @Test
+  public void testSerializeIntoBuffer() throws ClassNotFoundException {
+    LongSerializer serializer = new LongSerializer();
+
+    assertThat(serializer.serialize(42L, ByteBuffer.allocate(7)), is(false));
+
+    ByteBuffer target = ByteBuffer.allocate(serializer.estimateSize(42L));
+    assertThat(serializer.serialize(42L, target), is(true));
+    target.flip();
+    assertThat(serializer.read(target), is(42L));
+  }
+
   @Test(expected = NullPointerException.class)
   public void testReadThrowsOnNullInput() throws ClassNotFoundException {
     new LongSerializer().read(null);
@@ -0,0 +1,235 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.serialization;
+
+import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.ehcache.impl.serialization.SerializerTestUtilities.createClassNameRewritingLoader;
+import static org.ehcache.impl.serialization.SerializerTestUtilities.newClassName;
+import static org.ehcache.impl.serialization.SerializerTestUtilities.popTccl;
+import static org.ehcache.impl.serialization.SerializerTestUtilities.pushTccl;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * SchemaSerializerTest
+ */
+public class SchemaSerializerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTripsObjectGraph() throws Exception {
+    SchemaSerializer<Person> serializer = new SchemaSerializer<Person>(null);
+
+    Person read = serializer.read(serializer.serialize(newPerson()));
+
+    assertThat(read.name, is("Ada"));
+    assertThat(read.age, is(36));
+    assertThat(read.id, is(-5L));
+    assertThat(read.score, is(1.5));
+    assertThat(read.active, is(true));
+    assertThat(read.initial, is('A'));
+    assertThat(read.boxed, is(42));
+    assertThat(read.color, is(Color.GREEN));
+    assertThat(read.color, sameInstance(Color.GREEN));
+    assertThat(read.address.street, is("Main"));
+    assertThat(read.address.number, is(12));
+    assertThat(read.tags.get(0), is("x"));
+    assertThat(read.tags.get(1), nullValue());
+    assertThat(read.counts.get("k"), is(1));
+    assertThat(read.ints, is(new int[] {1, -2}));
+    assertThat(read.names, is(new String[] {"a", null}));
+    assertThat(read.date, is(new Date(12345L)));
+    assertThat(read.amount, is(new BigDecimal("1.25")));
+    assertThat(read.nothing, nullValue());
+    assertThat(read.ignored, is(5));
+  }
+
+  @Test
+  public void testMoreCompactThanJavaSerialization() {
+    SchemaSerializer<Person> serializer = new SchemaSerializer<Person>(null);
+    CompactJavaSerializer<Person> javaSerializer = new CompactJavaSerializer<Person>(null);
+    Person person = newPerson();
+
+    assertThat(serializer.serialize(person).remaining(), lessThan(javaSerializer.serialize(person).remaining()));
+  }
+
+  @Test
+  public void testCyclicGraphFallsBackToJavaSerialization() throws Exception {
+    SchemaSerializer<Node> serializer = new SchemaSerializer<Node>(null);
+    Node node = new Node();
+    node.next = node;
+
+    Node read = serializer.read(serializer.serialize(node));
+    assertThat(read.next, sameInstance(read));
+  }
+
+  @Test
+  public void testSerializeIntoBuffer() throws Exception {
+    SchemaSerializer<Person> serializer = new SchemaSerializer<Person>(null);
+    Person person = newPerson();
+    ByteBuffer expected = serializer.serialize(person);
+
+    ByteBuffer small = ByteBuffer.allocate(8);
+    assertThat(serializer.serialize(person, small), is(false));
+    assertThat(small.position(), is(0));
+    assertThat(serializer.estimateSize(person), is(expected.remaining()));
+
+    ByteBuffer target = ByteBuffer.allocate(serializer.estimateSize(person));
+    assertThat(serializer.serialize(person, target), is(true));
+    target.flip();
+    assertThat(target, is(expected));
+    assertThat(serializer.read(target).name, is("Ada"));
+  }
+
+  @Test
+  public void testReadsEvolvedClass() throws Exception {
+    SchemaSerializer<Serializable> serializer = new SchemaSerializer<Serializable>(null);
+
+    ClassLoader loaderA = createClassNameRewritingLoader(Versioned_write.class);
+    Serializable written = (Serializable) loaderA.loadClass(newClassName(Versioned_write.class)).newInstance();
+    ByteBuffer encoded = serializer.serialize(written);
+
+    pushTccl(createClassNameRewritingLoader(Versioned_read.class));
+    try {
+      Serializable read = serializer.read(encoded);
+      assertThat(read.getClass().getField("name").get(read), is((Object) "kept"));
+      assertThat(read.getClass().getField("count").getInt(read), is(4));
+      assertThat(read.getClass().getField("added").getLong(read), is(7L));
+    } finally {
+      popTccl();
+    }
+  }
+
+  @Test
+  public void testPersistsRegistry() throws Exception {
+    FileBasedPersistenceContext persistenceContext = mock(FileBasedPersistenceContext.class);
+    File directory = folder.newFolder();
+    when(persistenceContext.getDirectory()).thenReturn(directory);
+
+    SchemaSerializer<Person> serializer = new SchemaSerializer<Person>(null, persistenceContext);
+    ByteBuffer encoded = serializer.serialize(newPerson());
+    serializer.close();
+
+    SchemaSerializer<Person> reopened = new SchemaSerializer<Person>(null, persistenceContext);
+    Person read = reopened.read(encoded);
+    assertThat(read.name, is("Ada"));
+    assertThat(read.amount, is(new BigDecimal("1.25")));
+  }
+
+  private static Person newPerson() {
+    Person person = new Person();
+    person.name = "Ada";
+    person.age = 36;
+    person.id = -5L;
+    person.score = 1.5;
+    person.active = true;
+    person.initial = 'A';
+    person.boxed = 42;
+    person.color = Color.GREEN;
+    person.address = new Address();
+    person.address.street = "Main";
+    person.address.number = 12;
+    person.tags.add("x");
+    person.tags.add(null);
+    person.counts = new HashMap<String, Integer>();
+    person.counts.put("k", 1);
+    person.ints = new int[] {1, -2};
+    person.names = new String[] {"a", null};
+    person.date = new Date(12345L);
+    person.amount = new BigDecimal("1.25");
+    person.nothing = null;
+    person.ignored = 9;
+    return person;
+  }
+
+  enum Color {
+    RED,
+    GREEN {
+      @Override
+      public String toString() {
+        return "green";
+      }
+    }
+  }
+
+  static class Address implements Serializable {
+    private static final long serialVersionUID = 1L;
+    String street;
+    int number;
+  }
+
+  static class Person implements Serializable {
+    private static final long serialVersionUID = 1L;
+    String name;
+    int age;
+    long id;
+    double score;
+    boolean active;
+    char initial;
+    Integer boxed;
+    Color color;
+    Address address;
+    List<String> tags = new ArrayList<String>();
+    Map<String, Integer> counts;
+    int[] ints;
+    String[] names;
+    Date date;
+    BigDecimal amount;
+    Object nothing = "initial";
+    transient int ignored = 5;
+  }
+
+  static class Node implements Serializable {
+    private static final long serialVersionUID = 1L;
+    Node next;
+  }
+
+  public static class Versioned_write implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public String name = "kept";
+    public String removed = "dropped";
+    public int count = 4;
+  }
+
+  public static class Versioned_read implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public String name;
+    public int count;
+    public long added = 7L;
+  }
+}
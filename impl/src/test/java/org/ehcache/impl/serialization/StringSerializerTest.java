@@ -18,6 +18,9 @@ package org.ehcache.impl.serialization;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -35,6 +38,34 @@ public class StringSerializerTest {
     assertThat(read, is(s));
   }
 
+  @Test
+  public void testEncodingMatchesStringBytes() throws ClassNotFoundException {
+    StringSerializer serializer = new StringSerializer();
+
+    // ascii, 2 and 3 bytes chars, a surrogate pair and unpaired surrogates
+    String s = "a\u00e9\u20ac\ud83d\ude00\ud800b\udc00";
+    byte[] expected = s.getBytes(Charset.forName("UTF-8"));
+    assertThat(serializer.estimateSize(s), is(expected.length));
+    assertThat(serializer.serialize(s), is(ByteBuffer.wrap(expected)));
+
+    ByteBuffer target = ByteBuffer.allocate(expected.length + 1);
+    target.put((byte) 42);
+    assertThat(serializer.serialize(s, target), is(true));
+    assertThat(target.position(), is(expected.length + 1));
+    target.flip().position(1);
+    assertThat(target, is(ByteBuffer.wrap(expected)));
+  }
+
+  @Test
+  public void testSerializeIntoTooSmallBuffer() {
+    StringSerializer serializer = new StringSerializer();
+    ByteBuffer target = ByteBuffer.allocate(3);
+    target.position(1);
+
+    assertThat(serializer.serialize("\u20ac", target), is(false));
+    assertThat(target.position(), is(1));
+  }
+
   @Test(expected = NullPointerException.class)
   public void testSerializeThrowsOnNull() {
     new StringSerializer().serialize(null);
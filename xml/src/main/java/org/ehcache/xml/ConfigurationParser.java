@@ -20,8 +20,10 @@ import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourceUnit;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration;
 import org.ehcache.xml.model.BaseCacheType;
 import org.ehcache.xml.model.CacheLoaderWriterType;
+import org.ehcache.xml.model.CacheSizeofType;
 import org.ehcache.xml.model.CacheTemplateType;
 import org.ehcache.xml.model.CacheType;
 import org.ehcache.xml.model.ConfigType;
@@ -33,9 +35,11 @@ import org.ehcache.xml.model.EventOrderingType;
 import org.ehcache.xml.model.EventType;
 import org.ehcache.xml.model.ExpiryType;
 import org.ehcache.xml.model.Heap;
+import org.ehcache.xml.model.HeapEvictionPolicyType;
 import org.ehcache.xml.model.ListenersType;
 import org.ehcache.xml.model.MemoryType;
 import org.ehcache.xml.model.Offheap;
+import org.ehcache.xml.model.OffheapType;
 import org.ehcache.xml.model.PersistableMemoryType;
 import org.ehcache.xml.model.PersistenceType;
 import org.ehcache.xml.model.ResourceType;
@@ -365,13 +369,35 @@ class ConfigurationParser {
 
           @Override
           public SizeOfEngineLimits heapStoreSettings() {
-            SizeofType sizeofType = null;
+            CacheSizeofType sizeofType = null;
             for (BaseCacheType source : sources) {
               sizeofType = source.getHeapStoreSettings();
               if (sizeofType != null) break;
             }
             return sizeofType != null ? new XmlSizeOfEngineLimits(sizeofType) : null;
           }
+
+          @Override
+          public HeapEvictionPolicySettings heapEvictionPolicy() {
+            HeapEvictionPolicyType value = null;
+            for (BaseCacheType source : sources) {
+              value = source.getHeapEvictionPolicy();
+              if (value != null) break;
+            }
+            return value != null ? new XmlHeapEvictionPolicySettings(value) : null;
+          }
+
+          @Override
+          public String offHeapEvictionMode() {
+            for (BaseCacheType source : sources) {
+              if (source.getHeap() != null) {
+                return null;
+              } else if (source.getResources() != null) {
+                return parseOffHeapEvictionMode(source.getResources());
+              }
+            }
+            return null;
+          }
         });
       }
     }
@@ -522,9 +548,21 @@ class ConfigurationParser {
 
           @Override
           public SizeOfEngineLimits heapStoreSettings() {
-            SizeofType type = cacheTemplate.getHeapStoreSettings();
+            CacheSizeofType type = cacheTemplate.getHeapStoreSettings();
             return type == null ? null : new XmlSizeOfEngineLimits(type);
           }
+
+          @Override
+          public HeapEvictionPolicySettings heapEvictionPolicy() {
+            HeapEvictionPolicyType type = cacheTemplate.getHeapEvictionPolicy();
+            return type == null ? null : new XmlHeapEvictionPolicySettings(type);
+          }
+
+          @Override
+          public String offHeapEvictionMode() {
+            ResourcesType resources = cacheTemplate.getResources();
+            return resources == null ? null : parseOffHeapEvictionMode(resources);
+          }
         });
       }
     }
@@ -539,6 +577,21 @@ class ConfigurationParser {
     return resourcePools;
   }
 
+  private String parseOffHeapEvictionMode(ResourcesType resources) {
+    for (Element resource : resources.getResource()) {
+      try {
+        Object parsed = unmarshaller.unmarshal(resource);
+        if (parsed instanceof Offheap) {
+          OffheapType offheapResource = ((Offheap) parsed).getValue();
+          return offheapResource.getEviction() == null ? null : offheapResource.getEviction().value();
+        }
+      } catch (JAXBException e) {
+        throw new IllegalArgumentException("Can't find parser for resource: " + resource, e);
+      }
+    }
+    return null;
+  }
+
   private ResourcePool parseResource(Heap resource) {
     ResourceType heapResource = resource.getValue();
     return new ResourcePoolImpl(org.ehcache.config.ResourceType.Core.HEAP,
@@ -648,6 +701,10 @@ class ConfigurationParser {
 
     SizeOfEngineLimits heapStoreSettings();
 
+    HeapEvictionPolicySettings heapEvictionPolicy();
+
+    String offHeapEvictionMode();
+
   }
 
   interface CacheDefinition extends CacheTemplate {
@@ -730,6 +787,19 @@ class ConfigurationParser {
     long getMaxObjectSize();
 
     MemoryUnit getUnit();
+
+    DefaultSizeOfEngineConfiguration.SizingMode getSizingMode();
+
+    int getSamplingInterval();
+
+    String getSizeOfFunction();
+  }
+
+  interface HeapEvictionPolicySettings {
+
+    boolean isTinyLfu();
+
+    String factoryClass();
   }
 
   private static class XmlListenersConfig implements ListenersConfig {
@@ -855,11 +925,30 @@ class ConfigurationParser {
     }
   }
 
+  private static class XmlHeapEvictionPolicySettings implements HeapEvictionPolicySettings {
+
+    private final HeapEvictionPolicyType type;
+
+    private XmlHeapEvictionPolicySettings(HeapEvictionPolicyType type) {
+      this.type = type;
+    }
+
+    @Override
+    public boolean isTinyLfu() {
+      return type.getTinyLfu() != null;
+    }
+
+    @Override
+    public String factoryClass() {
+      return type.getClazz();
+    }
+  }
+
   private static class XmlSizeOfEngineLimits implements SizeOfEngineLimits {
 
-    private final SizeofType sizeoflimits;
+    private final CacheSizeofType sizeoflimits;
 
-    private XmlSizeOfEngineLimits(SizeofType sizeoflimits) {
+    private XmlSizeOfEngineLimits(CacheSizeofType sizeoflimits) {
       this.sizeoflimits = sizeoflimits;
     }
 
@@ -878,6 +967,29 @@ class ConfigurationParser {
       return MemoryUnit.valueOf(sizeoflimits.getMaxObjectSize().getUnit().value().toUpperCase());
     }
 
+    @Override
+    public DefaultSizeOfEngineConfiguration.SizingMode getSizingMode() {
+      CacheSizeofType.SizingMode sizingMode = sizeoflimits.getSizingMode();
+      if (sizingMode == null) {
+        return DefaultSizeOfEngineConfiguration.DEFAULT_SIZING_MODE;
+      }
+      return DefaultSizeOfEngineConfiguration.SizingMode.valueOf(sizingMode.getValue().value().toUpperCase());
+    }
+
+    @Override
+    public int getSamplingInterval() {
+      CacheSizeofType.SizingMode sizingMode = sizeoflimits.getSizingMode();
+      if (sizingMode == null) {
+        return DefaultSizeOfEngineConfiguration.DEFAULT_SAMPLING_INTERVAL;
+      }
+      return sizingMode.getSamplingInterval().intValue();
+    }
+
+    @Override
+    public String getSizeOfFunction() {
+      return sizeoflimits.getSizeofFunction();
+    }
+
   }
 
   private static class XmlWriteBehind implements WriteBehind {
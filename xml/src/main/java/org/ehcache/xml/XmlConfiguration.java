@@ -27,6 +27,8 @@ import org.ehcache.config.builders.WriteBehindConfigurationBuilder;
 import org.ehcache.config.builders.WriteBehindConfigurationBuilder.BatchedWriteBehindConfigurationBuilder;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.internal.util.ClassLoading;
+import org.ehcache.core.spi.store.heap.HeapEvictionPolicy;
+import org.ehcache.core.spi.store.heap.SizeOfFunction;
 import org.ehcache.event.CacheEventListener;
 import org.ehcache.event.EventFiring;
 import org.ehcache.event.EventOrdering;
@@ -45,6 +47,9 @@ import org.ehcache.impl.config.serializer.DefaultSerializationProviderConfigurat
 import org.ehcache.impl.config.serializer.DefaultSerializerConfiguration;
 import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration;
 import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineProviderConfiguration;
+import org.ehcache.impl.config.store.heap.SizeOfFunctionConfiguration;
+import org.ehcache.impl.config.store.heap.HeapEvictionPolicyConfiguration;
+import org.ehcache.impl.config.store.offheap.OffHeapEvictionConfiguration;
 import org.ehcache.impl.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.impl.config.store.disk.OffHeapDiskStoreProviderConfiguration;
 import org.ehcache.spi.copy.Copier;
@@ -277,8 +282,15 @@ public class XmlConfiguration implements Configuration {
         builder = builder.add(new DefaultCopierConfiguration(valueCopier, DefaultCopierConfiguration.Type.VALUE));
       }
       if (cacheDefinition.heapStoreSettings() != null) {
-        builder = builder.add(new DefaultSizeOfEngineConfiguration(cacheDefinition.heapStoreSettings().getMaxObjectSize(), cacheDefinition.heapStoreSettings().getUnit(),
-            cacheDefinition.heapStoreSettings().getMaxObjectGraphSize()));
+        builder = builder.add(getSizeOfEngineConfiguration(cacheDefinition.heapStoreSettings()));
+        SizeOfFunction<?, ?> sizeOfFunction = getInstanceOfName(cacheDefinition.heapStoreSettings().getSizeOfFunction(), cacheClassLoader, SizeOfFunction.class);
+        if (sizeOfFunction != null) {
+          builder = builder.add(new SizeOfFunctionConfiguration(sizeOfFunction));
+        }
+      }
+      final ConfigurationParser.HeapEvictionPolicySettings parsedHeapEvictionPolicy = cacheDefinition.heapEvictionPolicy();
+      if (parsedHeapEvictionPolicy != null) {
+        builder = builder.add(getHeapEvictionPolicyConfiguration(cacheClassLoader, parsedHeapEvictionPolicy));
       }
       EvictionVeto evictionVeto = getInstanceOfName(cacheDefinition.evictionVeto(), cacheClassLoader, EvictionVeto.class);
       builder = builder.withEvictionVeto(evictionVeto);
@@ -291,6 +303,10 @@ public class XmlConfiguration implements Configuration {
         resourcePoolsBuilder = resourcePoolsBuilder.with(resourcePool.getType(), resourcePool.getSize(), resourcePool.getUnit(), resourcePool.isPersistent());
       }
       builder = builder.withResourcePools(resourcePoolsBuilder);
+      final String parsedOffHeapEvictionMode = cacheDefinition.offHeapEvictionMode();
+      if (parsedOffHeapEvictionMode != null) {
+        builder = builder.withOffHeapEvictionMode(OffHeapEvictionConfiguration.Mode.valueOf(parsedOffHeapEvictionMode.toUpperCase()));
+      }
       final ConfigurationParser.DiskStoreSettings parsedDiskStoreSettings = cacheDefinition.diskStoreSettings();
       if (parsedDiskStoreSettings != null) {
         builder = builder.add(new OffHeapDiskStoreConfiguration(parsedDiskStoreSettings.threadPool(), parsedDiskStoreSettings.writerConcurrency()));
@@ -343,6 +359,20 @@ public class XmlConfiguration implements Configuration {
     return expiry;
   }
 
+  private static HeapEvictionPolicyConfiguration getHeapEvictionPolicyConfiguration(ClassLoader cacheClassLoader, ConfigurationParser.HeapEvictionPolicySettings parsedPolicy)
+      throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+    if (parsedPolicy.isTinyLfu()) {
+      return HeapEvictionPolicyConfiguration.tinyLfu();
+    } else {
+      return new HeapEvictionPolicyConfiguration(getInstanceOfName(parsedPolicy.factoryClass(), cacheClassLoader, HeapEvictionPolicy.Factory.class));
+    }
+  }
+
+  private static DefaultSizeOfEngineConfiguration getSizeOfEngineConfiguration(ConfigurationParser.SizeOfEngineLimits limits) {
+    return new DefaultSizeOfEngineConfiguration(limits.getMaxObjectSize(), limits.getUnit(), limits.getMaxObjectGraphSize(),
+        limits.getSizingMode(), limits.getSamplingInterval());
+  }
+
   private static <T> T getInstanceOfName(String name, ClassLoader classLoader, Class<T> type) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
     if (name == null) {
       return null;
@@ -446,8 +476,15 @@ public class XmlConfiguration implements Configuration {
       builder = builder.add(new DefaultCopierConfiguration(valueCopier, DefaultCopierConfiguration.Type.VALUE));
     }
     if (cacheTemplate.heapStoreSettings() != null) {
-      builder = builder.add(new DefaultSizeOfEngineConfiguration(cacheTemplate.heapStoreSettings().getMaxObjectSize(), cacheTemplate.heapStoreSettings().getUnit(),
-        cacheTemplate.heapStoreSettings().getMaxObjectGraphSize()));
+      builder = builder.add(getSizeOfEngineConfiguration(cacheTemplate.heapStoreSettings()));
+      SizeOfFunction<?, ?> sizeOfFunction = getInstanceOfName(cacheTemplate.heapStoreSettings().getSizeOfFunction(), defaultClassLoader, SizeOfFunction.class);
+      if (sizeOfFunction != null) {
+        builder = builder.add(new SizeOfFunctionConfiguration(sizeOfFunction));
+      }
+    }
+    final ConfigurationParser.HeapEvictionPolicySettings parsedHeapEvictionPolicy = cacheTemplate.heapEvictionPolicy();
+    if (parsedHeapEvictionPolicy != null) {
+      builder = builder.add(getHeapEvictionPolicyConfiguration(defaultClassLoader, parsedHeapEvictionPolicy));
     }
     final String loaderWriter = cacheTemplate.loaderWriter();
     if(loaderWriter!= null) {
@@ -476,6 +513,10 @@ public class XmlConfiguration implements Configuration {
       resourcePoolsBuilder = resourcePoolsBuilder.with(resourcePool.getType(), resourcePool.getSize(), resourcePool.getUnit(), resourcePool.isPersistent());
     }
     builder = builder.withResourcePools(resourcePoolsBuilder);
+    final String parsedOffHeapEvictionMode = cacheTemplate.offHeapEvictionMode();
+    if (parsedOffHeapEvictionMode != null) {
+      builder = builder.withOffHeapEvictionMode(OffHeapEvictionConfiguration.Mode.valueOf(parsedOffHeapEvictionMode.toUpperCase()));
+    }
     for (ServiceConfiguration<?> serviceConfiguration : cacheTemplate.serviceConfigs()) {
       builder = builder.add(serviceConfiguration);
     }
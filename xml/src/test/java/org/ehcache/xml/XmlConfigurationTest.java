@@ -37,6 +37,10 @@ import org.ehcache.expiry.Expiry;
 import org.ehcache.impl.copy.SerializingCopier;
 import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineConfiguration;
 import org.ehcache.impl.config.store.heap.DefaultSizeOfEngineProviderConfiguration;
+import org.ehcache.impl.config.store.heap.SizeOfFunctionConfiguration;
+import org.ehcache.impl.config.store.heap.HeapEvictionPolicyConfiguration;
+import org.ehcache.impl.config.store.offheap.OffHeapEvictionConfiguration;
+import org.ehcache.impl.internal.store.heap.TinyLfuHeapEvictionPolicy;
 import org.ehcache.spi.copy.Copier;
 import org.ehcache.spi.loaderwriter.WriteBehindConfiguration;
 import org.ehcache.spi.loaderwriter.WriteBehindConfiguration.BatchingConfiguration;
@@ -57,6 +61,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXParseException;
 
+import com.pany.ehcache.MySizeOfFunction;
 import com.pany.ehcache.copier.AnotherPersonCopier;
 import com.pany.ehcache.copier.Description;
 import com.pany.ehcache.copier.DescriptionCopier;
@@ -639,6 +644,57 @@ public class XmlConfigurationTest {
     assertThat(sizeOfEngineConfig1, notNullValue());
     assertEquals(sizeOfEngineConfig1.getMaxObjectGraphSize(), 500);
     assertEquals(sizeOfEngineConfig1.getMaxObjectSize(), 200000);
+    assertThat(sizeOfEngineConfig1.getSizingMode(), is(DefaultSizeOfEngineConfiguration.SizingMode.DEEP));
+    assertThat(findSingletonAmongst(SizeOfFunctionConfiguration.class, cacheConfig1.getServiceConfigurations()), nullValue());
+
+    CacheConfiguration<?, ?> cacheConfig2 = xmlConfig.getCacheConfigurations().get("usesSizeOfFunction");
+    DefaultSizeOfEngineConfiguration sizeOfEngineConfig2 = findSingletonAmongst(DefaultSizeOfEngineConfiguration.class, cacheConfig2.getServiceConfigurations());
+    assertThat(sizeOfEngineConfig2.getSizingMode(), is(DefaultSizeOfEngineConfiguration.SizingMode.SAMPLED));
+    assertEquals(sizeOfEngineConfig2.getSamplingInterval(), 50);
+    SizeOfFunctionConfiguration sizeOfFunctionConfig = findSingletonAmongst(SizeOfFunctionConfiguration.class, cacheConfig2.getServiceConfigurations());
+    assertThat(sizeOfFunctionConfig.getSizeOfFunction(), instanceOf(MySizeOfFunction.class));
+
+    CacheConfiguration<Object, Object> templateConfig = xmlConfig.newCacheConfigurationBuilderFromTemplate("declaredSizesTemplate").build();
+    DefaultSizeOfEngineConfiguration templateSizeOfEngineConfig = findSingletonAmongst(DefaultSizeOfEngineConfiguration.class, templateConfig.getServiceConfigurations());
+    assertThat(templateSizeOfEngineConfig.getSizingMode(), is(DefaultSizeOfEngineConfiguration.SizingMode.DECLARED));
+  }
+
+  @Test
+  public void testHeapEvictionPolicy() throws Exception {
+    final URL resource = XmlConfigurationTest.class.getResource("/configs/heap-eviction-policy.xml");
+    XmlConfiguration xmlConfig = new XmlConfiguration(resource);
+
+    CacheConfiguration<?, ?> defaultConfig = xmlConfig.getCacheConfigurations().get("usesDefaultEvictionPolicy");
+    assertThat(findSingletonAmongst(HeapEvictionPolicyConfiguration.class, defaultConfig.getServiceConfigurations()), nullValue());
+
+    CacheConfiguration<?, ?> tinyLfuConfig = xmlConfig.getCacheConfigurations().get("usesTinyLfu");
+    HeapEvictionPolicyConfiguration tinyLfuPolicy = findSingletonAmongst(HeapEvictionPolicyConfiguration.class, tinyLfuConfig.getServiceConfigurations());
+    assertThat(tinyLfuPolicy.getFactory(), instanceOf(TinyLfuHeapEvictionPolicy.Factory.class));
+
+    CacheConfiguration<?, ?> factoryClassConfig = xmlConfig.getCacheConfigurations().get("usesFactoryClass");
+    HeapEvictionPolicyConfiguration factoryClassPolicy = findSingletonAmongst(HeapEvictionPolicyConfiguration.class, factoryClassConfig.getServiceConfigurations());
+    assertThat(factoryClassPolicy.getFactory(), instanceOf(TinyLfuHeapEvictionPolicy.Factory.class));
+
+    CacheConfiguration<Object, Object> templateConfig = xmlConfig.newCacheConfigurationBuilderFromTemplate("tinyLfuTemplate").build();
+    HeapEvictionPolicyConfiguration templatePolicy = findSingletonAmongst(HeapEvictionPolicyConfiguration.class, templateConfig.getServiceConfigurations());
+    assertThat(templatePolicy.getFactory(), instanceOf(TinyLfuHeapEvictionPolicy.Factory.class));
+  }
+
+  @Test
+  public void testOffHeapEvictionMode() throws Exception {
+    final URL resource = XmlConfigurationTest.class.getResource("/configs/offheap-eviction.xml");
+    XmlConfiguration xmlConfig = new XmlConfiguration(resource);
+
+    CacheConfiguration<?, ?> clockConfig = xmlConfig.getCacheConfigurations().get("usesClock");
+    assertThat(findSingletonAmongst(OffHeapEvictionConfiguration.class, clockConfig.getServiceConfigurations()), nullValue());
+
+    CacheConfiguration<?, ?> frequencyConfig = xmlConfig.getCacheConfigurations().get("usesFrequency");
+    OffHeapEvictionConfiguration frequencyEviction = findSingletonAmongst(OffHeapEvictionConfiguration.class, frequencyConfig.getServiceConfigurations());
+    assertThat(frequencyEviction.getMode(), is(OffHeapEvictionConfiguration.Mode.FREQUENCY));
+
+    CacheConfiguration<Object, Object> templateConfig = xmlConfig.newCacheConfigurationBuilderFromTemplate("frequencyTemplate").build();
+    OffHeapEvictionConfiguration templateEviction = findSingletonAmongst(OffHeapEvictionConfiguration.class, templateConfig.getServiceConfigurations());
+    assertThat(templateEviction.getMode(), is(OffHeapEvictionConfiguration.Mode.FREQUENCY));
   }
 
   @Test